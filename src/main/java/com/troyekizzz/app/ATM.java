@@ -1,10 +1,19 @@
 package com.troyekizzz.app;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.troyekizzz.app.utils.Currency;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -13,7 +22,17 @@ import lombok.Getter;
  * @author TroyeKizzz
  */
 @Getter
-public class ATM {
+public class ATM implements Located {
+  /**
+   * The default amount a card can withdraw while the ATM is offline.
+   */
+  public static final float DEFAULT_OFFLINE_LIMIT = 200;
+
+  /**
+   * The number of queued operations sent to the bank at a time.
+   */
+  static final int REPLAY_BATCH_SIZE = 100;
+
   /**
    * The state of the ATM. 
    * 
@@ -31,15 +50,78 @@ public class ATM {
    */
   private String location;
 
+  /**
+   * The ATM latitude in degrees, or NaN if it is not known.
+   */
+  private final double latitude;
+
+  /**
+   * The ATM longitude in degrees, or NaN if it is not known.
+   */
+  private final double longitude;
+
   /**
    * The ATM balance.
    */
   private float balance;
 
+  /**
+   * The note cassettes of the ATM, or null if the ATM only tracks its balance.
+   */
+  private CashDispenser dispenser = null;
+
+  /**
+   * The rolling cash flow of the ATM.
+   */
+  private AtmTelemetry telemetry;
+
+  /**
+   * True if the ATM cannot reach the bank and queues its operations.
+   */
+  private volatile boolean offline = false;
+
+  /**
+   * The lock of the online and offline modes.
+   * 
+   * Cash operations hold it shared, so they run side by side and the mode
+   * cannot change under them. Switching the mode holds it exclusively.
+   */
+  @Getter(AccessLevel.NONE)
+  private final ReentrantReadWriteLock modeLock = new ReentrantReadWriteLock();
+
+  /**
+   * The file where operations are queued while the ATM is offline.
+   */
+  @Getter(AccessLevel.NONE)
+  private OfflineJournal journal = null;
+
+  /**
+   * The amount a card can withdraw while the ATM is offline, unless the card has its own limit.
+   */
+  private float offlineLimit = DEFAULT_OFFLINE_LIMIT;
+
+  /**
+   * The offline limits of single cards.
+   */
+  @Getter(AccessLevel.NONE)
+  private Map<Card, Float> cardOfflineLimits = new HashMap<>();
+
+  /**
+   * The amount each card has withdrawn since the ATM went offline.
+   */
+  @Getter(AccessLevel.NONE)
+  private Map<Card, Float> offlineWithdrawals = new HashMap<>();
+
   /**
    * The ATM transactions history.
    */
-  private List<Transaction> transactions = new ArrayList<>();
+  private TransactionHistory transactions = new TransactionHistory();
+
+  /**
+   * The open sessions at the ATM.
+   */
+  @Getter(AccessLevel.NONE)
+  private Set<ATMSession> sessions = Collections.newSetFromMap(new ConcurrentHashMap<>());
 
   /**
    * Creates a new ATM.
@@ -49,9 +131,55 @@ public class ATM {
    * @param balance  The ATM balance.
    */
   public ATM(Bank bank, String location, float balance) {
+    this(bank, location, balance, Double.NaN, Double.NaN);
+  }
+
+  /**
+   * Creates a new ATM on the map.
+   * 
+   * @param bank      The bank that the ATM is owned by.
+   * @param location  The ATM location.
+   * @param balance   The ATM balance.
+   * @param latitude  The ATM latitude in degrees.
+   * @param longitude The ATM longitude in degrees.
+   */
+  public ATM(Bank bank, String location, float balance, double latitude, double longitude) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
     this.bank = bank;
     this.location = location;
     this.balance = balance;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.telemetry = new AtmTelemetry(balance);
+  }
+
+  /**
+   * Creates a new ATM with note cassettes.
+   * 
+   * The ATM balance is the value of the notes.
+   * 
+   * @param bank      The bank that the ATM is owned by.
+   * @param location  The ATM location.
+   * @param dispenser The note cassettes.
+   */
+  public ATM(Bank bank, String location, CashDispenser dispenser) {
+    this(bank, location, dispenser, Double.NaN, Double.NaN);
+  }
+
+  /**
+   * Creates a new ATM with note cassettes on the map.
+   * 
+   * The ATM balance is the value of the notes.
+   * 
+   * @param bank      The bank that the ATM is owned by.
+   * @param location  The ATM location.
+   * @param dispenser The note cassettes.
+   * @param latitude  The ATM latitude in degrees.
+   * @param longitude The ATM longitude in degrees.
+   */
+  public ATM(Bank bank, String location, CashDispenser dispenser, double latitude, double longitude) throws IllegalArgumentException {
+    this(bank, location, dispenser.getTotal(), latitude, longitude);
+    this.dispenser = dispenser;
   }
 
   /**
@@ -64,8 +192,15 @@ public class ATM {
     if (!active)
       throw new IllegalStateException("ATM is already deactivated");
     active = false;
+    for (ATMSession session : sessions) {
+      session.close();
+    }
     float balance = this.balance;
     this.balance = 0;
+    if (dispenser != null) {
+      dispenser.empty();
+    }
+    telemetry.recordBalance(0);
     return balance;
   }
 
@@ -78,21 +213,15 @@ public class ATM {
    * @param card     The card that is used to withdraw money.
    * @param amount   The amount of money to withdraw.
    * @param currency The currency of the money to withdraw.
+   * @param pin      The pin of the card or a session token.
    */
   public void withdrawCash(Card card, float amount, Currency currency, String pin) throws IllegalStateException {
     if (!active)
       throw new IllegalStateException("ATM is deactivated");
-    if (!card.validatePin(pin))
+    closeExpiredSessions();
+    if (!card.authenticate(pin))
       throw new IllegalStateException("Invalid pin");
-    if (balance < amount)
-      throw new IllegalStateException("Not enough money in the ATM");
-    if (amount <= 0)
-      throw new IllegalStateException("Amount cannot be negative or zero");
-    card.getAccount().withdraw(amount, currency);
-    balance -= amount;
-    Transaction transaction = new Transaction(card, amount, currency, "Cash withdrawal from ATM at " + location);
-    transactions.add(transaction);
-    card.getHistory().add(transaction);
+    recordTransaction(card, dispenseCash(card, amount, currency));
   }
 
   /**
@@ -104,49 +233,440 @@ public class ATM {
    * @param card     The card that is used to deposit money.
    * @param amount   The amount of money to deposit.
    * @param currency The currency of the money to deposit.
+   * @param pin      The pin of the card or a session token.
    */
   public void depositCash(Card card, float amount, Currency currency, String pin) throws IllegalStateException {
     if (!active)
       throw new IllegalStateException("ATM is deactivated");
-    if (!card.validatePin(pin))
+    closeExpiredSessions();
+    if (!card.authenticate(pin))
       throw new IllegalStateException("Invalid pin");
-    if (amount <= 0)
-      throw new IllegalStateException("Amount cannot be negative or zero");
-    card.getAccount().deposit(amount, currency);
-    balance += amount;
-    Transaction transaction = new Transaction(card, amount, currency, "Cash deposit to ATM at " + location);
-    transactions.add(transaction);
-    card.getHistory().add(transaction);
+    recordTransaction(card, acceptCash(card, amount, currency));
   }
 
   /**
    * A method that checks the card balance.
    * 
    * @param card The card that is used to check the balance.
-   * @param pin  The pin of the card.
+   * @param pin  The pin of the card or a session token.
    * @return The card balance.
    */
   public String checkBalance(Card card, String pin) throws IllegalStateException {
     if (!active)
       throw new IllegalStateException("ATM is deactivated");
-    if (!card.validatePin(pin))
+    closeExpiredSessions();
+    if (!card.authenticate(pin))
       throw new IllegalStateException("Invalid pin");
-    return "Your balance is " + card.getAccount().getBalance() + " " + card.getAccount().getCurrency();
+    return balanceMessage(card);
   }
 
   /**
    * A method that displays the last message from the card owner.
    * 
    * @param card The card that is used to display the message.
-   * @param pin  The pin of the card.
+   * @param pin  The pin of the card or a session token.
    * @return The last message from the card owner.
    */
   public String displayMessage(Card card, String pin) throws IllegalStateException {
     if (!active)
       throw new IllegalStateException("ATM is deactivated");
-    if (!card.validatePin(pin))
+    closeExpiredSessions();
+    if (!card.authenticate(pin))
+      throw new IllegalStateException("Invalid pin");
+    return lastMessage(card);
+  }
+
+  /**
+   * A method that opens a session for several operations with one pin check.
+   * 
+   * The session expires after {@link ATMSession#TIMEOUT} without operations.
+   * 
+   * @param card The card that is used in the session.
+   * @param pin  The pin of the card.
+   * @return The session.
+   */
+  public ATMSession openSession(Card card, String pin) throws IllegalStateException {
+    return openSession(card, pin, ATMSession.TIMEOUT);
+  }
+
+  /**
+   * A method that opens a session for several operations with one pin check.
+   * 
+   * @param card    The card that is used in the session.
+   * @param pin     The pin of the card.
+   * @param timeout The time the session stays open without operations in milliseconds.
+   * @return The session.
+   */
+  public ATMSession openSession(Card card, String pin, long timeout) throws IllegalStateException {
+    if (!active)
+      throw new IllegalStateException("ATM is deactivated");
+    closeExpiredSessions();
+    String token;
+    try {
+      token = card.startSession(pin);
+    } catch (IllegalArgumentException e) {
       throw new IllegalStateException("Invalid pin");
+    }
+    ATMSession session = new ATMSession(this, card, timeout, token);
+    sessions.add(session);
+    return session;
+  }
+
+  /**
+   * A method that adds money to the ATM balance.
+   * 
+   * @param amount The amount of money to add.
+   * @throws IllegalStateException If the ATM is deactivated or holds note cassettes.
+   */
+  void replenish(float amount) throws IllegalStateException {
+    if (!active)
+      throw new IllegalStateException("ATM is deactivated");
+    if (dispenser != null)
+      throw new IllegalStateException("ATM with note cassettes must be loaded with notes");
+    float total;
+    synchronized (this) {
+      balance += amount;
+      total = balance;
+    }
+    telemetry.recordBalance(total);
+  }
+
+  /**
+   * A method that loads notes into a cassette of the ATM.
+   * 
+   * @param denomination The denomination of the notes.
+   * @param count        The number of notes.
+   * @throws IllegalStateException If the ATM is deactivated or has no note cassettes.
+   */
+  void replenish(int denomination, int count) throws IllegalStateException {
+    if (!active)
+      throw new IllegalStateException("ATM is deactivated");
+    if (dispenser == null)
+      throw new IllegalStateException("ATM has no note cassettes");
+    synchronized (dispenser) {
+      dispenser.load(denomination, count);
+      balance += (float) denomination * count;
+    }
+    telemetry.recordBalance(balance);
+  }
+
+  /**
+   * A method that closes the sessions that have expired.
+   * 
+   * Every operation at the ATM calls it, so abandoned sessions do not pile up.
+   */
+  public void closeExpiredSessions() {
+    for (ATMSession session : sessions) {
+      if (!session.isOpen()) {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * A method that withdraws money from the card balance and dispenses it.
+   * 
+   * If the ATM has note cassettes, the notes are planned first, so an
+   * amount that cannot be paid in notes is refused before the account is debited.
+   * 
+   * @param card     The card that is used to withdraw money.
+   * @param amount   The amount of money to withdraw.
+   * @param currency The currency of the money to withdraw.
+   * @return The transaction, or null if the withdrawal was queued offline.
+   */
+  Transaction dispenseCash(Card card, float amount, Currency currency) throws IllegalStateException {
+    card.checkOpen();
+    modeLock.readLock().lock();
+    try {
+      if (offline) {
+        queueWithdrawal(card, amount, currency);
+        return null;
+      }
+      if (dispenser != null) {
+        synchronized (dispenser) {
+          int[] notes = dispenser.plan(amount);
+          card.getAccount().withdraw(amount, currency);
+          dispenser.take(notes);
+          balance -= amount;
+        }
+        telemetry.recordWithdrawal(amount, balance, System.currentTimeMillis());
+        return new Transaction(card, amount, currency, "Cash withdrawal from ATM at " + location);
+      }
+      float remaining;
+      synchronized (this) {
+        if (balance < amount)
+          throw new IllegalStateException("Not enough money in the ATM");
+        if (amount <= 0)
+          throw new IllegalStateException("Amount cannot be negative or zero");
+        card.getAccount().withdraw(amount, currency);
+        balance -= amount;
+        remaining = balance;
+      }
+      telemetry.recordWithdrawal(amount, remaining, System.currentTimeMillis());
+      return new Transaction(card, amount, currency, "Cash withdrawal from ATM at " + location);
+    } finally {
+      modeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * A method that accepts money and deposits it to the card balance.
+   * 
+   * @param card     The card that is used to deposit money.
+   * @param amount   The amount of money to deposit.
+   * @param currency The currency of the money to deposit.
+   * @return The transaction, or null if the deposit was queued offline.
+   */
+  Transaction acceptCash(Card card, float amount, Currency currency) throws IllegalStateException {
+    card.checkOpen();
+    modeLock.readLock().lock();
+    try {
+      if (amount <= 0)
+        throw new IllegalStateException("Amount cannot be negative or zero");
+      if (offline) {
+        queueDeposit(card, amount, currency);
+        return null;
+      }
+      float remaining;
+      synchronized (this) {
+        card.getAccount().deposit(amount, currency);
+        balance += amount;
+        remaining = balance;
+      }
+      telemetry.recordDeposit(amount, remaining, System.currentTimeMillis());
+      return new Transaction(card, amount, currency, "Cash deposit to ATM at " + location);
+    } finally {
+      modeLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * A method that returns the balance message of a card.
+   * 
+   * @param card The card.
+   * @return The balance message.
+   */
+  String balanceMessage(Card card) throws IllegalStateException {
+    if (offline)
+      throw new IllegalStateException("ATM is offline");
+    return "Your balance is " + card.getAccount().getBalance() + " " + card.getAccount().getCurrency();
+  }
+
+  /**
+   * A method that returns the last message from the card owner.
+   * 
+   * @param card The card.
+   * @return The last message.
+   */
+  String lastMessage(Card card) throws IllegalStateException {
+    if (offline)
+      throw new IllegalStateException("ATM is offline");
     List<String> messages = card.getAccount().getOwner().getMessages();
     return messages.isEmpty() ? "No messages" : messages.get(messages.size() - 1);
   }
+
+  /**
+   * A method that records a transaction made at the ATM.
+   * 
+   * The transaction is added to the ATM and card histories
+   * and to the transaction index.
+   * 
+   * @param card        The card that the transaction was made with.
+   * @param transaction The transaction.
+   */
+  void recordTransaction(Card card, Transaction transaction) {
+    if (transaction == null) {
+      return;
+    }
+    transactions.add(transaction);
+    card.getHistory().add(transaction);
+    TransactionIndex index = TransactionIndex.getInstance();
+    index.add(transaction);
+    index.add(card, transaction);
+    index.add(this, transaction);
+  }
+
+  /**
+   * A method that sets the amount a card can withdraw while the ATM is offline.
+   * 
+   * @param card  The card, or null to set the limit of all other cards.
+   * @param limit The limit.
+   */
+  public synchronized void setOfflineLimit(Card card, float limit) throws IllegalArgumentException {
+    if (limit < 0)
+      throw new IllegalArgumentException("Invalid limit");
+    if (card == null) {
+      offlineLimit = limit;
+    } else {
+      cardOfflineLimits.put(card, limit);
+    }
+  }
+
+  /**
+   * A method that switches the ATM to offline mode.
+   * 
+   * Withdrawals within the offline limits and deposits are approved by the
+   * ATM and queued in a journal file until the ATM goes online again.
+   * Operations already in the file, e.g. from before a restart, are kept
+   * and their withdrawals count towards the offline limits.
+   * 
+   * @param journalFile The journal file.
+   */
+  public void goOffline(Path journalFile) throws IllegalStateException {
+    modeLock.writeLock().lock();
+    try {
+      if (!active)
+        throw new IllegalStateException("ATM is deactivated");
+      if (offline)
+        throw new IllegalStateException("ATM is already offline");
+      journal = new OfflineJournal(journalFile, bank.getJournalKey());
+      offlineWithdrawals.clear();
+      Map<String, Card> cardsByToken = cardsByToken();
+      for (OfflineJournal.Entry entry : journal.readAll()) {
+        Card card = cardsByToken.get(entry.getCardToken());
+        if (entry.isWithdrawal() && card != null) {
+          offlineWithdrawals.merge(card, entry.getAmount(), Float::sum);
+        }
+      }
+      offline = true;
+    } finally {
+      modeLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * A method that switches the ATM back to online mode and sends the
+   * queued operations to the bank.
+   * 
+   * The operations are applied in the order they were made, in batches.
+   * An operation that cannot be applied, e.g. because the account no longer
+   * has the money, is reported as a conflict. Every operation is marked in
+   * the journal as soon as it is applied or reported, so a replay that
+   * stops halfway continues after it the next time. The journal is emptied afterwards.
+   * 
+   * @return The report of the applied operations and the conflicts.
+   */
+  public OfflineReplayReport goOnline() throws IllegalStateException {
+    modeLock.writeLock().lock();
+    try {
+      if (!offline)
+        throw new IllegalStateException("ATM is not offline");
+      OfflineReplayReport report = new OfflineReplayReport();
+      Map<String, Card> cardsByToken = cardsByToken();
+      List<OfflineJournal.Entry> entries = journal.readAll();
+      for (int start = 0; start < entries.size(); start += REPLAY_BATCH_SIZE) {
+        Map<Card, List<Transaction>> batch = new HashMap<>();
+        for (OfflineJournal.Entry entry : entries.subList(start, Math.min(start + REPLAY_BATCH_SIZE, entries.size()))) {
+          Card card = cardsByToken.get(entry.getCardToken());
+          String operation = (entry.isWithdrawal() ? "Withdrawal of " : "Deposit of ") + entry.getAmount() + " " + entry.getCurrency()
+            + " with card " + (card == null ? entry.getCardToken() : card.getNumber());
+          if (card == null) {
+            report.getConflicts().add(operation + " failed: Card does not exist");
+            journal.markApplied(entry);
+            continue;
+          }
+          try {
+            Transaction transaction;
+            if (entry.isWithdrawal()) {
+              card.getAccount().withdraw(entry.getAmount(), entry.getCurrency());
+              transaction = new Transaction(card, entry.getAmount(), entry.getCurrency(), "Cash withdrawal from ATM at " + location);
+            } else {
+              card.getAccount().deposit(entry.getAmount(), entry.getCurrency());
+              transaction = new Transaction(card, entry.getAmount(), entry.getCurrency(), "Cash deposit to ATM at " + location);
+            }
+            transaction.setDate(new Date(entry.getTimestamp()));
+            batch.computeIfAbsent(card, key -> new ArrayList<>()).add(transaction);
+            report.getApplied().add(transaction);
+          } catch (IllegalArgumentException | IllegalStateException e) {
+            report.getConflicts().add(operation + " failed: " + e.getMessage());
+          }
+          journal.markApplied(entry);
+        }
+        for (Map.Entry<Card, List<Transaction>> applied : batch.entrySet()) {
+          transactions.addAll(applied.getValue());
+          applied.getKey().getHistory().addAll(applied.getValue());
+          TransactionIndex.getInstance().addAll(applied.getKey(), this, applied.getValue());
+        }
+      }
+      journal.clear();
+      journal.close();
+      journal = null;
+      offline = false;
+      offlineWithdrawals.clear();
+      return report;
+    } finally {
+      modeLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * A method that maps the journal hashes of the bank cards to the cards.
+   * 
+   * @return The cards by the hashes of their numbers.
+   */
+  private Map<String, Card> cardsByToken() {
+    Map<String, Card> cardsByToken = new HashMap<>();
+    for (Card card : bank.getCards()) {
+      cardsByToken.put(journal.tokenize(card.getNumber()), card);
+    }
+    return cardsByToken;
+  }
+
+  /**
+   * A method that approves a withdrawal while the ATM is offline and queues it.
+   * 
+   * The caller holds the mode lock, so the ATM stays offline meanwhile.
+   * 
+   * @param card     The card that is used to withdraw money.
+   * @param amount   The amount of money to withdraw.
+   * @param currency The currency of the money to withdraw.
+   */
+  private synchronized void queueWithdrawal(Card card, float amount, Currency currency) throws IllegalStateException {
+    if (journal == null)
+      throw new IllegalStateException("ATM is not offline");
+    if (amount <= 0)
+      throw new IllegalStateException("Amount cannot be negative or zero");
+    float withdrawn = offlineWithdrawals.getOrDefault(card, 0f);
+    if (withdrawn + amount > cardOfflineLimits.getOrDefault(card, offlineLimit))
+      throw new IllegalStateException("Offline limit exceeded");
+    int[] notes = null;
+    if (dispenser != null) {
+      notes = dispenser.plan(amount);
+    } else if (balance < amount) {
+      throw new IllegalStateException("Not enough money in the ATM");
+    }
+    journal.append(true, card.getNumber(), amount, currency, System.currentTimeMillis());
+    if (notes != null) {
+      dispenser.take(notes);
+    }
+    offlineWithdrawals.put(card, withdrawn + amount);
+    balance -= amount;
+    telemetry.recordWithdrawal(amount, balance, System.currentTimeMillis());
+  }
+
+  /**
+   * A method that accepts a deposit while the ATM is offline and queues it.
+   * 
+   * The caller holds the mode lock, so the ATM stays offline meanwhile.
+   * 
+   * @param card     The card that is used to deposit money.
+   * @param amount   The amount of money to deposit.
+   * @param currency The currency of the money to deposit.
+   */
+  private synchronized void queueDeposit(Card card, float amount, Currency currency) throws IllegalStateException {
+    if (journal == null)
+      throw new IllegalStateException("ATM is not offline");
+    journal.append(false, card.getNumber(), amount, currency, System.currentTimeMillis());
+    balance += amount;
+    telemetry.recordDeposit(amount, balance, System.currentTimeMillis());
+  }
+
+  /**
+   * A method that forgets a closed session.
+   * 
+   * @param session The session.
+   */
+  void removeSession(ATMSession session) {
+    sessions.remove(session);
+  }
 }
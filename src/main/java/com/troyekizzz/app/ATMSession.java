@@ -0,0 +1,159 @@
+package com.troyekizzz.app;
+
+import com.troyekizzz.app.utils.Currency;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A class that represents a session at an ATM, i.e. several
+ * operations made with a card after one pin check.
+ * 
+ * The pin is checked once for a verified session of the card, and
+ * the operations are authenticated with its token. The money is moved
+ * and the transaction is recorded by each operation right away, so an
+ * abandoned session loses nothing.
+ * 
+ * @author TroyeKizzz
+ */
+@Getter
+public class ATMSession {
+  /**
+   * The default time a session stays open without operations, 2 minutes in milliseconds.
+   */
+  public static final long TIMEOUT = 2 * 60 * 1000L;
+
+  /**
+   * The ATM of the session.
+   */
+  private final ATM atm;
+
+  /**
+   * The card that is used in the session.
+   */
+  private final Card card;
+
+  /**
+   * The time the session stays open without operations in milliseconds.
+   */
+  private final long timeout;
+
+  /**
+   * The time when the session expires in milliseconds since the epoch.
+   */
+  @Getter(AccessLevel.NONE)
+  private long expiresAt;
+
+  /**
+   * True if the session has been closed.
+   */
+  @Getter(AccessLevel.NONE)
+  private boolean closed = false;
+
+  /**
+   * The token of the verified session of the card.
+   */
+  @Getter(AccessLevel.NONE)
+  private final String token;
+
+  /**
+   * Creates a new session.
+   * 
+   * @param atm     The ATM of the session.
+   * @param card    The card that is used in the session.
+   * @param timeout The time the session stays open without operations in milliseconds.
+   * @param token   The token of the verified session of the card.
+   */
+  ATMSession(ATM atm, Card card, long timeout, String token) throws IllegalArgumentException {
+    if (timeout <= 0)
+      throw new IllegalArgumentException("Timeout must be positive");
+    this.atm = atm;
+    this.card = card;
+    this.timeout = timeout;
+    this.token = token;
+    this.expiresAt = System.currentTimeMillis() + timeout;
+  }
+
+  /**
+   * A method that withdraws money from the card balance.
+   * 
+   * @param amount   The amount of money to withdraw.
+   * @param currency The currency of the money to withdraw.
+   */
+  public synchronized void withdrawCash(float amount, Currency currency) throws IllegalStateException {
+    begin();
+    atm.recordTransaction(card, atm.dispenseCash(card, amount, currency));
+  }
+
+  /**
+   * A method that deposits money to the card balance.
+   * 
+   * @param amount   The amount of money to deposit.
+   * @param currency The currency of the money to deposit.
+   */
+  public synchronized void depositCash(float amount, Currency currency) throws IllegalStateException {
+    begin();
+    atm.recordTransaction(card, atm.acceptCash(card, amount, currency));
+  }
+
+  /**
+   * A method that checks the card balance.
+   * 
+   * @return The card balance.
+   */
+  public synchronized String checkBalance() throws IllegalStateException {
+    begin();
+    return atm.balanceMessage(card);
+  }
+
+  /**
+   * A method that displays the last message from the card owner.
+   * 
+   * @return The last message from the card owner.
+   */
+  public synchronized String displayMessage() throws IllegalStateException {
+    begin();
+    return atm.lastMessage(card);
+  }
+
+  /**
+   * A method that returns true if the session can still be used.
+   * 
+   * @return True if the session is open, not expired and its card session is valid, false otherwise.
+   */
+  public synchronized boolean isOpen() {
+    return !closed && System.currentTimeMillis() < expiresAt && card.validateSession(token);
+  }
+
+  /**
+   * A method that closes the session and ends the verified session of the card.
+   * 
+   * Closing a closed session does nothing.
+   */
+  public synchronized void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (card.validateSession(token)) {
+      card.endSession();
+    }
+    atm.removeSession(this);
+  }
+
+  /**
+   * A method that checks that an operation can be made and extends the session.
+   */
+  private void begin() throws IllegalStateException {
+    if (closed)
+      throw new IllegalStateException("Session is closed");
+    long now = System.currentTimeMillis();
+    if (now >= expiresAt || !card.validateSession(token)) {
+      close();
+      throw new IllegalStateException("Session has expired");
+    }
+    if (!atm.isActive())
+      throw new IllegalStateException("ATM is deactivated");
+    expiresAt = now + timeout;
+  }
+}
@@ -1,8 +1,20 @@
 package com.troyekizzz.app;
 
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.HoldStatus;
+import com.troyekizzz.app.utils.PostingType;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * A class that represents a bank account.
@@ -10,15 +22,31 @@ import lombok.Data;
  * @author TroyeKizzz
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Account {
+  /**
+   * The source of account ids.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The account id. Used as the counterparty id in ledger postings.
+   * Equality and hash codes are based on it only.
+   */
+  @EqualsAndHashCode.Include
+  private final long id = nextId.getAndIncrement();
+
   /**
    * Shows if the account is open, i.e. it can be used.
    */
-  private boolean isOpen;
+  private volatile boolean isOpen;
 
   /**
    * The account balance in its currency.
+   * 
+   * The balance only changes through postings, so it has no setter.
    */
+  @Setter(AccessLevel.NONE)
   private float balance;
 
   /**
@@ -41,6 +69,68 @@ public class Account {
    */
   private String number;
 
+  /**
+   * The ledger of all postings made to the account.
+   */
+  private final Ledger ledger = new Ledger();
+
+  /**
+   * The sum of the open authorization holds in the account currency.
+   */
+  @Setter(AccessLevel.NONE)
+  private float heldAmount = 0;
+
+  /**
+   * The number of open authorization holds.
+   */
+  @Setter(AccessLevel.NONE)
+  private int openHolds = 0;
+
+  /**
+   * The authorization holds ordered by their expiry time.
+   * 
+   * Captured and voided holds are left in the queue and skipped
+   * when they reach its head. When they outnumber the open holds,
+   * they are all removed at once, so the queue stays at most about
+   * twice the size of the open holds.
+   */
+  @Getter(AccessLevel.NONE)
+  private final PriorityQueue<Hold> holdExpiries = new PriorityQueue<>(Comparator.comparingLong(Hold::getExpiresAt));
+
+  /**
+   * The number of captured and voided holds left in {@link #holdExpiries}.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private int closedHolds = 0;
+
+  /**
+   * The striped sub-balances of a hot account, or null if the account is not hot.
+   * 
+   * Credits to a hot account land on the stripes without locking the account.
+   * Reads add the stripes to the balance and debits fold them into it.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile StripedBalance stripes = null;
+
+  /**
+   * The bit of {@link #stripeWriters} that is set while the account is being closed.
+   */
+  private static final int CLOSING = 1 << 30;
+
+  /**
+   * The number of credits being added to the stripes, with the {@link #CLOSING} bit
+   * set while the account is being closed.
+   * 
+   * A credit only lands on the stripes after it has been counted here without
+   * the bit, so {@link #close()} can shut the stripes and wait for the credits
+   * in flight before it folds them into the balance.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private final AtomicInteger stripeWriters = new AtomicInteger();
+
   /**
    * Creates a new account.
    * 
@@ -56,8 +146,8 @@ public class Account {
     this.balance = 0;
     this.isOpen = true;
     this.interestRate = 0;
-    this.number = "FI" + (int) (Math.random() * 10000000) + (int) (Math.random() * 10000000);
-    owner.getBankAccounts().add(this);
+    this.number = IdService.getInstance().getGenerator().nextAccountNumber();
+    owner.addBankAccount(this);
   }
 
   /**
@@ -65,15 +155,36 @@ public class Account {
    *
    * The account can be closed only if it has zero balance.
    */
-  public void close() throws IllegalStateException {
-    if (this.balance > 0) {
-      throw new IllegalStateException("The account has a positive balance.");
+  public synchronized void close() throws IllegalStateException {
+    this.shutStripes();
+    try {
+      this.foldStripes();
+      if (this.balance > 0) {
+        throw new IllegalStateException("The account has a positive balance.");
+      }
+      if (!this.isOpen()) {
+        throw new IllegalStateException("The account is already closed.");
+      }
+      this.isOpen = false;
+    } finally {
+      if (this.isOpen) {
+        this.stripeWriters.getAndAdd(-CLOSING);
+      }
+    }
+    this.owner.removeBankAccount(this);
+  }
+
+  /**
+   * Stops new credits from landing on the stripes and waits for the ones in flight.
+   */
+  private void shutStripes() {
+    if (this.stripes == null || (this.stripeWriters.get() & CLOSING) != 0) {
+      return;
     }
-    if (!this.isOpen()) {
-      throw new IllegalStateException("The account is already closed.");
+    this.stripeWriters.getAndAdd(CLOSING);
+    while (this.stripeWriters.get() != CLOSING) {
+      LockSupport.parkNanos(100_000);
     }
-    this.isOpen = false;
-    this.owner.getBankAccounts().remove(this);
   }
 
   /**
@@ -85,17 +196,59 @@ public class Account {
    * @param currency The currency of the amount.
    */
   public void deposit(float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
+    this.deposit(amount, currency, 0, PostingType.DEPOSIT);
+  }
+
+  /**
+   * Deposits money to the account and records the posting in the ledger.
+   * 
+   * @param amount       The amount to deposit. Positive.
+   * @param currency     The currency of the amount.
+   * @param counterparty The id of the counterparty account, or 0 if there is none.
+   * @param type         The posting type.
+   */
+  private void deposit(float amount, Currency currency, long counterparty, PostingType type) throws IllegalArgumentException, IllegalStateException {
+    StripedBalance stripes = this.stripes;
+    if (stripes != null) {
+      this.checkDeposit(amount, currency);
+      float converted = Exchange.getInstance().convert(currency, this.currency, amount);
+      int writers;
+      do {
+        writers = this.stripeWriters.get();
+        if ((writers & CLOSING) != 0) {
+          throw new IllegalStateException("The account is closed.");
+        }
+      } while (!this.stripeWriters.compareAndSet(writers, writers + 1));
+      try {
+        stripes.add(converted);
+        this.ledger.append(System.currentTimeMillis(), converted, counterparty, type);
+      } finally {
+        this.stripeWriters.decrementAndGet();
+      }
+      return;
+    }
+    synchronized (this) {
+      this.checkDeposit(amount, currency);
+      float converted = Exchange.getInstance().convert(currency, this.currency, amount);
+      this.balance += converted;
+      this.ledger.append(System.currentTimeMillis(), converted, counterparty, type);
+    }
+  }
+
+  /**
+   * Checks that money can be deposited to the account.
+   * 
+   * @param amount   The amount to deposit. Positive.
+   * @param currency The currency of the amount.
+   */
+  private void checkDeposit(float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
     if (amount < 0) {
       throw new IllegalArgumentException("The amount must be positive.");
     }
     if (!isOpen) {
       throw new IllegalStateException("The account is closed.");
     }
-    try {
-      this.balance += Exchange.getInstance().convert(currency, this.currency, amount);
-    } catch (IllegalArgumentException e) {
-      throw e;
-    }
+    Exchange.getInstance().getRate(currency, this.currency);
   }
 
   /**
@@ -108,22 +261,253 @@ public class Account {
    * @param currency The currency of the amount.
    */
   public void withdraw(float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
+    this.withdraw(amount, currency, 0, PostingType.WITHDRAWAL);
+  }
+
+  /**
+   * Withdraws money from the account and records the posting in the ledger.
+   * 
+   * @param amount       The amount to withdraw. Positive.
+   * @param currency     The currency of the amount.
+   * @param counterparty The id of the counterparty account, or 0 if there is none.
+   * @param type         The posting type.
+   */
+  private synchronized void withdraw(float amount, Currency currency, long counterparty, PostingType type) throws IllegalArgumentException, IllegalStateException {
+    this.checkWithdrawal(amount, currency);
+    float converted = Exchange.getInstance().convert(currency, this.currency, amount);
+    this.balance -= converted;
+    this.ledger.append(System.currentTimeMillis(), -converted, counterparty, type);
+  }
+
+  /**
+   * Checks that money can be withdrawn from the account.
+   * 
+   * @param amount   The amount to withdraw. Positive.
+   * @param currency The currency of the amount.
+   */
+  private synchronized void checkWithdrawal(float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
     if (amount < 0) {
       throw new IllegalArgumentException("The amount must be positive.");
     }
     if (!isOpen) {
       throw new IllegalStateException("The account is closed.");
     }
-    if (amount > this.balance) {
-      throw new IllegalArgumentException("The amount is greater than the balance.");
+    if (amount > this.getAvailableBalance()) {
+      throw new InsufficientFundsException("The amount is greater than the balance.");
     }
-    try {
-      this.balance -= Exchange.getInstance().convert(currency, this.currency, amount);
-    } catch (IllegalArgumentException e) {
-      throw e;
+    Exchange.getInstance().getRate(currency, this.currency);
+  }
+
+  /**
+   * Returns the balance that is not reserved by authorization holds.
+   * 
+   * @return The available balance in the account currency.
+   */
+  public synchronized float getAvailableBalance() {
+    this.foldStripes();
+    this.expireHolds(System.currentTimeMillis());
+    return this.balance - this.heldAmount;
+  }
+
+  /**
+   * Returns the account balance in its currency.
+   * 
+   * @return The account balance.
+   */
+  public synchronized float getBalance() {
+    StripedBalance stripes = this.stripes;
+    return stripes == null ? this.balance : this.balance + stripes.sum();
+  }
+
+  /**
+   * Turns the account into a hot account.
+   * 
+   * The balance of a hot account is spread over striped sub-balances,
+   * so many threads can credit it at the same time, e.g. the account
+   * of a large merchant. Reads and debits fold the stripes together.
+   * The mode cannot be turned off.
+   * 
+   * @param count The number of stripes. A power of two.
+   */
+  public synchronized void enableStriping(int count) throws IllegalArgumentException, IllegalStateException {
+    if (this.stripes != null) {
+      throw new IllegalStateException("The account is already striped.");
+    }
+    this.stripes = new StripedBalance(count);
+  }
+
+  /**
+   * Returns true if the account balance is striped.
+   * 
+   * @return True if the account is a hot account, false otherwise.
+   */
+  public boolean isStriped() {
+    return this.stripes != null;
+  }
+
+  /**
+   * Moves the amounts credited to the stripes into the balance.
+   */
+  private void foldStripes() {
+    StripedBalance stripes = this.stripes;
+    if (stripes != null) {
+      this.balance += stripes.drain();
+    }
+  }
+
+  /**
+   * Reserves funds on the account for a later capture.
+   * 
+   * @param amount           The amount to reserve in the account currency. Positive.
+   * @param merchant         The account the funds are paid to when captured.
+   * @param purchaseAmount   The amount the merchant is paid.
+   * @param purchaseCurrency The currency the merchant is paid in.
+   * @param createdAt        The time when the hold is placed in milliseconds since the epoch.
+   * @param expiresAt        The time when the hold expires in milliseconds since the epoch.
+   * @param description      The description of the purchase.
+   * @param spendLimits      The spend limits the amount was counted toward, or null for none.
+   *                         The amount is given back to them if the hold is voided or expires.
+   * @return The hold.
+   */
+  synchronized Hold placeHold(float amount, Account merchant, float purchaseAmount, Currency purchaseCurrency, long createdAt, long expiresAt, String description, SpendLimits spendLimits) throws IllegalArgumentException, IllegalStateException {
+    if (amount <= 0) {
+      throw new IllegalArgumentException("The amount must be positive.");
+    }
+    if (!isOpen) {
+      throw new IllegalStateException("The account is closed.");
+    }
+    if (amount > this.getAvailableBalance()) {
+      throw new InsufficientFundsException("The amount is greater than the balance.");
+    }
+    Hold hold = new Hold(this, merchant, amount, purchaseAmount, purchaseCurrency, createdAt, expiresAt, description, spendLimits);
+    this.heldAmount += amount;
+    this.openHolds++;
+    this.holdExpiries.add(hold);
+    return hold;
+  }
+
+  /**
+   * Settles a hold by transferring the reserved funds to the merchant.
+   * 
+   * The merchant is credited the purchase amount in the purchase currency,
+   * so a merchant account in that currency needs no exchange.
+   * 
+   * The hold is released and the funds withdrawn under the account lock,
+   * so no other debit can take the reserved funds in between. The merchant
+   * is credited after the lock is released, so two accounts are never
+   * locked at the same time.
+   * 
+   * @param hold The hold to capture.
+   * @return The transaction of the transfer.
+   */
+  Transaction captureHold(Hold hold) throws IllegalArgumentException, IllegalStateException {
+    Account merchant = hold.getMerchant();
+    merchant.checkDeposit(hold.getPurchaseAmount(), hold.getPurchaseCurrency());
+    Transaction transaction = new Transaction(this, merchant, hold.getAmount(), this.currency, hold.getDescription());
+    synchronized (this) {
+      this.checkHold(hold);
+      this.releaseHold(hold, HoldStatus.CAPTURED);
+      this.countClosedHold();
+      try {
+        this.withdraw(hold.getAmount(), this.currency, merchant.getId(), PostingType.TRANSFER_OUT);
+      } catch (IllegalArgumentException | IllegalStateException e) {
+        // Reopen the hold. It may have been removed from the expiry queue meanwhile, so it is queued again.
+        hold.close(HoldStatus.OPEN);
+        this.heldAmount += hold.getAmount();
+        this.openHolds++;
+        if (this.holdExpiries.remove(hold)) {
+          this.closedHolds--;
+        }
+        this.holdExpiries.add(hold);
+        throw e;
+      }
+    }
+    completeTransfer(this, merchant, hold.getPurchaseAmount(), hold.getPurchaseCurrency(), transaction);
+    return transaction;
+  }
+
+  /**
+   * Cancels a hold and makes the reserved funds available again.
+   * 
+   * @param hold The hold to void.
+   */
+  synchronized void voidHold(Hold hold) throws IllegalArgumentException, IllegalStateException {
+    this.checkHold(hold);
+    this.releaseHold(hold, HoldStatus.VOIDED);
+    this.countClosedHold();
+  }
+
+  /**
+   * Checks that a hold is open and belongs to the account.
+   * 
+   * @param hold The hold.
+   */
+  private void checkHold(Hold hold) throws IllegalArgumentException, IllegalStateException {
+    if (hold.getAccount() != this) {
+      throw new IllegalArgumentException("The hold belongs to another account.");
+    }
+    this.expireHolds(System.currentTimeMillis());
+    if (!hold.isOpen()) {
+      throw new IllegalStateException("The hold is " + hold.getStatus().toString().toLowerCase() + ".");
     }
   }
 
+  /**
+   * Closes an open hold and releases its funds.
+   * 
+   * A hold that is not captured also gives its amount back to the spend limits.
+   * 
+   * @param hold   The hold.
+   * @param status The new status of the hold.
+   */
+  private void releaseHold(Hold hold, HoldStatus status) {
+    hold.close(status);
+    this.openHolds--;
+    // Reset the sum when no holds are left, so float rounding cannot accumulate.
+    this.heldAmount = this.openHolds == 0 ? 0 : this.heldAmount - hold.getAmount();
+    if (status != HoldStatus.CAPTURED) {
+      hold.releaseSpending();
+    }
+  }
+
+  /**
+   * Expires the holds whose time has passed.
+   * 
+   * @param now The current time in milliseconds since the epoch.
+   */
+  private void expireHolds(long now) {
+    Hold hold;
+    while ((hold = this.holdExpiries.peek()) != null && hold.getExpiresAt() <= now) {
+      this.holdExpiries.poll();
+      if (hold.isOpen()) {
+        this.releaseHold(hold, HoldStatus.EXPIRED);
+      } else {
+        this.closedHolds--;
+      }
+    }
+  }
+
+  /**
+   * Counts a captured or voided hold that is left in the expiry queue, and
+   * removes all such holds from the queue once they outnumber the open ones.
+   */
+  private void countClosedHold() {
+    this.closedHolds++;
+    if (this.closedHolds > this.openHolds) {
+      this.holdExpiries.removeIf(hold -> !hold.isOpen());
+      this.closedHolds = 0;
+    }
+  }
+
+  /**
+   * Returns the number of holds in the expiry queue, including captured and voided ones.
+   * 
+   * @return The number of queued holds.
+   */
+  synchronized int getQueuedHolds() {
+    return this.holdExpiries.size();
+  }
+
   /**
    * Transfers money from one account to another.
    *
@@ -137,25 +521,52 @@ public class Account {
    * @return A transaction object that represents the transfer.
    */
   static public Transaction transfer(Account from, Account to, float amount) throws IllegalArgumentException, IllegalStateException {
-    // Save the balances of the accounts in case of an exception.
-    float fromBalance = from.getBalance();
-    float toBalance = to.getBalance();
+    // Check both sides before any money moves, so a failed transfer leaves no postings behind.
+    from.checkWithdrawal(amount, from.getCurrency());
+    to.checkDeposit(amount, from.getCurrency());
+    Transaction transaction = new Transaction(from, to, amount, from.getCurrency(), "Money transfer from " + from.getNumber() + " to " + to.getNumber() + ", in total " + amount + " " + from.getCurrency() + ".");
+    from.withdraw(amount, from.getCurrency(), to.getId(), PostingType.TRANSFER_OUT);
+    completeTransfer(from, to, amount, from.getCurrency(), transaction);
+    return transaction;
+  }
 
+  /**
+   * Credits the recipient of a transfer whose money has been withdrawn.
+   * 
+   * @param from           The account the money was withdrawn from.
+   * @param to             The account to credit.
+   * @param creditAmount   The amount to credit.
+   * @param creditCurrency The currency of the amount to credit.
+   * @param transaction    The transaction of the transfer.
+   */
+  private static void completeTransfer(Account from, Account to, float creditAmount, Currency creditCurrency, Transaction transaction) throws IllegalArgumentException, IllegalStateException {
     try {
-      from.withdraw(amount, from.getCurrency());
-      to.deposit(amount, from.getCurrency());
-      return new Transaction(from, to, amount, from.getCurrency(), "Money transfer from " + from.getNumber() + " to " + to.getNumber() + ", in total " + amount + " " + from.getCurrency() + ".");
-    } catch (IllegalArgumentException e) {
-      // Restore the balances of the accounts.
-      from.setBalance(fromBalance);
-      to.setBalance(toBalance);
-      throw e;
-    } catch (IllegalStateException e) {
-      // Restore the balances of the accounts.
-      from.setBalance(fromBalance);
-      to.setBalance(toBalance);
+      to.deposit(creditAmount, creditCurrency, from.getId(), PostingType.TRANSFER_IN);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      // The recipient changed after the checks, so the money goes back to the sender.
+      from.deposit(transaction.getAmount(), from.getCurrency(), to.getId(), PostingType.REVERSAL);
       throw e;
     }
+    TransactionIndex.getInstance().add(transaction);
+  }
+
+  /**
+   * Transfers money from one account to another at most once per idempotency key.
+   *
+   * A retry with the same key returns the original transaction
+   * without moving the money again. The key belongs to the source account,
+   * and reusing it for a different target or amount is refused.
+   * 
+   * @param from           The account to transfer money from.
+   * @param to             The account to transfer money to.
+   * @param amount         The amount to transfer.
+   * @param idempotencyKey The key that identifies the transfer request.
+   * 
+   * @return A transaction object that represents the transfer.
+   */
+  static public Transaction transfer(Account from, Account to, float amount, String idempotencyKey) throws IllegalArgumentException, IllegalStateException {
+    return IdempotencyCache.getInstance().execute("transfer:" + from.getId() + ":" + idempotencyKey,
+      to.getId() + ":" + amount, () -> transfer(from, to, amount));
   }
 
   /**
@@ -163,11 +574,14 @@ public class Account {
    *
    * The interest is added to the account only if it is open.
    */
-  public void addInterest() throws IllegalStateException {
+  public synchronized void addInterest() throws IllegalStateException {
     if (!isOpen) {
       throw new IllegalStateException("The account is closed.");
     }
-    this.balance += this.getBalance() * this.getInterestRate();
+    this.foldStripes();
+    float interest = this.getBalance() * this.getInterestRate();
+    this.balance += interest;
+    this.ledger.append(System.currentTimeMillis(), interest, 0, PostingType.INTEREST);
   }
 
   /**
@@ -1,11 +1,15 @@
 package com.troyekizzz.app;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.troyekizzz.app.utils.BenefitLevel;
 import com.troyekizzz.app.utils.Currency;
 import com.troyekizzz.app.utils.NotificationType;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -15,6 +19,16 @@ import lombok.Getter;
  */
 @Getter
 public class Appointment {
+  /**
+   * The id of the next appointment.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The appointment id.
+   */
+  private final long id;
+
   /**
    * The customer that the appointment is for.
    */
@@ -39,6 +53,12 @@ public class Appointment {
    * The appointment cancellation status.
    */
   private boolean isCancelled;
+
+  /**
+   * The reminders waiting to be sent.
+   */
+  @Getter(AccessLevel.NONE)
+  private final List<TimingWheel.Timer<Appointment>> reminders = new ArrayList<>();
   
 
   /**
@@ -50,6 +70,7 @@ public class Appointment {
    * @param bankBranch The bank branch where the appointment is.
    */
   public Appointment(Customer customer, Date startDate, Date endDate, BankBranch bankBranch) {
+    this.id = nextId.getAndIncrement();
     this.customer = customer;
     this.startDate = startDate;
     this.endDate = endDate;
@@ -58,7 +79,7 @@ public class Appointment {
   }
 
   /**
-   * A method that cancels the appointment.
+   * A method that cancels the appointment and frees its time at the branch.
    * 
    */
   public void cancel() throws IllegalStateException {
@@ -66,6 +87,30 @@ public class Appointment {
       throw new IllegalStateException("The appointment is already cancelled.");
     }
     this.isCancelled = true;
+    cancelReminders();
+    if (this.bankBranch != null) {
+      this.bankBranch.release(this);
+    }
+  }
+
+  /**
+   * A method that adds a reminder of the appointment.
+   * 
+   * @param reminder The reminder.
+   */
+  synchronized void addReminder(TimingWheel.Timer<Appointment> reminder) {
+    this.reminders.add(reminder);
+  }
+
+  /**
+   * A method that cancels the reminders of the appointment that are still waiting.
+   * 
+   */
+  synchronized void cancelReminders() {
+    for (TimingWheel.Timer<Appointment> reminder : this.reminders) {
+      reminder.cancel();
+    }
+    this.reminders.clear();
   }
 
   /**
@@ -111,7 +156,9 @@ public class Appointment {
       throw new IllegalArgumentException("The account is not linked to the customer.");
     }
     float appointmentCost = getAppointmentCost();
-    account.withdraw(appointmentCost, Currency.EUR);
-    this.bankBranch.setBalance(this.bankBranch.getBalance() + appointmentCost);
+    if (appointmentCost > 0) {
+      account.withdraw(appointmentCost, Currency.EUR);
+      this.bankBranch.getVault().deposit(Currency.EUR, appointmentCost);
+    }
   }
 }
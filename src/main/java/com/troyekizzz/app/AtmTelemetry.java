@@ -0,0 +1,192 @@
+package com.troyekizzz.app;
+
+/**
+ * A class that represents the rolling cash flow of an ATM.
+ *
+ * Withdrawals and deposits are kept as exponentially decayed rates, so
+ * each transaction updates them in constant time and recent activity
+ * weighs more than old activity.
+ *
+ * @author TroyeKizzz
+ */
+public class AtmTelemetry {
+  /**
+   * The default time constant of the decay, 1 hour in milliseconds.
+   */
+  public static final long DEFAULT_TIME_CONSTANT = 60 * 60 * 1000L;
+
+  /**
+   * One hour in milliseconds.
+   */
+  private static final double HOUR = 60 * 60 * 1000d;
+
+  /**
+   * The time constant of the decay in milliseconds.
+   */
+  private final long timeConstant;
+
+  /**
+   * The withdrawal rate in money per hour at the last update.
+   */
+  private double withdrawalRate = 0;
+
+  /**
+   * The deposit rate in money per hour at the last update.
+   */
+  private double depositRate = 0;
+
+  /**
+   * The ATM balance after the last transaction.
+   */
+  private float balance;
+
+  /**
+   * The time of the last update in milliseconds since the epoch, 0 before the first transaction.
+   */
+  private long updatedAt = 0;
+
+  /**
+   * Creates new telemetry with the default time constant.
+   *
+   * @param balance The ATM balance.
+   */
+  public AtmTelemetry(float balance) {
+    this(balance, DEFAULT_TIME_CONSTANT);
+  }
+
+  /**
+   * Creates new telemetry.
+   *
+   * @param balance      The ATM balance.
+   * @param timeConstant The time constant of the decay in milliseconds.
+   */
+  public AtmTelemetry(float balance, long timeConstant) throws IllegalArgumentException {
+    if (timeConstant <= 0)
+      throw new IllegalArgumentException("The time constant must be positive.");
+    this.balance = balance;
+    this.timeConstant = timeConstant;
+  }
+
+  /**
+   * Records a withdrawal.
+   *
+   * @param amount  The amount.
+   * @param balance The ATM balance after the withdrawal.
+   * @param now     The time of the withdrawal in milliseconds since the epoch.
+   */
+  public synchronized void recordWithdrawal(float amount, float balance, long now) {
+    decay(now);
+    withdrawalRate += amount * HOUR / timeConstant;
+    this.balance = balance;
+  }
+
+  /**
+   * Records a deposit.
+   *
+   * @param amount  The amount.
+   * @param balance The ATM balance after the deposit.
+   * @param now     The time of the deposit in milliseconds since the epoch.
+   */
+  public synchronized void recordDeposit(float amount, float balance, long now) {
+    decay(now);
+    depositRate += amount * HOUR / timeConstant;
+    this.balance = balance;
+  }
+
+  /**
+   * Records a change of the ATM balance that is not a transaction, e.g. a replenishment.
+   *
+   * @param balance The new ATM balance.
+   */
+  public synchronized void recordBalance(float balance) {
+    this.balance = balance;
+  }
+
+  /**
+   * Returns the withdrawal rate.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The withdrawal rate in money per hour.
+   */
+  public synchronized double getWithdrawalRate(long now) {
+    decay(now);
+    return withdrawalRate;
+  }
+
+  /**
+   * Returns the deposit rate.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The deposit rate in money per hour.
+   */
+  public synchronized double getDepositRate(long now) {
+    decay(now);
+    return depositRate;
+  }
+
+  /**
+   * Returns the ATM balance after the last transaction.
+   *
+   * @return The balance.
+   */
+  public synchronized float getBalance() {
+    return balance;
+  }
+
+  /**
+   * Returns the expected ATM balance after some time at the current rates.
+   *
+   * @param now   The current time in milliseconds since the epoch.
+   * @param after The time from now in milliseconds.
+   * @return The expected balance, not below zero.
+   */
+  public synchronized float projectBalance(long now, long after) {
+    decay(now);
+    double projected = balance - (withdrawalRate - depositRate) * after / HOUR;
+    return (float) Math.max(0, projected);
+  }
+
+  /**
+   * Returns the money the ATM is expected to lack after some time at the current rates.
+   *
+   * @param now   The current time in milliseconds since the epoch.
+   * @param after The time from now in milliseconds.
+   * @return The expected shortfall, 0 if the balance is expected to last.
+   */
+  public synchronized float getShortfall(long now, long after) {
+    decay(now);
+    double shortfall = (withdrawalRate - depositRate) * after / HOUR - balance;
+    return (float) Math.max(0, shortfall);
+  }
+
+  /**
+   * Returns the expected time until the ATM runs out of money at the current rates.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The time in milliseconds, or {@link Long#MAX_VALUE} if the balance is not falling.
+   */
+  public synchronized long getTimeToEmpty(long now) {
+    decay(now);
+    double outflow = withdrawalRate - depositRate;
+    if (outflow <= 0) {
+      return Long.MAX_VALUE;
+    }
+    return (long) (balance / outflow * HOUR);
+  }
+
+  /**
+   * Decays the rates to the current time.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   */
+  private void decay(long now) {
+    if (updatedAt != 0 && now > updatedAt) {
+      double factor = Math.exp(-(double) (now - updatedAt) / timeConstant);
+      withdrawalRate *= factor;
+      depositRate *= factor;
+    }
+    if (now > updatedAt) {
+      updatedAt = now;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package com.troyekizzz.app;
+
+import java.util.Date;
+
+import lombok.Getter;
+
+/**
+ * A class that represents a free appointment time at a branch.
+ *
+ * @author TroyeKizzz
+ */
+@Getter
+public class AvailableSlot {
+  /**
+   * The branch.
+   */
+  private final BankBranch branch;
+
+  /**
+   * The start of the appointment.
+   */
+  private final Date startDate;
+
+  /**
+   * Creates a new free appointment time.
+   *
+   * @param branch    The branch.
+   * @param startDate The start of the appointment.
+   */
+  public AvailableSlot(BankBranch branch, Date startDate) {
+    this.branch = branch;
+    this.startDate = startDate;
+  }
+
+  /**
+   * Books the appointment.
+   *
+   * @param customer The customer that books the appointment.
+   * @return The appointment.
+   */
+  public Appointment book(Customer customer) throws IllegalArgumentException {
+    return branch.bookAppointment(startDate, customer);
+  }
+
+  @Override
+  public String toString() {
+    return "AvailableSlot [branch=" + branch.getLocation() + ", startDate=" + startDate + "]";
+  }
+}
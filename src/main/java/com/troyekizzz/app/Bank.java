@@ -1,11 +1,22 @@
 package com.troyekizzz.app;
 
+import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
 
 import com.troyekizzz.app.utils.CardType;
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.InvoiceStatus;
+import com.troyekizzz.app.utils.LimitPeriod;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -45,11 +56,49 @@ public class Bank {
    */
   private List<BankBranch> branches = new ArrayList<>();
 
+  /**
+   * The bank ATMs on the map.
+   */
+  @Getter(AccessLevel.NONE)
+  private SpatialIndex<ATM> atmIndex = new SpatialIndex<>();
+
+  /**
+   * The bank branches on the map.
+   */
+  @Getter(AccessLevel.NONE)
+  private SpatialIndex<BankBranch> branchIndex = new SpatialIndex<>();
+
+  /**
+   * The appointment reminders of the bank branches.
+   */
+  private ReminderScheduler reminders = new ReminderScheduler();
+
+  /**
+   * The invoices between the bank customers.
+   */
+  private InvoiceRegistry invoices = new InvoiceRegistry();
+
+  /**
+   * The dunning of the overdue invoices.
+   */
+  private DunningScheduler dunning = new DunningScheduler();
+
+  /**
+   * The key that card numbers are hashed with in the journals of offline ATMs.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  private final byte[] journalKey = new byte[32];
+
   /**
    * The bank capital. The total amount of money that the bank has.
    */
   private float capital = 0;
 
+  /**
+   * The default rolling spend limits of new cards by card type.
+   */
+  private Map<CardType, Map<LimitPeriod, Float>> defaultSpendLimits = new EnumMap<>(CardType.class);
+
   /**
    * The bank constructor.
    * 
@@ -61,6 +110,7 @@ public class Bank {
       throw new IllegalArgumentException("Capital cannot be negative");
     this.name = name;
     this.capital = capital;
+    new SecureRandom().nextBytes(journalKey);
   }
 
   /**
@@ -108,10 +158,29 @@ public class Bank {
    */
   public Card addCard(Account account, CardType type, String pin) {
     Card card = new Card(type, account, pin);
+    Map<LimitPeriod, Float> limits = defaultSpendLimits.get(type);
+    if (limits != null) {
+      for (Map.Entry<LimitPeriod, Float> limit : limits.entrySet()) {
+        card.getSpendLimits().setLimit(limit.getKey(), limit.getValue());
+      }
+    }
     cards.add(card);
     return card;
   }
 
+  /**
+   * A method that sets the default rolling spend limit of new cards of a type.
+   * 
+   * @param type   The card type.
+   * @param period The period of the limit.
+   * @param limit  The limit in the account currency. Positive, or 0 to remove the limit.
+   */
+  public void setDefaultSpendLimit(CardType type, LimitPeriod period, float limit) throws IllegalArgumentException {
+    if (limit < 0)
+      throw new IllegalArgumentException("Invalid limit");
+    defaultSpendLimits.computeIfAbsent(type, t -> new EnumMap<>(LimitPeriod.class)).put(period, limit);
+  }
+
   /**
    * A method that adds an ATM to the bank.
    * 
@@ -129,6 +198,190 @@ public class Bank {
     return atm;
   }
 
+  /**
+   * A method that adds an ATM on the map to the bank.
+   * 
+   * @param location  The ATM location.
+   * @param balance   The ATM balance.
+   * @param latitude  The ATM latitude in degrees.
+   * @param longitude The ATM longitude in degrees.
+   */
+  public ATM addAtm(String location, float balance, double latitude, double longitude) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
+    this.removeCapital(balance);
+    ATM atm = new ATM(this, location, balance, latitude, longitude);
+    atms.add(atm);
+    atmIndex.add(atm);
+    return atm;
+  }
+
+  /**
+   * A method that adds an ATM with note cassettes to the bank.
+   * 
+   * The value of the notes is taken from the bank capital.
+   * 
+   * @param location      The ATM location.
+   * @param denominations The denominations of the cassettes.
+   * @param counts        The number of notes in each cassette.
+   */
+  public ATM addAtm(String location, int[] denominations, int[] counts) throws IllegalArgumentException {
+    CashDispenser dispenser = new CashDispenser(denominations, counts);
+    this.removeCapital(dispenser.getTotal());
+    ATM atm = new ATM(this, location, dispenser);
+    atms.add(atm);
+    return atm;
+  }
+
+  /**
+   * A method that adds an ATM with note cassettes on the map to the bank.
+   * 
+   * The value of the notes is taken from the bank capital.
+   * 
+   * @param location      The ATM location.
+   * @param denominations The denominations of the cassettes.
+   * @param counts        The number of notes in each cassette.
+   * @param latitude      The ATM latitude in degrees.
+   * @param longitude     The ATM longitude in degrees.
+   */
+  public ATM addAtm(String location, int[] denominations, int[] counts, double latitude, double longitude) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
+    CashDispenser dispenser = new CashDispenser(denominations, counts);
+    this.removeCapital(dispenser.getTotal());
+    ATM atm = new ATM(this, location, dispenser, latitude, longitude);
+    atms.add(atm);
+    atmIndex.add(atm);
+    return atm;
+  }
+
+  /**
+   * A method that finds the active ATMs nearest to a point that have at least some money.
+   * 
+   * @param latitude   The latitude of the point in degrees.
+   * @param longitude  The longitude of the point in degrees.
+   * @param count      The largest number of ATMs to return.
+   * @param minBalance The smallest ATM balance.
+   * @return The ATMs, the nearest first.
+   */
+  public List<ATM> findNearestAtms(double latitude, double longitude, int count, float minBalance) throws IllegalArgumentException {
+    return findNearestAtms(latitude, longitude, count, atm -> atm.getBalance() >= minBalance);
+  }
+
+  /**
+   * A method that finds the active ATMs nearest to a point that pass a filter.
+   * 
+   * @param latitude  The latitude of the point in degrees.
+   * @param longitude The longitude of the point in degrees.
+   * @param count     The largest number of ATMs to return.
+   * @param filter    The filter.
+   * @return The ATMs, the nearest first.
+   */
+  public List<ATM> findNearestAtms(double latitude, double longitude, int count, Predicate<ATM> filter) throws IllegalArgumentException {
+    return atmIndex.findNearest(latitude, longitude, count, atm -> atm.isActive() && filter.test(atm));
+  }
+
+  /**
+   * A method that finds the branches nearest to a point.
+   * 
+   * @param latitude  The latitude of the point in degrees.
+   * @param longitude The longitude of the point in degrees.
+   * @param count     The largest number of branches to return.
+   * @param openAt    The time the branches must be open at, or null for all branches.
+   * @return The branches, the nearest first.
+   */
+  public List<BankBranch> findNearestBranches(double latitude, double longitude, int count, Date openAt) throws IllegalArgumentException {
+    return branchIndex.findNearest(latitude, longitude, count, branch -> openAt == null || branch.isOpen(openAt));
+  }
+
+  /**
+   * A method that returns the active ATMs expected to run out of money
+   * within a time, the soonest first.
+   * 
+   * @param horizon The time from now in milliseconds.
+   * @return The ATMs.
+   */
+  public List<ATM> forecastDepletion(long horizon) {
+    long now = System.currentTimeMillis();
+    List<ATM> depleting = new ArrayList<>();
+    Map<ATM, Long> times = new HashMap<>();
+    for (ATM atm : atms) {
+      long timeToEmpty = atm.getTelemetry().getTimeToEmpty(now);
+      if (atm.isActive() && timeToEmpty < horizon) {
+        depleting.add(atm);
+        times.put(atm, timeToEmpty);
+      }
+    }
+    depleting.sort((a, b) -> Long.compare(times.get(a), times.get(b)));
+    return depleting;
+  }
+
+  /**
+   * A method that plans how much money to add to each ATM so that it lasts
+   * for a time, limited by the bank capital.
+   * 
+   * The ATMs that run out soonest are served first. The plan is not carried out.
+   * 
+   * @param horizon The time from now in milliseconds.
+   * @return The amount for each ATM, the most urgent first.
+   */
+  public Map<ATM, Float> planReplenishment(long horizon) {
+    long now = System.currentTimeMillis();
+    Map<ATM, Float> plan = new LinkedHashMap<>();
+    float available = capital;
+    for (ATM atm : forecastDepletion(horizon)) {
+      if (available <= 0) {
+        break;
+      }
+      float amount = Math.min(atm.getTelemetry().getShortfall(now, horizon), available);
+      if (amount > 0) {
+        plan.put(atm, amount);
+        available -= amount;
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * A method that adds money from the bank capital to an ATM.
+   * 
+   * @param atm    The ATM.
+   * @param amount The amount of money to add.
+   */
+  public void replenishAtm(ATM atm, float amount) throws IllegalArgumentException, IllegalStateException {
+    if (atms.indexOf(atm) == -1)
+      throw new IllegalArgumentException("ATM does not exist");
+    if (amount <= 0)
+      throw new IllegalArgumentException("Amount must be positive");
+    this.removeCapital(amount);
+    try {
+      atm.replenish(amount);
+    } catch (IllegalStateException e) {
+      capital += amount;
+      throw e;
+    }
+  }
+
+  /**
+   * A method that loads notes from the bank capital into an ATM.
+   * 
+   * @param atm          The ATM.
+   * @param denomination The denomination of the notes.
+   * @param count        The number of notes.
+   */
+  public void replenishAtm(ATM atm, int denomination, int count) throws IllegalArgumentException, IllegalStateException {
+    if (atms.indexOf(atm) == -1)
+      throw new IllegalArgumentException("ATM does not exist");
+    if (count <= 0)
+      throw new IllegalArgumentException("Amount must be positive");
+    float amount = (float) denomination * count;
+    this.removeCapital(amount);
+    try {
+      atm.replenish(denomination, count);
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      capital += amount;
+      throw e;
+    }
+  }
+
   public BankBranch addBranch(String location, float balance) throws IllegalArgumentException {
     try {
       this.removeCapital(balance);
@@ -140,13 +393,168 @@ public class Bank {
     return branch;
   }
 
+  /**
+   * A method that adds a branch on the map to the bank.
+   * 
+   * @param location  The branch location.
+   * @param balance   The branch balance.
+   * @param latitude  The branch latitude in degrees.
+   * @param longitude The branch longitude in degrees.
+   */
+  public BankBranch addBranch(String location, float balance, double latitude, double longitude) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
+    this.removeCapital(balance);
+    BankBranch branch = new BankBranch(this, location, balance, latitude, longitude);
+    branches.add(branch);
+    branchIndex.add(branch);
+    return branch;
+  }
+
+  /**
+   * A method that finds the earliest free appointment times at the branches near a point.
+   * 
+   * @param latitude  The latitude of the point in degrees.
+   * @param longitude The longitude of the point in degrees.
+   * @param radius    The largest distance from the point in kilometers.
+   * @param from      The earliest start.
+   * @param until     The latest start.
+   * @param count     The largest number of times to return.
+   * @return The times, the earliest first.
+   */
+  public List<AvailableSlot> findEarliestSlots(double latitude, double longitude, double radius, Date from, Date until, int count) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
+    return findEarliestSlots(from, until, count,
+      branch -> SpatialIndex.distance(latitude, longitude, branch.getLatitude(), branch.getLongitude()) <= radius);
+  }
+
+  /**
+   * A method that finds the earliest free appointment times at the branches that pass a filter.
+   * 
+   * Every branch finds its own next free time from its schedule and slot
+   * bitmaps, and the branches are merged with a heap, so only as many times
+   * are looked up as are returned, plus one per branch.
+   * 
+   * @param from   The earliest start.
+   * @param until  The latest start.
+   * @param count  The largest number of times to return.
+   * @param filter The filter.
+   * @return The times, the earliest first.
+   */
+  public List<AvailableSlot> findEarliestSlots(Date from, Date until, int count, Predicate<BankBranch> filter) throws IllegalArgumentException {
+    if (count <= 0)
+      throw new IllegalArgumentException("Count must be positive");
+    long end = until.getTime() + 1;
+    PriorityQueue<long[]> next = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+    for (int i = 0; i < branches.size(); i++) {
+      BankBranch branch = branches.get(i);
+      if (!filter.test(branch)) {
+        continue;
+      }
+      long time = branch.nextAvailable(from.getTime(), end);
+      if (time >= 0) {
+        next.add(new long[] {time, i});
+      }
+    }
+    List<AvailableSlot> found = new ArrayList<>(count);
+    while (found.size() < count && !next.isEmpty()) {
+      long[] earliest = next.poll();
+      BankBranch branch = branches.get((int) earliest[1]);
+      found.add(new AvailableSlot(branch, new Date(earliest[0])));
+      long time = branch.nextAvailable(earliest[0] + 1, end);
+      if (time >= 0) {
+        next.add(new long[] {time, earliest[1]});
+      }
+    }
+    return found;
+  }
+
+  /**
+   * A method that books appointments at several branches, either all of them or none.
+   * 
+   * @param calendar The dates of the appointments by branch.
+   * @param customer The customer that books the appointments.
+   * @return The appointments.
+   */
+  public List<Appointment> bookAppointments(Map<BankBranch, List<Date>> calendar, Customer customer) throws IllegalArgumentException {
+    List<Appointment> booked = new ArrayList<>();
+    try {
+      for (Map.Entry<BankBranch, List<Date>> entry : calendar.entrySet()) {
+        if (branches.indexOf(entry.getKey()) == -1)
+          throw new IllegalArgumentException("Branch does not exist");
+        booked.addAll(entry.getKey().bookAppointments(entry.getValue(), customer));
+      }
+    } catch (IllegalArgumentException e) {
+      for (Appointment appointment : booked) {
+        appointment.getBankBranch().release(appointment);
+      }
+      throw e;
+    }
+    return booked;
+  }
+
+  /**
+   * A method that creates an invoice between two customers of the bank.
+   * 
+   * @param from          The customer who sends the invoice.
+   * @param to            The customer who receives the invoice.
+   * @param toAccount     The account of the customer who receives the invoice.
+   * @param amount        The amount of the invoice.
+   * @param currency      The currency of the invoice.
+   * @param taxPercentage The tax percentage for the invoiced items.
+   * @param dueDate       The date the invoice is due, or null for none.
+   * @return The invoice.
+   */
+  public Invoice addInvoice(Customer from, Customer to, Account toAccount, float amount, Currency currency, float taxPercentage, Date dueDate) throws IllegalArgumentException {
+    if (customers.indexOf(from) == -1 || customers.indexOf(to) == -1)
+      throw new IllegalArgumentException("Customer does not exist");
+    Invoice invoice = new Invoice(from, to, toAccount, amount, currency, taxPercentage, dueDate);
+    invoices.register(invoice);
+    dunning.track(invoice);
+    return invoice;
+  }
+
+  /**
+   * A method that escalates the dunning of the overdue invoices that are due for it.
+   * 
+   * @param now The current date.
+   * @return The escalated invoices.
+   */
+  public List<Invoice> processDunning(Date now) {
+    return dunning.process(now.getTime());
+  }
+
+  /**
+   * A method that pays all invoices that are falling due in one batch run.
+   * 
+   * @return The report of the run.
+   */
+  public PaymentRunReport payFallingDueInvoices() throws IllegalStateException {
+    return new InvoicePaymentRun().run(invoices.findByStatus(InvoiceStatus.FALLING_DUE));
+  }
+
   /**
    * A method that removes a card from the bank.
    * 
+   * The card is closed, so it cannot be used any more, its history is
+   * closed and the card is removed from the transaction index.
+   * 
    * @param card The card to remove.
    */
   public void removeCard(Card card) {
     cards.remove(card);
+    card.close();
+    TransactionIndex.getInstance().remove(card);
+  }
+
+  /**
+   * A method that unlocks a card locked after too many failed pin attempts.
+   * 
+   * @param card The card to unlock.
+   */
+  public void unlockCard(Card card) throws IllegalArgumentException {
+    if (cards.indexOf(card) == -1)
+      throw new IllegalArgumentException("Card does not exist");
+    card.unlock();
   }
 
   /**
@@ -194,11 +602,31 @@ public class Bank {
    * A method that removes an ATM from the bank.
    * 
    * The ATM balance is added to the bank capital.
+   * The ATM history is closed and the ATM is removed from the transaction index.
    * 
    * @param atm The ATM to remove.
    */
   public void removeAtm(ATM atm) {
     this.capital += atm.deactivate();
     atms.remove(atm);
+    atmIndex.remove(atm);
+    atm.getTransactions().close();
+    TransactionIndex.getInstance().remove(atm);
+  }
+
+  /**
+   * A method that returns the balance of an account at a given moment.
+   * 
+   * The balance is found from the account ledger checkpoints, so the cost
+   * does not grow with the age of the account.
+   * 
+   * @param account The account.
+   * @param date    The moment to return the balance at.
+   * @return The account balance in the account currency.
+   */
+  public float balanceAsOf(Account account, Date date) throws IllegalArgumentException {
+    if (accounts.indexOf(account) == -1)
+      throw new IllegalArgumentException("Account does not exist");
+    return account.getLedger().balanceAsOf(date.getTime());
   }
 }
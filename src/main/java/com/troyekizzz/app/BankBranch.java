@@ -1,14 +1,16 @@
 package com.troyekizzz.app;
 
+import java.time.DayOfWeek;
+import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.NavigableMap;
-import java.util.TreeMap;
+import java.util.Map;
 
 import com.troyekizzz.app.utils.Currency;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
@@ -19,7 +21,7 @@ import lombok.Setter;
  */
 @Getter
 @Setter
-public class BankBranch {
+public class BankBranch implements Located {
   /**
    * The bank that the branch is owned by.
    */
@@ -31,19 +33,43 @@ public class BankBranch {
   private String location;
 
   /**
-   * The branch balance.
+   * The branch latitude in degrees, or NaN if it is not known.
    */
-  private float balance;
+  private final double latitude;
+
+  /**
+   * The branch longitude in degrees, or NaN if it is not known.
+   */
+  private final double longitude;
+
+  /**
+   * The branch cash vault.
+   */
+  private final BranchVault vault;
 
   /**
    * The branch opening hours.
    */
-  private NavigableMap<Integer, int[]> openingHours= new TreeMap<>();
+  private final BranchSchedule schedule = new BranchSchedule();
+
+  /**
+   * The length of an appointment in milliseconds.
+   */
+  public static final long APPOINTMENT_LENGTH = 60 * 60 * 1000L;
+
+  /**
+   * The branch appointments by their ids.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private Map<Long, Appointment> appointments = new LinkedHashMap<>();
 
   /**
-   * The branch appointments.
+   * The number of appointments in each time slot.
    */
-  private List<Appointment> appointments = new ArrayList<>();
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private SlotCalendar slots = new SlotCalendar(1);
 
 
   /**
@@ -51,19 +77,33 @@ public class BankBranch {
    * 
    * @param bank     The bank that the branch is owned by.
    * @param location The branch location.
-   * @param balance  The branch balance.
+   * @param balance  The branch cash in euros.
    */
   public BankBranch(Bank bank, String location, float balance) {
+    this(bank, location, balance, Double.NaN, Double.NaN);
+  }
+
+  /**
+   * Creates a new bank branch on the map.
+   * 
+   * @param bank      The bank that the branch is owned by.
+   * @param location  The branch location.
+   * @param balance   The branch cash in euros.
+   * @param latitude  The branch latitude in degrees.
+   * @param longitude The branch longitude in degrees.
+   */
+  public BankBranch(Bank bank, String location, float balance, double latitude, double longitude) throws IllegalArgumentException {
+    SpatialIndex.checkCoordinates(latitude, longitude);
     this.bank = bank;
     this.location = location;
-    this.balance = balance;
-    this.openingHours.put(Calendar.MONDAY, new int[] {8, 17});
-    this.openingHours.put(Calendar.TUESDAY, new int[] {8, 17});
-    this.openingHours.put(Calendar.WEDNESDAY, new int[] {8, 17});
-    this.openingHours.put(Calendar.THURSDAY, new int[] {8, 17});
-    this.openingHours.put(Calendar.FRIDAY, new int[] {8, 17});
-    this.openingHours.put(Calendar.SATURDAY, new int[] {8, 12});
-    this.openingHours.put(Calendar.SUNDAY, new int[] {0, 0});
+    this.vault = new BranchVault(Currency.EUR, balance);
+    this.latitude = latitude;
+    this.longitude = longitude;
+    for (DayOfWeek day = DayOfWeek.MONDAY; day != DayOfWeek.SATURDAY; day = day.plus(1)) {
+      this.schedule.setOpeningHours(day, LocalTime.of(8, 0), LocalTime.of(17, 0));
+    }
+    this.schedule.setOpeningHours(DayOfWeek.SATURDAY, LocalTime.of(8, 0), LocalTime.of(12, 0));
+    this.schedule.setClosed(DayOfWeek.SUNDAY);
   }
 
   /**
@@ -73,17 +113,65 @@ public class BankBranch {
    * @return True if the branch is open, false if the branch is closed.
    */
   public boolean isOpen(Date date) {
-    Calendar calendar = Calendar.getInstance();
-    calendar.setTime(date);
-    int day = calendar.get(Calendar.DAY_OF_WEEK);
-    int hour = calendar.get(Calendar.HOUR_OF_DAY);
-    int minute = calendar.get(Calendar.MINUTE);
-    int[] hours = this.openingHours.get(day);
-    if (hours[0] == 0 && hours[1] == 0)
-      return false;
-    int opensAtMinutes = hours[0] * 60;
-    int closesAtMinutes = hours[1] * 60;
-    return opensAtMinutes <= hour * 60 + minute && hour * 60 + minute <= closesAtMinutes;
+    return this.schedule.isOpen(date.getTime());
+  }
+
+  /**
+   * A method that returns the booked appointments.
+   * 
+   * @return The appointments in the order they were booked.
+   */
+  public synchronized List<Appointment> getAppointments() {
+    return new ArrayList<>(this.appointments.values());
+  }
+
+  /**
+   * A method that returns the number of appointments the branch can hold at the same time.
+   * 
+   * @return The capacity.
+   */
+  public int getCapacity() {
+    return this.slots.getCapacity();
+  }
+
+  /**
+   * A method that sets the number of appointments the branch can hold at the same time.
+   * 
+   * @param capacity The capacity.
+   */
+  public void setCapacity(int capacity) throws IllegalArgumentException {
+    this.slots.setCapacity(capacity);
+  }
+
+  /**
+   * A method that finds the first time an appointment can be booked at the branch.
+   * 
+   * The opening hours and the full slots are both skipped a bitmap word at
+   * a time, so closed nights and busy days are not probed minute by minute.
+   * 
+   * @param from  The earliest start in milliseconds since the epoch.
+   * @param until The time to stop looking at in milliseconds since the epoch.
+   * @return The start of the appointment, or -1 if there is no free time before the end.
+   */
+  long nextAvailable(long from, long until) {
+    long slotLength = this.slots.getSlotLength();
+    long time = from;
+    while (true) {
+      time = this.schedule.nextOpen(time, until);
+      if (time < 0) {
+        return -1;
+      }
+      long aligned = Math.floorDiv(time + slotLength - 1, slotLength) * slotLength;
+      if (aligned != time) {
+        time = aligned;
+        continue;
+      }
+      long free = this.slots.nextFree(time, APPOINTMENT_LENGTH);
+      if (free == time) {
+        return time;
+      }
+      time = free;
+    }
   }
 
   /**
@@ -92,58 +180,168 @@ public class BankBranch {
    * @param date     The date of the appointment.
    * @param customer The customer that books the appointment.
    */
-  public Appointment bookAppointment(Date date, Customer customer) {
+  public synchronized Appointment bookAppointment(Date date, Customer customer) throws IllegalArgumentException {
     if (!isOpen(date))
       throw new IllegalArgumentException("The bank is closed at this time.");
-    Appointment appointment = new Appointment(customer, date, new Date(date.getTime() + 3600000), this);
-    this.appointments.add(appointment);
+    this.slots.reserve(date.getTime(), date.getTime() + APPOINTMENT_LENGTH);
+    Appointment appointment = new Appointment(customer, date, new Date(date.getTime() + APPOINTMENT_LENGTH), this);
+    this.appointments.put(appointment.getId(), appointment);
+    scheduleReminders(appointment);
     return appointment;
   }
 
+  /**
+   * A method that books several appointments at the branch, either all of them or none.
+   * 
+   * @param dates    The dates of the appointments.
+   * @param customer The customer that books the appointments.
+   * @return The appointments.
+   */
+  public synchronized List<Appointment> bookAppointments(List<Date> dates, Customer customer) throws IllegalArgumentException {
+    long[] starts = new long[dates.size()];
+    long[] ends = new long[dates.size()];
+    for (int i = 0; i < starts.length; i++) {
+      if (!isOpen(dates.get(i)))
+        throw new IllegalArgumentException("The bank is closed at this time.");
+      starts[i] = dates.get(i).getTime();
+      ends[i] = starts[i] + APPOINTMENT_LENGTH;
+    }
+    this.slots.reserveAll(starts, ends);
+    List<Appointment> booked = new ArrayList<>(starts.length);
+    for (int i = 0; i < starts.length; i++) {
+      Appointment appointment = new Appointment(customer, dates.get(i), new Date(ends[i]), this);
+      this.appointments.put(appointment.getId(), appointment);
+      scheduleReminders(appointment);
+      booked.add(appointment);
+    }
+    return booked;
+  }
+
+  /**
+   * A method that cancels an appointment at the branch.
+   * 
+   * @param id The id of the appointment.
+   */
+  public void cancelAppointment(long id) throws IllegalArgumentException {
+    Appointment appointment;
+    synchronized (this) {
+      appointment = this.appointments.get(id);
+    }
+    if (appointment == null)
+      throw new IllegalArgumentException("No appointment found.");
+    appointment.cancel();
+  }
+
   /**
    * A method that cancels an appointment at the branch.
    * 
    * @param date     The date of the appointment.
    * @param customer The customer that books the appointment.
    */
-  public void cancelAppointment(Date date, Customer customer) {
-    for (Appointment appointment : this.appointments) {
-      if (appointment.getStartDate().equals(date) && appointment.getCustomer().equals(customer)) {
-        appointment.cancel();
-        this.appointments.remove(appointment);
-        return;
+  public void cancelAppointment(Date date, Customer customer) throws IllegalArgumentException {
+    Appointment found = null;
+    synchronized (this) {
+      for (Appointment appointment : this.appointments.values()) {
+        if (appointment.getStartDate().equals(date) && appointment.getCustomer().equals(customer)) {
+          found = appointment;
+          break;
+        }
       }
     }
-    throw new IllegalArgumentException("No appointment found.");
+    if (found == null)
+      throw new IllegalArgumentException("No appointment found.");
+    found.cancel();
+  }
+
+  /**
+   * A method that removes a cancelled appointment and frees its time.
+   * 
+   * @param appointment The appointment.
+   */
+  synchronized void release(Appointment appointment) {
+    appointment.cancelReminders();
+    if (this.appointments.remove(appointment.getId()) != null) {
+      this.slots.release(appointment.getStartDate().getTime(), appointment.getEndDate().getTime());
+    }
+  }
+
+  /**
+   * A method that schedules the reminders of a new appointment with the bank.
+   * 
+   * @param appointment The appointment.
+   */
+  private void scheduleReminders(Appointment appointment) {
+    if (this.bank != null) {
+      this.bank.getReminders().schedule(appointment, System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * A method that returns the branch cash in euros.
+   * 
+   * @return The balance.
+   */
+  public float getBalance() {
+    return this.vault.getBalance(Currency.EUR);
+  }
+
+  /**
+   * A method that returns the branch cash in a currency.
+   * 
+   * @param currency The currency.
+   * @return The balance.
+   */
+  public float getBalance(Currency currency) {
+    return this.vault.getBalance(currency);
   }
 
   /**
    * A method that withdraws cash from the branch.
    * 
+   * The cash is paid out of the vault in the given currency and the account
+   * is charged the amount in its own currency.
+   * 
    * @param account  The account to withdraw from.
    * @param amount   The amount to withdraw.
    * @param currency The currency to withdraw in.
    */
-  public void withdrawCash(Account account, float amount, Currency currency) {
-    if (account.getBalance() < amount)
-      throw new IllegalArgumentException("Not enough money.");
-    if (account.getCurrency() != currency)
-      throw new IllegalArgumentException("Cannot withdraw in different currency.");
-    account.withdraw(amount, currency);;
-    this.balance -= amount;
+  public void withdrawCash(Account account, float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
+    this.vault.withdraw(currency, amount);
+    try {
+      account.withdraw(amount, currency);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      this.vault.undoWithdrawal(currency, amount);
+      throw e;
+    }
   }
 
   /**
    * A method that deposits cash to the branch.
    * 
+   * The cash is put into the vault in the given currency and the account
+   * is credited the amount in its own currency.
+   * 
    * @param account  The account to deposit to.
    * @param amount   The amount to deposit.
    * @param currency The currency to deposit in.
    */
-  public void depositCash(Account account, float amount, Currency currency) {
-    if (account.getCurrency() != currency)
-      throw new IllegalArgumentException("Cannot deposit in different currency.");
-    account.deposit(amount, currency);
-    this.balance += amount;
+  public void depositCash(Account account, float amount, Currency currency) throws IllegalArgumentException, IllegalStateException {
+    this.vault.deposit(currency, amount);
+    try {
+      account.deposit(amount, currency);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      this.vault.undoDeposit(currency, amount);
+      throw e;
+    }
+  }
+
+  /**
+   * A method that reconciles the branch vault at the end of the day.
+   * 
+   * @param counted The counted cash by currency.
+   * @return The reconciliation report.
+   */
+  public VaultReport reconcileVault(Map<Currency, Float> counted) {
+    return this.vault.reconcile(counted);
   }
 }
@@ -0,0 +1,423 @@
+package com.troyekizzz.app;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.Date;
+
+import lombok.Getter;
+
+/**
+ * A class that represents the opening hours of a branch.
+ *
+ * The weekly hours are compiled into one bit per minute of the week, and
+ * holidays and special opening days into one bit per minute of their day.
+ * The offset of the time zone is cached until its next transition, so
+ * checking whether the branch is open takes a few arithmetic operations,
+ * at most a binary search over the exception days, and allocates nothing.
+ *
+ * A branch is open from the first minute of its opening hours up to and
+ * including the minute it closes.
+ *
+ * @author TroyeKizzz
+ */
+public class BranchSchedule {
+  /**
+   * The number of minutes in a day.
+   */
+  static final int MINUTES_PER_DAY = 24 * 60;
+
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * The number of milliseconds in a minute.
+   */
+  private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+
+  /**
+   * The day of the week of the epoch day 0, counted from Monday.
+   */
+  private static final int EPOCH_DAY_OF_WEEK = DayOfWeek.THURSDAY.ordinal();
+
+  /**
+   * A span of time with the same offset from UTC.
+   */
+  private static class OffsetWindow {
+    /**
+     * The first moment of the span in milliseconds since the epoch.
+     */
+    private final long from;
+
+    /**
+     * The first moment after the span in milliseconds since the epoch.
+     */
+    private final long until;
+
+    /**
+     * The offset from UTC in milliseconds.
+     */
+    private final long offset;
+
+    /**
+     * Creates a new span.
+     *
+     * @param from   The first moment of the span.
+     * @param until  The first moment after the span.
+     * @param offset The offset from UTC.
+     */
+    private OffsetWindow(long from, long until, long offset) {
+      this.from = from;
+      this.until = until;
+      this.offset = offset;
+    }
+  }
+
+  /**
+   * The days that do not follow the weekly hours.
+   */
+  private static class Exceptions {
+    /**
+     * The days in epoch days, ascending.
+     */
+    private final long[] days;
+
+    /**
+     * The opening minutes of each day.
+     */
+    private final long[][] minutes;
+
+    /**
+     * Creates new exceptions.
+     *
+     * @param days    The days in epoch days, ascending.
+     * @param minutes The opening minutes of each day.
+     */
+    private Exceptions(long[] days, long[][] minutes) {
+      this.days = days;
+      this.minutes = minutes;
+    }
+  }
+
+  /**
+   * The time zone of the branch.
+   */
+  @Getter
+  private final ZoneId zone;
+
+  /**
+   * The opening minutes of the week, starting on Monday at midnight.
+   */
+  private volatile long[] week = new long[words(7 * MINUTES_PER_DAY)];
+
+  /**
+   * The days that do not follow the weekly hours.
+   */
+  private volatile Exceptions exceptions = new Exceptions(new long[0], new long[0][]);
+
+  /**
+   * The cached offset of the time zone.
+   */
+  private volatile OffsetWindow window = new OffsetWindow(0, 0, 0);
+
+  /**
+   * Creates a new schedule that is always closed in the default time zone.
+   */
+  public BranchSchedule() {
+    this(ZoneId.systemDefault());
+  }
+
+  /**
+   * Creates a new schedule that is always closed.
+   *
+   * @param zone The time zone of the branch.
+   */
+  public BranchSchedule(ZoneId zone) {
+    this.zone = zone;
+  }
+
+  /**
+   * Sets the weekly opening hours of a day.
+   *
+   * @param day      The day of the week.
+   * @param opensAt  The time the branch opens.
+   * @param closesAt The time the branch closes. Not before the opening time.
+   */
+  public synchronized void setOpeningHours(DayOfWeek day, LocalTime opensAt, LocalTime closesAt) throws IllegalArgumentException {
+    long[] hours = day(opensAt, closesAt);
+    long[] week = this.week.clone();
+    int offset = day.ordinal() * MINUTES_PER_DAY;
+    for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+      set(week, offset + minute, get(hours, minute));
+    }
+    this.week = week;
+  }
+
+  /**
+   * Closes the branch on a day of every week.
+   *
+   * @param day The day of the week.
+   */
+  public synchronized void setClosed(DayOfWeek day) {
+    long[] week = this.week.clone();
+    int offset = day.ordinal() * MINUTES_PER_DAY;
+    for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+      set(week, offset + minute, false);
+    }
+    this.week = week;
+  }
+
+  /**
+   * Closes the branch for a whole day, whatever its weekly hours.
+   *
+   * @param date The day.
+   */
+  public void addHoliday(LocalDate date) {
+    putException(date, new long[words(MINUTES_PER_DAY)]);
+  }
+
+  /**
+   * Opens the branch on a day with other hours than its weekly hours.
+   *
+   * @param date     The day.
+   * @param opensAt  The time the branch opens.
+   * @param closesAt The time the branch closes. Not before the opening time.
+   */
+  public void addSpecialDay(LocalDate date, LocalTime opensAt, LocalTime closesAt) throws IllegalArgumentException {
+    putException(date, day(opensAt, closesAt));
+  }
+
+  /**
+   * Removes a holiday or a special day, so the day follows the weekly hours again.
+   *
+   * @param date The day.
+   * @return True if the day was a holiday or a special day, false otherwise.
+   */
+  public synchronized boolean removeException(LocalDate date) {
+    Exceptions exceptions = this.exceptions;
+    int index = Arrays.binarySearch(exceptions.days, date.toEpochDay());
+    if (index < 0) {
+      return false;
+    }
+    int size = exceptions.days.length;
+    long[] days = new long[size - 1];
+    long[][] minutes = new long[size - 1][];
+    System.arraycopy(exceptions.days, 0, days, 0, index);
+    System.arraycopy(exceptions.minutes, 0, minutes, 0, index);
+    System.arraycopy(exceptions.days, index + 1, days, index, size - index - 1);
+    System.arraycopy(exceptions.minutes, index + 1, minutes, index, size - index - 1);
+    this.exceptions = new Exceptions(days, minutes);
+    return true;
+  }
+
+  /**
+   * Checks if the branch is open at a given time.
+   *
+   * @param date The time.
+   * @return True if the branch is open, false if the branch is closed.
+   */
+  public boolean isOpen(Date date) {
+    return isOpen(date.getTime());
+  }
+
+  /**
+   * Checks if the branch is open at a given time.
+   *
+   * @param time The time in milliseconds since the epoch.
+   * @return True if the branch is open, false if the branch is closed.
+   */
+  public boolean isOpen(long time) {
+    OffsetWindow window = this.window;
+    if (time < window.from || time >= window.until) {
+      window = refresh(time);
+    }
+    long local = time + window.offset;
+    long day = Math.floorDiv(local, MILLIS_PER_DAY);
+    int minute = (int) (Math.floorMod(local, MILLIS_PER_DAY) / MILLIS_PER_MINUTE);
+    Exceptions exceptions = this.exceptions;
+    if (exceptions.days.length > 0) {
+      int index = Arrays.binarySearch(exceptions.days, day);
+      if (index >= 0) {
+        return get(exceptions.minutes[index], minute);
+      }
+    }
+    int dayOfWeek = (int) Math.floorMod(day + EPOCH_DAY_OF_WEEK, 7L);
+    return get(week, dayOfWeek * MINUTES_PER_DAY + minute);
+  }
+
+  /**
+   * Finds the first time the branch is open, skipping closed minutes a word of bits at a time.
+   *
+   * @param time  The earliest time in milliseconds since the epoch.
+   * @param until The time to stop looking at in milliseconds since the epoch.
+   * @return The given time if the branch is open then, else the start of the
+   *         first minute the branch is open, or -1 if it is closed until the end.
+   */
+  public long nextOpen(long time, long until) {
+    while (time < until) {
+      if (isOpen(time)) {
+        return time;
+      }
+      OffsetWindow window = this.window;
+      if (time < window.from || time >= window.until) {
+        window = refresh(time);
+      }
+      long local = time + window.offset;
+      long day = Math.floorDiv(local, MILLIS_PER_DAY);
+      long intoDay = Math.floorMod(local, MILLIS_PER_DAY);
+      int minute = (int) (intoDay / MILLIS_PER_MINUTE);
+      int found = -1;
+      Exceptions exceptions = this.exceptions;
+      int index = exceptions.days.length > 0 ? Arrays.binarySearch(exceptions.days, day) : -1;
+      if (index >= 0) {
+        found = nextSetBit(exceptions.minutes[index], minute + 1, MINUTES_PER_DAY);
+      } else {
+        int offset = (int) Math.floorMod(day + EPOCH_DAY_OF_WEEK, 7L) * MINUTES_PER_DAY;
+        found = nextSetBit(week, offset + minute + 1, offset + MINUTES_PER_DAY);
+        found = found < 0 ? -1 : found - offset;
+      }
+      long next = found < 0
+        ? time + MILLIS_PER_DAY - intoDay
+        : time + (found - minute) * MILLIS_PER_MINUTE - intoDay % MILLIS_PER_MINUTE;
+      time = Math.min(next, window.until);
+    }
+    return -1;
+  }
+
+  /**
+   * Adds or replaces a holiday or a special day.
+   *
+   * @param date    The day.
+   * @param minutes The opening minutes of the day.
+   */
+  private synchronized void putException(LocalDate date, long[] minutes) {
+    Exceptions exceptions = this.exceptions;
+    long day = date.toEpochDay();
+    int index = Arrays.binarySearch(exceptions.days, day);
+    long[][] allMinutes;
+    long[] days;
+    if (index >= 0) {
+      days = exceptions.days;
+      allMinutes = exceptions.minutes.clone();
+      allMinutes[index] = minutes;
+    } else {
+      index = -index - 1;
+      int size = exceptions.days.length;
+      days = new long[size + 1];
+      allMinutes = new long[size + 1][];
+      System.arraycopy(exceptions.days, 0, days, 0, index);
+      System.arraycopy(exceptions.minutes, 0, allMinutes, 0, index);
+      days[index] = day;
+      allMinutes[index] = minutes;
+      System.arraycopy(exceptions.days, index, days, index + 1, size - index);
+      System.arraycopy(exceptions.minutes, index, allMinutes, index + 1, size - index);
+    }
+    this.exceptions = new Exceptions(days, allMinutes);
+  }
+
+  /**
+   * Caches the offset of the time zone around a given time.
+   *
+   * @param time The time in milliseconds since the epoch.
+   * @return The span with the offset at the time.
+   */
+  private OffsetWindow refresh(long time) {
+    ZoneRules rules = zone.getRules();
+    Instant instant = Instant.ofEpochMilli(time);
+    ZoneOffsetTransition previous = rules.previousTransition(Instant.ofEpochMilli(time + 1));
+    ZoneOffsetTransition next = rules.nextTransition(instant);
+    OffsetWindow window = new OffsetWindow(
+      previous == null ? Long.MIN_VALUE : previous.toEpochSecond() * 1000,
+      next == null ? Long.MAX_VALUE : next.toEpochSecond() * 1000,
+      rules.getOffset(instant).getTotalSeconds() * 1000L);
+    this.window = window;
+    return window;
+  }
+
+  /**
+   * Compiles the opening minutes of a day.
+   *
+   * @param opensAt  The time the branch opens.
+   * @param closesAt The time the branch closes.
+   * @return The opening minutes.
+   */
+  private static long[] day(LocalTime opensAt, LocalTime closesAt) throws IllegalArgumentException {
+    if (closesAt.isBefore(opensAt))
+      throw new IllegalArgumentException("The branch cannot close before it opens.");
+    long[] minutes = new long[words(MINUTES_PER_DAY)];
+    int last = closesAt.getHour() * 60 + closesAt.getMinute();
+    for (int minute = opensAt.getHour() * 60 + opensAt.getMinute(); minute <= last; minute++) {
+      set(minutes, minute, true);
+    }
+    return minutes;
+  }
+
+  /**
+   * Returns the number of words that hold some bits.
+   *
+   * @param bits The number of bits.
+   * @return The number of words.
+   */
+  private static int words(int bits) {
+    return (bits + 63) / 64;
+  }
+
+  /**
+   * Returns a bit.
+   *
+   * @param words The bits.
+   * @param bit   The position of the bit.
+   * @return The bit.
+   */
+  private static boolean get(long[] words, int bit) {
+    return (words[bit >>> 6] & (1L << bit)) != 0;
+  }
+
+  /**
+   * Returns the position of the first set bit in a range.
+   *
+   * @param words The bits.
+   * @param from  The first position, inclusive.
+   * @param to    The last position, exclusive.
+   * @return The position, or -1 if no bit in the range is set.
+   */
+  private static int nextSetBit(long[] words, int from, int to) {
+    if (from >= to) {
+      return -1;
+    }
+    int index = from >>> 6;
+    long word = words[index] & (-1L << from);
+    while (true) {
+      if (word != 0) {
+        int bit = (index << 6) + Long.numberOfTrailingZeros(word);
+        return bit < to ? bit : -1;
+      }
+      if (++index > (to - 1) >>> 6) {
+        return -1;
+      }
+      word = words[index];
+    }
+  }
+
+  /**
+   * Sets a bit.
+   *
+   * @param words The bits.
+   * @param bit   The position of the bit.
+   * @param value The bit.
+   */
+  private static void set(long[] words, int bit, boolean value) {
+    if (value) {
+      words[bit >>> 6] |= 1L << bit;
+    } else {
+      words[bit >>> 6] &= ~(1L << bit);
+    }
+  }
+}
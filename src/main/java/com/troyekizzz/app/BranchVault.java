@@ -0,0 +1,197 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.troyekizzz.app.utils.Currency;
+
+/**
+ * A class that represents the cash vault of a branch.
+ *
+ * The vault holds a separate balance for every currency. Balances and the
+ * day's deposits and withdrawals are kept in cents in atomic arrays indexed
+ * by the currency, so several tellers can use the vault at the same time
+ * without locks.
+ *
+ * @author TroyeKizzz
+ */
+public class BranchVault {
+  /**
+   * The currencies by their ordinal.
+   */
+  private static final Currency[] CURRENCIES = Currency.values();
+
+  /**
+   * The balances in cents.
+   */
+  private final AtomicLongArray balances = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * The balances at the start of the day in cents.
+   */
+  private final AtomicLongArray opening = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * The deposits of the day in cents.
+   */
+  private final AtomicLongArray deposits = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * The withdrawals of the day in cents.
+   */
+  private final AtomicLongArray withdrawals = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * The number of deposits of the day.
+   */
+  private final AtomicLongArray depositCounts = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * The number of withdrawals of the day.
+   */
+  private final AtomicLongArray withdrawalCounts = new AtomicLongArray(CURRENCIES.length);
+
+  /**
+   * Creates a new vault.
+   *
+   * @param currency The currency of the opening cash.
+   * @param amount   The opening cash.
+   */
+  public BranchVault(Currency currency, float amount) throws IllegalArgumentException {
+    if (amount < 0)
+      throw new IllegalArgumentException("The amount cannot be negative.");
+    balances.set(currency.ordinal(), cents(amount));
+    opening.set(currency.ordinal(), cents(amount));
+  }
+
+  /**
+   * Returns the balance of a currency.
+   *
+   * @param currency The currency.
+   * @return The balance.
+   */
+  public float getBalance(Currency currency) {
+    return balances.get(currency.ordinal()) / 100f;
+  }
+
+  /**
+   * Puts cash into the vault.
+   *
+   * @param currency The currency.
+   * @param amount   The amount. Positive.
+   */
+  public void deposit(Currency currency, float amount) throws IllegalArgumentException {
+    long cents = positiveCents(amount);
+    int index = currency.ordinal();
+    balances.addAndGet(index, cents);
+    deposits.addAndGet(index, cents);
+    depositCounts.incrementAndGet(index);
+  }
+
+  /**
+   * Takes cash out of the vault.
+   *
+   * @param currency The currency.
+   * @param amount   The amount. Positive.
+   */
+  public void withdraw(Currency currency, float amount) throws IllegalArgumentException {
+    long cents = positiveCents(amount);
+    int index = currency.ordinal();
+    while (true) {
+      long balance = balances.get(index);
+      if (balance < cents)
+        throw new IllegalArgumentException("Not enough cash in the vault.");
+      if (balances.compareAndSet(index, balance, balance - cents)) {
+        break;
+      }
+    }
+    withdrawals.addAndGet(index, cents);
+    withdrawalCounts.incrementAndGet(index);
+  }
+
+  /**
+   * Puts back the cash of a withdrawal that did not go through.
+   *
+   * @param currency The currency.
+   * @param amount   The amount of the withdrawal.
+   */
+  void undoWithdrawal(Currency currency, float amount) {
+    long cents = positiveCents(amount);
+    int index = currency.ordinal();
+    withdrawals.addAndGet(index, -cents);
+    withdrawalCounts.decrementAndGet(index);
+    balances.addAndGet(index, cents);
+  }
+
+  /**
+   * Takes back the cash of a deposit that did not go through.
+   *
+   * @param currency The currency.
+   * @param amount   The amount of the deposit.
+   */
+  void undoDeposit(Currency currency, float amount) {
+    long cents = positiveCents(amount);
+    int index = currency.ordinal();
+    balances.addAndGet(index, -cents);
+    deposits.addAndGet(index, -cents);
+    depositCounts.decrementAndGet(index);
+  }
+
+  /**
+   * Reconciles the day against the counted cash and starts a new day.
+   *
+   * Every currency is handled once: its deposits and withdrawals of the
+   * day are taken and reset together, and the next day opens with the
+   * expected balance, so operations that run during the reconciliation
+   * fall into the next day.
+   *
+   * @param counted The counted cash by currency. A missing currency counts as none.
+   * @return The report.
+   */
+  public synchronized VaultReport reconcile(Map<Currency, Float> counted) {
+    List<VaultReport.Line> lines = new ArrayList<>(CURRENCIES.length);
+    for (Currency currency : CURRENCIES) {
+      int index = currency.ordinal();
+      long in = deposits.getAndSet(index, 0);
+      long out = withdrawals.getAndSet(index, 0);
+      long inCount = depositCounts.getAndSet(index, 0);
+      long outCount = withdrawalCounts.getAndSet(index, 0);
+      long start = opening.get(index);
+      long expected = start + in - out;
+      opening.set(index, expected);
+      Float count = counted.get(currency);
+      if (start == 0 && in == 0 && out == 0 && count == null) {
+        continue;
+      }
+      lines.add(new VaultReport.Line(currency, start / 100f, in / 100f, inCount, out / 100f, outCount,
+        expected / 100f, count == null ? 0 : count));
+    }
+    return new VaultReport(new Date(), lines);
+  }
+
+  /**
+   * Returns an amount in cents.
+   *
+   * @param amount The amount.
+   * @return The amount in cents.
+   */
+  private static long cents(float amount) {
+    return Math.round(amount * 100d);
+  }
+
+  /**
+   * Returns a positive amount in cents.
+   *
+   * @param amount The amount.
+   * @return The amount in cents.
+   */
+  private static long positiveCents(float amount) throws IllegalArgumentException {
+    long cents = cents(amount);
+    if (cents <= 0)
+      throw new IllegalArgumentException("The amount must be positive.");
+    return cents;
+  }
+}
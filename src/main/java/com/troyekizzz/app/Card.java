@@ -1,14 +1,23 @@
 package com.troyekizzz.app;
 
-import java.util.ArrayList;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 import com.troyekizzz.app.utils.BenefitLevel;
 import com.troyekizzz.app.utils.CardType;
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.LimitPeriod;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 
 /**
@@ -49,19 +58,100 @@ public class Card {
   private Account account;
 
   /**
-   * The card pin.
+   * The number of failed pin attempts after which the card is locked.
+   */
+  public static final int MAX_PIN_ATTEMPTS = 3;
+
+  /**
+   * The number of PBKDF2 iterations used to hash the pin.
+   */
+  static final int PIN_HASH_ITERATIONS = 10000;
+
+  /**
+   * The time a verified session stays valid, 5 minutes in milliseconds.
+   */
+  public static final long SESSION_VALIDITY = 5 * 60 * 1000L;
+
+  /**
+   * The number of random bytes in a session token.
+   */
+  private static final int TOKEN_BYTES = 16;
+
+  /**
+   * The source of salts and session tokens.
+   */
+  private static final SecureRandom random = new SecureRandom();
+
+  /**
+   * The salt of the pin hash.
+   */
+  @Getter(AccessLevel.NONE)
+  private final byte[] pinSalt = new byte[16];
+
+  /**
+   * The salted hash of the card pin, null if the card has no pin.
+   */
+  @Getter(AccessLevel.NONE)
+  private final byte[] pinHash;
+
+  /**
+   * The pin attempts: the number of failed attempts since the last successful
+   * one in the low 16 bits, and the number of attempts being checked above them.
    */
-  private String pin;
+  @Getter(AccessLevel.NONE)
+  private final AtomicInteger pinAttempts = new AtomicInteger();
+
+  /**
+   * The current verified session, null if there is none.
+   */
+  @Getter(AccessLevel.NONE)
+  private volatile Session session = null;
+
+  /**
+   * A verified session, i.e. a token that stands in for the pin for a short time.
+   */
+  private static class Session {
+    /**
+     * The session token.
+     */
+    private final byte[] token;
+
+    /**
+     * The time when the session expires in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Creates a new session.
+     * 
+     * @param token     The session token.
+     * @param expiresAt The time when the session expires.
+     */
+    private Session(byte[] token, long expiresAt) {
+      this.token = token;
+      this.expiresAt = expiresAt;
+    }
+  }
 
   /**
    * One-time payment limit.
    */
-  private float limit = 0;
+  private volatile float limit = 0;
+
+  /**
+   * The rolling daily, weekly and monthly spend limits in the account currency.
+   */
+  private final SpendLimits spendLimits = new SpendLimits();
 
   /**
    * The card transaction history.
    */
-  private List<Transaction> history = new ArrayList<>();
+  private TransactionHistory history = new TransactionHistory();
+
+  /**
+   * True if the card has been removed from the bank and can no longer be used.
+   */
+  private volatile boolean closed = false;
 
   /**
    * Creates a new card.
@@ -73,19 +163,28 @@ public class Card {
    */
   public Card(CardType type, Account account, String pin) {
     this.type = type;
-    this.number = String.valueOf((int) (Math.random() * 100000000)) + String.valueOf((int) (Math.random() * 100000000));
-    this.cvv = (int) (Math.random() * 1000);
+    IdGenerator ids = IdService.getInstance().getGenerator();
+    this.number = ids.nextCardNumber();
+    this.cvv = ids.nextCvv();
     Calendar calendar = Calendar.getInstance();
     calendar.add(Calendar.YEAR, 4);
     this.expirationDate = calendar.getTime();
     this.owner = account.getOwner();
     this.account = account;
-    this.pin = pin;
+    random.nextBytes(this.pinSalt);
+    this.pinHash = pin == null ? null : hashPin(pin, this.pinSalt);
   }
 
+  /**
+   * The time an authorization stays valid if it is not captured, 7 days in milliseconds.
+   */
+  public static final long AUTHORIZATION_VALIDITY = 7 * 24 * 60 * 60 * 1000L;
+
   /**
    * Processes a purchase.
    * 
+   * The purchase is authorized and captured right away.
+   * 
    * @param amount   The amount to be transferred.
    * @param currency The currency of the amount.
    * @param pin      The card pin.
@@ -93,33 +192,305 @@ public class Card {
    * @return         The transaction.
    */
   public Transaction processPurchase(float amount, Currency currency, String pin, Customer customer) {
+    return this.capture(this.authorize(amount, currency, pin, customer));
+  }
+
+  /**
+   * Authorizes a purchase, i.e. reserves its amount on the card account.
+   * 
+   * The authorization expires after {@link #AUTHORIZATION_VALIDITY}.
+   * 
+   * @param amount   The amount to be reserved.
+   * @param currency The currency of the amount.
+   * @param pin      The card pin.
+   * @param customer The customer that the purchase is made for.
+   * @return         The authorization hold.
+   */
+  public Hold authorize(float amount, Currency currency, String pin, Customer customer) {
+    return this.authorize(amount, currency, pin, customer, AUTHORIZATION_VALIDITY);
+  }
+
+  /**
+   * Authorizes a purchase, i.e. reserves its amount on the card account.
+   * 
+   * @param amount   The amount to be reserved.
+   * @param currency The currency of the amount.
+   * @param pin      The card pin.
+   * @param customer The customer that the purchase is made for.
+   * @param validity The time the authorization stays valid in milliseconds.
+   * @return         The authorization hold.
+   */
+  public Hold authorize(float amount, Currency currency, String pin, Customer customer, long validity) {
+    this.checkOpen();
     if (amount <= 0 || !this.validatePin(pin)) {
       throw new IllegalArgumentException("Invalid purchase of " + amount + " " + currency.toString());
     }
-    if (this.limit > 0 && amount > this.limit) {
+    float limit = this.limit;
+    if (limit > 0 && amount > limit) {
       throw new IllegalArgumentException("Purchase amount exceeds limit");
     }
-    Transaction transaction = Account.transfer(
-      this.account, 
-      customer.getBankAccounts().get(0), 
-      Exchange.getInstance().convert(currency, this.account.getCurrency(), amount)
-    );
-    transaction.setDescription("Purchase of goods from " + customer.getFirstName() + " " + customer.getLastName() + " in amount of " + amount + " " + currency.toString());
+    float converted = Exchange.getInstance().convert(currency, this.account.getCurrency(), amount);
+    long now = System.currentTimeMillis();
+    this.spendLimits.acquire(converted, now);
+    try {
+      return this.account.placeHold(
+        converted,
+        customer.getSettlementAccount(currency),
+        amount,
+        currency,
+        now,
+        now + validity,
+        "Purchase of goods from " + customer.getFirstName() + " " + customer.getLastName() + " in amount of " + amount + " " + currency.toString(),
+        this.spendLimits
+      );
+    } catch (RuntimeException e) {
+      this.spendLimits.release(converted, now);
+      throw e;
+    }
+  }
+
+  /**
+   * Captures an authorization, i.e. pays the reserved amount to the merchant.
+   * 
+   * @param hold The authorization hold.
+   * @return     The transaction.
+   */
+  public Transaction capture(Hold hold) {
+    if (hold.getAccount() != this.account) {
+      throw new IllegalArgumentException("The authorization was not made with this card.");
+    }
+    this.checkOpen();
+    Transaction transaction = this.account.captureHold(hold);
     this.history.add(transaction);
+    TransactionIndex.getInstance().add(this, transaction);
     return transaction;
   }
 
+  /**
+   * Voids an authorization, i.e. releases the reserved amount and its spending.
+   * 
+   * @param hold The authorization hold.
+   */
+  public void voidAuthorization(Hold hold) {
+    if (hold.getAccount() != this.account) {
+      throw new IllegalArgumentException("The authorization was not made with this card.");
+    }
+    this.account.voidHold(hold);
+  }
+
+  /**
+   * Closes the card, so that it cannot be used any more, and closes its history.
+   * 
+   * Closing a closed card does nothing.
+   */
+  void close() {
+    this.closed = true;
+    this.session = null;
+    this.history.close();
+  }
+
+  /**
+   * Checks that the card can still be used, before any money is moved with it.
+   */
+  void checkOpen() throws IllegalStateException {
+    if (this.closed) {
+      throw new IllegalStateException("The card is closed.");
+    }
+  }
+
+  /**
+   * Processes a purchase at most once per idempotency key.
+   * 
+   * A retry with the same key returns the original transaction
+   * without charging the card again. The key belongs to the card,
+   * and reusing it for a different amount, currency or customer is refused.
+   * 
+   * @param amount         The amount to be transferred.
+   * @param currency       The currency of the amount.
+   * @param pin            The card pin.
+   * @param customer       The customer that the purchase is made for.
+   * @param idempotencyKey The key that identifies the purchase request.
+   * @return               The transaction.
+   */
+  public Transaction processPurchase(float amount, Currency currency, String pin, Customer customer, String idempotencyKey) {
+    return IdempotencyCache.getInstance().execute("purchase:" + this.number + ":" + idempotencyKey,
+      amount + ":" + currency + ":" + customer.getId(), () -> this.processPurchase(amount, currency, pin, customer));
+  }
+
   /**
    * Validates a pin code.
    * 
+   * The pin is compared by its salted hash in constant time. After
+   * {@link #MAX_PIN_ATTEMPTS} failed attempts in a row the card is locked
+   * and no pin is valid until the bank unlocks it.
+   * 
+   * An attempt is reserved before the pin is hashed, and the failed and
+   * reserved attempts together never exceed the limit, so parallel guesses
+   * cannot get past it. An attempt that finds all remaining attempts
+   * reserved waits for one of them to finish.
+   * 
    * @param pin
    * @return True if the pin is valid, false otherwise.
    */
   public boolean validatePin(String pin) {
-    if (pin == null || this.pin == null) {
+    if (pin == null || this.pinHash == null) {
       return false;
     }
-    return pin == this.pin;
+    while (true) {
+      int attempts = this.pinAttempts.get();
+      int failed = attempts & 0xFFFF;
+      if (failed >= MAX_PIN_ATTEMPTS) {
+        return false;
+      }
+      if (failed + (attempts >>> 16) >= MAX_PIN_ATTEMPTS) {
+        LockSupport.parkNanos(100_000);
+        continue;
+      }
+      if (this.pinAttempts.compareAndSet(attempts, attempts + (1 << 16))) {
+        break;
+      }
+    }
+    boolean valid = MessageDigest.isEqual(this.pinHash, hashPin(pin, this.pinSalt));
+    int attempts;
+    do {
+      attempts = this.pinAttempts.get();
+    } while (!this.pinAttempts.compareAndSet(attempts, valid
+      ? (attempts & ~0xFFFF) - (1 << 16)
+      : attempts - (1 << 16) + 1));
+    if (!valid) {
+      this.session = null;
+    }
+    return valid;
+  }
+
+  /**
+   * Returns true if the card is locked after too many failed pin attempts.
+   * 
+   * @return True if the card is locked, false otherwise.
+   */
+  public boolean isLocked() {
+    return (this.pinAttempts.get() & 0xFFFF) >= MAX_PIN_ATTEMPTS;
+  }
+
+  /**
+   * Unlocks the card, i.e. clears its failed pin attempts.
+   */
+  void unlock() {
+    int attempts;
+    do {
+      attempts = this.pinAttempts.get();
+    } while (!this.pinAttempts.compareAndSet(attempts, attempts & ~0xFFFF));
+  }
+
+  /**
+   * Starts a verified session, so that several operations can be
+   * authenticated with one pin check.
+   * 
+   * The session replaces any earlier session of the card and
+   * expires after {@link #SESSION_VALIDITY}.
+   * 
+   * @param pin The card pin.
+   * @return    The session token.
+   */
+  public String startSession(String pin) {
+    if (!this.validatePin(pin)) {
+      throw new IllegalArgumentException("Invalid pin");
+    }
+    byte[] token = new byte[TOKEN_BYTES];
+    random.nextBytes(token);
+    this.session = new Session(token, System.currentTimeMillis() + SESSION_VALIDITY);
+    StringBuilder builder = new StringBuilder(token.length * 2);
+    for (byte b : token) {
+      builder.append(String.format("%02x", b));
+    }
+    return builder.toString();
+  }
+
+  /**
+   * Validates a session token in constant time.
+   * 
+   * @param token The session token.
+   * @return True if the token belongs to the current unexpired session, false otherwise.
+   */
+  public boolean validateSession(String token) {
+    Session session = this.session;
+    if (token == null || session == null || token.length() != session.token.length * 2 || this.isLocked()) {
+      return false;
+    }
+    if (session.expiresAt <= System.currentTimeMillis()) {
+      this.session = null;
+      return false;
+    }
+    byte[] bytes = new byte[session.token.length];
+    for (int i = 0; i < bytes.length; i++) {
+      int high = Character.digit(token.charAt(2 * i), 16);
+      int low = Character.digit(token.charAt(2 * i + 1), 16);
+      if (high < 0 || low < 0) {
+        return false;
+      }
+      bytes[i] = (byte) (high << 4 | low);
+    }
+    return MessageDigest.isEqual(session.token, bytes);
+  }
+
+  /**
+   * Ends the current session of the card.
+   */
+  public void endSession() {
+    this.session = null;
+  }
+
+  /**
+   * Validates a session token or, if it is not one, a pin code.
+   * 
+   * Anything shaped like a session token is only checked as a token, so an
+   * expired or invalid token does not count as a failed pin attempt.
+   * 
+   * @param pinOrToken The card pin or a session token.
+   * @return True if it is valid, false otherwise.
+   */
+  public boolean authenticate(String pinOrToken) {
+    if (isSessionToken(pinOrToken)) {
+      return this.validateSession(pinOrToken);
+    }
+    return this.validatePin(pinOrToken);
+  }
+
+  /**
+   * Returns true if a string has the shape of a session token, i.e. it is
+   * {@link #TOKEN_BYTES} bytes in hexadecimal.
+   * 
+   * @param value The string.
+   * @return True if it looks like a session token, false otherwise.
+   */
+  private static boolean isSessionToken(String value) {
+    if (value == null || value.length() != TOKEN_BYTES * 2) {
+      return false;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      if (Character.digit(value.charAt(i), 16) < 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Hashes a pin with PBKDF2.
+   * 
+   * @param pin  The pin.
+   * @param salt The salt.
+   * @return     The hash.
+   */
+  private static byte[] hashPin(String pin, byte[] salt) {
+    PBEKeySpec spec = new PBEKeySpec(pin.toCharArray(), salt, PIN_HASH_ITERATIONS, 256);
+    try {
+      return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("The pin cannot be hashed.", e);
+    } finally {
+      spec.clearPassword();
+    }
   }
 
   /**
@@ -138,6 +509,46 @@ public class Card {
     this.limit = limit;
   }
 
+  /**
+   * Sets a rolling spend limit in the account currency.
+   * 
+   * @param period The period of the limit.
+   * @param limit  The limit.
+   * @param pin    The card pin.
+   */
+  public void setSpendLimit(LimitPeriod period, float limit, String pin) {
+    if (!this.validatePin(pin)) {
+      throw new IllegalArgumentException("Invalid pin");
+    }
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Invalid limit");
+    }
+    this.spendLimits.setLimit(period, limit);
+  }
+
+  /**
+   * Unsets a rolling spend limit.
+   * 
+   * @param period The period of the limit.
+   * @param pin    The card pin.
+   */
+  public void unsetSpendLimit(LimitPeriod period, String pin) {
+    if (!this.validatePin(pin)) {
+      throw new IllegalArgumentException("Invalid pin");
+    }
+    this.spendLimits.setLimit(period, 0);
+  }
+
+  /**
+   * Returns the amount spent with the card in a rolling period.
+   * 
+   * @param period The period.
+   * @return The amount spent in the account currency.
+   */
+  public float getSpent(LimitPeriod period) {
+    return this.spendLimits.getSpent(period, System.currentTimeMillis());
+  }
+
   /**
    * Unsets a payment limit.
    * 
@@ -0,0 +1,377 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A class that represents the note cassettes of an ATM and plans
+ * which notes are dispensed for a withdrawal.
+ *
+ * For every amount up to a maximum, a table holds the note combinations
+ * with the fewest notes. It is computed once per set of denominations and
+ * shared by all dispensers. A withdrawal picks the combination from the
+ * table that the cassettes can pay and that takes the fewest notes from
+ * the cassettes that are most depleted, so the cassettes run out evenly.
+ * Only if no combination from the table fits, e.g. when the cassettes are
+ * nearly empty, the notes are searched for directly.
+ *
+ * @author TroyeKizzz
+ */
+public class CashDispenser {
+  /**
+   * The default largest amount that has a table of combinations.
+   */
+  public static final int DEFAULT_MAX_AMOUNT = 2000;
+
+  /**
+   * The number of combinations kept for each amount.
+   */
+  static final int PLANS_PER_AMOUNT = 16;
+
+  /**
+   * The combination tables by their denominations and largest amount.
+   */
+  private static final Map<String, int[][][]> tables = new ConcurrentHashMap<>();
+
+  /**
+   * The denominations of the cassettes in descending order.
+   */
+  private final int[] denominations;
+
+  /**
+   * The greatest common divisor of the denominations.
+   */
+  private final int unit;
+
+  /**
+   * The combinations of notes for each amount in units, fewest notes first.
+   */
+  private final int[][][] plans;
+
+  /**
+   * The number of notes in each cassette.
+   */
+  private final int[] counts;
+
+  /**
+   * The number of notes in each cassette when it was last loaded.
+   */
+  private final int[] loaded;
+
+  /**
+   * Creates a new dispenser with the default largest amount.
+   *
+   * @param denominations The denominations of the cassettes.
+   * @param counts        The number of notes in each cassette.
+   */
+  public CashDispenser(int[] denominations, int[] counts) throws IllegalArgumentException {
+    this(denominations, counts, DEFAULT_MAX_AMOUNT);
+  }
+
+  /**
+   * Creates a new dispenser.
+   *
+   * @param denominations The denominations of the cassettes. Positive and distinct.
+   * @param counts        The number of notes in each cassette.
+   * @param maxAmount     The largest amount that has a table of combinations.
+   */
+  public CashDispenser(int[] denominations, int[] counts, int maxAmount) throws IllegalArgumentException {
+    if (denominations == null || counts == null || denominations.length == 0 || denominations.length != counts.length)
+      throw new IllegalArgumentException("Every cassette must have a denomination and a count.");
+    if (maxAmount <= 0)
+      throw new IllegalArgumentException("The largest amount must be positive.");
+    Integer[] order = new Integer[denominations.length];
+    for (int i = 0; i < order.length; i++) {
+      if (denominations[i] <= 0 || counts[i] < 0)
+        throw new IllegalArgumentException("Denominations must be positive and counts must not be negative.");
+      order[i] = i;
+    }
+    Arrays.sort(order, (a, b) -> denominations[b] - denominations[a]);
+    this.denominations = new int[denominations.length];
+    this.counts = new int[denominations.length];
+    int gcd = 0;
+    for (int i = 0; i < order.length; i++) {
+      this.denominations[i] = denominations[order[i]];
+      this.counts[i] = counts[order[i]];
+      if (i > 0 && this.denominations[i] == this.denominations[i - 1])
+        throw new IllegalArgumentException("Denominations must be distinct.");
+      gcd = gcd(gcd, this.denominations[i]);
+    }
+    this.unit = gcd;
+    this.loaded = this.counts.clone();
+    this.plans = tables.computeIfAbsent(Arrays.toString(this.denominations) + "/" + maxAmount,
+      key -> buildTable(this.denominations, this.unit, maxAmount / this.unit));
+  }
+
+  /**
+   * Plans the notes for an amount without taking them.
+   *
+   * @param amount The amount.
+   * @return The number of notes of each denomination, in the order of {@link #getDenominations()}.
+   */
+  public synchronized int[] plan(float amount) throws IllegalStateException {
+    if (amount <= 0)
+      throw new IllegalStateException("Amount cannot be negative or zero");
+    if (amount > getTotal())
+      throw new IllegalStateException("Not enough money in the ATM");
+    if (amount != Math.rint(amount) || (long) amount % unit != 0)
+      throw new IllegalStateException("Amount cannot be dispensed");
+    int units = (int) ((long) amount / unit);
+    int[] best = null;
+    double bestCost = Double.MAX_VALUE;
+    if (units < plans.length) {
+      for (int[] plan : plans[units]) {
+        double cost = cost(plan);
+        if (cost < bestCost) {
+          best = plan;
+          bestCost = cost;
+        }
+      }
+    }
+    if (best == null) {
+      best = search(units);
+    }
+    if (best == null)
+      throw new IllegalStateException("Amount cannot be dispensed");
+    return best.clone();
+  }
+
+  /**
+   * Takes the notes of a plan from the cassettes.
+   *
+   * @param plan The number of notes of each denomination.
+   */
+  public synchronized void take(int[] plan) throws IllegalStateException {
+    for (int i = 0; i < counts.length; i++) {
+      if (plan[i] > counts[i])
+        throw new IllegalStateException("Not enough notes in the cassette of " + denominations[i]);
+    }
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] -= plan[i];
+    }
+  }
+
+  /**
+   * Loads notes into the cassette of a denomination.
+   *
+   * @param denomination The denomination.
+   * @param count        The number of notes to add.
+   */
+  public synchronized void load(int denomination, int count) throws IllegalArgumentException {
+    if (count <= 0)
+      throw new IllegalArgumentException("The number of notes must be positive.");
+    int i = indexOf(denomination);
+    counts[i] += count;
+    loaded[i] = counts[i];
+  }
+
+  /**
+   * Takes all notes out of the cassettes.
+   *
+   * @return The value of the notes.
+   */
+  public synchronized float empty() {
+    float total = getTotal();
+    Arrays.fill(counts, 0);
+    Arrays.fill(loaded, 0);
+    return total;
+  }
+
+  /**
+   * Returns the number of notes of a denomination.
+   *
+   * @param denomination The denomination.
+   * @return The number of notes.
+   */
+  public synchronized int getCount(int denomination) throws IllegalArgumentException {
+    return counts[indexOf(denomination)];
+  }
+
+  /**
+   * Returns the value of all notes in the cassettes.
+   *
+   * @return The value of the notes.
+   */
+  public synchronized float getTotal() {
+    long total = 0;
+    for (int i = 0; i < counts.length; i++) {
+      total += (long) counts[i] * denominations[i];
+    }
+    return total;
+  }
+
+  /**
+   * Returns the denominations of the cassettes in descending order.
+   *
+   * @return The denominations.
+   */
+  public int[] getDenominations() {
+    return denominations.clone();
+  }
+
+  /**
+   * Returns the cost of a plan, or infinity if the cassettes cannot pay it.
+   *
+   * Each note costs more the emptier its cassette is compared to when it was loaded.
+   *
+   * @param plan The number of notes of each denomination.
+   * @return The cost.
+   */
+  private double cost(int[] plan) {
+    double cost = 0;
+    for (int i = 0; i < plan.length; i++) {
+      if (plan[i] == 0) {
+        continue;
+      }
+      if (plan[i] > counts[i]) {
+        return Double.MAX_VALUE;
+      }
+      cost += plan[i] * (double) loaded[i] / counts[i];
+    }
+    return cost;
+  }
+
+  /**
+   * Searches for the plan with the fewest notes that the cassettes can pay.
+   *
+   * The cassettes are added one at a time. For each amount, the fewest notes
+   * are the best of taking 0 up to all notes of the new cassette on top of the
+   * fewest notes for the rest of the amount from the cassettes before it, so
+   * the count of every cassette is respected.
+   *
+   * @param units The amount in units.
+   * @return The plan, or null if there is none.
+   */
+  private int[] search(int units) {
+    int[] fewest = new int[units + 1];
+    Arrays.fill(fewest, Integer.MAX_VALUE);
+    fewest[0] = 0;
+    int[][] taken = new int[denominations.length][units + 1];
+    for (int i = 0; i < denominations.length; i++) {
+      int step = denominations[i] / unit;
+      int[] next = fewest.clone();
+      for (int a = step; a <= units; a++) {
+        for (int k = 1; k <= counts[i] && k * step <= a; k++) {
+          int rest = fewest[a - k * step];
+          if (rest != Integer.MAX_VALUE && rest + k < next[a]) {
+            next[a] = rest + k;
+            taken[i][a] = k;
+          }
+        }
+      }
+      fewest = next;
+    }
+    if (fewest[units] == Integer.MAX_VALUE) {
+      return null;
+    }
+    int[] plan = new int[denominations.length];
+    for (int i = denominations.length - 1, a = units; i >= 0; i--) {
+      plan[i] = taken[i][a];
+      a -= plan[i] * (denominations[i] / unit);
+    }
+    return plan;
+  }
+
+  /**
+   * Returns the index of the cassette of a denomination.
+   *
+   * @param denomination The denomination.
+   * @return The index.
+   */
+  private int indexOf(int denomination) throws IllegalArgumentException {
+    for (int i = 0; i < denominations.length; i++) {
+      if (denominations[i] == denomination) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("There is no cassette of " + denomination);
+  }
+
+  /**
+   * Builds the table of combinations with the fewest notes for each amount.
+   *
+   * @param denominations The denominations in descending order.
+   * @param unit          The greatest common divisor of the denominations.
+   * @param maxUnits      The largest amount in units.
+   * @return The combinations for each amount in units.
+   */
+  private static int[][][] buildTable(int[] denominations, int unit, int maxUnits) {
+    int[][][] table = new int[maxUnits + 1][][];
+    table[0] = new int[][] { new int[denominations.length] };
+    List<int[]> candidates = new ArrayList<>();
+    for (int a = 1; a <= maxUnits; a++) {
+      candidates.clear();
+      for (int i = 0; i < denominations.length; i++) {
+        int step = denominations[i] / unit;
+        if (step > a) {
+          continue;
+        }
+        for (int[] plan : table[a - step]) {
+          int[] candidate = plan.clone();
+          candidate[i]++;
+          candidates.add(candidate);
+        }
+      }
+      candidates.sort(CashDispenser::compare);
+      List<int[]> kept = new ArrayList<>();
+      for (int[] candidate : candidates) {
+        if (kept.size() == PLANS_PER_AMOUNT) {
+          break;
+        }
+        if (kept.isEmpty() || compare(kept.get(kept.size() - 1), candidate) != 0) {
+          kept.add(candidate);
+        }
+      }
+      table[a] = kept.toArray(new int[0][]);
+    }
+    return table;
+  }
+
+  /**
+   * Compares two plans by their number of notes and then by their notes.
+   *
+   * @param a The first plan.
+   * @param b The second plan.
+   * @return A negative number, zero or a positive number.
+   */
+  private static int compare(int[] a, int[] b) {
+    int difference = sum(a) - sum(b);
+    if (difference != 0) {
+      return difference;
+    }
+    for (int i = 0; i < a.length; i++) {
+      if (a[i] != b[i]) {
+        return b[i] - a[i];
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the number of notes of a plan.
+   *
+   * @param plan The plan.
+   * @return The number of notes.
+   */
+  private static int sum(int[] plan) {
+    int sum = 0;
+    for (int count : plan) {
+      sum += count;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the greatest common divisor of two numbers.
+   *
+   * @param a The first number.
+   * @param b The second number.
+   * @return The greatest common divisor.
+   */
+  private static int gcd(int a, int b) {
+    return b == 0 ? a : gcd(b, a % b);
+  }
+}
@@ -1,13 +1,19 @@
 package com.troyekizzz.app;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.troyekizzz.app.utils.BenefitLevel;
 import com.troyekizzz.app.utils.Currency;
 import com.troyekizzz.app.utils.NotificationType;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
 
 /**
  * A class that represents a customer.
@@ -15,7 +21,19 @@ import lombok.Data;
  * @author TroyeKizzz
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Customer {
+  /**
+   * The source of customer ids.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The customer id. Equality and hash codes are based on it only.
+   */
+  @EqualsAndHashCode.Include
+  private final long id = nextId.getAndIncrement();
+
   /**
    * The customer's first name.
    */
@@ -38,7 +56,10 @@ public class Customer {
 
   /**
    * Bank accounts of the customer.
+   * 
+   * Accounts add and remove themselves when they are opened and closed.
    */
+  @Setter(AccessLevel.NONE)
   private List<Account> bankAccounts = new ArrayList<>();
 
   /**
@@ -46,6 +67,17 @@ public class Customer {
    */
   private List<String> messages = new ArrayList<>();
 
+  /**
+   * The settlement account for each currency, or null if it has to be rebuilt.
+   * 
+   * The table is rebuilt on the first lookup after an account is opened or closed.
+   * It is rebuilt and cleared under the customer lock, so a table built from an
+   * old list of accounts never replaces a newer clear.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile EnumMap<Currency, Account> settlementAccounts = null;
+
   /**
    * Creates a new customer.
    *
@@ -123,4 +155,72 @@ public class Customer {
 
     messages.add(message);
   }
+
+  /**
+   * Returns the account that payments to the customer in a currency are settled to.
+   * 
+   * The first open account in the currency is used, so no exchange is needed.
+   * If there is none, the first account of the customer is used.
+   * 
+   * @param currency The currency of the payment.
+   * @return The settlement account.
+   */
+  public Account getSettlementAccount(Currency currency) throws IllegalStateException {
+    EnumMap<Currency, Account> routes = this.settlementAccounts;
+    if (routes == null) {
+      routes = rebuildSettlementAccounts();
+    }
+    Account account = routes.get(currency);
+    if (account == null) {
+      throw new IllegalStateException("The customer has no accounts.");
+    }
+    return account;
+  }
+
+  /**
+   * Builds the settlement account table, unless another thread already has.
+   * 
+   * Currencies without an open account are routed to the first account.
+   * 
+   * @return The settlement account table.
+   */
+  private synchronized EnumMap<Currency, Account> rebuildSettlementAccounts() {
+    EnumMap<Currency, Account> routes = this.settlementAccounts;
+    if (routes != null) {
+      return routes;
+    }
+    routes = new EnumMap<>(Currency.class);
+    for (Account account : bankAccounts) {
+      if (account.isOpen()) {
+        routes.putIfAbsent(account.getCurrency(), account);
+      }
+    }
+    if (!bankAccounts.isEmpty()) {
+      for (Currency currency : Currency.values()) {
+        routes.putIfAbsent(currency, bankAccounts.get(0));
+      }
+    }
+    this.settlementAccounts = routes;
+    return routes;
+  }
+
+  /**
+   * Adds an opened account to the customer and clears the settlement account table.
+   * 
+   * @param account The account.
+   */
+  synchronized void addBankAccount(Account account) {
+    bankAccounts.add(account);
+    this.settlementAccounts = null;
+  }
+
+  /**
+   * Removes a closed account from the customer and clears the settlement account table.
+   * 
+   * @param account The account.
+   */
+  synchronized void removeBankAccount(Account account) {
+    bankAccounts.remove(account);
+    this.settlementAccounts = null;
+  }
 }
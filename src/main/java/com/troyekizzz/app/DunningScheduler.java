@@ -0,0 +1,240 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+import com.troyekizzz.app.utils.DunningLevel;
+import com.troyekizzz.app.utils.InvoiceStatus;
+import com.troyekizzz.app.utils.NotificationType;
+
+/**
+ * A class that escalates the dunning of overdue invoices on a schedule.
+ *
+ * Every tracked invoice waits in a queue ordered by the time of its next
+ * escalation, so processing takes only the invoices that are due from the
+ * head of the queue and never looks at the others. An invoice that is paid,
+ * rejected or given a new due date is not looked for in the queue; its
+ * outdated entry is dropped when it reaches the head.
+ *
+ * An invoice escalates at most one level per processing, so a customer gets
+ * one notice at a time even if the processing has not run for a while.
+ *
+ * @author TroyeKizzz
+ */
+public class DunningScheduler {
+  /**
+   * One day in milliseconds.
+   */
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * The default times after the due date that each level is reached, 1, 14, 30 and 60 days.
+   */
+  private static final long[] DEFAULT_OFFSETS = {DAY, 14 * DAY, 30 * DAY, 60 * DAY};
+
+  /**
+   * The dunning levels by their ordinal.
+   */
+  private static final DunningLevel[] LEVELS = DunningLevel.values();
+
+  /**
+   * A waiting escalation.
+   */
+  private static class Entry {
+    /**
+     * The invoice.
+     */
+    private final Invoice invoice;
+
+    /**
+     * The time of the escalation in milliseconds since the epoch.
+     */
+    private final long time;
+
+    /**
+     * The due date of the invoice when the escalation was scheduled.
+     */
+    private final long dueTime;
+
+    /**
+     * The level the invoice escalates to.
+     */
+    private final DunningLevel level;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param invoice The invoice.
+     * @param time    The time of the escalation.
+     * @param dueTime The due date of the invoice.
+     * @param level   The level the invoice escalates to.
+     */
+    private Entry(Invoice invoice, long time, long dueTime, DunningLevel level) {
+      this.invoice = invoice;
+      this.time = time;
+      this.dueTime = dueTime;
+      this.level = level;
+    }
+  }
+
+  /**
+   * The waiting escalations, the earliest first.
+   */
+  private final PriorityQueue<Entry> queue = new PriorityQueue<>(Comparator.comparingLong((Entry entry) -> entry.time));
+
+  /**
+   * The times after the due date that each level above {@link DunningLevel#NONE} is reached in milliseconds.
+   */
+  private volatile long[] offsets = DEFAULT_OFFSETS.clone();
+
+  /**
+   * The notice sent when an invoice escalates.
+   */
+  private volatile Consumer<Invoice> notice = DunningScheduler::sendNotice;
+
+  /**
+   * Returns the times after the due date that each level is reached.
+   *
+   * @return The times in milliseconds, one for each level above {@link DunningLevel#NONE}.
+   */
+  public long[] getOffsets() {
+    return offsets.clone();
+  }
+
+  /**
+   * Sets the times after the due date that each level is reached.
+   *
+   * Escalations that are already scheduled keep their times.
+   *
+   * @param offsets The times in milliseconds, one for each level above {@link DunningLevel#NONE}. Not negative and in order.
+   */
+  public void setOffsets(long... offsets) throws IllegalArgumentException {
+    if (offsets.length != LEVELS.length - 1)
+      throw new IllegalArgumentException("There must be one offset for each dunning level.");
+    for (int i = 0; i < offsets.length; i++) {
+      if (offsets[i] < 0 || (i > 0 && offsets[i] < offsets[i - 1]))
+        throw new IllegalArgumentException("Dunning offsets must not be negative and must be in order.");
+    }
+    this.offsets = offsets.clone();
+  }
+
+  /**
+   * Sets the notice sent when an invoice escalates.
+   *
+   * @param notice The notice, given the invoice at its new level.
+   */
+  public void setNotice(Consumer<Invoice> notice) {
+    this.notice = notice;
+  }
+
+  /**
+   * Starts tracking an invoice and schedules its next escalation.
+   *
+   * An invoice without a due date, or one that is paid, rejected or at
+   * the highest level, has no escalation.
+   *
+   * @param invoice The invoice.
+   */
+  public void track(Invoice invoice) {
+    synchronized (invoice) {
+      invoice.setDunning(this);
+      if (invoice.getDueDate() == null || !isOpen(invoice)) {
+        return;
+      }
+      int next = invoice.getDunningLevel().ordinal() + 1;
+      if (next == LEVELS.length) {
+        return;
+      }
+      long dueTime = invoice.getDueDate().getTime();
+      Entry entry = new Entry(invoice, dueTime + offsets[next - 1], dueTime, LEVELS[next]);
+      synchronized (this) {
+        queue.add(entry);
+      }
+    }
+  }
+
+  /**
+   * Escalates the invoices whose next escalation is due and sends their notices.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The escalated invoices.
+   */
+  public List<Invoice> process(long now) {
+    List<Entry> due = new ArrayList<>();
+    synchronized (this) {
+      while (!queue.isEmpty() && queue.peek().time <= now) {
+        due.add(queue.poll());
+      }
+    }
+    List<Invoice> escalated = new ArrayList<>();
+    for (Entry entry : due) {
+      if (escalate(entry)) {
+        escalated.add(entry.invoice);
+      }
+    }
+    Consumer<Invoice> notice = this.notice;
+    for (Invoice invoice : escalated) {
+      notice.accept(invoice);
+    }
+    return escalated;
+  }
+
+  /**
+   * Returns the number of waiting escalations, including outdated ones.
+   *
+   * @return The number of escalations.
+   */
+  public synchronized int size() {
+    return queue.size();
+  }
+
+  /**
+   * Moves an invoice to the level of an escalation and schedules the next one.
+   *
+   * @param entry The escalation.
+   * @return True if the invoice escalated, false if the escalation was outdated.
+   */
+  private boolean escalate(Entry entry) {
+    Invoice invoice = entry.invoice;
+    synchronized (invoice) {
+      if (!isOpen(invoice) || invoice.getDunning() != this || invoice.getDueDate() == null
+          || invoice.getDueDate().getTime() != entry.dueTime
+          || invoice.getDunningLevel().ordinal() + 1 != entry.level.ordinal()) {
+        return false;
+      }
+      invoice.setDunningLevel(entry.level);
+      track(invoice);
+      return true;
+    }
+  }
+
+  /**
+   * Returns whether an invoice is still waiting to be paid.
+   *
+   * @param invoice The invoice.
+   * @return True if the invoice is unaccepted or falling due.
+   */
+  private static boolean isOpen(Invoice invoice) {
+    return invoice.getStatus() == InvoiceStatus.UNACCEPTED || invoice.getStatus() == InvoiceStatus.FALLING_DUE;
+  }
+
+  /**
+   * Tells the payer of an invoice that it is overdue, by email, or by SMS if they have no email.
+   *
+   * @param invoice The invoice.
+   */
+  private static void sendNotice(Invoice invoice) {
+    Customer payer = invoice.getFrom();
+    String email = payer.getEmail();
+    String message = "Invoice " + invoice.getNumber() + " is overdue: " + invoice.getOutstandingAmount() + " "
+      + invoice.getCurrency() + " is outstanding (" + invoice.getDunningLevel() + ").";
+    try {
+      payer.notify(message, email == null || email.isEmpty() ? NotificationType.SMS : NotificationType.EMAIL);
+    } catch (IllegalStateException e) {
+      return;
+    }
+  }
+}
@@ -22,7 +22,7 @@ public class Exchange {
   /**
    * The singleton instance.
    */
-  public static Exchange instance = null;
+  public static volatile Exchange instance = null;
 
   /**
    * Creates a new exchange rate.
@@ -44,11 +44,17 @@ public class Exchange {
    * 
    * @return The singleton instance.
    */
-  public static synchronized Exchange getInstance() {
-    if (instance == null) {
-      instance = new Exchange();
+  public static Exchange getInstance() {
+    Exchange exchange = instance;
+    if (exchange == null) {
+      synchronized (Exchange.class) {
+        if (instance == null) {
+          instance = new Exchange();
+        }
+        exchange = instance;
+      }
     }
-    return instance;
+    return exchange;
   }
 
   /**
@@ -0,0 +1,134 @@
+package com.troyekizzz.app;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.HoldStatus;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * A class that represents an authorization hold, i.e. funds reserved
+ * on an account for a purchase that has not been settled yet.
+ * 
+ * @author TroyeKizzz
+ */
+@Getter
+public class Hold {
+  /**
+   * The source of hold ids.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The hold id.
+   */
+  private final long id = nextId.getAndIncrement();
+
+  /**
+   * The account the funds are reserved on.
+   */
+  private Account account;
+
+  /**
+   * The account the funds are paid to when the hold is captured.
+   */
+  private Account merchant;
+
+  /**
+   * The reserved amount in the currency of the account.
+   */
+  private float amount;
+
+  /**
+   * The amount the merchant is paid when the hold is captured.
+   */
+  private float purchaseAmount;
+
+  /**
+   * The currency the merchant is paid in.
+   */
+  private Currency purchaseCurrency;
+
+  /**
+   * The time when the hold expires in milliseconds since the epoch.
+   */
+  private long expiresAt;
+
+  /**
+   * The time when the hold was placed in milliseconds since the epoch.
+   * 
+   * The amount was counted toward the spend limits at this time,
+   * so it is given back to the same periods.
+   */
+  private final long createdAt;
+
+  /**
+   * The spend limits the amount counts toward, or null if it counts toward none.
+   */
+  @Getter(AccessLevel.NONE)
+  private final SpendLimits spendLimits;
+
+  /**
+   * The description of the purchase.
+   */
+  private String description;
+
+  /**
+   * The hold status.
+   */
+  private HoldStatus status = HoldStatus.OPEN;
+
+  /**
+   * Creates a new hold.
+   * 
+   * @param account          The account the funds are reserved on.
+   * @param merchant         The account the funds are paid to.
+   * @param amount           The reserved amount in the currency of the account.
+   * @param purchaseAmount   The amount the merchant is paid.
+   * @param purchaseCurrency The currency the merchant is paid in.
+   * @param createdAt        The time when the hold is placed.
+   * @param expiresAt        The time when the hold expires.
+   * @param description      The description of the purchase.
+   * @param spendLimits      The spend limits the amount counts toward, or null for none.
+   */
+  Hold(Account account, Account merchant, float amount, float purchaseAmount, Currency purchaseCurrency, long createdAt, long expiresAt, String description, SpendLimits spendLimits) {
+    this.account = account;
+    this.merchant = merchant;
+    this.amount = amount;
+    this.purchaseAmount = purchaseAmount;
+    this.purchaseCurrency = purchaseCurrency;
+    this.createdAt = createdAt;
+    this.expiresAt = expiresAt;
+    this.description = description;
+    this.spendLimits = spendLimits;
+  }
+
+  /**
+   * Returns true if the hold still reserves funds.
+   * 
+   * @return True if the hold is open, false otherwise.
+   */
+  public boolean isOpen() {
+    return status == HoldStatus.OPEN;
+  }
+
+  /**
+   * Changes the status of an open hold.
+   * 
+   * @param status The new status.
+   */
+  void close(HoldStatus status) {
+    this.status = status;
+  }
+
+  /**
+   * Gives the amount back to the spend limits it counts toward.
+   */
+  void releaseSpending() {
+    if (spendLimits != null) {
+      spendLimits.release(amount, createdAt);
+    }
+  }
+}
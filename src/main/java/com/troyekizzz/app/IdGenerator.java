@@ -0,0 +1,39 @@
+package com.troyekizzz.app;
+
+/**
+ * An interface of a source of identifiers for accounts, cards and invoices.
+ *
+ * Implementations must be safe to use from several threads and must not
+ * return the same account number, card number or invoice number twice.
+ *
+ * @author TroyeKizzz
+ */
+public interface IdGenerator {
+  /**
+   * Returns a new account number.
+   *
+   * @return The account number.
+   */
+  String nextAccountNumber();
+
+  /**
+   * Returns a new card number.
+   *
+   * @return The card number.
+   */
+  String nextCardNumber();
+
+  /**
+   * Returns a new card cvv.
+   *
+   * @return The card cvv.
+   */
+  int nextCvv();
+
+  /**
+   * Returns a new invoice number.
+   *
+   * @return The invoice number.
+   */
+  String nextInvoiceNumber();
+}
@@ -0,0 +1,65 @@
+package com.troyekizzz.app;
+
+/**
+ * A singleton class that holds the identifier generator used by the bank.
+ *
+ * @author TroyeKizzz
+ */
+public class IdService {
+  /**
+   * The singleton instance.
+   */
+  public static volatile IdService instance = null;
+
+  /**
+   * The identifier generator.
+   */
+  private volatile IdGenerator generator = new SequenceIdGenerator();
+
+  /**
+   * Creates a new identifier service.
+   */
+  private IdService() {
+  }
+
+  /**
+   * Returns the singleton instance.
+   *
+   * If the instance does not exist, it is created.
+   * Otherwise, the existing instance is returned.
+   *
+   * @return The singleton instance.
+   */
+  public static IdService getInstance() {
+    IdService service = instance;
+    if (service == null) {
+      synchronized (IdService.class) {
+        if (instance == null) {
+          instance = new IdService();
+        }
+        service = instance;
+      }
+    }
+    return service;
+  }
+
+  /**
+   * Returns the identifier generator.
+   *
+   * @return The identifier generator.
+   */
+  public IdGenerator getGenerator() {
+    return generator;
+  }
+
+  /**
+   * Replaces the identifier generator.
+   *
+   * @param generator The new identifier generator.
+   */
+  public void setGenerator(IdGenerator generator) throws IllegalArgumentException {
+    if (generator == null)
+      throw new IllegalArgumentException("The generator must not be null.");
+    this.generator = generator;
+  }
+}
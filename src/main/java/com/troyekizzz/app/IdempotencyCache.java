@@ -0,0 +1,240 @@
+package com.troyekizzz.app;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * A singleton class that remembers the results of operations by their
+ * idempotency keys, so a retried operation returns the original
+ * transaction instead of moving money twice.
+ *
+ * Callers scope their keys to the account, card or invoice that makes the
+ * request, and pass a fingerprint of the request. A key reused with a
+ * different fingerprint is refused instead of returning the transaction
+ * of another request.
+ *
+ * The cache holds at most a fixed number of keys, each for a fixed time.
+ * When it is full, the oldest keys are evicted first, but a key whose
+ * operation is still running is never evicted.
+ *
+ * @author TroyeKizzz
+ */
+public class IdempotencyCache {
+  /**
+   * The default number of keys held by the cache.
+   */
+  static final int DEFAULT_CAPACITY = 100000;
+
+  /**
+   * The default time a key is held, 24 hours in milliseconds.
+   */
+  static final long DEFAULT_TIME_TO_LIVE = 24 * 60 * 60 * 1000L;
+
+  /**
+   * An operation remembered by its key.
+   */
+  private static class Entry {
+    /**
+     * The idempotency key.
+     */
+    private final String key;
+
+    /**
+     * The fingerprint of the request.
+     */
+    private final String fingerprint;
+
+    /**
+     * The operation. Retries wait for it if it is still running.
+     */
+    private final FutureTask<Transaction> task;
+
+    /**
+     * The time when the key expires in milliseconds since the epoch.
+     */
+    private final long expiresAt;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param key         The idempotency key.
+     * @param fingerprint The fingerprint of the request.
+     * @param operation   The operation.
+     * @param expiresAt   The time when the key expires.
+     */
+    private Entry(String key, String fingerprint, Supplier<Transaction> operation, long expiresAt) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.task = new FutureTask<>(operation::get);
+      this.expiresAt = expiresAt;
+    }
+  }
+
+  /**
+   * The singleton instance.
+   */
+  private static volatile IdempotencyCache instance = null;
+
+  /**
+   * The remembered operations by their keys.
+   */
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  /**
+   * The remembered operations in the order they were added.
+   */
+  private final Queue<Entry> order = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The largest number of keys held by the cache.
+   */
+  private final int capacity;
+
+  /**
+   * The time a key is held in milliseconds.
+   */
+  private final long timeToLive;
+
+  /**
+   * Creates a new idempotency cache.
+   *
+   * @param capacity   The largest number of keys held by the cache.
+   * @param timeToLive The time a key is held in milliseconds.
+   */
+  IdempotencyCache(int capacity, long timeToLive) throws IllegalArgumentException {
+    if (capacity <= 0 || timeToLive <= 0)
+      throw new IllegalArgumentException("The capacity and time to live must be positive.");
+    this.capacity = capacity;
+    this.timeToLive = timeToLive;
+  }
+
+  /**
+   * Returns the singleton instance.
+   *
+   * If the instance does not exist, it is created.
+   * Otherwise, the existing instance is returned.
+   *
+   * @return The singleton instance.
+   */
+  public static IdempotencyCache getInstance() {
+    IdempotencyCache cache = instance;
+    if (cache == null) {
+      synchronized (IdempotencyCache.class) {
+        if (instance == null) {
+          instance = new IdempotencyCache(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+        }
+        cache = instance;
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Runs an operation once per idempotency key, for requests without a payload.
+   *
+   * @param key       The idempotency key.
+   * @param operation The operation.
+   * @return The transaction of the operation.
+   */
+  public Transaction execute(String key, Supplier<Transaction> operation) throws IllegalArgumentException {
+    return execute(key, "", operation);
+  }
+
+  /**
+   * Runs an operation once per idempotency key.
+   *
+   * The first call with a key runs the operation and remembers its transaction.
+   * Later calls with the same key return that transaction without running the
+   * operation again, waiting for it if it is still running. A failed operation
+   * is not remembered, so it can be retried with the same key. A call with
+   * the same key but a different fingerprint is refused.
+   *
+   * @param key         The idempotency key.
+   * @param fingerprint The fingerprint of the request, e.g. its amount and counterparty.
+   * @param operation   The operation.
+   * @return The transaction of the operation.
+   */
+  public Transaction execute(String key, String fingerprint, Supplier<Transaction> operation) throws IllegalArgumentException {
+    if (key == null || key.isEmpty())
+      throw new IllegalArgumentException("The idempotency key must not be empty.");
+    long now = System.currentTimeMillis();
+    Entry entry = new Entry(key, fingerprint, operation, now + timeToLive);
+    while (true) {
+      Entry existing = entries.putIfAbsent(key, entry);
+      if (existing == null) {
+        break;
+      }
+      if (existing.expiresAt > now || !existing.task.isDone()) {
+        if (!existing.fingerprint.equals(fingerprint))
+          throw new IllegalArgumentException("The idempotency key was used for a different request.");
+        return await(existing);
+      }
+      if (entries.replace(key, existing, entry)) {
+        break;
+      }
+    }
+    order.add(entry);
+    entry.task.run();
+    try {
+      return await(entry);
+    } catch (RuntimeException | Error e) {
+      entries.remove(key, entry);
+      throw e;
+    } finally {
+      evict(now);
+    }
+  }
+
+  /**
+   * Returns the number of keys held by the cache.
+   *
+   * @return The number of keys.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Evicts the expired keys and, if the cache is full, the oldest keys.
+   *
+   * Eviction stops at the oldest key whose operation is still running,
+   * so the cache may hold more keys than its capacity for a while.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   */
+  private void evict(long now) {
+    Entry head;
+    while ((head = order.peek()) != null && head.task.isDone() && (head.expiresAt <= now || entries.size() > capacity)) {
+      if (order.remove(head)) {
+        entries.remove(head.key, head);
+      }
+    }
+  }
+
+  /**
+   * Waits for an operation and returns its transaction.
+   *
+   * @param entry The remembered operation.
+   * @return The transaction of the operation.
+   */
+  private static Transaction await(Entry entry) {
+    try {
+      return entry.task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for the original operation.", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package com.troyekizzz.app;
+
+/**
+ * A class that represents a withdrawal that is greater than the available balance.
+ *
+ * @author TroyeKizzz
+ */
+public class InsufficientFundsException extends IllegalArgumentException {
+  /**
+   * The serialization version.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates a new exception.
+   *
+   * @param message The message.
+   */
+  public InsufficientFundsException(String message) {
+    super(message);
+  }
+}
@@ -1,9 +1,23 @@
 package com.troyekizzz.app;
 
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.DunningLevel;
 import com.troyekizzz.app.utils.InvoiceStatus;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * A class that represents an invoice.
@@ -11,16 +25,74 @@ import lombok.Data;
  * @author TroyeKizzz
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Invoice {
+  /**
+   * A part of the invoice amount that is due on its own date.
+   */
+  @Getter
+  public static class Installment {
+    /**
+     * The amount of the installment.
+     */
+    private final float amount;
+
+    /**
+     * The date the installment is due.
+     */
+    @Getter(AccessLevel.NONE)
+    private final Date dueDate;
+
+    /**
+     * Creates a new installment.
+     *
+     * @param amount  The amount of the installment.
+     * @param dueDate The date the installment is due.
+     */
+    public Installment(float amount, Date dueDate) {
+      this.amount = amount;
+      this.dueDate = dueDate == null ? null : new Date(dueDate.getTime());
+    }
+
+    /**
+     * Returns the date the installment is due.
+     *
+     * @return A copy of the due date.
+     */
+    public Date getDueDate() {
+      return dueDate == null ? null : new Date(dueDate.getTime());
+    }
+  }
+
+  /**
+   * The largest difference between amounts that are still considered equal.
+   */
+  private static final float TOLERANCE = 0.005f;
+
+  /**
+   * The source of invoice ids.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The invoice id. Equality and hash codes are based on it only.
+   */
+  @EqualsAndHashCode.Include
+  private final long id = nextId.getAndIncrement();
+
   /**
    * The customer who sent the invoice.
+   * 
+   * The invoice registry indexes it, so it cannot change.
    */
-  private Customer from;
+  private final Customer from;
 
   /**
    * The customer who receives the invoice.
+   * 
+   * The invoice registry indexes it, so it cannot change.
    */
-  private Customer to;
+  private final Customer to;
 
   /**
    * The account of from which the invoice is paid.
@@ -44,8 +116,10 @@ public class Invoice {
 
   /**
    * The serial number of the invoice.
+   * 
+   * The invoice registry indexes it, so it cannot change.
    */
-  private String number;
+  private final String number;
 
   /**
    * The status of the invoice.
@@ -57,6 +131,50 @@ public class Invoice {
    */
   private float taxPercentage;
 
+  /**
+   * The date the invoice is due, or null if it has none.
+   * 
+   * The invoice registry indexes it, so it is copied on the way in and out.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private volatile Date dueDate = null;
+
+  /**
+   * The amount paid so far.
+   */
+  @Setter(AccessLevel.NONE)
+  private float paidAmount = 0;
+
+  /**
+   * The installments the amount is paid in, empty if it is paid at once.
+   */
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  private List<Installment> installments = new ArrayList<>();
+
+  /**
+   * How far the dunning of the invoice has escalated.
+   */
+  @Setter(AccessLevel.PACKAGE)
+  private DunningLevel dunningLevel = DunningLevel.NONE;
+
+  /**
+   * The registry the invoice is in, or null if it is not registered.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  @Setter(AccessLevel.PACKAGE)
+  @ToString.Exclude
+  private InvoiceRegistry registry = null;
+
+  /**
+   * The dunning scheduler that tracks the invoice, or null if none does.
+   */
+  @Getter(AccessLevel.PACKAGE)
+  @Setter(AccessLevel.PACKAGE)
+  @ToString.Exclude
+  private DunningScheduler dunning = null;
+
   /**
    * Creates a new invoice.
    * 
@@ -74,7 +192,157 @@ public class Invoice {
     this.currency = currency;
     this.taxPercentage = taxPercentage;
     this.status = InvoiceStatus.UNACCEPTED;
-    this.number = String.valueOf((int) (Math.random() * 1000000));
+    this.number = IdService.getInstance().getGenerator().nextInvoiceNumber();
+  }
+
+  /**
+   * Creates a new invoice with a due date.
+   * 
+   * @param from          The customer who sends the invoice.
+   * @param to            The customer who receives the invoice.
+   * @param toAccount     The account of the customer who receives the invoice.
+   * @param amount        The amount of the invoice.
+   * @param currency      The currency of the invoice.
+   * @param taxPercentage The tax percentage for the invoiced items.
+   * @param dueDate       The date the invoice is due.
+   */
+  public Invoice(Customer from, Customer to, Account toAccount, float amount, Currency currency, float taxPercentage, Date dueDate) {
+    this(from, to, toAccount, amount, currency, taxPercentage);
+    this.dueDate = dueDate == null ? null : new Date(dueDate.getTime());
+  }
+
+  /**
+   * Sets the status of the invoice.
+   * 
+   * @param status The status.
+   */
+  public synchronized void setStatus(InvoiceStatus status) {
+    InvoiceStatus previous = this.status;
+    this.status = status;
+    if (this.registry != null && previous != status) {
+      this.registry.statusChanged(this, previous);
+    }
+  }
+
+  /**
+   * Returns the date the invoice is due.
+   * 
+   * @return A copy of the due date, or null if it has none.
+   */
+  public Date getDueDate() {
+    Date dueDate = this.dueDate;
+    return dueDate == null ? null : new Date(dueDate.getTime());
+  }
+
+  /**
+   * Sets the date the invoice is due.
+   * 
+   * Moving the due date starts the dunning of the invoice over.
+   * 
+   * @param dueDate The due date, or null for none.
+   */
+  public synchronized void setDueDate(Date dueDate) {
+    Date previous = this.dueDate;
+    this.dueDate = dueDate == null ? null : new Date(dueDate.getTime());
+    if (this.registry != null) {
+      this.registry.dueDateChanged(this, previous);
+    }
+    if (!Objects.equals(previous, dueDate)) {
+      this.dunningLevel = DunningLevel.NONE;
+      if (this.dunning != null) {
+        this.dunning.track(this);
+      }
+    }
+  }
+
+  /**
+   * Returns the installments the amount is paid in.
+   * 
+   * @return The installments, empty if the amount is paid at once.
+   */
+  public synchronized List<Installment> getInstallments() {
+    return Collections.unmodifiableList(new ArrayList<>(this.installments));
+  }
+
+  /**
+   * Sets the installments the amount is paid in.
+   * 
+   * The installments have to add up to the amount and be due in order.
+   * The invoice becomes due on the date of the first installment that is not paid.
+   * 
+   * @param installments The installments, empty to pay the amount at once.
+   */
+  public synchronized void setInstallments(List<Installment> installments) throws IllegalArgumentException {
+    if (this.status == InvoiceStatus.REJECTED || this.status == InvoiceStatus.PAID)
+      throw new IllegalArgumentException("The invoice is already rejected or paid.");
+    float total = 0;
+    Date previous = null;
+    for (Installment installment : installments) {
+      if (installment.getAmount() <= 0 || installment.getDueDate() == null)
+        throw new IllegalArgumentException("Every installment must have a positive amount and a due date.");
+      if (previous != null && installment.getDueDate().before(previous))
+        throw new IllegalArgumentException("The installments must be due in order.");
+      total += installment.getAmount();
+      previous = installment.getDueDate();
+    }
+    if (!installments.isEmpty() && Math.abs(total - this.amount) > TOLERANCE)
+      throw new IllegalArgumentException("The installments must add up to the amount.");
+    this.installments = new ArrayList<>(installments);
+    Installment next = getNextInstallment();
+    if (next != null) {
+      setDueDate(next.getDueDate());
+    }
+  }
+
+  /**
+   * Splits the amount into equal installments due at an interval.
+   * 
+   * The last installment takes the cents left over from the rounding.
+   * 
+   * @param count        The number of installments. Positive.
+   * @param firstDueDate The date the first installment is due.
+   * @param intervalDays The number of days between two installments. Positive.
+   * @return The installments.
+   */
+  public synchronized List<Installment> planInstallments(int count, Date firstDueDate, int intervalDays) throws IllegalArgumentException {
+    if (count <= 0 || intervalDays <= 0)
+      throw new IllegalArgumentException("The number of installments and the interval must be positive.");
+    float part = Math.round(this.amount * 100 / count) / 100f;
+    Calendar calendar = Calendar.getInstance();
+    calendar.setTime(firstDueDate);
+    List<Installment> plan = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      float installment = i == count - 1 ? this.amount - part * (count - 1) : part;
+      plan.add(new Installment(installment, calendar.getTime()));
+      calendar.add(Calendar.DAY_OF_MONTH, intervalDays);
+    }
+    setInstallments(plan);
+    return getInstallments();
+  }
+
+  /**
+   * Returns the first installment that is not fully paid.
+   * 
+   * @return The installment, or null if there are no installments or all are paid.
+   */
+  public synchronized Installment getNextInstallment() {
+    float covered = 0;
+    for (Installment installment : this.installments) {
+      covered += installment.getAmount();
+      if (covered - this.paidAmount > TOLERANCE) {
+        return installment;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the amount that is not paid yet.
+   * 
+   * @return The outstanding amount.
+   */
+  public synchronized float getOutstandingAmount() {
+    return this.amount - this.paidAmount;
   }
 
   /**
@@ -103,13 +371,13 @@ public class Invoice {
    * 
    * @param fromAccount The account of the customer who sends the invoice.
    */
-  public void accept(Account fromAccount) {
+  public synchronized void accept(Account fromAccount) {
     if (Exchange.getInstance().convert(fromAccount.getCurrency(), this.currency, fromAccount.getBalance()) < this.amount) 
       throw new IllegalArgumentException("Not enough money on the account.");
     if (this.status != InvoiceStatus.UNACCEPTED) 
       throw new IllegalArgumentException("The invoice is already accepted.");
     this.fromAccount = fromAccount;
-    this.status = InvoiceStatus.FALLING_DUE;
+    setStatus(InvoiceStatus.FALLING_DUE);
   }
 
   /**
@@ -117,10 +385,10 @@ public class Invoice {
    * 
    * The invoice has to be previously unaccepted or accepted.
    */
-  public void reject() {
+  public synchronized void reject() {
     if (this.status == InvoiceStatus.REJECTED || this.status == InvoiceStatus.PAID)
       throw new IllegalArgumentException("The invoice is already rejected or paid.");
-    this.status = InvoiceStatus.REJECTED;
+    setStatus(InvoiceStatus.REJECTED);
   }
 
   /**
@@ -128,15 +396,54 @@ public class Invoice {
    * 
    * The invoice has to be previously falling due.
    * The customer has to have enough money on the account.
+   * 
+   * @return The transaction of the payment.
+   */
+  public synchronized Transaction pay() {
+    return pay(getOutstandingAmount());
+  }
+
+  /**
+   * Pays a part of the invoice.
+   * 
+   * The invoice is paid when nothing is outstanding. If it is paid in
+   * installments, it becomes due on the date of the next installment
+   * that is not fully paid.
+   * 
+   * @param amount The amount to pay, at most the outstanding amount.
+   * @return The transaction of the payment.
    */
-  public void pay() {
+  public synchronized Transaction pay(float amount) throws IllegalArgumentException {
     if (this.status != InvoiceStatus.FALLING_DUE) 
       throw new IllegalArgumentException("The invoice is not falling due.");
-    try {
-      Account.transfer(fromAccount, toAccount, amount);
-      this.status = InvoiceStatus.PAID;
-    } catch (IllegalArgumentException e) {
-      throw e;
+    if (amount <= 0)
+      throw new IllegalArgumentException("The amount must be positive.");
+    if (amount - getOutstandingAmount() > TOLERANCE)
+      throw new IllegalArgumentException("The amount is greater than the outstanding amount.");
+    Transaction transaction = Account.transfer(fromAccount, toAccount, amount);
+    this.paidAmount += amount;
+    if (getOutstandingAmount() <= TOLERANCE) {
+      this.paidAmount = this.amount;
+      setStatus(InvoiceStatus.PAID);
+      return transaction;
     }
+    Installment next = getNextInstallment();
+    if (next != null) {
+      setDueDate(next.getDueDate());
+    }
+    return transaction;
+  }
+
+  /**
+   * Pays the invoice at most once per idempotency key.
+   * 
+   * A retry with the same key returns the original transaction
+   * without paying the invoice again. The key belongs to the invoice.
+   * 
+   * @param idempotencyKey The key that identifies the payment request.
+   * @return The transaction of the payment.
+   */
+  public Transaction pay(String idempotencyKey) {
+    return IdempotencyCache.getInstance().execute("invoice:" + this.id + ":" + idempotencyKey, this::pay);
   }
 }
@@ -0,0 +1,157 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.troyekizzz.app.utils.InvoiceStatus;
+import com.troyekizzz.app.utils.PaymentOutcome;
+
+import lombok.Getter;
+
+/**
+ * A class that pays many invoices at once.
+ *
+ * The invoices are split by the account that pays them. The invoices of
+ * one account are paid one after another, so its postings stay in order,
+ * while different accounts are paid in parallel. Invoices that fail for
+ * insufficient funds are retried at the end of the run, in rounds as long
+ * as a round pays at least one of them, since the run itself may have
+ * brought money to their accounts.
+ *
+ * @author TroyeKizzz
+ */
+public class InvoicePaymentRun {
+  /**
+   * The number of threads that pay invoices.
+   */
+  @Getter
+  private final int parallelism;
+
+  /**
+   * Creates a new payment run with one thread per processor.
+   */
+  public InvoicePaymentRun() {
+    this(Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a new payment run.
+   *
+   * @param parallelism The number of threads that pay invoices. Positive.
+   */
+  public InvoicePaymentRun(int parallelism) throws IllegalArgumentException {
+    if (parallelism <= 0)
+      throw new IllegalArgumentException("The parallelism must be positive.");
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Pays invoices. Only invoices that are falling due are paid, the others are skipped.
+   *
+   * @param invoices The invoices.
+   * @return The report of the run.
+   */
+  public PaymentRunReport run(Collection<Invoice> invoices) throws IllegalStateException {
+    long start = System.nanoTime();
+    List<Invoice> all = new ArrayList<>(invoices);
+    PaymentOutcome[] outcomes = new PaymentOutcome[all.size()];
+    String[] errors = new String[all.size()];
+    List<Integer> pending = new ArrayList<>(all.size());
+    for (int i = 0; i < all.size(); i++) {
+      Invoice invoice = all.get(i);
+      if (invoice.getStatus() != InvoiceStatus.FALLING_DUE || invoice.getFromAccount() == null) {
+        outcomes[i] = PaymentOutcome.SKIPPED;
+        errors[i] = "The invoice is not falling due.";
+      } else {
+        pending.add(i);
+      }
+    }
+    int retryRounds = 0;
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+      Thread thread = new Thread(runnable, "invoice-payment-run");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      payRound(executor, all, pending, outcomes, errors);
+      while (true) {
+        List<Integer> retry = new ArrayList<>();
+        for (int index : pending) {
+          if (outcomes[index] == PaymentOutcome.INSUFFICIENT_FUNDS) {
+            retry.add(index);
+          }
+        }
+        if (retry.isEmpty()) {
+          break;
+        }
+        retryRounds++;
+        if (payRound(executor, all, retry, outcomes, errors) == 0) {
+          break;
+        }
+        pending = retry;
+      }
+    } finally {
+      executor.shutdown();
+    }
+    return new PaymentRunReport(all, Arrays.asList(outcomes), Arrays.asList(errors), retryRounds, System.nanoTime() - start);
+  }
+
+  /**
+   * Pays some invoices, one task per paying account.
+   *
+   * @param executor The threads.
+   * @param invoices The invoices of the run.
+   * @param indexes  The positions of the invoices to pay.
+   * @param outcomes The outcome of each invoice.
+   * @param errors   The reason each invoice was not paid.
+   * @return The number of invoices paid.
+   */
+  private static int payRound(ExecutorService executor, List<Invoice> invoices, List<Integer> indexes,
+      PaymentOutcome[] outcomes, String[] errors) throws IllegalStateException {
+    Map<Account, List<Integer>> partitions = new LinkedHashMap<>();
+    for (int index : indexes) {
+      partitions.computeIfAbsent(invoices.get(index).getFromAccount(), account -> new ArrayList<>()).add(index);
+    }
+    List<Future<Integer>> results = new ArrayList<>(partitions.size());
+    for (List<Integer> partition : partitions.values()) {
+      results.add(executor.submit(() -> {
+        int paid = 0;
+        for (int index : partition) {
+          try {
+            invoices.get(index).pay();
+            outcomes[index] = PaymentOutcome.PAID;
+            errors[index] = null;
+            paid++;
+          } catch (InsufficientFundsException e) {
+            outcomes[index] = PaymentOutcome.INSUFFICIENT_FUNDS;
+            errors[index] = e.getMessage();
+          } catch (IllegalArgumentException | IllegalStateException e) {
+            outcomes[index] = PaymentOutcome.FAILED;
+            errors[index] = e.getMessage();
+          }
+        }
+        return paid;
+      }));
+    }
+    int paid = 0;
+    try {
+      for (Future<Integer> result : results) {
+        paid += result.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("The payment run was interrupted.", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("The payment run failed.", e.getCause());
+    }
+    return paid;
+  }
+}
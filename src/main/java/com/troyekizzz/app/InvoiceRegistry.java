@@ -0,0 +1,298 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.troyekizzz.app.utils.InvoiceStatus;
+
+/**
+ * A class that represents the invoices of a bank.
+ *
+ * The invoices are indexed by number, by payer, by payee, by status and by
+ * due date. A registered invoice tells the registry when its status or due
+ * date changes, so the indexes are moved in constant time, or in
+ * logarithmic time for the due dates.
+ *
+ * The payer is the customer whose account pays the invoice, i.e.
+ * {@link Invoice#getFrom()}, and the payee is the customer paid, i.e.
+ * {@link Invoice#getTo()}.
+ *
+ * @author TroyeKizzz
+ */
+public class InvoiceRegistry {
+  /**
+   * The invoices by number.
+   */
+  private final Map<String, Invoice> byNumber = new HashMap<>();
+
+  /**
+   * The invoices by payer.
+   */
+  private final Map<Customer, Set<Invoice>> byPayer = new HashMap<>();
+
+  /**
+   * The invoices by payee.
+   */
+  private final Map<Customer, Set<Invoice>> byPayee = new HashMap<>();
+
+  /**
+   * The invoices by status.
+   */
+  private final Map<InvoiceStatus, Set<Invoice>> byStatus = new EnumMap<>(InvoiceStatus.class);
+
+  /**
+   * The invoices by due date in milliseconds since the epoch.
+   */
+  private final TreeMap<Long, Set<Invoice>> byDueDate = new TreeMap<>();
+
+  /**
+   * Adds an invoice.
+   *
+   * @param invoice The invoice.
+   */
+  public void register(Invoice invoice) throws IllegalArgumentException {
+    synchronized (invoice) {
+      synchronized (this) {
+        if (byNumber.containsKey(invoice.getNumber()))
+          throw new IllegalArgumentException("The invoice is already registered.");
+        if (invoice.getRegistry() != null)
+          throw new IllegalArgumentException("The invoice is registered elsewhere.");
+        byNumber.put(invoice.getNumber(), invoice);
+        add(byPayer, invoice.getFrom(), invoice);
+        add(byPayee, invoice.getTo(), invoice);
+        add(byStatus, invoice.getStatus(), invoice);
+        if (invoice.getDueDate() != null) {
+          add(byDueDate, invoice.getDueDate().getTime(), invoice);
+        }
+        invoice.setRegistry(this);
+      }
+    }
+  }
+
+  /**
+   * Removes an invoice.
+   *
+   * @param invoice The invoice.
+   * @return True if the invoice was registered, false otherwise.
+   */
+  public boolean remove(Invoice invoice) {
+    synchronized (invoice) {
+      synchronized (this) {
+        if (byNumber.get(invoice.getNumber()) != invoice) {
+          return false;
+        }
+        byNumber.remove(invoice.getNumber());
+        remove(byPayer, invoice.getFrom(), invoice);
+        remove(byPayee, invoice.getTo(), invoice);
+        remove(byStatus, invoice.getStatus(), invoice);
+        if (invoice.getDueDate() != null) {
+          remove(byDueDate, invoice.getDueDate().getTime(), invoice);
+        }
+        invoice.setRegistry(null);
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Returns the number of invoices.
+   *
+   * @return The number of invoices.
+   */
+  public synchronized int size() {
+    return byNumber.size();
+  }
+
+  /**
+   * Returns an invoice by its number.
+   *
+   * @param number The number.
+   * @return The invoice, or null if there is none.
+   */
+  public synchronized Invoice findByNumber(String number) {
+    return byNumber.get(number);
+  }
+
+  /**
+   * Returns the invoices of a payer.
+   *
+   * @param payer The payer.
+   * @return The invoices in the order they were registered.
+   */
+  public synchronized List<Invoice> findByPayer(Customer payer) {
+    return copy(byPayer.get(payer));
+  }
+
+  /**
+   * Returns the invoices of a payer with a status.
+   *
+   * @param payer  The payer.
+   * @param status The status.
+   * @return The invoices.
+   */
+  public synchronized List<Invoice> findByPayer(Customer payer, InvoiceStatus status) {
+    return filter(byPayer.get(payer), status);
+  }
+
+  /**
+   * Returns the invoices of a payee.
+   *
+   * @param payee The payee.
+   * @return The invoices in the order they were registered.
+   */
+  public synchronized List<Invoice> findByPayee(Customer payee) {
+    return copy(byPayee.get(payee));
+  }
+
+  /**
+   * Returns the invoices of a payee with a status.
+   *
+   * @param payee  The payee.
+   * @param status The status.
+   * @return The invoices.
+   */
+  public synchronized List<Invoice> findByPayee(Customer payee, InvoiceStatus status) {
+    return filter(byPayee.get(payee), status);
+  }
+
+  /**
+   * Returns the invoices with a status.
+   *
+   * @param status The status.
+   * @return The invoices.
+   */
+  public synchronized List<Invoice> findByStatus(InvoiceStatus status) {
+    return copy(byStatus.get(status));
+  }
+
+  /**
+   * Returns the number of invoices with a status.
+   *
+   * @param status The status.
+   * @return The number of invoices.
+   */
+  public synchronized int countByStatus(InvoiceStatus status) {
+    Set<Invoice> invoices = byStatus.get(status);
+    return invoices == null ? 0 : invoices.size();
+  }
+
+  /**
+   * Returns the invoices due in a period.
+   *
+   * @param from  The start of the period, inclusive.
+   * @param until The end of the period, exclusive.
+   * @return The invoices, the earliest due date first.
+   */
+  public synchronized List<Invoice> findByDueDate(Date from, Date until) {
+    List<Invoice> found = new ArrayList<>();
+    for (Set<Invoice> invoices : byDueDate.subMap(from.getTime(), until.getTime()).values()) {
+      found.addAll(invoices);
+    }
+    return found;
+  }
+
+  /**
+   * Returns the invoices due in a period with a status.
+   *
+   * @param from   The start of the period, inclusive.
+   * @param until  The end of the period, exclusive.
+   * @param status The status.
+   * @return The invoices, the earliest due date first.
+   */
+  public synchronized List<Invoice> findByDueDate(Date from, Date until, InvoiceStatus status) {
+    List<Invoice> found = new ArrayList<>();
+    for (Set<Invoice> invoices : byDueDate.subMap(from.getTime(), until.getTime()).values()) {
+      found.addAll(filter(invoices, status));
+    }
+    return found;
+  }
+
+  /**
+   * Moves an invoice to the index of its new status.
+   *
+   * @param invoice  The invoice.
+   * @param previous The previous status.
+   */
+  synchronized void statusChanged(Invoice invoice, InvoiceStatus previous) {
+    remove(byStatus, previous, invoice);
+    add(byStatus, invoice.getStatus(), invoice);
+  }
+
+  /**
+   * Moves an invoice to the index of its new due date.
+   *
+   * @param invoice  The invoice.
+   * @param previous The previous due date, or null if there was none.
+   */
+  synchronized void dueDateChanged(Invoice invoice, Date previous) {
+    if (previous != null) {
+      remove(byDueDate, previous.getTime(), invoice);
+    }
+    if (invoice.getDueDate() != null) {
+      add(byDueDate, invoice.getDueDate().getTime(), invoice);
+    }
+  }
+
+  /**
+   * Adds an invoice to an index.
+   *
+   * @param index   The index.
+   * @param key     The key.
+   * @param invoice The invoice.
+   */
+  private static <K> void add(Map<K, Set<Invoice>> index, K key, Invoice invoice) {
+    index.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(invoice);
+  }
+
+  /**
+   * Removes an invoice from an index.
+   *
+   * @param index   The index.
+   * @param key     The key.
+   * @param invoice The invoice.
+   */
+  private static <K> void remove(Map<K, Set<Invoice>> index, K key, Invoice invoice) {
+    Set<Invoice> invoices = index.get(key);
+    if (invoices != null && invoices.remove(invoice) && invoices.isEmpty()) {
+      index.remove(key);
+    }
+  }
+
+  /**
+   * Returns a copy of some invoices.
+   *
+   * @param invoices The invoices, or null.
+   * @return The copy.
+   */
+  private static List<Invoice> copy(Collection<Invoice> invoices) {
+    return invoices == null ? Collections.emptyList() : new ArrayList<>(invoices);
+  }
+
+  /**
+   * Returns the invoices with a status.
+   *
+   * @param invoices The invoices, or null.
+   * @param status   The status.
+   * @return The invoices with the status.
+   */
+  private static List<Invoice> filter(Collection<Invoice> invoices, InvoiceStatus status) {
+    List<Invoice> found = new ArrayList<>();
+    if (invoices != null) {
+      for (Invoice invoice : invoices) {
+        if (invoice.getStatus() == status) {
+          found.add(invoice);
+        }
+      }
+    }
+    return found;
+  }
+}
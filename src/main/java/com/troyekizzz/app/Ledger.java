@@ -0,0 +1,296 @@
+package com.troyekizzz.app;
+
+import java.util.Arrays;
+
+import com.troyekizzz.app.utils.PostingType;
+
+/**
+ * A class that represents an append-only ledger of account postings.
+ *
+ * The postings are stored column by column in fixed-size chunks of
+ * primitive arrays, so appending never copies existing postings and
+ * every posting costs the same amount of memory.
+ *
+ * Every {@link #CHECKPOINT_INTERVAL} postings the ledger stores the running
+ * balance, so the balance at any moment is found by a binary search over
+ * the checkpoints and a replay of at most that many postings.
+ *
+ * The ledger is thread-safe. Appending only holds the lock for a few
+ * array writes, so it stays short even for accounts credited by many
+ * threads at once.
+ *
+ * @author TroyeKizzz
+ */
+public class Ledger {
+  /**
+   * The number of postings in one chunk, as a power of two.
+   */
+  static final int CHUNK_SHIFT = 10;
+
+  /**
+   * The number of postings in one chunk.
+   */
+  static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+
+  /**
+   * The mask that gives the position of a posting inside its chunk.
+   */
+  private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+  /**
+   * The number of postings between two balance checkpoints.
+   */
+  static final int CHECKPOINT_INTERVAL = 64;
+
+  /**
+   * The posting types by their ordinals.
+   */
+  private static final PostingType[] POSTING_TYPES = PostingType.values();
+
+  /**
+   * A callback that receives postings during iteration.
+   */
+  public interface Visitor {
+    /**
+     * Visits a posting.
+     *
+     * @param timestamp    The posting time in milliseconds since the epoch.
+     * @param amount       The signed amount in the account currency.
+     * @param counterparty The id of the counterparty account, or 0 if there is none.
+     * @param type         The posting type.
+     * @return True to continue the iteration, false to stop it.
+     */
+    boolean visit(long timestamp, float amount, long counterparty, PostingType type);
+  }
+
+  /**
+   * The posting times in milliseconds since the epoch.
+   */
+  private long[][] timestamps = new long[1][];
+
+  /**
+   * The signed posting amounts in the account currency.
+   */
+  private float[][] amounts = new float[1][];
+
+  /**
+   * The ids of the counterparty accounts.
+   */
+  private long[][] counterparties = new long[1][];
+
+  /**
+   * The posting types, stored as their ordinals.
+   */
+  private byte[][] types = new byte[1][];
+
+  /**
+   * The number of postings in the ledger.
+   */
+  private int size = 0;
+
+  /**
+   * The time of the latest posting.
+   */
+  private long lastTimestamp = Long.MIN_VALUE;
+
+  /**
+   * The running balance after the latest posting.
+   */
+  private float balance = 0;
+
+  /**
+   * The balance checkpoints. Checkpoint i is the balance before
+   * posting i * CHECKPOINT_INTERVAL.
+   */
+  private float[] checkpoints = new float[16];
+
+  /**
+   * Appends a posting to the ledger.
+   *
+   * The postings are kept in time order, so a timestamp earlier than
+   * the latest posting is moved forward to the time of the latest posting.
+   *
+   * Only the account posts to its ledger, together with the change of its
+   * balance, so the two always agree.
+   *
+   * @param timestamp    The posting time in milliseconds since the epoch.
+   * @param amount       The signed amount in the account currency.
+   * @param counterparty The id of the counterparty account, or 0 if there is none.
+   * @param type         The posting type.
+   */
+  synchronized void append(long timestamp, float amount, long counterparty, PostingType type) {
+    int chunk = size >>> CHUNK_SHIFT;
+    int offset = size & CHUNK_MASK;
+    if (offset == 0) {
+      allocateChunk(chunk);
+    }
+    if (timestamp < lastTimestamp) {
+      timestamp = lastTimestamp;
+    }
+    if (size % CHECKPOINT_INTERVAL == 0) {
+      int checkpoint = size / CHECKPOINT_INTERVAL;
+      if (checkpoint == checkpoints.length) {
+        checkpoints = Arrays.copyOf(checkpoints, checkpoints.length * 2);
+      }
+      checkpoints[checkpoint] = balance;
+    }
+    timestamps[chunk][offset] = timestamp;
+    amounts[chunk][offset] = amount;
+    counterparties[chunk][offset] = counterparty;
+    types[chunk][offset] = (byte) type.ordinal();
+    lastTimestamp = timestamp;
+    balance += amount;
+    size++;
+  }
+
+  /**
+   * Returns the balance at a given moment.
+   *
+   * The balance includes every posting made at or before the given time.
+   *
+   * @param timestamp The time in milliseconds since the epoch.
+   * @return The balance in the account currency.
+   */
+  public synchronized float balanceAsOf(long timestamp) {
+    if (size == 0 || timestamp < getTimestamp(0)) {
+      return 0;
+    }
+    // Find the last checkpoint whose first posting is not after the given time.
+    int low = 0;
+    int high = (size - 1) / CHECKPOINT_INTERVAL;
+    while (low < high) {
+      int middle = (low + high + 1) >>> 1;
+      if (getTimestamp(middle * CHECKPOINT_INTERVAL) <= timestamp) {
+        low = middle;
+      } else {
+        high = middle - 1;
+      }
+    }
+    float result = checkpoints[low];
+    int end = Math.min(size, (low + 1) * CHECKPOINT_INTERVAL);
+    for (int index = low * CHECKPOINT_INTERVAL; index < end; index++) {
+      int chunk = index >>> CHUNK_SHIFT;
+      int offset = index & CHUNK_MASK;
+      if (timestamps[chunk][offset] > timestamp) {
+        break;
+      }
+      result += amounts[chunk][offset];
+    }
+    return result;
+  }
+
+  /**
+   * Returns the balance after the latest posting.
+   *
+   * @return The balance in the account currency.
+   */
+  public synchronized float getBalance() {
+    return balance;
+  }
+
+  /**
+   * Returns the number of postings in the ledger.
+   *
+   * @return The number of postings.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the time of a posting.
+   *
+   * @param index The posting index, the oldest posting being 0.
+   * @return The posting time in milliseconds since the epoch.
+   */
+  public synchronized long getTimestamp(int index) throws IndexOutOfBoundsException {
+    checkIndex(index);
+    return timestamps[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the signed amount of a posting.
+   *
+   * @param index The posting index, the oldest posting being 0.
+   * @return The signed amount in the account currency.
+   */
+  public synchronized float getAmount(int index) throws IndexOutOfBoundsException {
+    checkIndex(index);
+    return amounts[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the counterparty of a posting.
+   *
+   * @param index The posting index, the oldest posting being 0.
+   * @return The id of the counterparty account, or 0 if there is none.
+   */
+  public synchronized long getCounterparty(int index) throws IndexOutOfBoundsException {
+    checkIndex(index);
+    return counterparties[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+  }
+
+  /**
+   * Returns the type of a posting.
+   *
+   * @param index The posting index, the oldest posting being 0.
+   * @return The posting type.
+   */
+  public synchronized PostingType getType(int index) throws IndexOutOfBoundsException {
+    checkIndex(index);
+    return POSTING_TYPES[types[index >>> CHUNK_SHIFT][index & CHUNK_MASK]];
+  }
+
+  /**
+   * Visits the postings from the newest to the oldest.
+   *
+   * @param visitor The callback that receives the postings.
+   */
+  public synchronized void forEachReverse(Visitor visitor) {
+    for (int index = size - 1; index >= 0; ) {
+      int chunk = index >>> CHUNK_SHIFT;
+      long[] chunkTimestamps = timestamps[chunk];
+      float[] chunkAmounts = amounts[chunk];
+      long[] chunkCounterparties = counterparties[chunk];
+      byte[] chunkTypes = types[chunk];
+      for (int offset = index & CHUNK_MASK; offset >= 0; offset--, index--) {
+        if (!visitor.visit(chunkTimestamps[offset], chunkAmounts[offset], chunkCounterparties[offset], POSTING_TYPES[chunkTypes[offset]])) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Allocates a new chunk, growing the chunk directory if it is full.
+   *
+   * Only the directory of chunk references is copied when it grows,
+   * the postings themselves stay where they are.
+   *
+   * @param chunk The index of the chunk to allocate.
+   */
+  private void allocateChunk(int chunk) {
+    if (chunk == timestamps.length) {
+      int length = timestamps.length * 2;
+      timestamps = Arrays.copyOf(timestamps, length);
+      amounts = Arrays.copyOf(amounts, length);
+      counterparties = Arrays.copyOf(counterparties, length);
+      types = Arrays.copyOf(types, length);
+    }
+    timestamps[chunk] = new long[CHUNK_SIZE];
+    amounts[chunk] = new float[CHUNK_SIZE];
+    counterparties[chunk] = new long[CHUNK_SIZE];
+    types[chunk] = new byte[CHUNK_SIZE];
+  }
+
+  /**
+   * Checks that a posting index is inside the ledger.
+   *
+   * @param index The posting index.
+   */
+  private void checkIndex(int index) throws IndexOutOfBoundsException {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Posting " + index + " does not exist.");
+    }
+  }
+}
@@ -0,0 +1,22 @@
+package com.troyekizzz.app;
+
+/**
+ * An interface of something with a place on the map.
+ *
+ * @author TroyeKizzz
+ */
+public interface Located {
+  /**
+   * Returns the latitude.
+   *
+   * @return The latitude in degrees, or NaN if the place is not known.
+   */
+  double getLatitude();
+
+  /**
+   * Returns the longitude.
+   *
+   * @return The longitude in degrees, or NaN if the place is not known.
+   */
+  double getLongitude();
+}
@@ -0,0 +1,297 @@
+package com.troyekizzz.app;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.troyekizzz.app.utils.Currency;
+
+import lombok.Getter;
+
+/**
+ * A class that represents the append-only file where an offline ATM
+ * queues its cash operations until they can be sent to the bank.
+ *
+ * Every operation is one line, written and synced to the disk before the
+ * operation is approved, so the queue survives a restart of the ATM.
+ * Every line ends with a checksum of its content and a line break, so a
+ * line that a crash cut short is recognised and skipped, even if what is
+ * left of it would still parse.
+ * Card numbers are not written; every operation holds a keyed hash of
+ * the card number instead. When an operation has been sent to the bank,
+ * a line marking it applied is synced too, so a replay that stops
+ * halfway does not send it again.
+ *
+ * @author TroyeKizzz
+ */
+public class OfflineJournal {
+  /**
+   * A queued cash operation.
+   */
+  @Getter
+  public static class Entry {
+    /**
+     * The id of the operation in the journal.
+     */
+    private final long id;
+
+    /**
+     * True if the operation is a withdrawal, false if it is a deposit.
+     */
+    private final boolean withdrawal;
+
+    /**
+     * The keyed hash of the number of the card that was used.
+     */
+    private final String cardToken;
+
+    /**
+     * The amount of the operation.
+     */
+    private final float amount;
+
+    /**
+     * The currency of the operation.
+     */
+    private final Currency currency;
+
+    /**
+     * The time of the operation in milliseconds since the epoch.
+     */
+    private final long timestamp;
+
+    /**
+     * Creates a new entry.
+     *
+     * @param id         The id of the operation in the journal.
+     * @param withdrawal True if the operation is a withdrawal, false if it is a deposit.
+     * @param cardToken  The keyed hash of the number of the card that was used.
+     * @param amount     The amount of the operation.
+     * @param currency   The currency of the operation.
+     * @param timestamp  The time of the operation.
+     */
+    Entry(long id, boolean withdrawal, String cardToken, float amount, Currency currency, long timestamp) {
+      this.id = id;
+      this.withdrawal = withdrawal;
+      this.cardToken = cardToken;
+      this.amount = amount;
+      this.currency = currency;
+      this.timestamp = timestamp;
+    }
+  }
+
+  /**
+   * The journal file.
+   */
+  @Getter
+  private final Path file;
+
+  /**
+   * The key of the card number hashes.
+   */
+  private final SecretKeySpec key;
+
+  /**
+   * The stream that appends to the journal file.
+   */
+  private FileOutputStream output;
+
+  /**
+   * The id of the next operation.
+   */
+  private long nextId = 1;
+
+  /**
+   * Opens a journal, keeping the operations already in the file.
+   *
+   * @param file The journal file.
+   * @param key  The key of the card number hashes. The same key must be used to read the file again.
+   */
+  public OfflineJournal(Path file, byte[] key) throws IllegalStateException {
+    this.file = file;
+    this.key = new SecretKeySpec(key, "HmacSHA256");
+    try {
+      boolean cutShort = false;
+      if (Files.exists(file) && Files.size(file) > 0) {
+        try (RandomAccessFile existing = new RandomAccessFile(file.toFile(), "r")) {
+          existing.seek(existing.length() - 1);
+          cutShort = existing.read() != '\n';
+        }
+      }
+      this.output = new FileOutputStream(file.toFile(), true);
+      if (cutShort) {
+        output.write('\n');
+        output.getFD().sync();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("The offline journal cannot be opened.", e);
+    }
+    for (Entry entry : read(false)) {
+      nextId = Math.max(nextId, entry.getId() + 1);
+    }
+  }
+
+  /**
+   * Returns the keyed hash of a card number that operations with the card are written with.
+   *
+   * @param cardNumber The card number.
+   * @return The hash in hexadecimal.
+   */
+  public String tokenize(String cardNumber) throws IllegalStateException {
+    try {
+      Mac mac = Mac.getInstance("HmacSHA256");
+      mac.init(key);
+      byte[] hash = mac.doFinal(cardNumber.getBytes(StandardCharsets.UTF_8));
+      StringBuilder builder = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        builder.append(String.format("%02x", b));
+      }
+      return builder.toString();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("The card number cannot be hashed.", e);
+    }
+  }
+
+  /**
+   * Appends an operation and syncs it to the disk.
+   *
+   * @param withdrawal True if the operation is a withdrawal, false if it is a deposit.
+   * @param cardNumber The number of the card that was used.
+   * @param amount     The amount of the operation.
+   * @param currency   The currency of the operation.
+   * @param timestamp  The time of the operation.
+   * @return The queued operation.
+   */
+  public synchronized Entry append(boolean withdrawal, String cardNumber, float amount, Currency currency, long timestamp) throws IllegalStateException {
+    Entry entry = new Entry(nextId, withdrawal, tokenize(cardNumber), amount, currency, timestamp);
+    write((withdrawal ? "W" : "D") + ";" + entry.getId() + ";" + entry.getCardToken() + ";" + amount
+      + ";" + currency + ";" + timestamp);
+    nextId++;
+    return entry;
+  }
+
+  /**
+   * Marks an operation as sent to the bank and syncs the mark to the disk.
+   *
+   * @param entry The operation.
+   */
+  public synchronized void markApplied(Entry entry) throws IllegalStateException {
+    write("A;" + entry.getId());
+  }
+
+  /**
+   * Reads the operations that are not marked as sent, in the order they were appended.
+   *
+   * A line that was cut short by a crash is skipped.
+   *
+   * @return The operations.
+   */
+  public synchronized List<Entry> readAll() throws IllegalStateException {
+    return read(true);
+  }
+
+  /**
+   * Removes all operations from the journal.
+   */
+  public synchronized void clear() throws IllegalStateException {
+    try {
+      output.close();
+      this.output = new FileOutputStream(file.toFile(), false);
+    } catch (IOException e) {
+      throw new IllegalStateException("The offline journal cannot be cleared.", e);
+    }
+  }
+
+  /**
+   * Closes the journal file.
+   */
+  public synchronized void close() throws IllegalStateException {
+    try {
+      output.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("The offline journal cannot be closed.", e);
+    }
+  }
+
+  /**
+   * Writes a record as a line with its checksum and syncs it to the disk.
+   *
+   * @param record The record, without a line break.
+   */
+  private void write(String record) throws IllegalStateException {
+    try {
+      output.write((record + ";" + checksum(record) + "\n").getBytes(StandardCharsets.UTF_8));
+      output.getFD().sync();
+    } catch (IOException e) {
+      throw new IllegalStateException("The offline journal cannot be written.", e);
+    }
+  }
+
+  /**
+   * Returns the checksum of a record.
+   *
+   * @param record The record.
+   * @return The CRC-32 of the record in eight hexadecimal digits.
+   */
+  private static String checksum(String record) {
+    CRC32 crc = new CRC32();
+    crc.update(record.getBytes(StandardCharsets.UTF_8));
+    return String.format("%08x", crc.getValue());
+  }
+
+  /**
+   * Reads the operations in the order they were appended.
+   *
+   * A line without its line break or with a wrong checksum is skipped.
+   *
+   * @param pendingOnly True to leave out the operations that are marked as sent.
+   * @return The operations.
+   */
+  private List<Entry> read(boolean pendingOnly) throws IllegalStateException {
+    List<Entry> entries = new ArrayList<>();
+    Set<Long> applied = new HashSet<>();
+    String content;
+    try {
+      content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new IllegalStateException("The offline journal cannot be read.", e);
+    }
+    int start = 0;
+    int end;
+    while ((end = content.indexOf('\n', start)) >= 0) {
+      String line = content.substring(start, end);
+      start = end + 1;
+      int separator = line.lastIndexOf(';');
+      if (separator < 0 || !line.substring(separator + 1).equals(checksum(line.substring(0, separator)))) {
+        continue;
+      }
+      String[] fields = line.substring(0, separator).split(";");
+      try {
+        if (fields.length == 2 && fields[0].equals("A")) {
+          applied.add(Long.parseLong(fields[1]));
+        } else if (fields.length == 6 && (fields[0].equals("W") || fields[0].equals("D"))) {
+          entries.add(new Entry(Long.parseLong(fields[1]), fields[0].equals("W"), fields[2],
+            Float.parseFloat(fields[3]), Currency.valueOf(fields[4]), Long.parseLong(fields[5])));
+        }
+      } catch (IllegalArgumentException e) {
+        continue;
+      }
+    }
+    if (pendingOnly) {
+      entries.removeIf(entry -> applied.contains(entry.getId()));
+    }
+    return entries;
+  }
+}
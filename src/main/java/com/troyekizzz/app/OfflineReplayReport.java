@@ -0,0 +1,34 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * A class that represents the result of sending the queued operations
+ * of an offline ATM to the bank.
+ *
+ * @author TroyeKizzz
+ */
+@Getter
+public class OfflineReplayReport {
+  /**
+   * The transactions of the operations that were applied to the accounts.
+   */
+  private List<Transaction> applied = new ArrayList<>();
+
+  /**
+   * The descriptions of the operations that could not be applied.
+   */
+  private List<String> conflicts = new ArrayList<>();
+
+  /**
+   * Returns true if all operations were applied.
+   *
+   * @return True if there were no conflicts, false otherwise.
+   */
+  public boolean isClean() {
+    return conflicts.isEmpty();
+  }
+}
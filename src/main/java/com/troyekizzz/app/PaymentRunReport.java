@@ -0,0 +1,94 @@
+package com.troyekizzz.app;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.troyekizzz.app.utils.PaymentOutcome;
+
+import lombok.Getter;
+
+/**
+ * A class that represents the result of a batch invoice payment run.
+ *
+ * @author TroyeKizzz
+ */
+@Getter
+public class PaymentRunReport {
+  /**
+   * The invoices of the run in the order they were given.
+   */
+  private final List<Invoice> invoices;
+
+  /**
+   * The outcome of each invoice, in the order of {@link #invoices}.
+   */
+  private final List<PaymentOutcome> outcomes;
+
+  /**
+   * The reason each invoice was not paid, or null for the paid ones.
+   */
+  private final List<String> errors;
+
+  /**
+   * The number of retry rounds for insufficient funds.
+   */
+  private final int retryRounds;
+
+  /**
+   * The duration of the run in nanoseconds.
+   */
+  private final long elapsedNanos;
+
+  /**
+   * Creates a new report.
+   *
+   * @param invoices     The invoices of the run.
+   * @param outcomes     The outcome of each invoice.
+   * @param errors       The reason each invoice was not paid.
+   * @param retryRounds  The number of retry rounds.
+   * @param elapsedNanos The duration of the run in nanoseconds.
+   */
+  public PaymentRunReport(List<Invoice> invoices, List<PaymentOutcome> outcomes, List<String> errors, int retryRounds, long elapsedNanos) {
+    this.invoices = Collections.unmodifiableList(invoices);
+    this.outcomes = Collections.unmodifiableList(outcomes);
+    this.errors = Collections.unmodifiableList(errors);
+    this.retryRounds = retryRounds;
+    this.elapsedNanos = elapsedNanos;
+  }
+
+  /**
+   * Returns the outcome of an invoice.
+   *
+   * @param invoice The invoice.
+   * @return The outcome, or null if the invoice was not in the run.
+   */
+  public PaymentOutcome getOutcome(Invoice invoice) {
+    int index = invoices.indexOf(invoice);
+    return index < 0 ? null : outcomes.get(index);
+  }
+
+  /**
+   * Returns the number of invoices with an outcome.
+   *
+   * @param outcome The outcome.
+   * @return The number of invoices.
+   */
+  public int getCount(PaymentOutcome outcome) {
+    int count = 0;
+    for (PaymentOutcome each : outcomes) {
+      if (each == outcome) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the number of invoices paid per second.
+   *
+   * @return The throughput.
+   */
+  public double getThroughput() {
+    return elapsedNanos == 0 ? 0 : getCount(PaymentOutcome.PAID) * 1e9 / elapsedNanos;
+  }
+}
@@ -0,0 +1,187 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import com.troyekizzz.app.utils.NotificationType;
+
+import lombok.Getter;
+
+/**
+ * A class that sends appointment reminders at set times before the appointments.
+ *
+ * The reminders wait in a hierarchical timing wheel, so adding and
+ * cancelling one takes constant time however many are waiting. The
+ * reminders that are due are handed to the delivery in batches.
+ *
+ * @author TroyeKizzz
+ */
+public class ReminderScheduler {
+  /**
+   * The default length of a tick of the wheel, 1 second in milliseconds.
+   */
+  public static final long DEFAULT_TICK = 1000;
+
+  /**
+   * The default largest number of reminders delivered at a time.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * The default times before an appointment that reminders are sent, 1 day and 1 hour.
+   */
+  private static final long[] DEFAULT_OFFSETS = {24 * 60 * 60 * 1000L, 60 * 60 * 1000L};
+
+  /**
+   * The waiting reminders.
+   */
+  private final TimingWheel<Appointment> wheel;
+
+  /**
+   * The times before an appointment that reminders are sent in milliseconds.
+   */
+  private volatile long[] offsets = DEFAULT_OFFSETS.clone();
+
+  /**
+   * The largest number of reminders delivered at a time.
+   */
+  @Getter
+  private volatile int batchSize = DEFAULT_BATCH_SIZE;
+
+  /**
+   * The delivery of due reminders.
+   */
+  private volatile Consumer<List<Appointment>> delivery = ReminderScheduler::sendDetails;
+
+  /**
+   * Creates a new scheduler starting now.
+   */
+  public ReminderScheduler() {
+    this(System.currentTimeMillis());
+  }
+
+  /**
+   * Creates a new scheduler.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   */
+  public ReminderScheduler(long now) {
+    this.wheel = new TimingWheel<>(DEFAULT_TICK, now);
+  }
+
+  /**
+   * Returns the times before an appointment that reminders are sent.
+   *
+   * @return The times in milliseconds.
+   */
+  public long[] getOffsets() {
+    return offsets.clone();
+  }
+
+  /**
+   * Sets the times before an appointment that reminders are sent.
+   *
+   * Appointments that are already scheduled keep their reminders.
+   *
+   * @param offsets The times in milliseconds. Not negative.
+   */
+  public void setOffsets(long... offsets) throws IllegalArgumentException {
+    for (long offset : offsets) {
+      if (offset < 0)
+        throw new IllegalArgumentException("Reminder offsets must not be negative.");
+    }
+    this.offsets = offsets.clone();
+  }
+
+  /**
+   * Sets the largest number of reminders delivered at a time.
+   *
+   * @param batchSize The batch size. Positive.
+   */
+  public void setBatchSize(int batchSize) throws IllegalArgumentException {
+    if (batchSize <= 0)
+      throw new IllegalArgumentException("The batch size must be positive.");
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets the delivery of due reminders.
+   *
+   * @param delivery The delivery, given one batch at a time.
+   */
+  public void setDelivery(Consumer<List<Appointment>> delivery) {
+    this.delivery = delivery;
+  }
+
+  /**
+   * Schedules the reminders of an appointment. Reminders whose time has
+   * passed are sent at the next delivery, and an appointment that has
+   * already started gets none.
+   *
+   * @param appointment The appointment.
+   * @param now         The current time in milliseconds since the epoch.
+   */
+  public void schedule(Appointment appointment, long now) {
+    long start = appointment.getStartDate().getTime();
+    if (start <= now) {
+      return;
+    }
+    for (long offset : offsets) {
+      appointment.addReminder(wheel.schedule(appointment, Math.max(now, start - offset)));
+    }
+  }
+
+  /**
+   * Sends the reminders that are due.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The number of reminders sent.
+   */
+  public int deliverDue(long now) {
+    List<Appointment> due = wheel.advance(now);
+    List<Appointment> batch = new ArrayList<>(Math.min(due.size(), batchSize));
+    int sent = 0;
+    for (Appointment appointment : due) {
+      if (appointment.isCancelled()) {
+        continue;
+      }
+      batch.add(appointment);
+      if (batch.size() == batchSize) {
+        delivery.accept(batch);
+        sent += batch.size();
+        batch = new ArrayList<>(batchSize);
+      }
+    }
+    if (!batch.isEmpty()) {
+      delivery.accept(batch);
+      sent += batch.size();
+    }
+    return sent;
+  }
+
+  /**
+   * Returns the number of waiting reminders.
+   *
+   * @return The number of reminders.
+   */
+  public int size() {
+    return wheel.size();
+  }
+
+  /**
+   * Sends the details of appointments to their customers by email, or by SMS if they have no email.
+   *
+   * @param appointments The appointments.
+   */
+  private static void sendDetails(List<Appointment> appointments) {
+    for (Appointment appointment : appointments) {
+      String email = appointment.getCustomer().getEmail();
+      try {
+        appointment.sendDetails(email == null || email.isEmpty() ? NotificationType.SMS : NotificationType.EMAIL);
+      } catch (IllegalStateException e) {
+        continue;
+      }
+    }
+  }
+}
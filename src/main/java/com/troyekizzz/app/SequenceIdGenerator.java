@@ -0,0 +1,251 @@
+package com.troyekizzz.app;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class that generates identifiers from sequences.
+ *
+ * Each thread reserves a block of sequence numbers at a time and hands
+ * them out without touching shared state, so identifiers are unique and
+ * threads rarely meet. Numbers from different threads are interleaved.
+ *
+ * Account numbers are Finnish IBANs with valid check digits and card
+ * numbers are Luhn-valid within a configurable BIN.
+ *
+ * @author TroyeKizzz
+ */
+public class SequenceIdGenerator implements IdGenerator {
+  /**
+   * The number of sequence numbers a thread reserves at a time.
+   */
+  static final int BLOCK_SIZE = 1024;
+
+  /**
+   * The default bank code in account numbers.
+   */
+  public static final String DEFAULT_BANK_CODE = "123456";
+
+  /**
+   * The default bank identification number of card numbers.
+   */
+  public static final String DEFAULT_BIN = "400000";
+
+  /**
+   * The length of a card number.
+   */
+  private static final int CARD_NUMBER_LENGTH = 16;
+
+  /**
+   * The length of the basic bank account number of a Finnish IBAN.
+   */
+  private static final int BBAN_LENGTH = 14;
+
+  /**
+   * A sequence handed out to threads in blocks.
+   */
+  private static class Sequence {
+    /**
+     * The first number of the next free block.
+     */
+    private final AtomicLong next;
+
+    /**
+     * The largest number the sequence can hand out plus one.
+     */
+    private final long end;
+
+    /**
+     * The next number and the end of the block of each thread.
+     */
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Creates a new sequence.
+     *
+     * @param start The first number.
+     * @param end   The largest number plus one.
+     */
+    private Sequence(long start, long end) {
+      this.next = new AtomicLong(start);
+      this.end = end;
+    }
+
+    /**
+     * Returns the next number of the calling thread.
+     *
+     * @return The number.
+     */
+    private long next() throws IllegalStateException {
+      long[] current = block.get();
+      if (current[0] == current[1]) {
+        long start = next.getAndAdd(BLOCK_SIZE);
+        if (start >= end) {
+          throw new IllegalStateException("The sequence is exhausted.");
+        }
+        current[0] = start;
+        current[1] = Math.min(start + BLOCK_SIZE, end);
+      }
+      return current[0]++;
+    }
+  }
+
+  /**
+   * The bank code in account numbers.
+   */
+  private final String bankCode;
+
+  /**
+   * The bank identification number of card numbers.
+   */
+  private final String bin;
+
+  /**
+   * The sequence of account numbers.
+   */
+  private final Sequence accounts;
+
+  /**
+   * The sequence of card numbers.
+   */
+  private final Sequence cards;
+
+  /**
+   * The sequence of invoice numbers.
+   */
+  private final Sequence invoices = new Sequence(1, Long.MAX_VALUE - BLOCK_SIZE);
+
+  /**
+   * Creates a new generator with the default bank code and BIN.
+   */
+  public SequenceIdGenerator() {
+    this(DEFAULT_BANK_CODE, DEFAULT_BIN);
+  }
+
+  /**
+   * Creates a new generator.
+   *
+   * @param bankCode The bank code in account numbers. 1 to 13 digits.
+   * @param bin      The bank identification number of card numbers. 6 to 8 digits.
+   */
+  public SequenceIdGenerator(String bankCode, String bin) throws IllegalArgumentException {
+    if (bankCode == null || !bankCode.matches("[0-9]{1,13}"))
+      throw new IllegalArgumentException("The bank code must have 1 to 13 digits.");
+    if (bin == null || !bin.matches("[0-9]{6,8}"))
+      throw new IllegalArgumentException("The BIN must have 6 to 8 digits.");
+    this.bankCode = bankCode;
+    this.bin = bin;
+    this.accounts = new Sequence(0, pow10(BBAN_LENGTH - bankCode.length()));
+    this.cards = new Sequence(0, pow10(CARD_NUMBER_LENGTH - 1 - bin.length()));
+  }
+
+  /**
+   * Returns a new Finnish IBAN.
+   *
+   * @return The account number.
+   */
+  @Override
+  public String nextAccountNumber() {
+    String bban = bankCode + pad(accounts.next(), BBAN_LENGTH - bankCode.length());
+    int check = 98 - mod97(bban + "151800");
+    return "FI" + (check < 10 ? "0" : "") + check + bban;
+  }
+
+  /**
+   * Returns a new Luhn-valid card number within the BIN.
+   *
+   * @return The card number.
+   */
+  @Override
+  public String nextCardNumber() {
+    String payload = bin + pad(cards.next(), CARD_NUMBER_LENGTH - 1 - bin.length());
+    return payload + luhnDigit(payload);
+  }
+
+  /**
+   * Returns a random card cvv.
+   *
+   * @return The card cvv.
+   */
+  @Override
+  public int nextCvv() {
+    return ThreadLocalRandom.current().nextInt(1000);
+  }
+
+  /**
+   * Returns a new invoice number.
+   *
+   * @return The invoice number.
+   */
+  @Override
+  public String nextInvoiceNumber() {
+    return String.valueOf(invoices.next());
+  }
+
+  /**
+   * Returns the remainder of a number made of digits divided by 97.
+   *
+   * @param digits The digits.
+   * @return The remainder.
+   */
+  static int mod97(String digits) {
+    int remainder = 0;
+    for (int i = 0; i < digits.length(); i++) {
+      remainder = (remainder * 10 + digits.charAt(i) - '0') % 97;
+    }
+    return remainder;
+  }
+
+  /**
+   * Returns the Luhn check digit of a number made of digits.
+   *
+   * @param digits The digits without the check digit.
+   * @return The check digit.
+   */
+  static int luhnDigit(String digits) {
+    int sum = 0;
+    boolean doubled = true;
+    for (int i = digits.length() - 1; i >= 0; i--) {
+      int digit = digits.charAt(i) - '0';
+      if (doubled) {
+        digit *= 2;
+        if (digit > 9) {
+          digit -= 9;
+        }
+      }
+      sum += digit;
+      doubled = !doubled;
+    }
+    return (10 - sum % 10) % 10;
+  }
+
+  /**
+   * Pads a number with leading zeros.
+   *
+   * @param number The number.
+   * @param length The length of the result.
+   * @return The padded number.
+   */
+  private static String pad(long number, int length) {
+    String digits = Long.toString(number);
+    StringBuilder builder = new StringBuilder(length);
+    for (int i = digits.length(); i < length; i++) {
+      builder.append('0');
+    }
+    return builder.append(digits).toString();
+  }
+
+  /**
+   * Returns a power of ten.
+   *
+   * @param exponent The exponent.
+   * @return The power of ten.
+   */
+  private static long pow10(int exponent) {
+    long result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+}
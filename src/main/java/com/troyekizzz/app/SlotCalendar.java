@@ -0,0 +1,361 @@
+package com.troyekizzz.app;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import lombok.Getter;
+
+/**
+ * A class that represents how many appointments a branch has in each time slot.
+ *
+ * Time is cut into slots of a fixed length and every day has an array with
+ * the number of appointments in each of its slots. An appointment of a
+ * bounded length covers a bounded number of slots, so checking for a
+ * conflict, booking and releasing take constant time. Every day also has a
+ * bitmap of its full slots, so the next free time is found a word of
+ * slots at a time. The days before today are dropped on the first booking
+ * of a day, so the calendar only holds the days still to come.
+ *
+ * A time takes up every slot it touches, so two times that do not start on
+ * slot boundaries conflict when they share a slot even if they do not
+ * overlap. With 15-minute slots and a capacity of one, 12:10 to 13:10 and
+ * 13:10 to 14:10 cannot both be booked; times found with
+ * {@link #nextFree(long, long)} start on a slot boundary and never do this.
+ *
+ * @author TroyeKizzz
+ */
+public class SlotCalendar {
+  /**
+   * The default length of a slot, 15 minutes in milliseconds.
+   */
+  public static final long DEFAULT_SLOT_LENGTH = 15 * 60 * 1000L;
+
+  /**
+   * The largest number of parallel appointments.
+   */
+  public static final int MAX_CAPACITY = Byte.MAX_VALUE;
+
+  /**
+   * The number of milliseconds in a day.
+   */
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+
+  /**
+   * The length of a slot in milliseconds.
+   */
+  @Getter
+  private final long slotLength;
+
+  /**
+   * The number of slots in a day.
+   */
+  private final int slotsPerDay;
+
+  /**
+   * The number of appointments each slot can hold.
+   */
+  @Getter
+  private volatile int capacity;
+
+  /**
+   * The number of appointments in each slot by the day in days since the epoch.
+   */
+  private final Map<Long, byte[]> days = new HashMap<>();
+
+  /**
+   * The slots that hold as many appointments as the capacity by the day in days since the epoch.
+   */
+  private final Map<Long, long[]> full = new HashMap<>();
+
+  /**
+   * The day in days since the epoch up to which the past days have been dropped.
+   */
+  private long prunedDay = Long.MIN_VALUE;
+
+  /**
+   * Creates a new calendar with the default slot length.
+   *
+   * @param capacity The number of appointments each slot can hold.
+   */
+  public SlotCalendar(int capacity) throws IllegalArgumentException {
+    this(capacity, DEFAULT_SLOT_LENGTH);
+  }
+
+  /**
+   * Creates a new calendar.
+   *
+   * @param capacity   The number of appointments each slot can hold.
+   * @param slotLength The length of a slot in milliseconds. Divides a day.
+   */
+  public SlotCalendar(int capacity, long slotLength) throws IllegalArgumentException {
+    if (slotLength <= 0 || MILLIS_PER_DAY % slotLength != 0)
+      throw new IllegalArgumentException("The slot length must divide a day.");
+    this.slotLength = slotLength;
+    this.slotsPerDay = (int) (MILLIS_PER_DAY / slotLength);
+    setCapacity(capacity);
+  }
+
+  /**
+   * Sets the number of appointments each slot can hold.
+   *
+   * Appointments already booked are kept even if the slots now hold too many.
+   *
+   * @param capacity The capacity, between 1 and {@link #MAX_CAPACITY}.
+   */
+  public synchronized void setCapacity(int capacity) throws IllegalArgumentException {
+    if (capacity < 1 || capacity > MAX_CAPACITY)
+      throw new IllegalArgumentException("The capacity must be between 1 and " + MAX_CAPACITY + ".");
+    this.capacity = capacity;
+    for (Map.Entry<Long, byte[]> day : days.entrySet()) {
+      long[] bits = full.get(day.getKey());
+      for (int index = 0; index < slotsPerDay; index++) {
+        setFull(bits, index, day.getValue()[index] >= capacity);
+      }
+    }
+  }
+
+  /**
+   * Checks if a time can hold one more appointment.
+   *
+   * @param start The start of the time in milliseconds since the epoch.
+   * @param end   The end of the time in milliseconds since the epoch.
+   * @return True if every slot of the time has room, false otherwise.
+   */
+  public synchronized boolean isFree(long start, long end) {
+    return hasRoom(start, end, 1);
+  }
+
+  /**
+   * Returns the number of appointments in the slot of a time.
+   *
+   * @param time The time in milliseconds since the epoch.
+   * @return The number of appointments.
+   */
+  public synchronized int getCount(long time) {
+    long slot = Math.floorDiv(time, slotLength);
+    byte[] counts = days.get(Math.floorDiv(slot, (long) slotsPerDay));
+    return counts == null ? 0 : counts[(int) Math.floorMod(slot, (long) slotsPerDay)];
+  }
+
+  /**
+   * Finds the first time at or after a given time that can hold one more appointment.
+   *
+   * @param from   The earliest start in milliseconds since the epoch.
+   * @param length The length of the appointment in milliseconds.
+   * @return The start of the first slot from which the appointment fits.
+   */
+  public synchronized long nextFree(long from, long length) throws IllegalArgumentException {
+    if (length <= 0)
+      throw new IllegalArgumentException("An appointment must end after it starts.");
+    long slots = (length + slotLength - 1) / slotLength;
+    long slot = Math.floorDiv(from + slotLength - 1, slotLength);
+    while (true) {
+      long blocked = nextFull(slot, slot + slots - 1);
+      if (blocked < 0) {
+        return slot * slotLength;
+      }
+      slot = blocked + 1;
+    }
+  }
+
+  /**
+   * Books a time.
+   *
+   * @param start The start of the time in milliseconds since the epoch.
+   * @param end   The end of the time in milliseconds since the epoch.
+   */
+  public void reserve(long start, long end) throws IllegalArgumentException {
+    reserve(start, end, System.currentTimeMillis());
+  }
+
+  /**
+   * Books a time, first dropping the days before the current day.
+   *
+   * @param start The start of the time in milliseconds since the epoch.
+   * @param end   The end of the time in milliseconds since the epoch.
+   * @param now   The current time in milliseconds since the epoch.
+   */
+  public synchronized void reserve(long start, long end, long now) throws IllegalArgumentException {
+    prune(now);
+    book(start, end);
+  }
+
+  /**
+   * Books several times at once, either all of them or none.
+   *
+   * @param starts The starts of the times in milliseconds since the epoch.
+   * @param ends   The ends of the times in milliseconds since the epoch.
+   */
+  public void reserveAll(long[] starts, long[] ends) throws IllegalArgumentException {
+    reserveAll(starts, ends, System.currentTimeMillis());
+  }
+
+  /**
+   * Books several times at once, either all of them or none, first dropping the days before the current day.
+   *
+   * @param starts The starts of the times in milliseconds since the epoch.
+   * @param ends   The ends of the times in milliseconds since the epoch.
+   * @param now    The current time in milliseconds since the epoch.
+   */
+  public synchronized void reserveAll(long[] starts, long[] ends, long now) throws IllegalArgumentException {
+    prune(now);
+    int booked = 0;
+    try {
+      for (; booked < starts.length; booked++) {
+        book(starts[booked], ends[booked]);
+      }
+    } catch (IllegalArgumentException e) {
+      for (int i = 0; i < booked; i++) {
+        add(starts[i], ends[i], -1);
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Releases a booked time.
+   *
+   * A time on a day that has been dropped is already released.
+   *
+   * @param start The start of the time in milliseconds since the epoch.
+   * @param end   The end of the time in milliseconds since the epoch.
+   */
+  public synchronized void release(long start, long end) {
+    add(start, end, -1);
+  }
+
+  /**
+   * Books a time if every slot of it has room.
+   *
+   * @param start The start of the time.
+   * @param end   The end of the time.
+   */
+  private void book(long start, long end) throws IllegalArgumentException {
+    if (!hasRoom(start, end, 1))
+      throw new IllegalArgumentException("The branch is fully booked at this time.");
+    add(start, end, 1);
+  }
+
+  /**
+   * Drops the days before the current day, once a day.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   */
+  private void prune(long now) {
+    long today = Math.floorDiv(now, MILLIS_PER_DAY);
+    if (today <= prunedDay) {
+      return;
+    }
+    prunedDay = today;
+    days.keySet().removeIf(day -> day < today);
+    full.keySet().removeIf(day -> day < today);
+  }
+
+  /**
+   * Checks if every slot of a time has room for more appointments.
+   *
+   * @param start The start of the time.
+   * @param end   The end of the time.
+   * @param count The number of appointments.
+   * @return True if every slot has room, false otherwise.
+   */
+  private boolean hasRoom(long start, long end, int count) throws IllegalArgumentException {
+    if (end <= start)
+      throw new IllegalArgumentException("An appointment must end after it starts.");
+    long last = Math.floorDiv(end - 1, slotLength);
+    byte[] counts = null;
+    long day = Long.MIN_VALUE;
+    for (long slot = Math.floorDiv(start, slotLength); slot <= last; slot++) {
+      long slotDay = Math.floorDiv(slot, (long) slotsPerDay);
+      if (slotDay != day) {
+        day = slotDay;
+        counts = days.get(day);
+      }
+      if (counts != null && counts[(int) Math.floorMod(slot, (long) slotsPerDay)] + count > capacity) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the first full slot in a range.
+   *
+   * @param first The first slot, inclusive.
+   * @param last  The last slot, inclusive.
+   * @return The slot, or -1 if no slot in the range is full.
+   */
+  private long nextFull(long first, long last) {
+    for (long day = Math.floorDiv(first, (long) slotsPerDay); day <= Math.floorDiv(last, (long) slotsPerDay); day++) {
+      long[] bits = full.get(day);
+      if (bits == null) {
+        continue;
+      }
+      long dayStart = day * slotsPerDay;
+      int from = (int) Math.max(0, first - dayStart);
+      int to = (int) Math.min(slotsPerDay - 1, last - dayStart);
+      int index = from >>> 6;
+      long word = bits[index] & (-1L << from);
+      while (true) {
+        if (word != 0) {
+          int bit = (index << 6) + Long.numberOfTrailingZeros(word);
+          if (bit <= to) {
+            return dayStart + bit;
+          }
+          break;
+        }
+        if (++index > to >>> 6) {
+          break;
+        }
+        word = bits[index];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Marks a slot as full or not full.
+   *
+   * @param bits  The full slots of the day.
+   * @param index The slot in the day.
+   * @param value True if the slot is full.
+   */
+  private static void setFull(long[] bits, int index, boolean value) {
+    if (value) {
+      bits[index >>> 6] |= 1L << index;
+    } else {
+      bits[index >>> 6] &= ~(1L << index);
+    }
+  }
+
+  /**
+   * Adds to the number of appointments in every slot of a time.
+   *
+   * @param start The start of the time.
+   * @param end   The end of the time.
+   * @param count The number of appointments to add, negative to remove.
+   */
+  private void add(long start, long end, int count) {
+    long last = Math.floorDiv(end - 1, slotLength);
+    byte[] counts = null;
+    long[] bits = null;
+    long day = Long.MIN_VALUE;
+    for (long slot = Math.floorDiv(start, slotLength); slot <= last; slot++) {
+      long slotDay = Math.floorDiv(slot, (long) slotsPerDay);
+      if (slotDay != day) {
+        day = slotDay;
+        if (count < 0 && !days.containsKey(day)) {
+          counts = null;
+          continue;
+        }
+        counts = days.computeIfAbsent(day, key -> new byte[slotsPerDay]);
+        bits = full.computeIfAbsent(day, key -> new long[(slotsPerDay + 63) / 64]);
+      } else if (counts == null) {
+        continue;
+      }
+      int index = (int) Math.floorMod(slot, (long) slotsPerDay);
+      counts[index] = (byte) Math.max(0, counts[index] + count);
+      setFull(bits, index, counts[index] >= capacity);
+    }
+  }
+}
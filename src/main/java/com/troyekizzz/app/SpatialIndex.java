@@ -0,0 +1,301 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * A class that represents a grid of map cells for finding the nearest places.
+ *
+ * Places are kept in square cells of a fixed size in degrees. A search
+ * visits the cells in rings around the query point and stops as soon as
+ * no unvisited cell can hold a place nearer than the ones already found.
+ *
+ * @author TroyeKizzz
+ *
+ * @param <T> The type of the places.
+ */
+public class SpatialIndex<T extends Located> {
+  /**
+   * The default size of a cell, 0.1 degrees, i.e. about 11 km.
+   */
+  public static final double DEFAULT_CELL_SIZE = 0.1;
+
+  /**
+   * The mean radius of the Earth in kilometers.
+   */
+  static final double EARTH_RADIUS = 6371.0;
+
+  /**
+   * The length of one degree of latitude in kilometers.
+   */
+  private static final double DEGREE = Math.PI * EARTH_RADIUS / 180;
+
+  /**
+   * A place found by a search.
+   */
+  private static class Candidate<T> {
+    /**
+     * The place.
+     */
+    private final T place;
+
+    /**
+     * The distance to the place in kilometers.
+     */
+    private final double distance;
+
+    /**
+     * Creates a new candidate.
+     *
+     * @param place    The place.
+     * @param distance The distance to the place.
+     */
+    private Candidate(T place, double distance) {
+      this.place = place;
+      this.distance = distance;
+    }
+  }
+
+  /**
+   * The size of a cell in degrees.
+   */
+  private final double cellSize;
+
+  /**
+   * The number of cell rows from pole to pole.
+   */
+  private final int rows;
+
+  /**
+   * The number of cell columns around the Earth.
+   */
+  private final int columns;
+
+  /**
+   * The places by their cells.
+   */
+  private final Map<Long, List<T>> cells = new HashMap<>();
+
+  /**
+   * The number of places.
+   */
+  private int size = 0;
+
+  /**
+   * Creates a new index with the default cell size.
+   */
+  public SpatialIndex() {
+    this(DEFAULT_CELL_SIZE);
+  }
+
+  /**
+   * Creates a new index.
+   *
+   * @param cellSize The size of a cell in degrees.
+   */
+  public SpatialIndex(double cellSize) throws IllegalArgumentException {
+    if (!(cellSize > 0 && cellSize <= 90))
+      throw new IllegalArgumentException("The cell size must be between 0 and 90 degrees.");
+    this.cellSize = cellSize;
+    this.rows = (int) Math.ceil(180 / cellSize);
+    this.columns = (int) Math.ceil(360 / cellSize);
+  }
+
+  /**
+   * Adds a place. A place without coordinates is not added.
+   *
+   * @param place The place.
+   */
+  public synchronized void add(T place) {
+    if (!hasCoordinates(place)) {
+      return;
+    }
+    cells.computeIfAbsent(key(row(place.getLatitude()), column(place.getLongitude())), key -> new ArrayList<>()).add(place);
+    size++;
+  }
+
+  /**
+   * Removes a place.
+   *
+   * @param place The place.
+   * @return True if the place was in the index, false otherwise.
+   */
+  public synchronized boolean remove(T place) {
+    if (!hasCoordinates(place)) {
+      return false;
+    }
+    long key = key(row(place.getLatitude()), column(place.getLongitude()));
+    List<T> cell = cells.get(key);
+    if (cell == null || !cell.remove(place)) {
+      return false;
+    }
+    if (cell.isEmpty()) {
+      cells.remove(key);
+    }
+    size--;
+    return true;
+  }
+
+  /**
+   * Returns the number of places.
+   *
+   * @return The number of places.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Finds the places nearest to a point that pass a filter.
+   *
+   * @param latitude  The latitude of the point in degrees.
+   * @param longitude The longitude of the point in degrees.
+   * @param count     The largest number of places to return. Positive.
+   * @param filter    The filter.
+   * @return The places, the nearest first.
+   */
+  public synchronized List<T> findNearest(double latitude, double longitude, int count, Predicate<? super T> filter) throws IllegalArgumentException {
+    if (count <= 0)
+      throw new IllegalArgumentException("The count must be positive.");
+    if (Double.isNaN(latitude))
+      throw new IllegalArgumentException("Invalid coordinates");
+    checkCoordinates(latitude, longitude);
+    PriorityQueue<Candidate<T>> best = new PriorityQueue<>(count + 1, (a, b) -> Double.compare(b.distance, a.distance));
+    int row = row(latitude);
+    int column = column(longitude);
+    int seen = 0;
+    for (int ring = 0; seen < size && ring <= Math.max(rows, columns / 2); ring++) {
+      if (best.size() == count && best.peek().distance < bound(latitude, ring)) {
+        break;
+      }
+      for (int dr = -ring; dr <= ring; dr++) {
+        int r = row + dr;
+        if (r < 0 || r >= rows) {
+          continue;
+        }
+        int step = Math.abs(dr) == ring ? 1 : 2 * ring;
+        for (int dc = -ring; dc <= ring; dc += Math.max(step, 1)) {
+          if (dc < -(columns - 1) / 2 || dc > columns / 2) {
+            continue;
+          }
+          List<T> cell = cells.get(key(r, Math.floorMod(column + dc, columns)));
+          if (cell == null) {
+            continue;
+          }
+          seen += cell.size();
+          for (T place : cell) {
+            if (!filter.test(place)) {
+              continue;
+            }
+            double distance = distance(latitude, longitude, place.getLatitude(), place.getLongitude());
+            if (best.size() < count) {
+              best.add(new Candidate<>(place, distance));
+            } else if (distance < best.peek().distance) {
+              best.poll();
+              best.add(new Candidate<>(place, distance));
+            }
+          }
+        }
+      }
+    }
+    List<T> result = new ArrayList<>(best.size());
+    while (!best.isEmpty()) {
+      result.add(best.poll().place);
+    }
+    Collections.reverse(result);
+    return result;
+  }
+
+  /**
+   * Returns the great-circle distance between two points.
+   *
+   * @param latitude1  The latitude of the first point in degrees.
+   * @param longitude1 The longitude of the first point in degrees.
+   * @param latitude2  The latitude of the second point in degrees.
+   * @param longitude2 The longitude of the second point in degrees.
+   * @return The distance in kilometers.
+   */
+  public static double distance(double latitude1, double longitude1, double latitude2, double longitude2) {
+    double dLatitude = Math.toRadians(latitude2 - latitude1);
+    double dLongitude = Math.toRadians(longitude2 - longitude1);
+    double a = Math.sin(dLatitude / 2) * Math.sin(dLatitude / 2)
+      + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.sin(dLongitude / 2) * Math.sin(dLongitude / 2);
+    return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+  }
+
+  /**
+   * Checks that coordinates are on the map or not known.
+   *
+   * @param latitude  The latitude in degrees, or NaN.
+   * @param longitude The longitude in degrees, or NaN.
+   */
+  static void checkCoordinates(double latitude, double longitude) throws IllegalArgumentException {
+    if (Double.isNaN(latitude) != Double.isNaN(longitude) || Math.abs(latitude) > 90 || Math.abs(longitude) > 180)
+      throw new IllegalArgumentException("Invalid coordinates");
+  }
+
+  /**
+   * Returns a distance that every place in a ring of cells is at least away.
+   *
+   * A place in the ring is at least one cell fewer than the ring number away
+   * in latitude or in longitude, and a degree of longitude is shortest at the
+   * latitude farthest from the equator that the ring reaches.
+   *
+   * @param latitude The latitude of the query point in degrees.
+   * @param ring     The ring number.
+   * @return The distance in kilometers.
+   */
+  private double bound(double latitude, int ring) {
+    if (ring <= 1) {
+      return 0;
+    }
+    double farthest = Math.min(90, Math.abs(latitude) + (ring + 1) * cellSize);
+    return (ring - 1) * cellSize * DEGREE * Math.cos(Math.toRadians(farthest));
+  }
+
+  /**
+   * Returns the cell row of a latitude.
+   *
+   * @param latitude The latitude in degrees.
+   * @return The row.
+   */
+  private int row(double latitude) {
+    return Math.min(rows - 1, Math.max(0, (int) Math.floor((latitude + 90) / cellSize)));
+  }
+
+  /**
+   * Returns the cell column of a longitude.
+   *
+   * @param longitude The longitude in degrees.
+   * @return The column.
+   */
+  private int column(double longitude) {
+    return Math.floorMod((int) Math.floor((longitude + 180) / cellSize), columns);
+  }
+
+  /**
+   * Returns the key of a cell.
+   *
+   * @param row    The row.
+   * @param column The column.
+   * @return The key.
+   */
+  private static long key(int row, int column) {
+    return ((long) row << 32) | column;
+  }
+
+  /**
+   * Returns true if a place has coordinates.
+   *
+   * @param place The place.
+   * @return True if the place has coordinates, false otherwise.
+   */
+  private static boolean hasCoordinates(Located place) {
+    return !Double.isNaN(place.getLatitude()) && !Double.isNaN(place.getLongitude());
+  }
+}
@@ -0,0 +1,153 @@
+package com.troyekizzz.app;
+
+import com.troyekizzz.app.utils.LimitPeriod;
+
+/**
+ * A class that represents the rolling spend limits of a card.
+ *
+ * The spending of each period is kept in a ring of time buckets in cents
+ * together with its running total, so a purchase is checked against all
+ * periods in constant time without looking at earlier purchases.
+ * A purchase is accepted by all periods or by none.
+ *
+ * @author TroyeKizzz
+ */
+public class SpendLimits {
+  /**
+   * The limit periods.
+   */
+  private static final LimitPeriod[] PERIODS = LimitPeriod.values();
+
+  /**
+   * The limit of each period in cents, 0 if there is no limit.
+   */
+  private final long[] limits = new long[PERIODS.length];
+
+  /**
+   * The spending of each period in cents by bucket.
+   */
+  private final long[][] buckets = new long[PERIODS.length][];
+
+  /**
+   * The number of the newest bucket of each period, counted from the epoch.
+   */
+  private final long[] newestBuckets = new long[PERIODS.length];
+
+  /**
+   * The spending of each period in cents.
+   */
+  private final long[] totals = new long[PERIODS.length];
+
+  /**
+   * Creates new spend limits without any limit.
+   */
+  public SpendLimits() {
+    for (LimitPeriod period : PERIODS) {
+      buckets[period.ordinal()] = new long[period.getBucketCount()];
+    }
+  }
+
+  /**
+   * Sets the limit of a period.
+   *
+   * @param period The period.
+   * @param limit  The limit. Positive, or 0 to remove the limit.
+   */
+  public synchronized void setLimit(LimitPeriod period, float limit) throws IllegalArgumentException {
+    if (limit < 0)
+      throw new IllegalArgumentException("Invalid limit");
+    limits[period.ordinal()] = toCents(limit);
+  }
+
+  /**
+   * Returns the limit of a period.
+   *
+   * @param period The period.
+   * @return The limit, 0 if there is no limit.
+   */
+  public synchronized float getLimit(LimitPeriod period) {
+    return limits[period.ordinal()] / 100f;
+  }
+
+  /**
+   * Returns the spending of a period.
+   *
+   * @param period The period.
+   * @param now    The current time in milliseconds since the epoch.
+   * @return The spending.
+   */
+  public synchronized float getSpent(LimitPeriod period, long now) {
+    advance(period.ordinal(), now);
+    return totals[period.ordinal()] / 100f;
+  }
+
+  /**
+   * Adds a purchase to the spending of all periods if no limit is exceeded.
+   *
+   * @param amount The amount of the purchase.
+   * @param now    The current time in milliseconds since the epoch.
+   */
+  public synchronized void acquire(float amount, long now) throws IllegalArgumentException {
+    long cents = toCents(amount);
+    for (int p = 0; p < PERIODS.length; p++) {
+      advance(p, now);
+      if (limits[p] > 0 && totals[p] + cents > limits[p]) {
+        throw new IllegalArgumentException("Purchase amount exceeds " + PERIODS[p].toString().toLowerCase() + " limit");
+      }
+    }
+    for (int p = 0; p < PERIODS.length; p++) {
+      buckets[p][(int) (newestBuckets[p] % buckets[p].length)] += cents;
+      totals[p] += cents;
+    }
+  }
+
+  /**
+   * Removes a purchase from the spending of the periods it is still part of.
+   *
+   * @param amount The amount of the purchase.
+   * @param at     The time the purchase was added in milliseconds since the epoch.
+   */
+  public synchronized void release(float amount, long at) {
+    long cents = toCents(amount);
+    for (int p = 0; p < PERIODS.length; p++) {
+      long bucket = at / PERIODS[p].getBucketLength();
+      if (bucket > newestBuckets[p] || bucket <= newestBuckets[p] - buckets[p].length) {
+        continue;
+      }
+      int index = (int) (bucket % buckets[p].length);
+      long released = Math.min(cents, buckets[p][index]);
+      buckets[p][index] -= released;
+      totals[p] -= released;
+    }
+  }
+
+  /**
+   * Moves a period forward to the current time, emptying the buckets that left it.
+   *
+   * @param p   The index of the period.
+   * @param now The current time in milliseconds since the epoch.
+   */
+  private void advance(int p, long now) {
+    long bucket = now / PERIODS[p].getBucketLength();
+    if (bucket <= newestBuckets[p]) {
+      return;
+    }
+    long steps = Math.min(bucket - newestBuckets[p], buckets[p].length);
+    for (long step = 1; step <= steps; step++) {
+      int index = (int) ((bucket - steps + step) % buckets[p].length);
+      totals[p] -= buckets[p][index];
+      buckets[p][index] = 0;
+    }
+    newestBuckets[p] = bucket;
+  }
+
+  /**
+   * Converts an amount to cents.
+   *
+   * @param amount The amount.
+   * @return The amount in cents.
+   */
+  private static long toCents(float amount) {
+    return Math.round(amount * 100d);
+  }
+}
@@ -0,0 +1,99 @@
+package com.troyekizzz.app;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A class that represents a balance spread over several stripes, so that
+ * many threads can add to it at the same time without waiting for each other.
+ *
+ * Each thread adds to the stripe picked by its id and moves to another
+ * stripe when it collides with a different thread. The stripes are padded
+ * to separate cache lines.
+ *
+ * @author TroyeKizzz
+ */
+public class StripedBalance {
+  /**
+   * The distance between two stripes in the array, one 64-byte cache line.
+   */
+  private static final int PADDING = 16;
+
+  /**
+   * The stripes, stored as float bits.
+   */
+  private final AtomicIntegerArray stripes;
+
+  /**
+   * The mask that turns a hash into a stripe index.
+   */
+  private final int mask;
+
+  /**
+   * Creates a new striped balance.
+   *
+   * @param count The number of stripes. A power of two.
+   */
+  public StripedBalance(int count) throws IllegalArgumentException {
+    if (count <= 0 || Integer.bitCount(count) != 1)
+      throw new IllegalArgumentException("The number of stripes must be a power of two.");
+    this.stripes = new AtomicIntegerArray(count * PADDING);
+    this.mask = count - 1;
+  }
+
+  /**
+   * Adds an amount to one of the stripes.
+   *
+   * @param amount The amount to add.
+   */
+  public void add(float amount) {
+    long id = Thread.currentThread().getId();
+    int stripe = (int) (id ^ (id >>> 16)) & mask;
+    while (true) {
+      int index = stripe * PADDING;
+      int bits = stripes.get(index);
+      if (stripes.compareAndSet(index, bits, Float.floatToRawIntBits(Float.intBitsToFloat(bits) + amount))) {
+        return;
+      }
+      stripe = ThreadLocalRandom.current().nextInt() & mask;
+    }
+  }
+
+  /**
+   * Returns the sum of the stripes.
+   *
+   * @return The sum of the stripes.
+   */
+  public float sum() {
+    float sum = 0;
+    for (int stripe = 0; stripe <= mask; stripe++) {
+      sum += Float.intBitsToFloat(stripes.get(stripe * PADDING));
+    }
+    return sum;
+  }
+
+  /**
+   * Empties the stripes and returns their sum.
+   *
+   * Amounts added while the stripes are emptied are either
+   * included in the sum or left in the stripes, never lost.
+   *
+   * @return The sum of the stripes.
+   */
+  public float drain() {
+    float sum = 0;
+    for (int stripe = 0; stripe <= mask; stripe++) {
+      sum += Float.intBitsToFloat(stripes.getAndSet(stripe * PADDING, 0));
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the number of stripes.
+   *
+   * @return The number of stripes.
+   */
+  public int getCount() {
+    return mask + 1;
+  }
+}
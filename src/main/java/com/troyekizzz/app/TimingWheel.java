@@ -0,0 +1,323 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * A class that represents a hierarchical timing wheel.
+ *
+ * Every level is a ring of 64 buckets, and a bucket of a level spans all 64
+ * buckets of the level below it. A timer is put into the lowest level
+ * whose ring reaches its deadline, and moves down a level whenever the
+ * wheel turns into its bucket. Buckets are doubly linked lists, so adding
+ * and cancelling a timer take constant time. When the wheel is advanced
+ * it jumps over the ticks that have nothing to do.
+ *
+ * The wheel does not run by itself; it is advanced by {@link #advance(long)}.
+ *
+ * @author TroyeKizzz
+ *
+ * @param <T> The type of the values of the timers.
+ */
+public class TimingWheel<T> {
+  /**
+   * The number of bits of the bucket index of a level.
+   */
+  private static final int BITS = 6;
+
+  /**
+   * The number of buckets of a level.
+   */
+  private static final int SIZE = 1 << BITS;
+
+  /**
+   * The number of levels, enough for any deadline that fits a long.
+   */
+  private static final int LEVELS = (Long.SIZE + BITS - 1) / BITS;
+
+  /**
+   * A timer of the wheel.
+   *
+   * @param <T> The type of the value.
+   */
+  public static class Timer<T> {
+    /**
+     * The wheel of the timer.
+     */
+    private final TimingWheel<T> wheel;
+
+    /**
+     * The value of the timer.
+     */
+    @Getter
+    private final T value;
+
+    /**
+     * The deadline of the timer in ticks.
+     */
+    private final long deadline;
+
+    /**
+     * The level of the timer, or -1 if the timer is not in the wheel.
+     */
+    private int level = -1;
+
+    /**
+     * The bucket of the timer in its level.
+     */
+    private int index;
+
+    /**
+     * The previous timer in the bucket.
+     */
+    private Timer<T> previous;
+
+    /**
+     * The next timer in the bucket.
+     */
+    private Timer<T> next;
+
+    /**
+     * Creates a new timer.
+     *
+     * @param wheel    The wheel of the timer.
+     * @param value    The value of the timer.
+     * @param deadline The deadline of the timer in ticks.
+     */
+    private Timer(TimingWheel<T> wheel, T value, long deadline) {
+      this.wheel = wheel;
+      this.value = value;
+      this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the timer.
+     *
+     * @return True if the timer was waiting, false if it was already due or cancelled.
+     */
+    public boolean cancel() {
+      return wheel.cancel(this);
+    }
+
+    /**
+     * Returns the deadline of the timer.
+     *
+     * @return The deadline in milliseconds since the epoch, rounded down to a tick.
+     */
+    public long getDeadline() {
+      return deadline * wheel.tick;
+    }
+  }
+
+  /**
+   * The length of a tick in milliseconds.
+   */
+  @Getter
+  private final long tick;
+
+  /**
+   * The first timer of each bucket by level.
+   */
+  private final Timer<T>[][] buckets;
+
+  /**
+   * The number of timers of each level.
+   */
+  private final int[] counts = new int[LEVELS];
+
+  /**
+   * The number of timers in the wheel.
+   */
+  private int size = 0;
+
+  /**
+   * The current time in ticks.
+   */
+  private long current;
+
+  /**
+   * Creates a new wheel.
+   *
+   * @param tick The length of a tick in milliseconds.
+   * @param now  The current time in milliseconds since the epoch.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public TimingWheel(long tick, long now) throws IllegalArgumentException {
+    if (tick <= 0)
+      throw new IllegalArgumentException("The tick must be positive.");
+    this.tick = tick;
+    this.current = Math.floorDiv(now, tick);
+    this.buckets = new Timer[LEVELS][SIZE];
+  }
+
+  /**
+   * Adds a timer.
+   *
+   * @param value    The value of the timer.
+   * @param deadline The deadline in milliseconds since the epoch.
+   * @return The timer.
+   */
+  public synchronized Timer<T> schedule(T value, long deadline) {
+    Timer<T> timer = new Timer<>(this, value, Math.floorDiv(deadline, tick));
+    insert(timer, null);
+    return timer;
+  }
+
+  /**
+   * Advances the wheel and returns the values of the timers that are due.
+   *
+   * @param now The current time in milliseconds since the epoch.
+   * @return The values, the earliest deadline first.
+   */
+  public synchronized List<T> advance(long now) {
+    List<T> due = new ArrayList<>();
+    long target = Math.floorDiv(now, tick);
+    expire(due);
+    while (current < target) {
+      if (size == 0) {
+        current = target;
+        break;
+      }
+      int lowest = 0;
+      while (counts[lowest] == 0) {
+        lowest++;
+      }
+      if (lowest == 0) {
+        current++;
+      } else {
+        long span = 1L << (BITS * lowest);
+        current = Math.min(target, (current / span + 1) * span);
+      }
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if (counts[level] > 0 && current % (1L << (BITS * level)) == 0) {
+          cascade(level, due);
+        }
+      }
+      expire(due);
+    }
+    return due;
+  }
+
+  /**
+   * Returns the number of waiting timers.
+   *
+   * @return The number of timers.
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Puts a timer into its bucket, or into the due values if its deadline has passed.
+   *
+   * @param timer The timer.
+   * @param due   The due values, or null to keep a due timer in the current bucket.
+   */
+  private void insert(Timer<T> timer, List<T> due) {
+    if (timer.deadline <= current && due != null) {
+      due.add(timer.value);
+      return;
+    }
+    long deadline = Math.max(timer.deadline, current);
+    int level = 0;
+    while (level < LEVELS - 1 && (deadline >>> (BITS * level)) - (current >>> (BITS * level)) >= SIZE) {
+      level++;
+    }
+    int index = (int) ((deadline >>> (BITS * level)) & (SIZE - 1));
+    Timer<T> first = buckets[level][index];
+    timer.level = level;
+    timer.index = index;
+    timer.previous = null;
+    timer.next = first;
+    if (first != null) {
+      first.previous = timer;
+    }
+    buckets[level][index] = timer;
+    counts[level]++;
+    size++;
+  }
+
+  /**
+   * Takes a timer out of its bucket.
+   *
+   * @param timer The timer.
+   * @return True if the timer was in the wheel, false otherwise.
+   */
+  private synchronized boolean cancel(Timer<T> timer) {
+    if (timer.level < 0) {
+      return false;
+    }
+    if (timer.previous != null) {
+      timer.previous.next = timer.next;
+    } else {
+      buckets[timer.level][timer.index] = timer.next;
+    }
+    if (timer.next != null) {
+      timer.next.previous = timer.previous;
+    }
+    counts[timer.level]--;
+    size--;
+    timer.level = -1;
+    timer.previous = null;
+    timer.next = null;
+    return true;
+  }
+
+  /**
+   * Moves the timers of the current bucket of a level down to the lower levels.
+   *
+   * @param level The level.
+   * @param due   The due values.
+   */
+  private void cascade(int level, List<T> due) {
+    int index = (int) ((current >>> (BITS * level)) & (SIZE - 1));
+    Timer<T> timer = take(level, index);
+    while (timer != null) {
+      Timer<T> next = timer.next;
+      timer.previous = null;
+      timer.next = null;
+      insert(timer, due);
+      timer = next;
+    }
+  }
+
+  /**
+   * Adds the values of the timers in the current bucket of the lowest level to the due values.
+   *
+   * @param due The due values.
+   */
+  private void expire(List<T> due) {
+    Timer<T> timer = take(0, (int) (current & (SIZE - 1)));
+    List<T> bucket = new ArrayList<>();
+    while (timer != null) {
+      bucket.add(timer.value);
+      Timer<T> next = timer.next;
+      timer.next = null;
+      timer.previous = null;
+      timer = next;
+    }
+    for (int i = bucket.size() - 1; i >= 0; i--) {
+      due.add(bucket.get(i));
+    }
+  }
+
+  /**
+   * Empties a bucket.
+   *
+   * @param level The level of the bucket.
+   * @param index The index of the bucket.
+   * @return The first timer that was in the bucket.
+   */
+  private Timer<T> take(int level, int index) {
+    Timer<T> first = buckets[level][index];
+    buckets[level][index] = null;
+    for (Timer<T> timer = first; timer != null; timer = timer.next) {
+      timer.level = -1;
+      counts[level]--;
+      size--;
+    }
+    return first;
+  }
+}
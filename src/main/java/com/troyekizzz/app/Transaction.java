@@ -1,12 +1,14 @@
 package com.troyekizzz.app;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.troyekizzz.app.utils.BenefitLevel;
 import com.troyekizzz.app.utils.Currency;
 import com.troyekizzz.app.utils.NotificationType;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 
 /**
  * A class that represents a transaction.
@@ -14,7 +16,19 @@ import lombok.Data;
  * @author TroyeKizzz
  */
 @Data
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
 public class Transaction {
+  /**
+   * The source of transaction ids.
+   */
+  private static final AtomicLong nextId = new AtomicLong(1);
+
+  /**
+   * The transaction id. Equality and hash codes are based on it only.
+   */
+  @EqualsAndHashCode.Include
+  private final long id;
+
   /**
    * The account from which the transaction is made.
    */
@@ -58,6 +72,7 @@ public class Transaction {
     if (from == null || to == null || amount <= 0 || currency == null) {
       throw new IllegalArgumentException("Invalid transaction");
     }
+    this.id = nextId.getAndIncrement();
     this.from = from;
     this.to = to;
     this.amount = amount;
@@ -70,6 +85,7 @@ public class Transaction {
     if (amount <= 0 || currency == null) {
       throw new IllegalArgumentException("Invalid transaction");
     }
+    this.id = nextId.getAndIncrement();
     this.from = card.getAccount();
     this.to = null;
     this.amount = amount;
@@ -78,6 +94,23 @@ public class Transaction {
     this.description = description;
   }
 
+  /**
+   * Creates a detached copy of a stored transaction, i.e. one without accounts.
+   * 
+   * @param id          The id of the stored transaction.
+   * @param amount      The amount of the transaction.
+   * @param currency    The currency of the transaction.
+   * @param date        The date of the transaction.
+   * @param description The description of the transaction.
+   */
+  Transaction(long id, float amount, Currency currency, Date date, String description) {
+    this.id = id;
+    this.amount = amount;
+    this.currency = currency;
+    this.date = date;
+    this.description = description;
+  }
+
   /**
    * Calculates the fee of the transaction based on the sender's benefit level.
    * 
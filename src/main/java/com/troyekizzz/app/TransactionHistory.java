@@ -0,0 +1,358 @@
+package com.troyekizzz.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+
+import com.troyekizzz.app.utils.Currency;
+
+/**
+ * A class that represents the transaction history of an ATM or a card.
+ *
+ * The most recent transactions are kept in memory in a ring of fixed size.
+ * Older transactions are written to an append-only segment file and read
+ * back when they are asked for. Only one file position is remembered for
+ * every 64 old transactions, so the memory used by a history stays nearly
+ * flat however old it is. The 64 records after a position are read as one
+ * block, and the last block read is kept, so reading old transactions in
+ * order reads the file once per block. Transactions read back from the file are detached,
+ * i.e. they have the id, amount, currency, date and description of the
+ * original transaction but no accounts.
+ *
+ * The history can only be appended to. The segment files of all histories
+ * are kept in one temporary directory. Closing a history deletes its file;
+ * whatever is left in the directory is deleted when the program exits.
+ *
+ * @author TroyeKizzz
+ */
+public class TransactionHistory extends AbstractList<Transaction> {
+  /**
+   * The default number of transactions kept in memory.
+   */
+  public static final int DEFAULT_CAPACITY = 1024;
+
+  /**
+   * The number of file records between two remembered file positions.
+   */
+  private static final int SPARSE_INDEX_STEP = 64;
+
+  /**
+   * The currencies by their ordinal.
+   */
+  private static final Currency[] CURRENCIES = Currency.values();
+
+  /**
+   * The directory of the segment files, or null before the first file is created.
+   */
+  private static Path directory = null;
+
+  /**
+   * The most recent transactions, oldest at {@link #head}.
+   */
+  private final Transaction[] recent;
+
+  /**
+   * The position of the oldest transaction in memory.
+   */
+  private int head = 0;
+
+  /**
+   * The number of transactions in memory.
+   */
+  private int recentSize = 0;
+
+  /**
+   * The number of transactions in the segment file.
+   */
+  private int spilled = 0;
+
+  /**
+   * The segment file, or null before the first transaction is spilled.
+   */
+  private RandomAccessFile segment = null;
+
+  /**
+   * The path of the segment file, kept to delete the file when the history is closed.
+   */
+  private File segmentFile = null;
+
+  /**
+   * True if the history has been closed.
+   */
+  private boolean closed = false;
+
+  /**
+   * The file position of every {@link #SPARSE_INDEX_STEP}th record.
+   */
+  private long[] positions = new long[8];
+
+  /**
+   * The records of the block read last, or null if no block is kept.
+   */
+  private byte[] block = null;
+
+  /**
+   * The number of the block read last.
+   */
+  private int blockSlot = -1;
+
+  /**
+   * Creates a new history with the default capacity.
+   */
+  public TransactionHistory() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Creates a new history.
+   *
+   * @param capacity The number of transactions kept in memory. Positive.
+   */
+  public TransactionHistory(int capacity) throws IllegalArgumentException {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("The capacity must be positive.");
+    this.recent = new Transaction[capacity];
+  }
+
+  /**
+   * Returns a transaction by its position, the oldest first.
+   *
+   * @param index The position.
+   * @return The transaction, detached if it was read from the segment file.
+   */
+  @Override
+  public synchronized Transaction get(int index) throws IndexOutOfBoundsException, IllegalStateException {
+    if (index < 0 || index >= spilled + recentSize)
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+    if (index >= spilled) {
+      return recent[(head + index - spilled) % recent.length];
+    }
+    if (closed)
+      throw new IllegalStateException("The transaction history is closed.");
+    return read(index);
+  }
+
+  /**
+   * Returns the number of transactions.
+   *
+   * @return The number of transactions.
+   */
+  @Override
+  public synchronized int size() {
+    return spilled + recentSize;
+  }
+
+  /**
+   * Appends a transaction.
+   *
+   * @param index       The position, which must be the size of the history.
+   * @param transaction The transaction.
+   */
+  @Override
+  public synchronized void add(int index, Transaction transaction) throws UnsupportedOperationException, IllegalStateException {
+    if (closed)
+      throw new IllegalStateException("The transaction history is closed.");
+    if (index != size())
+      throw new UnsupportedOperationException("Transactions can only be appended.");
+    if (transaction == null)
+      throw new IllegalArgumentException("Invalid transaction");
+    if (recentSize == recent.length) {
+      spill(recent[head]);
+      recent[head] = null;
+      head = (head + 1) % recent.length;
+      recentSize--;
+    }
+    recent[(head + recentSize) % recent.length] = transaction;
+    recentSize++;
+    modCount++;
+  }
+
+  /**
+   * Appends a transaction.
+   *
+   * @param transaction The transaction.
+   * @return True.
+   */
+  @Override
+  public synchronized boolean add(Transaction transaction) throws IllegalStateException {
+    add(size(), transaction);
+    return true;
+  }
+
+  /**
+   * Appends transactions together, so that no other transaction lands between them.
+   *
+   * @param transactions The transactions.
+   * @return True if any transaction was appended.
+   */
+  @Override
+  public synchronized boolean addAll(Collection<? extends Transaction> transactions) throws IllegalStateException {
+    for (Transaction transaction : transactions) {
+      add(size(), transaction);
+    }
+    return !transactions.isEmpty();
+  }
+
+  /**
+   * Returns the number of transactions kept in memory.
+   *
+   * @return The number of transactions in memory.
+   */
+  public synchronized int getRecentSize() {
+    return recentSize;
+  }
+
+  /**
+   * Closes the segment file and deletes it.
+   *
+   * The transactions in memory can still be read, the spilled ones cannot,
+   * and no transactions can be added. Closing a closed history does nothing.
+   */
+  public synchronized void close() throws IllegalStateException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (segment == null) {
+      return;
+    }
+    try {
+      segment.close();
+      Files.deleteIfExists(segmentFile.toPath());
+    } catch (IOException e) {
+      throw new IllegalStateException("The transaction history cannot be closed.", e);
+    } finally {
+      segment = null;
+      block = null;
+    }
+  }
+
+  /**
+   * Returns the directory of the segment files, creating it on first use.
+   *
+   * @return The directory.
+   */
+  private static synchronized Path segmentDirectory() throws IOException {
+    if (directory == null) {
+      Path created = Files.createTempDirectory("transactions");
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> deleteDirectory(created)));
+      directory = created;
+    }
+    return directory;
+  }
+
+  /**
+   * Deletes the directory of the segment files and the files left in it.
+   *
+   * @param directory The directory.
+   */
+  private static void deleteDirectory(Path directory) {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+      Files.deleteIfExists(directory);
+    } catch (IOException e) {
+      return;
+    }
+  }
+
+  /**
+   * Writes a transaction to the end of the segment file.
+   *
+   * The description is written as UTF-8 after its length in bytes, so it is
+   * kept whole however long it is.
+   *
+   * @param transaction The transaction.
+   */
+  private void spill(Transaction transaction) throws IllegalStateException {
+    try {
+      if (segment == null) {
+        segmentFile = File.createTempFile("transactions", ".seg", segmentDirectory().toFile());
+        segment = new RandomAccessFile(segmentFile, "rw");
+      }
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+      DataOutputStream record = new DataOutputStream(bytes);
+      record.writeLong(transaction.getId());
+      record.writeLong(transaction.getDate().getTime());
+      record.writeFloat(transaction.getAmount());
+      record.writeByte(transaction.getCurrency().ordinal());
+      byte[] description = (transaction.getDescription() == null ? "" : transaction.getDescription()).getBytes(StandardCharsets.UTF_8);
+      record.writeInt(description.length);
+      record.write(description);
+      long position = segment.length();
+      if (spilled % SPARSE_INDEX_STEP == 0) {
+        int slot = spilled / SPARSE_INDEX_STEP;
+        if (slot == positions.length) {
+          positions = Arrays.copyOf(positions, slot * 2);
+        }
+        positions[slot] = position;
+      }
+      segment.seek(position);
+      segment.write(bytes.toByteArray());
+      if (blockSlot == spilled / SPARSE_INDEX_STEP) {
+        block = null;
+        blockSlot = -1;
+      }
+      spilled++;
+    } catch (IOException e) {
+      throw new IllegalStateException("The transaction history cannot be written.", e);
+    }
+  }
+
+  /**
+   * Reads a transaction from the segment file.
+   *
+   * @param index The position of the transaction in the file.
+   * @return The detached transaction.
+   */
+  private Transaction read(int index) throws IllegalStateException {
+    int slot = index / SPARSE_INDEX_STEP;
+    if (slot != blockSlot) {
+      readBlock(slot);
+    }
+    ByteBuffer records = ByteBuffer.wrap(block);
+    for (int skip = index % SPARSE_INDEX_STEP; skip > 0; skip--) {
+      records.position(records.position() + 8 + 8 + 4 + 1);
+      int length = records.getInt();
+      records.position(records.position() + length);
+    }
+    long id = records.getLong();
+    long date = records.getLong();
+    float amount = records.getFloat();
+    Currency currency = CURRENCIES[records.get()];
+    byte[] description = new byte[records.getInt()];
+    records.get(description);
+    return new Transaction(id, amount, currency, new Date(date), new String(description, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads a block of records from the segment file and keeps it.
+   *
+   * @param slot The number of the block.
+   */
+  private void readBlock(int slot) throws IllegalStateException {
+    try {
+      long start = positions[slot];
+      long end = (slot + 1) * SPARSE_INDEX_STEP < spilled ? positions[slot + 1] : segment.length();
+      byte[] records = new byte[(int) (end - start)];
+      segment.seek(start);
+      segment.readFully(records);
+      block = records;
+      blockSlot = slot;
+    } catch (IOException e) {
+      throw new IllegalStateException("The transaction history cannot be read.", e);
+    }
+  }
+}
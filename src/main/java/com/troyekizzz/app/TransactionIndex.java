@@ -0,0 +1,439 @@
+package com.troyekizzz.app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.troyekizzz.app.utils.Currency;
+
+/**
+ * A singleton class that indexes transactions by account, card and ATM.
+ *
+ * Every key keeps its transactions in time order as flat records in
+ * primitive arrays, so a search finds the time range by binary search and
+ * filters amounts without touching any objects. The index does not hold
+ * the transactions themselves; a search returns detached copies, i.e.
+ * transactions with the id, amount, currency, date and description of the
+ * original but no accounts.
+ *
+ * Every key has its own lock, so transactions of different accounts, cards
+ * and ATMs are indexed in parallel. Every key keeps at most a fixed number
+ * of transactions; when it is full, its oldest quarter is dropped, and a
+ * search whose time range reaches into the dropped transactions returns a
+ * page marked as incomplete.
+ *
+ * Every transaction of a key gets a sequence number when it is added, and
+ * the transactions are ordered by time and then by sequence number. A cursor
+ * holds the time and the sequence number of the last transaction it passed,
+ * so it stays valid when an older transaction is moved in before it.
+ *
+ * @author TroyeKizzz
+ */
+public class TransactionIndex {
+  /**
+   * The transactions of one key in time order.
+   */
+  private static class Entries {
+    /**
+     * The currencies by their ordinal.
+     */
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    /**
+     * The transaction times in milliseconds since the epoch.
+     */
+    private long[] times = new long[8];
+
+    /**
+     * The transaction amounts.
+     */
+    private float[] amounts = new float[8];
+
+    /**
+     * The transaction ids.
+     */
+    private long[] ids = new long[8];
+
+    /**
+     * The ordinals of the transaction currencies.
+     */
+    private byte[] currencies = new byte[8];
+
+    /**
+     * The transaction descriptions.
+     */
+    private String[] descriptions = new String[8];
+
+    /**
+     * The sequence numbers of the transactions, in the order they were added.
+     */
+    private long[] sequences = new long[8];
+
+    /**
+     * The sequence number of the next transaction.
+     */
+    private long nextSequence = 0;
+
+    /**
+     * The number of transactions.
+     */
+    private int size = 0;
+
+    /**
+     * The time of the newest transaction that has been dropped, or
+     * {@link Long#MIN_VALUE} if none has.
+     */
+    private long droppedUntil = Long.MIN_VALUE;
+
+    /**
+     * The largest number of transactions kept.
+     */
+    private final int capacity;
+
+    /**
+     * Creates new entries.
+     *
+     * @param capacity The largest number of transactions kept.
+     */
+    private Entries(int capacity) {
+      this.capacity = capacity;
+    }
+
+    /**
+     * Adds a transaction in time order.
+     *
+     * Transactions usually come in time order and are added at the end. An
+     * older one, e.g. a replayed offline operation, is moved in after the
+     * transactions of the same time, as its sequence number is the largest.
+     *
+     * @param transaction The transaction to add.
+     */
+    private synchronized void add(Transaction transaction) {
+      if (size == capacity) {
+        drop(Math.max(1, capacity / 4));
+      }
+      if (size == times.length) {
+        int length = Math.min(size * 2, capacity);
+        times = Arrays.copyOf(times, length);
+        amounts = Arrays.copyOf(amounts, length);
+        ids = Arrays.copyOf(ids, length);
+        currencies = Arrays.copyOf(currencies, length);
+        descriptions = Arrays.copyOf(descriptions, length);
+        sequences = Arrays.copyOf(sequences, length);
+      }
+      long time = transaction.getDate().getTime();
+      int position = size > 0 && time < times[size - 1] ? lowerBound(time + 1) : size;
+      System.arraycopy(times, position, times, position + 1, size - position);
+      System.arraycopy(amounts, position, amounts, position + 1, size - position);
+      System.arraycopy(ids, position, ids, position + 1, size - position);
+      System.arraycopy(currencies, position, currencies, position + 1, size - position);
+      System.arraycopy(descriptions, position, descriptions, position + 1, size - position);
+      System.arraycopy(sequences, position, sequences, position + 1, size - position);
+      times[position] = time;
+      amounts[position] = transaction.getAmount();
+      ids[position] = transaction.getId();
+      currencies[position] = (byte) transaction.getCurrency().ordinal();
+      descriptions[position] = transaction.getDescription();
+      sequences[position] = nextSequence++;
+      size++;
+    }
+
+    /**
+     * Drops the oldest transactions.
+     *
+     * @param count The number of transactions to drop.
+     */
+    private void drop(int count) {
+      droppedUntil = Math.max(droppedUntil, times[count - 1]);
+      System.arraycopy(times, count, times, 0, size - count);
+      System.arraycopy(amounts, count, amounts, 0, size - count);
+      System.arraycopy(ids, count, ids, 0, size - count);
+      System.arraycopy(currencies, count, currencies, 0, size - count);
+      System.arraycopy(descriptions, count, descriptions, 0, size - count);
+      System.arraycopy(sequences, count, sequences, 0, size - count);
+      Arrays.fill(descriptions, size - count, size, null);
+      size -= count;
+    }
+
+    /**
+     * Returns the position of the first transaction made at or after the given time.
+     *
+     * @param time The time in milliseconds since the epoch.
+     * @return The position of the transaction, or the size if there is none.
+     */
+    private int lowerBound(long time) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (times[middle] < time) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns the position of the first transaction after the given time and sequence number.
+     *
+     * @param time     The time in milliseconds since the epoch.
+     * @param sequence The sequence number.
+     * @return The position of the transaction, or the size if there is none.
+     */
+    private int after(long time, long sequence) {
+      int low = lowerBound(time);
+      int high = lowerBound(time + 1);
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (sequences[middle] <= sequence) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Returns a page of transactions in a time and amount range.
+     *
+     * @param from      The start of the time range, inclusive.
+     * @param to        The end of the time range, inclusive.
+     * @param minAmount The smallest amount, inclusive.
+     * @param maxAmount The largest amount, inclusive.
+     * @param cursor    The time and sequence number the previous page stopped after, or null for the first page.
+     * @param limit     The largest number of transactions on the page.
+     * @return The page of detached transactions.
+     */
+    private synchronized TransactionPage find(long from, long to, float minAmount, float maxAmount, long[] cursor, int limit) {
+      List<Transaction> result = new ArrayList<>(Math.min(limit, 64));
+      int end = to == Long.MAX_VALUE ? size : lowerBound(to + 1);
+      int index = lowerBound(from);
+      if (cursor != null) {
+        index = Math.max(index, after(cursor[0], cursor[1]));
+      }
+      for (; index < end && result.size() < limit; index++) {
+        if (amounts[index] >= minAmount && amounts[index] <= maxAmount) {
+          result.add(new Transaction(ids[index], amounts[index], CURRENCIES[currencies[index]], new Date(times[index]), descriptions[index]));
+        }
+      }
+      String next = index < end ? times[index - 1] + ":" + sequences[index - 1] : null;
+      return new TransactionPage(result, next, from <= droppedUntil);
+    }
+  }
+
+  /**
+   * The default largest number of transactions kept for one key.
+   */
+  static final int DEFAULT_CAPACITY = 100000;
+
+  /**
+   * The singleton instance.
+   */
+  public static volatile TransactionIndex instance = null;
+
+  /**
+   * The transactions by the id of the account that sent or received them.
+   */
+  private final Map<Long, Entries> accounts = new ConcurrentHashMap<>();
+
+  /**
+   * The transactions by card.
+   */
+  private final Map<Card, Entries> cards = new ConcurrentHashMap<>();
+
+  /**
+   * The transactions by ATM.
+   */
+  private final Map<ATM, Entries> atms = new ConcurrentHashMap<>();
+
+  /**
+   * The largest number of transactions kept for one key.
+   */
+  private final int capacity;
+
+  /**
+   * Creates a new transaction index.
+   *
+   * @param capacity The largest number of transactions kept for one key.
+   */
+  TransactionIndex(int capacity) throws IllegalArgumentException {
+    if (capacity <= 0)
+      throw new IllegalArgumentException("The capacity must be positive.");
+    this.capacity = capacity;
+  }
+
+  /**
+   * Returns the singleton instance.
+   *
+   * If the instance does not exist, it is created.
+   * Otherwise, the existing instance is returned.
+   *
+   * @return The singleton instance.
+   */
+  public static TransactionIndex getInstance() {
+    TransactionIndex index = instance;
+    if (index == null) {
+      synchronized (TransactionIndex.class) {
+        if (instance == null) {
+          instance = new TransactionIndex(DEFAULT_CAPACITY);
+        }
+        index = instance;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Indexes a transaction by the accounts that sent and received it.
+   *
+   * @param transaction The transaction to index.
+   */
+  public void add(Transaction transaction) {
+    accounts.computeIfAbsent(transaction.getFrom().getId(), id -> new Entries(capacity)).add(transaction);
+    if (transaction.getTo() != null && transaction.getTo() != transaction.getFrom()) {
+      accounts.computeIfAbsent(transaction.getTo().getId(), id -> new Entries(capacity)).add(transaction);
+    }
+  }
+
+  /**
+   * Indexes a transaction by the card it was made with.
+   *
+   * @param card        The card.
+   * @param transaction The transaction to index.
+   */
+  public void add(Card card, Transaction transaction) {
+    cards.computeIfAbsent(card, key -> new Entries(capacity)).add(transaction);
+  }
+
+  /**
+   * Indexes a transaction by the ATM it was made at.
+   *
+   * @param atm         The ATM.
+   * @param transaction The transaction to index.
+   */
+  public void add(ATM atm, Transaction transaction) {
+    atms.computeIfAbsent(atm, key -> new Entries(capacity)).add(transaction);
+  }
+
+  /**
+   * Indexes transactions made with a card at an ATM by account, card and ATM at once.
+   *
+   * @param card         The card.
+   * @param atm          The ATM.
+   * @param transactions The transactions to index.
+   */
+  public void addAll(Card card, ATM atm, List<Transaction> transactions) {
+    for (Transaction transaction : transactions) {
+      add(transaction);
+      add(card, transaction);
+      add(atm, transaction);
+    }
+  }
+
+  /**
+   * Removes the transactions of a card, e.g. when the card is removed from the bank.
+   *
+   * @param card The card.
+   */
+  public void remove(Card card) {
+    cards.remove(card);
+  }
+
+  /**
+   * Removes the transactions of an ATM, e.g. when the ATM is removed from the bank.
+   *
+   * @param atm The ATM.
+   */
+  public void remove(ATM atm) {
+    atms.remove(atm);
+  }
+
+  /**
+   * Finds the transactions sent or received by an account.
+   *
+   * @param account   The account.
+   * @param from      The start of the time range, inclusive.
+   * @param to        The end of the time range, inclusive.
+   * @param minAmount The smallest amount, inclusive.
+   * @param maxAmount The largest amount, inclusive.
+   * @param cursor    The cursor returned by the previous page, or null for the first page.
+   * @param limit     The largest number of transactions on the page. Positive.
+   * @return The page of detached transactions, oldest first. It is marked as incomplete
+   *         if older transactions of the key in the time range have been dropped.
+   */
+  public TransactionPage findByAccount(Account account, Date from, Date to, float minAmount, float maxAmount, String cursor, int limit) throws IllegalArgumentException {
+    return find(accounts.get(account.getId()), from, to, minAmount, maxAmount, cursor, limit);
+  }
+
+  /**
+   * Finds the transactions made with a card.
+   *
+   * @param card      The card.
+   * @param from      The start of the time range, inclusive.
+   * @param to        The end of the time range, inclusive.
+   * @param minAmount The smallest amount, inclusive.
+   * @param maxAmount The largest amount, inclusive.
+   * @param cursor    The cursor returned by the previous page, or null for the first page.
+   * @param limit     The largest number of transactions on the page. Positive.
+   * @return The page of detached transactions, oldest first. It is marked as incomplete
+   *         if older transactions of the key in the time range have been dropped.
+   */
+  public TransactionPage findByCard(Card card, Date from, Date to, float minAmount, float maxAmount, String cursor, int limit) throws IllegalArgumentException {
+    return find(cards.get(card), from, to, minAmount, maxAmount, cursor, limit);
+  }
+
+  /**
+   * Finds the transactions made at an ATM.
+   *
+   * @param atm       The ATM.
+   * @param from      The start of the time range, inclusive.
+   * @param to        The end of the time range, inclusive.
+   * @param minAmount The smallest amount, inclusive.
+   * @param maxAmount The largest amount, inclusive.
+   * @param cursor    The cursor returned by the previous page, or null for the first page.
+   * @param limit     The largest number of transactions on the page. Positive.
+   * @return The page of detached transactions, oldest first. It is marked as incomplete
+   *         if older transactions of the key in the time range have been dropped.
+   */
+  public TransactionPage findByAtm(ATM atm, Date from, Date to, float minAmount, float maxAmount, String cursor, int limit) throws IllegalArgumentException {
+    return find(atms.get(atm), from, to, minAmount, maxAmount, cursor, limit);
+  }
+
+  /**
+   * Finds a page of transactions of one key.
+   *
+   * @param entries   The transactions of the key, or null if there are none.
+   * @param from      The start of the time range, inclusive.
+   * @param to        The end of the time range, inclusive.
+   * @param minAmount The smallest amount, inclusive.
+   * @param maxAmount The largest amount, inclusive.
+   * @param cursor    The cursor returned by the previous page, or null for the first page.
+   * @param limit     The largest number of transactions on the page. Positive.
+   * @return The page of detached transactions, oldest first. It is marked as incomplete
+   *         if older transactions of the key in the time range have been dropped.
+   */
+  private TransactionPage find(Entries entries, Date from, Date to, float minAmount, float maxAmount, String cursor, int limit) throws IllegalArgumentException {
+    if (limit <= 0)
+      throw new IllegalArgumentException("The limit must be positive.");
+    long[] position = null;
+    if (cursor != null) {
+      String[] fields = cursor.split(":");
+      try {
+        if (fields.length != 2)
+          throw new NumberFormatException();
+        position = new long[] {Long.parseLong(fields[0]), Long.parseLong(fields[1])};
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("The cursor is invalid.");
+      }
+    }
+    if (entries == null)
+      return new TransactionPage(new ArrayList<>(), null, false);
+    return entries.find(from.getTime(), to.getTime(), minAmount, maxAmount, position, limit);
+  }
+}
@@ -0,0 +1,51 @@
+package com.troyekizzz.app;
+
+import java.util.List;
+
+import lombok.Getter;
+
+/**
+ * A class that represents one page of transaction search results.
+ * 
+ * @author TroyeKizzz
+ */
+@Getter
+public class TransactionPage {
+  /**
+   * The transactions on the page, oldest first.
+   */
+  private List<Transaction> transactions;
+
+  /**
+   * The cursor to pass to the next search, or null if there are no more results.
+   */
+  private String nextCursor;
+
+  /**
+   * True if some transactions in the searched time range have been dropped
+   * from the index to keep it within its capacity, so the results are not complete.
+   */
+  private boolean incomplete;
+
+  /**
+   * Creates a new page of search results.
+   * 
+   * @param transactions The transactions on the page.
+   * @param nextCursor   The cursor of the next page, or null if there are no more results.
+   * @param incomplete   True if transactions in the searched time range have been dropped.
+   */
+  public TransactionPage(List<Transaction> transactions, String nextCursor, boolean incomplete) {
+    this.transactions = transactions;
+    this.nextCursor = nextCursor;
+    this.incomplete = incomplete;
+  }
+
+  /**
+   * Returns true if there are more results after this page.
+   * 
+   * @return True if there are more results, false otherwise.
+   */
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
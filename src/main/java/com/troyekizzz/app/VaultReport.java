@@ -0,0 +1,146 @@
+package com.troyekizzz.app;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import com.troyekizzz.app.utils.Currency;
+
+import lombok.Getter;
+
+/**
+ * A class that represents the end-of-day reconciliation of a branch vault.
+ *
+ * @author TroyeKizzz
+ */
+@Getter
+public class VaultReport {
+  /**
+   * The reconciliation of one currency.
+   */
+  @Getter
+  public static class Line {
+    /**
+     * The currency.
+     */
+    private final Currency currency;
+
+    /**
+     * The balance at the start of the day.
+     */
+    private final float opening;
+
+    /**
+     * The deposits of the day.
+     */
+    private final float deposits;
+
+    /**
+     * The number of deposits of the day.
+     */
+    private final long depositCount;
+
+    /**
+     * The withdrawals of the day.
+     */
+    private final float withdrawals;
+
+    /**
+     * The number of withdrawals of the day.
+     */
+    private final long withdrawalCount;
+
+    /**
+     * The balance expected from the opening balance and the operations.
+     */
+    private final float expected;
+
+    /**
+     * The counted cash.
+     */
+    private final float counted;
+
+    /**
+     * Creates a new line.
+     *
+     * @param currency        The currency.
+     * @param opening         The balance at the start of the day.
+     * @param deposits        The deposits of the day.
+     * @param depositCount    The number of deposits of the day.
+     * @param withdrawals     The withdrawals of the day.
+     * @param withdrawalCount The number of withdrawals of the day.
+     * @param expected        The expected balance.
+     * @param counted         The counted cash.
+     */
+    public Line(Currency currency, float opening, float deposits, long depositCount, float withdrawals,
+        long withdrawalCount, float expected, float counted) {
+      this.currency = currency;
+      this.opening = opening;
+      this.deposits = deposits;
+      this.depositCount = depositCount;
+      this.withdrawals = withdrawals;
+      this.withdrawalCount = withdrawalCount;
+      this.expected = expected;
+      this.counted = counted;
+    }
+
+    /**
+     * Returns the counted cash less the expected balance.
+     *
+     * @return The difference, negative if cash is missing.
+     */
+    public float getDifference() {
+      return Math.round((counted - expected) * 100) / 100f;
+    }
+  }
+
+  /**
+   * The time of the reconciliation.
+   */
+  private final Date date;
+
+  /**
+   * The reconciliation of every currency that had cash or operations.
+   */
+  private final List<Line> lines;
+
+  /**
+   * Creates a new report.
+   *
+   * @param date  The time of the reconciliation.
+   * @param lines The reconciliation of every currency.
+   */
+  public VaultReport(Date date, List<Line> lines) {
+    this.date = date;
+    this.lines = Collections.unmodifiableList(lines);
+  }
+
+  /**
+   * Returns the line of a currency.
+   *
+   * @param currency The currency.
+   * @return The line, or null if the currency had no cash or operations.
+   */
+  public Line getLine(Currency currency) {
+    for (Line line : lines) {
+      if (line.getCurrency() == currency) {
+        return line;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the counted cash matches the expected balance in every currency.
+   *
+   * @return True if nothing is missing or extra, false otherwise.
+   */
+  public boolean isBalanced() {
+    for (Line line : lines) {
+      if (line.getDifference() != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
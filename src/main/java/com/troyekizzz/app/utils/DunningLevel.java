@@ -0,0 +1,14 @@
+package com.troyekizzz.app.utils;
+
+/**
+ * A class that represents how far the dunning of an overdue invoice has escalated.
+ *
+ * @author TroyeKizzz
+ */
+public enum DunningLevel {
+  NONE,
+  REMINDER,
+  NOTICE,
+  FINAL_NOTICE,
+  COLLECTION,
+}
@@ -0,0 +1,13 @@
+package com.troyekizzz.app.utils;
+
+/**
+ * A class that represents a status of an authorization hold.
+ *
+ * @author TroyeKizzz
+ */
+public enum HoldStatus {
+  OPEN,
+  CAPTURED,
+  VOIDED,
+  EXPIRED,
+}
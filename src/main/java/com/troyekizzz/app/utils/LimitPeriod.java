@@ -0,0 +1,54 @@
+package com.troyekizzz.app.utils;
+
+/**
+ * A class that represents a rolling period of a card spend limit.
+ *
+ * Spending in a period is counted in buckets, so a bucket leaves
+ * the period as a whole when it is older than the period.
+ *
+ * @author TroyeKizzz
+ */
+public enum LimitPeriod {
+  DAILY(24, 60 * 60 * 1000L),
+  WEEKLY(7 * 24, 60 * 60 * 1000L),
+  MONTHLY(30, 24 * 60 * 60 * 1000L);
+
+  /**
+   * The number of buckets in the period.
+   */
+  private final int bucketCount;
+
+  /**
+   * The length of one bucket in milliseconds.
+   */
+  private final long bucketLength;
+
+  /**
+   * Creates a new limit period.
+   *
+   * @param bucketCount  The number of buckets in the period.
+   * @param bucketLength The length of one bucket in milliseconds.
+   */
+  LimitPeriod(int bucketCount, long bucketLength) {
+    this.bucketCount = bucketCount;
+    this.bucketLength = bucketLength;
+  }
+
+  /**
+   * Returns the number of buckets in the period.
+   *
+   * @return The number of buckets.
+   */
+  public int getBucketCount() {
+    return bucketCount;
+  }
+
+  /**
+   * Returns the length of one bucket in milliseconds.
+   *
+   * @return The length of one bucket.
+   */
+  public long getBucketLength() {
+    return bucketLength;
+  }
+}
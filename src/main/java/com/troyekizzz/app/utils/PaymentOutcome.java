@@ -0,0 +1,13 @@
+package com.troyekizzz.app.utils;
+
+/**
+ * A class that represents the outcome of an invoice in a payment run.
+ *
+ * @author TroyeKizzz
+ */
+public enum PaymentOutcome {
+  PAID,
+  INSUFFICIENT_FUNDS,
+  FAILED,
+  SKIPPED,
+}
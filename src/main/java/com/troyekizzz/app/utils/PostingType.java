@@ -0,0 +1,15 @@
+package com.troyekizzz.app.utils;
+
+/**
+ * A class that represents a type of a ledger posting.
+ *
+ * @author TroyeKizzz
+ */
+public enum PostingType {
+  DEPOSIT,
+  WITHDRAWAL,
+  TRANSFER_IN,
+  TRANSFER_OUT,
+  INTEREST,
+  REVERSAL,
+}
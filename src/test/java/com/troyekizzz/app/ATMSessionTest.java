@@ -0,0 +1,159 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.CardType;
+import com.troyekizzz.app.utils.Currency;
+
+public class ATMSessionTest {
+  private Bank bank;
+  private ATM atm;
+  private Card card;
+
+  @BeforeEach
+  public void beforeEach() {
+    bank = new Bank("Test Bank", 100000);
+    atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    card = bank.addCard(account, CardType.DEBIT, "1111");
+  }
+
+  @Test
+  @DisplayName("Test several operations in one session")
+  public void testOperations() {
+    ATMSession session = atm.openSession(card, "1111");
+    session.withdrawCash(200, Currency.EUR);
+    session.depositCash(50, Currency.EUR);
+    assertAll("Test session operations",
+      () -> assertEquals("Your balance is 350.0 EUR", session.checkBalance()),
+      () -> assertEquals("No messages", session.displayMessage()),
+      () -> assertEquals(850, atm.getBalance()),
+      () -> assertThrows(IllegalStateException.class, () -> session.withdrawCash(2000, Currency.EUR)),
+      () -> assertThrows(IllegalStateException.class, () -> session.depositCash(0, Currency.EUR)),
+      () -> assertTrue(session.isOpen())
+    );
+  }
+
+  @Test
+  @DisplayName("Test transactions are recorded by each operation")
+  public void testClose() {
+    ATMSession session = atm.openSession(card, "1111");
+    session.withdrawCash(100, Currency.EUR);
+    assertEquals(1, atm.getTransactions().size());
+    session.withdrawCash(100, Currency.EUR);
+    session.close();
+    session.close();
+    assertAll("Test session close",
+      () -> assertEquals(2, atm.getTransactions().size()),
+      () -> assertEquals(2, card.getHistory().size()),
+      () -> assertEquals(2, TransactionIndex.getInstance().findByAtm(atm, new Date(0), new Date(Long.MAX_VALUE), 0, Float.MAX_VALUE, null, 10).getTransactions().size()),
+      () -> assertFalse(session.isOpen()),
+      () -> assertThrows(IllegalStateException.class, () -> session.checkBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a session cannot be opened with a wrong pin or at a deactivated ATM")
+  public void testOpen() {
+    assertThrows(IllegalStateException.class, () -> atm.openSession(card, "2222"));
+    ATMSession session = atm.openSession(card, "1111");
+    session.withdrawCash(100, Currency.EUR);
+    atm.deactivate();
+    assertAll("Test session open",
+      () -> assertEquals(1, atm.getTransactions().size()),
+      () -> assertFalse(session.isOpen()),
+      () -> assertThrows(IllegalStateException.class, () -> atm.openSession(card, "1111"))
+    );
+  }
+
+  @Test
+  @DisplayName("Test an idle session expires and records its transactions")
+  public void testTimeout() throws InterruptedException {
+    ATMSession session = atm.openSession(card, "1111", 20);
+    session.depositCash(100, Currency.EUR);
+    Thread.sleep(50);
+    assertFalse(session.isOpen());
+    atm.closeExpiredSessions();
+    assertAll("Test session timeout",
+      () -> assertEquals(1, atm.getTransactions().size()),
+      () -> assertThrows(IllegalStateException.class, () -> session.checkBalance()),
+      () -> assertEquals(600, card.getAccount().getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test an abandoned session keeps its transactions and is closed by the next operation")
+  public void testAbandoned() throws InterruptedException {
+    ATMSession session = atm.openSession(card, "1111", 20);
+    session.withdrawCash(100, Currency.EUR);
+    assertEquals(1, card.getHistory().size());
+    Thread.sleep(50);
+    atm.checkBalance(card, "1111");
+    assertAll("Test abandoned session",
+      () -> assertEquals(1, atm.getTransactions().size()),
+      () -> assertFalse(session.isOpen()),
+      () -> assertThrows(IllegalStateException.class, () -> session.checkBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a session uses the verified session of the card")
+  public void testCardSession() {
+    ATMSession session = atm.openSession(card, "1111");
+    card.endSession();
+    assertAll("Test card session",
+      () -> assertFalse(session.isOpen()),
+      () -> assertThrows(IllegalStateException.class, () -> session.checkBalance())
+    );
+    ATMSession replaced = atm.openSession(card, "1111");
+    atm.openSession(card, "1111");
+    assertFalse(replaced.isOpen());
+  }
+
+  @Test
+  @DisplayName("Test concurrent sessions record all their transactions")
+  public void testConcurrentSessions() throws Exception {
+    Customer customer = bank.addCustomer("Jane", "Smith", "jane.smith@gmail.com", "+6789054322");
+    List<Card> cards = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      Account account = bank.openAccount(customer, Currency.EUR);
+      account.deposit(1000, Currency.EUR);
+      cards.add(bank.addCard(account, CardType.DEBIT, "2222"));
+    }
+    atm.depositCash(card, 10000, Currency.EUR, "1111");
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (Card used : cards) {
+      futures.add(executor.submit(() -> {
+        ATMSession session = atm.openSession(used, "2222");
+        for (int i = 0; i < 50; i++) {
+          session.withdrawCash(10, Currency.EUR);
+        }
+        session.close();
+        return null;
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertEquals(401, atm.getTransactions().size());
+  }
+}
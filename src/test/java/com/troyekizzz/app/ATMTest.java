@@ -5,10 +5,20 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -175,4 +185,201 @@ public class ATMTest {
     Card card = bank.addCard(account, CardType.DEBIT, "1111");
     assertEquals("No messages", atm.displayMessage(card, "1111"));
   }
+
+  @Test
+  public void testSessionToken() {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(100, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    String token = card.startSession("1111");
+    atm.withdrawCash(card, 40, Currency.EUR, token);
+    assertAll("Test ATM session token",
+      () -> assertEquals("Your balance is 60.0 EUR", atm.checkBalance(card, token)),
+      () -> assertEquals("No messages", atm.displayMessage(card, token))
+    );
+    card.endSession();
+    assertThrows(IllegalStateException.class, () -> atm.checkBalance(card, token));
+  }
+
+  @Test
+  public void testLockedCard() {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    for (int i = 0; i < Card.MAX_PIN_ATTEMPTS; i++) {
+      assertThrows(IllegalStateException.class, () -> atm.checkBalance(card, "2222"));
+    }
+    assertThrows(IllegalStateException.class, () -> atm.checkBalance(card, "1111"));
+    bank.unlockCard(card);
+    assertEquals("Your balance is 0.0 EUR", atm.checkBalance(card, "1111"));
+  }
+
+  @Test
+  public void testCassettes() {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", new int[] { 20, 50 }, new int[] { 10, 10 });
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    atm.withdrawCash(card, 90, Currency.EUR, "1111");
+    Throwable exception = assertThrows(IllegalStateException.class, () -> atm.withdrawCash(card, 30, Currency.EUR, "1111"));
+    assertAll("Test ATM cassettes",
+      () -> assertEquals("Amount cannot be dispensed", exception.getMessage()),
+      () -> assertEquals(410, account.getBalance()),
+      () -> assertEquals(610, atm.getBalance()),
+      () -> assertEquals(610, atm.getDispenser().getTotal()),
+      () -> assertEquals(99300, bank.getCapital())
+    );
+  }
+
+  @Test
+  public void testOffline(@TempDir Path directory) {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(150, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    Card other = bank.addCard(account, CardType.DEBIT, "2222");
+    atm.setOfflineLimit(other, 50);
+    atm.goOffline(directory.resolve("journal.log"));
+    atm.withdrawCash(card, 120, Currency.EUR, "1111");
+    atm.withdrawCash(card, 80, Currency.EUR, "1111");
+    atm.depositCash(card, 10, Currency.EUR, "1111");
+    Throwable exception = assertThrows(IllegalStateException.class, () -> atm.withdrawCash(card, 1, Currency.EUR, "1111"));
+    assertAll("Test ATM offline",
+      () -> assertEquals("Offline limit exceeded", exception.getMessage()),
+      () -> assertThrows(IllegalStateException.class, () -> atm.withdrawCash(other, 60, Currency.EUR, "2222")),
+      () -> assertThrows(IllegalStateException.class, () -> atm.checkBalance(card, "1111")),
+      () -> assertEquals(150, account.getBalance()),
+      () -> assertEquals(810, atm.getBalance()),
+      () -> assertEquals(0, atm.getTransactions().size())
+    );
+    OfflineReplayReport report = atm.goOnline();
+    assertAll("Test ATM replay",
+      () -> assertEquals(2, report.getApplied().size()),
+      () -> assertEquals(1, report.getConflicts().size()),
+      () -> assertEquals("Withdrawal of 80.0 EUR with card " + card.getNumber() + " failed: The amount is greater than the balance.", report.getConflicts().get(0)),
+      () -> assertEquals(40, account.getBalance()),
+      () -> assertEquals(2, atm.getTransactions().size()),
+      () -> assertEquals(2, card.getHistory().size()),
+      () -> assertEquals("Your balance is 40.0 EUR", atm.checkBalance(card, "1111")),
+      () -> assertThrows(IllegalStateException.class, () -> atm.goOnline())
+    );
+  }
+
+  @Test
+  public void testOfflineRestart(@TempDir Path directory) {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    Path journal = directory.resolve("journal.log");
+    atm.goOffline(journal);
+    atm.withdrawCash(card, 100, Currency.EUR, "1111");
+    ATM restarted = bank.addAtm("Test location", 900);
+    restarted.goOffline(journal);
+    OfflineReplayReport report = restarted.goOnline();
+    assertAll("Test ATM offline restart",
+      () -> assertTrue(report.isClean()),
+      () -> assertEquals(1, report.getApplied().size()),
+      () -> assertEquals(400, account.getBalance())
+    );
+  }
+  @Test
+  public void testOfflineRestartKeepsLimits(@TempDir Path directory) {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    Path journal = directory.resolve("journal.log");
+    atm.goOffline(journal);
+    atm.withdrawCash(card, 150, Currency.EUR, "1111");
+    ATM restarted = bank.addAtm("Test location", 850);
+    restarted.goOffline(journal);
+    Throwable exception = assertThrows(IllegalStateException.class, () -> restarted.withdrawCash(card, 100, Currency.EUR, "1111"));
+    assertEquals("Offline limit exceeded", exception.getMessage());
+  }
+
+  @Test
+  public void testOfflineReplayResumes(@TempDir Path directory) throws InterruptedException {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Customer shop = bank.addCustomer("Grocery Shop", "H-Market", "info@h-market.fi", "+358 123 456 789");
+    bank.openAccount(shop, Currency.EUR);
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    Path file = directory.resolve("journal.log");
+    atm.goOffline(file);
+    atm.withdrawCash(card, 100, Currency.EUR, "1111");
+    atm.withdrawCash(card, 50, Currency.EUR, "1111");
+    OfflineJournal journal = new OfflineJournal(file, bank.getJournalKey());
+    OfflineJournal.Entry first = journal.readAll().get(0);
+    account.withdraw(100, Currency.EUR);
+    journal.markApplied(first);
+    journal.close();
+    Thread.sleep(5);
+    card.processPurchase(10, Currency.EUR, "1111", shop);
+    ATM restarted = bank.addAtm("Test location", 850);
+    restarted.goOffline(file);
+    OfflineReplayReport report = restarted.goOnline();
+    Transaction replayed = report.getApplied().get(0);
+    long time = replayed.getDate().getTime();
+    assertAll("Test ATM offline replay resumes",
+      () -> assertEquals(1, report.getApplied().size()),
+      () -> assertEquals(50, replayed.getAmount()),
+      () -> assertEquals(340, account.getBalance()),
+      () -> assertEquals(replayed, TransactionIndex.getInstance()
+        .findByAccount(account, new Date(time), new Date(time), 0, Float.MAX_VALUE, null, 10).getTransactions().get(0))
+    );
+  }
+
+  @Test
+  public void testModeSwitchRace(@TempDir Path directory) throws Exception {
+    Bank bank = new Bank("Test Bank", 100000);
+    ATM atm = bank.addAtm("Test location", 10000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(10000, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1111");
+    String token = card.startSession("1111");
+    atm.setOfflineLimit(null, 10000);
+    AtomicInteger withdrawn = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < 4; thread++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 500; i++) {
+          atm.withdrawCash(card, 1, Currency.EUR, token);
+          withdrawn.incrementAndGet();
+        }
+        return null;
+      }));
+    }
+    for (int i = 0; i < 20; i++) {
+      atm.goOffline(directory.resolve("journal" + i + ".log"));
+      assertTrue(atm.goOnline().isClean());
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertAll("Test ATM mode switch race",
+      () -> assertEquals(2000, withdrawn.get()),
+      () -> assertEquals(8000, account.getBalance()),
+      () -> assertEquals(8000, atm.getBalance())
+    );
+  }
 }
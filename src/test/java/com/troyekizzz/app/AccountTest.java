@@ -3,11 +3,19 @@ package com.troyekizzz.app;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.DisplayName;
@@ -195,4 +203,108 @@ public class AccountTest {
     () -> assertEquals(1000.0f, account2.getBalance())
     );
   }
+
+  @Test
+  @DisplayName("Test concurrent credits to a striped account are not lost")
+  public void testStripedConcurrentCredits() throws Exception {
+    Account merchant = new Account(customer, Currency.EUR);
+    merchant.enableStriping(8);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int thread = 0; thread < 8; thread++) {
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 5000; i++) {
+          merchant.deposit(1, Currency.EUR);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+    assertAll("Test striped credits",
+      () -> assertTrue(merchant.isStriped()),
+      () -> assertEquals(40000, merchant.getBalance()),
+      () -> assertEquals(40000, merchant.getLedger().size()),
+      () -> assertEquals(40000, merchant.getLedger().getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test credits to a striped account are not lost when it is closed")
+  public void testStripedCloseRace() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    for (int round = 0; round < 200; round++) {
+      Account merchant = new Account(customer, Currency.EUR);
+      merchant.enableStriping(4);
+      AtomicInteger credited = new AtomicInteger();
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          try {
+            merchant.deposit(1, Currency.EUR);
+            credited.incrementAndGet();
+          } catch (IllegalStateException e) {
+            return null;
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      try {
+        merchant.close();
+      } catch (IllegalStateException e) {
+        assertEquals("The account has a positive balance.", e.getMessage());
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      assertEquals(credited.get(), merchant.getBalance());
+      if (!merchant.isOpen()) {
+        assertEquals(0, credited.get());
+      }
+    }
+    executor.shutdown();
+  }
+
+  @Test
+  @DisplayName("Test debits from a striped account fold the stripes")
+  public void testStripedDebit() {
+    this.account.enableStriping(4);
+    this.account.deposit(1000.0f, Currency.EUR);
+    this.account.withdraw(400.0f, Currency.EUR);
+    Throwable exception = assertThrows(IllegalArgumentException.class, () -> {
+      this.account.withdraw(700.0f, Currency.EUR);
+    });
+    assertAll("Test striped debit",
+      () -> assertEquals("The amount is greater than the balance.", exception.getMessage()),
+      () -> assertEquals(600.0f, this.account.getBalance()),
+      () -> assertEquals(600.0f, this.account.getAvailableBalance()),
+      () -> assertThrows(IllegalStateException.class, () -> this.account.enableStriping(4)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new Account(customer, Currency.EUR).enableStriping(3))
+    );
+  }
+
+  @Test
+  @DisplayName("Test account hash code stays the same when the balance changes")
+  public void testEquality() {
+    Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Account account = new Account(customer, Currency.EUR);
+    Account other = new Account(customer, Currency.EUR);
+    Set<Account> accounts = new HashSet<>();
+    accounts.add(account);
+    int hashCode = account.hashCode();
+    account.deposit(100, Currency.EUR);
+    assertAll("Test equality",
+      () -> assertEquals(hashCode, account.hashCode()),
+      () -> assertTrue(accounts.contains(account)),
+      () -> assertFalse(accounts.contains(other)),
+      () -> assertNotEquals(account, other)
+    );
+    customer.getBankAccounts().remove(other);
+    assertEquals(1, customer.getBankAccounts().size());
+    assertEquals(account, customer.getBankAccounts().get(0));
+  }
 }
@@ -0,0 +1,56 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AtmTelemetryTest {
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long START = 1000 * HOUR;
+
+  @Test
+  @DisplayName("Test rates add up and decay over time")
+  public void testRates() {
+    AtmTelemetry telemetry = new AtmTelemetry(1000);
+    telemetry.recordWithdrawal(100, 900, START);
+    telemetry.recordWithdrawal(200, 700, START);
+    telemetry.recordDeposit(50, 750, START);
+    assertAll("Test rates",
+      () -> assertEquals(300, telemetry.getWithdrawalRate(START), 0.001),
+      () -> assertEquals(50, telemetry.getDepositRate(START), 0.001),
+      () -> assertEquals(300 / Math.E, telemetry.getWithdrawalRate(START + HOUR), 0.001),
+      () -> assertEquals(750, telemetry.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test time to empty and balance projection")
+  public void testForecast() {
+    AtmTelemetry telemetry = new AtmTelemetry(1000);
+    telemetry.recordWithdrawal(500, 500, START);
+    assertAll("Test forecast",
+      () -> assertEquals(HOUR, telemetry.getTimeToEmpty(START)),
+      () -> assertEquals(250, telemetry.projectBalance(START, HOUR / 2), 0.001),
+      () -> assertEquals(0, telemetry.projectBalance(START, 2 * HOUR)),
+      () -> assertEquals(500, telemetry.getShortfall(START, 2 * HOUR), 0.001),
+      () -> assertEquals(0, telemetry.getShortfall(START, HOUR / 2))
+    );
+  }
+
+  @Test
+  @DisplayName("Test an ATM with more deposits than withdrawals never runs out")
+  public void testNoDepletion() {
+    AtmTelemetry telemetry = new AtmTelemetry(1000);
+    assertEquals(Long.MAX_VALUE, telemetry.getTimeToEmpty(START));
+    telemetry.recordWithdrawal(100, 900, START);
+    telemetry.recordDeposit(200, 1100, START);
+    assertAll("Test no depletion",
+      () -> assertEquals(Long.MAX_VALUE, telemetry.getTimeToEmpty(START)),
+      () -> assertEquals(2100, telemetry.projectBalance(START, 10 * HOUR), 0.001),
+      () -> assertThrows(IllegalArgumentException.class, () -> new AtmTelemetry(0, 0))
+    );
+  }
+}
@@ -7,7 +7,11 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -101,6 +105,60 @@ public class BankBranchTest {
     );
   }
 
+  @Test
+  @DisplayName("Test overlapping appointments are limited by the capacity")
+  public void testBookAppointmentConflict() {
+    // 2023/03/08 12:00:00 Wednesday
+    Date date = new Date(1678269600000L);
+    Customer other = new Customer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321");
+    bankBranch.bookAppointment(date, customer);
+    assertThrows(IllegalArgumentException.class,
+      () -> bankBranch.bookAppointment(new Date(date.getTime() + 1800000), other)
+    );
+    bankBranch.setCapacity(2);
+    assertAll("Test conflict",
+      () -> assertDoesNotThrow(() -> bankBranch.bookAppointment(new Date(date.getTime() + 1800000), other)),
+      () -> assertThrows(IllegalArgumentException.class, () -> bankBranch.bookAppointment(date, other)),
+      () -> assertDoesNotThrow(() -> bankBranch.bookAppointment(new Date(date.getTime() + 3600000), customer)),
+      () -> assertEquals(3, bankBranch.getAppointments().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test cancel appointment by id frees its time")
+  public void testCancelAppointmentById() {
+    // 2023/03/08 12:00:00 Wednesday
+    Date date = new Date(1678269600000L);
+    Appointment appointment = bankBranch.bookAppointment(date, customer);
+    bankBranch.cancelAppointment(appointment.getId());
+    assertAll("Test cancel by id",
+      () -> assertTrue(appointment.isCancelled()),
+      () -> assertEquals(0, bankBranch.getAppointments().size()),
+      () -> assertThrows(IllegalArgumentException.class, () -> bankBranch.cancelAppointment(appointment.getId())),
+      () -> assertDoesNotThrow(() -> bankBranch.bookAppointment(date, customer))
+    );
+  }
+
+  @Test
+  @DisplayName("Test book several appointments at once")
+  public void testBookAppointments() {
+    // 2023/03/08 10:00:00 and 12:00:00 Wednesday in the time zone of the branch schedule
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set(2023, Calendar.MARCH, 8, 10, 0);
+    Date morning = calendar.getTime();
+    calendar.set(Calendar.HOUR_OF_DAY, 12);
+    Date noon = calendar.getTime();
+    assertThrows(IllegalArgumentException.class,
+      () -> bankBranch.bookAppointments(Arrays.asList(morning, noon, noon), customer)
+    );
+    assertEquals(0, bankBranch.getAppointments().size());
+    assertAll("Test book appointments",
+      () -> assertEquals(2, bankBranch.bookAppointments(Arrays.asList(morning, noon), customer).size()),
+      () -> assertEquals(2, bankBranch.getAppointments().size())
+    );
+  }
+
   @Test
   @DisplayName("Test deposit cash EUR normal")
   public void testDepositCashEURNormal() {
@@ -118,7 +176,8 @@ public class BankBranchTest {
     Account account = new Account(customer, Currency.USD);
     assertAll("Test deposit cash",
       () -> assertDoesNotThrow(() -> bankBranch.depositCash(account, 1000, Currency.USD)),
-      () -> assertEquals(11000, bankBranch.getBalance()),
+      () -> assertEquals(10000, bankBranch.getBalance()),
+      () -> assertEquals(1000, bankBranch.getBalance(Currency.USD)),
       () -> assertEquals(1000, account.getBalance())
     );
   }
@@ -129,17 +188,88 @@ public class BankBranchTest {
     Account account = new Account(customer, Currency.GBP);
     assertAll("Test deposit cash",
       () -> assertDoesNotThrow(() -> bankBranch.depositCash(account, 1000, Currency.GBP)),
-      () -> assertEquals(11000, bankBranch.getBalance()),
+      () -> assertEquals(10000, bankBranch.getBalance()),
+      () -> assertEquals(1000, bankBranch.getBalance(Currency.GBP)),
       () -> assertEquals(1000, account.getBalance())
     );
   }
 
   @Test
-  @DisplayName("Test deposit cash wrong currency")
-  public void testDepositCashWrongCurrency() {
+  @DisplayName("Test deposit cash in another currency than the account")
+  public void testDepositCashOtherCurrency() {
     Account account = new Account(customer, Currency.EUR);
-    assertThrows(IllegalArgumentException.class, 
-      () -> bankBranch.depositCash(account, 1000, Currency.USD)
+    bankBranch.depositCash(account, 1000, Currency.USD);
+    assertAll("Test deposit cash",
+      () -> assertEquals(Exchange.getInstance().convert(Currency.USD, Currency.EUR, 1000), account.getBalance(), 0.01),
+      () -> assertEquals(1000, bankBranch.getBalance(Currency.USD)),
+      () -> assertEquals(10000, bankBranch.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test withdraw cash of a currency the vault does not have")
+  public void testWithdrawCashEmptyVault() {
+    Account account = new Account(customer, Currency.EUR);
+    account.deposit(1000, Currency.EUR);
+    assertThrows(IllegalArgumentException.class,
+      () -> bankBranch.withdrawCash(account, 100, Currency.GBP)
+    );
+    assertAll("Test nothing withdrawn",
+      () -> assertEquals(1000, account.getBalance()),
+      () -> assertEquals(0, bankBranch.getBalance(Currency.GBP))
+    );
+  }
+
+  @Test
+  @DisplayName("Test tellers working the same vault at the same time")
+  public void testConcurrentTellers() throws InterruptedException {
+    Account account = new Account(customer, Currency.EUR);
+    account.deposit(100000, Currency.EUR);
+    Thread[] tellers = new Thread[8];
+    for (int i = 0; i < tellers.length; i++) {
+      tellers[i] = new Thread(() -> {
+        for (int j = 0; j < 500; j++) {
+          bankBranch.depositCash(account, 3, Currency.EUR);
+          bankBranch.withdrawCash(account, 2, Currency.EUR);
+        }
+      });
+      tellers[i].start();
+    }
+    for (Thread teller : tellers) {
+      teller.join();
+    }
+    assertAll("Test concurrent tellers",
+      () -> assertEquals(14000, bankBranch.getBalance()),
+      () -> assertEquals(104000, account.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test end-of-day vault reconciliation")
+  public void testReconcileVault() {
+    Account account = new Account(customer, Currency.USD);
+    bankBranch.depositCash(account, 500, Currency.USD);
+    bankBranch.withdrawCash(account, 200, Currency.USD);
+    Map<Currency, Float> counted = new EnumMap<>(Currency.class);
+    counted.put(Currency.EUR, 10000f);
+    counted.put(Currency.USD, 290f);
+    VaultReport report = bankBranch.reconcileVault(counted);
+    assertAll("Test report",
+      () -> assertEquals(2, report.getLines().size()),
+      () -> assertEquals(10000, report.getLine(Currency.EUR).getExpected()),
+      () -> assertEquals(0, report.getLine(Currency.EUR).getDifference()),
+      () -> assertEquals(500, report.getLine(Currency.USD).getDeposits()),
+      () -> assertEquals(1, report.getLine(Currency.USD).getWithdrawalCount()),
+      () -> assertEquals(300, report.getLine(Currency.USD).getExpected()),
+      () -> assertEquals(-10, report.getLine(Currency.USD).getDifference()),
+      () -> assertFalse(report.isBalanced())
+    );
+    counted.put(Currency.USD, 300f);
+    VaultReport next = bankBranch.reconcileVault(counted);
+    assertAll("Test next day",
+      () -> assertEquals(300, next.getLine(Currency.USD).getOpening()),
+      () -> assertEquals(0, next.getLine(Currency.USD).getDeposits()),
+      () -> assertTrue(next.isBalanced())
     );
   }
 
@@ -159,11 +289,12 @@ public class BankBranchTest {
   @DisplayName("Test withdraw cash USD normal")
   public void testWithdrawCashUSDNormal() {
     Account account = new Account(customer, Currency.USD);
-    account.deposit(1000, Currency.USD);
+    bankBranch.depositCash(account, 1500, Currency.USD);
     assertAll("Test withdraw cash",
       () -> assertDoesNotThrow(() -> bankBranch.withdrawCash(account, 1000, Currency.USD)),
-      () -> assertEquals(9000, bankBranch.getBalance()),
-      () -> assertEquals(0, account.getBalance())
+      () -> assertEquals(10000, bankBranch.getBalance()),
+      () -> assertEquals(500, bankBranch.getBalance(Currency.USD)),
+      () -> assertEquals(500, account.getBalance())
     );
   }
 
@@ -171,11 +302,12 @@ public class BankBranchTest {
   @DisplayName("Test withdraw cash GBP normal")
   public void testWithdrawCashGBPNormal() {
     Account account = new Account(customer, Currency.GBP);
-    account.deposit(1000, Currency.GBP);
+    bankBranch.depositCash(account, 1500, Currency.GBP);
     assertAll("Test withdraw cash",
       () -> assertDoesNotThrow(() -> bankBranch.withdrawCash(account, 1000, Currency.GBP)),
-      () -> assertEquals(9000, bankBranch.getBalance()),
-      () -> assertEquals(0, account.getBalance())
+      () -> assertEquals(10000, bankBranch.getBalance()),
+      () -> assertEquals(500, bankBranch.getBalance(Currency.GBP)),
+      () -> assertEquals(500, account.getBalance())
     );
   }
 
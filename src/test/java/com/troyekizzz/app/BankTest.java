@@ -5,8 +5,17 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.EnumSource;
@@ -14,6 +23,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import com.troyekizzz.app.utils.CardType;
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.LimitPeriod;
 
 public class BankTest {
   static Stream<Arguments> getConstructorValues() {
@@ -132,4 +142,203 @@ public class BankTest {
       assertThrows(IllegalArgumentException.class, () -> bank.addAtm(location, balance));
     }
   }
+
+  @Test
+  @DisplayName("Test balance as of a moment")
+  public void testBalanceAsOf() {
+    Bank bank = new Bank("Nordea", 100000);
+    Customer customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    Date before = new Date(System.currentTimeMillis() - 1);
+    account.deposit(1000, Currency.EUR);
+    account.withdraw(300, Currency.EUR);
+    Account other = new Account(customer, Currency.EUR);
+    assertAll("Test balance as of",
+      () -> assertEquals(0, bank.balanceAsOf(account, before)),
+      () -> assertEquals(700, bank.balanceAsOf(account, new Date(Long.MAX_VALUE))),
+      () -> assertThrows(IllegalArgumentException.class, () -> bank.balanceAsOf(other, new Date()))
+    );
+  }
+
+  @Test
+  @DisplayName("Test new cards get the default spend limits of their type")
+  public void testDefaultSpendLimit() {
+    Bank bank = new Bank("Nordea", 100000);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    bank.setDefaultSpendLimit(CardType.DEBIT, LimitPeriod.DAILY, 1000);
+    Card debit = bank.addCard(account, CardType.DEBIT, "1234");
+    Card credit = bank.addCard(account, CardType.CREDIT, "1234");
+    assertAll("Test default spend limit",
+      () -> assertEquals(1000, debit.getSpendLimits().getLimit(LimitPeriod.DAILY)),
+      () -> assertEquals(0, credit.getSpendLimits().getLimit(LimitPeriod.DAILY)),
+      () -> assertThrows(IllegalArgumentException.class, () -> bank.setDefaultSpendLimit(CardType.DEBIT, LimitPeriod.DAILY, -1))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a removed card moves no money")
+  public void testRemovedCard() {
+    Bank bank = new Bank("Nordea", 100000);
+    ATM atm = bank.addAtm("Test location", 1000);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Customer shop = bank.addCustomer("Jane", "Doe", "jane.doe@gmail.com", "+1234567891");
+    bank.openAccount(shop, Currency.EUR);
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(500, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1234");
+    Hold hold = card.authorize(100, Currency.EUR, "1234", shop);
+    bank.removeCard(card);
+    assertAll("Test removed card",
+      () -> assertThrows(IllegalStateException.class, () -> card.capture(hold)),
+      () -> assertThrows(IllegalStateException.class, () -> card.processPurchase(100, Currency.EUR, "1234", shop, "key")),
+      () -> assertThrows(IllegalStateException.class, () -> card.processPurchase(100, Currency.EUR, "1234", shop, "key")),
+      () -> assertThrows(IllegalStateException.class, () -> atm.withdrawCash(card, 100, Currency.EUR, "1234")),
+      () -> assertThrows(IllegalStateException.class, () -> atm.depositCash(card, 100, Currency.EUR, "1234")),
+      () -> assertEquals(500, account.getBalance()),
+      () -> assertEquals(1000, atm.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test ATMs running dry are forecast and replenished from capital")
+  public void testReplenishment() {
+    long hour = 60 * 60 * 1000L;
+    Bank bank = new Bank("Nordea", 10000);
+    ATM busy = bank.addAtm("Busy", 1000);
+    ATM quiet = bank.addAtm("Quiet", 1000);
+    ATM closed = bank.addAtm("Closed", 1000);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(5000, Currency.EUR);
+    Card card = bank.addCard(account, CardType.DEBIT, "1234");
+    String token = card.startSession("1234");
+    busy.withdrawCash(card, 600, Currency.EUR, token);
+    quiet.withdrawCash(card, 100, Currency.EUR, token);
+    closed.withdrawCash(card, 900, Currency.EUR, token);
+    closed.deactivate();
+    List<ATM> depleting = bank.forecastDepletion(2 * hour);
+    Map<ATM, Float> plan = bank.planReplenishment(2 * hour);
+    assertAll("Test forecast",
+      () -> assertEquals(1, depleting.size()),
+      () -> assertEquals(busy, depleting.get(0)),
+      () -> assertEquals(1, plan.size()),
+      () -> assertEquals(800, plan.get(busy), 1)
+    );
+    bank.replenishAtm(busy, plan.get(busy));
+    assertAll("Test replenishment",
+      () -> assertEquals(1200, busy.getBalance(), 1),
+      () -> assertEquals(7000 - plan.get(busy), bank.getCapital(), 1),
+      () -> assertThrows(IllegalStateException.class, () -> bank.replenishAtm(closed, 100)),
+      () -> assertEquals(7000 - plan.get(busy), bank.getCapital(), 1),
+      () -> assertThrows(IllegalArgumentException.class, () -> bank.replenishAtm(busy, 100000))
+    );
+  }
+
+  @Test
+  @DisplayName("Test the nearest ATMs and branches are found and kept up to date")
+  public void testFindNearest() {
+    Bank bank = new Bank("Nordea", 100000);
+    ATM helsinki = bank.addAtm("Helsinki", 1000, 60.1699, 24.9384);
+    ATM espoo = bank.addAtm("Espoo", 100, 60.2055, 24.6559);
+    ATM tampere = bank.addAtm("Tampere", 1000, 61.4978, 23.7610);
+    bank.addAtm("Nowhere", 1000);
+    BankBranch centre = bank.addBranch("Helsinki", 1000, 60.1699, 24.9384);
+    BankBranch turku = bank.addBranch("Turku", 1000, 60.4518, 22.2666);
+    Calendar calendar = Calendar.getInstance();
+    calendar.set(2023, Calendar.MAY, 7, 12, 0);
+    Date sunday = calendar.getTime();
+    calendar.set(2023, Calendar.MAY, 8, 12, 0);
+    Date monday = calendar.getTime();
+    assertAll("Test nearest",
+      () -> assertEquals(Arrays.asList(espoo, helsinki, tampere), bank.findNearestAtms(60.21, 24.65, 5, 0)),
+      () -> assertEquals(Collections.singletonList(helsinki), bank.findNearestAtms(60.21, 24.65, 1, 500)),
+      () -> assertEquals(Arrays.asList(turku, centre), bank.findNearestBranches(60.45, 22.27, 2, monday)),
+      () -> assertEquals(Collections.emptyList(), bank.findNearestBranches(60.45, 22.27, 2, sunday)),
+      () -> assertEquals(Collections.singletonList(centre), bank.findNearestBranches(60.17, 24.94, 1, null)),
+      () -> assertThrows(IllegalArgumentException.class, () -> bank.addAtm("Pole", 100, 91, 0))
+    );
+    bank.removeAtm(espoo);
+    helsinki.deactivate();
+    assertEquals(Collections.singletonList(tampere), bank.findNearestAtms(60.21, 24.65, 5, 0));
+  }
+
+  @Test
+  @DisplayName("Test appointments at several branches are booked all or nothing")
+  public void testBookAppointments() {
+    Bank bank = new Bank("Nordea", 100000);
+    BankBranch first = bank.addBranch("Hameenkatu 22", 1000);
+    BankBranch second = bank.addBranch("Kauppakatu 10", 1000);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    // 2023/03/08 12:00:00 Wednesday in the time zone of the branch schedules
+    Calendar time = Calendar.getInstance();
+    time.clear();
+    time.set(2023, Calendar.MARCH, 8, 12, 0);
+    Date noon = time.getTime();
+    second.bookAppointment(noon, customer);
+    Map<BankBranch, List<Date>> calendar = new LinkedHashMap<>();
+    calendar.put(first, Collections.singletonList(noon));
+    calendar.put(second, Collections.singletonList(noon));
+    assertThrows(IllegalArgumentException.class, () -> bank.bookAppointments(calendar, customer));
+    assertEquals(0, first.getAppointments().size());
+    calendar.put(second, Collections.singletonList(new Date(noon.getTime() + 3600000)));
+    assertAll("Test book appointments",
+      () -> assertEquals(2, bank.bookAppointments(calendar, customer).size()),
+      () -> assertEquals(1, first.getAppointments().size()),
+      () -> assertEquals(2, second.getAppointments().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test the earliest free appointment times are found across branches")
+  public void testFindEarliestSlots() {
+    Bank bank = new Bank("Nordea", 100000);
+    BankBranch busy = bank.addBranch("Hameenkatu 22", 1000, 61.4978, 23.7610);
+    BankBranch free = bank.addBranch("Kauppakatu 10", 1000, 61.4990, 23.7600);
+    BankBranch far = bank.addBranch("Turku", 1000, 60.4518, 22.2666);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    // 2023/03/08 16:00:00 Wednesday in the time zone of the branch schedules
+    Calendar calendar = Calendar.getInstance();
+    calendar.clear();
+    calendar.set(2023, Calendar.MARCH, 8, 16, 0);
+    long four = calendar.getTimeInMillis();
+    long quarter = 15 * 60 * 1000L;
+    busy.bookAppointment(new Date(four), customer);
+    List<AvailableSlot> slots = bank.findEarliestSlots(61.5, 23.76, 10, new Date(four + 2 * quarter), new Date(four + 20 * 3600000L), 5);
+    assertAll("Test earliest slots",
+      () -> assertEquals(5, slots.size()),
+      () -> assertEquals(free, slots.get(0).getBranch()),
+      () -> assertEquals(four + 2 * quarter, slots.get(0).getStartDate().getTime()),
+      () -> assertEquals(four + 3 * quarter, slots.get(1).getStartDate().getTime()),
+      () -> assertEquals(busy, slots.get(2).getBranch()),
+      () -> assertEquals(four + 4 * quarter, slots.get(2).getStartDate().getTime()),
+      () -> assertEquals(free, slots.get(3).getBranch()),
+      () -> assertEquals(busy, slots.get(4).getBranch()),
+      () -> assertEquals(four + 16 * 3600000L, slots.get(4).getStartDate().getTime()),
+      () -> assertEquals(far, bank.findEarliestSlots(new Date(four), new Date(four), 5, branch -> branch != free).get(0).getBranch()),
+      () -> assertEquals(0, bank.findEarliestSlots(new Date(four + 2 * 3600000L), new Date(four + 3 * 3600000L), 5, branch -> true).size())
+    );
+    slots.get(0).book(customer);
+    assertEquals(four + 16 * 3600000L, bank.findEarliestSlots(new Date(four + 2 * quarter), new Date(four + 20 * 3600000L), 1, branch -> branch == free).get(0).getStartDate().getTime());
+  }
+
+  @Test
+  @DisplayName("Test booked appointments get reminders that are cancelled with them")
+  public void testAppointmentReminders() {
+    Bank bank = new Bank("Nordea", 100000);
+    BankBranch branch = bank.addBranch("Hameenkatu 22", 1000);
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    long now = System.currentTimeMillis();
+    Date from = new Date(now + 2 * 24 * 3600000L);
+    Date until = new Date(now + 30 * 24 * 3600000L);
+    Appointment kept = bank.findEarliestSlots(from, until, 1, b -> true).get(0).book(customer);
+    Appointment cancelled = bank.findEarliestSlots(from, until, 1, b -> true).get(0).book(customer);
+    assertEquals(4, bank.getReminders().size());
+    branch.cancelAppointment(cancelled.getId());
+    assertAll("Test reminders",
+      () -> assertEquals(2, bank.getReminders().size()),
+      () -> assertEquals(2, bank.getReminders().deliverDue(kept.getStartDate().getTime())),
+      () -> assertEquals(2, customer.getMessages().size())
+    );
+  }
 }
@@ -0,0 +1,127 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class BranchScheduleTest {
+  private static final ZoneId HELSINKI = ZoneId.of("Europe/Helsinki");
+
+  private static BranchSchedule weekdays(ZoneId zone) {
+    BranchSchedule schedule = new BranchSchedule(zone);
+    for (DayOfWeek day = DayOfWeek.MONDAY; day != DayOfWeek.SATURDAY; day = day.plus(1)) {
+      schedule.setOpeningHours(day, LocalTime.of(8, 0), LocalTime.of(17, 0));
+    }
+    return schedule;
+  }
+
+  private static long at(int year, int month, int day, int hour, int minute) {
+    return ZonedDateTime.of(year, month, day, hour, minute, 0, 0, HELSINKI).toInstant().toEpochMilli();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"Europe/Helsinki", "America/New_York", "Australia/Lord_Howe", "UTC"})
+  @DisplayName("Test isOpen agrees with the local time of the zone")
+  public void testIsOpenMatchesZone(String zoneId) {
+    ZoneId zone = ZoneId.of(zoneId);
+    BranchSchedule schedule = weekdays(zone);
+    Random random = new Random(7);
+    for (int i = 0; i < 10000; i++) {
+      long time = 1600000000000L + (long) (random.nextDouble() * 400L * 24 * 60 * 60 * 1000);
+      ZonedDateTime local = ZonedDateTime.ofInstant(Instant.ofEpochMilli(time), zone);
+      int minute = local.getHour() * 60 + local.getMinute();
+      boolean expected = local.getDayOfWeek().getValue() <= 5 && minute >= 8 * 60 && minute <= 17 * 60;
+      assertEquals(expected, schedule.isOpen(time), local.toString());
+    }
+  }
+
+  @Test
+  @DisplayName("Test isOpen around a daylight saving time change")
+  public void testDaylightSavingTime() {
+    BranchSchedule schedule = new BranchSchedule(HELSINKI);
+    schedule.setOpeningHours(DayOfWeek.SUNDAY, LocalTime.of(3, 30), LocalTime.of(5, 0));
+    // 2023/03/26 03:00 Sunday, the clocks go forward to 04:00
+    long change = at(2023, 3, 26, 4, 0);
+    assertAll("Test daylight saving time",
+      () -> assertFalse(schedule.isOpen(change - 1)),
+      () -> assertTrue(schedule.isOpen(change)),
+      () -> assertTrue(schedule.isOpen(at(2023, 3, 26, 5, 0))),
+      () -> assertFalse(schedule.isOpen(at(2023, 3, 26, 5, 1)))
+    );
+  }
+
+  @Test
+  @DisplayName("Test holidays and special days override the weekly hours")
+  public void testExceptions() {
+    BranchSchedule schedule = weekdays(HELSINKI);
+    // 2023/12/06 Wednesday, 2023/12/10 Sunday
+    schedule.addHoliday(LocalDate.of(2023, 12, 6));
+    schedule.addSpecialDay(LocalDate.of(2023, 12, 10), LocalTime.of(10, 0), LocalTime.of(14, 0));
+    assertAll("Test exceptions",
+      () -> assertFalse(schedule.isOpen(at(2023, 12, 6, 12, 0))),
+      () -> assertTrue(schedule.isOpen(at(2023, 12, 7, 12, 0))),
+      () -> assertTrue(schedule.isOpen(at(2023, 12, 10, 12, 0))),
+      () -> assertFalse(schedule.isOpen(at(2023, 12, 10, 9, 59))),
+      () -> assertFalse(schedule.isOpen(at(2023, 12, 17, 12, 0)))
+    );
+    schedule.addSpecialDay(LocalDate.of(2023, 12, 6), LocalTime.of(11, 0), LocalTime.of(12, 0));
+    assertTrue(schedule.isOpen(at(2023, 12, 6, 11, 30)));
+    assertAll("Test remove exceptions",
+      () -> assertTrue(schedule.removeException(LocalDate.of(2023, 12, 6))),
+      () -> assertFalse(schedule.removeException(LocalDate.of(2023, 12, 6))),
+      () -> assertTrue(schedule.isOpen(at(2023, 12, 6, 16, 0))),
+      () -> assertTrue(schedule.isOpen(at(2023, 12, 10, 12, 0)))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a day can be closed and invalid hours are rejected")
+  public void testSetClosed() {
+    BranchSchedule schedule = weekdays(HELSINKI);
+    schedule.setClosed(DayOfWeek.MONDAY);
+    // 2023/03/06 Monday
+    assertAll("Test closed",
+      () -> assertFalse(schedule.isOpen(at(2023, 3, 6, 12, 0))),
+      () -> assertTrue(schedule.isOpen(at(2023, 3, 7, 12, 0))),
+      () -> assertThrows(IllegalArgumentException.class,
+        () -> schedule.setOpeningHours(DayOfWeek.MONDAY, LocalTime.of(17, 0), LocalTime.of(8, 0)))
+    );
+  }
+
+  @Test
+  @DisplayName("Test nextOpen finds the same minute as checking minute by minute")
+  public void testNextOpen() {
+    BranchSchedule schedule = weekdays(HELSINKI);
+    schedule.addHoliday(LocalDate.of(2023, 3, 27));
+    schedule.addSpecialDay(LocalDate.of(2023, 3, 26), LocalTime.of(10, 30), LocalTime.of(11, 0));
+    Random random = new Random(3);
+    for (int i = 0; i < 200; i++) {
+      long time = at(2023, 3, 20, 0, 0) + (long) (random.nextDouble() * 14 * 24 * 60) * 60000L + random.nextInt(60000);
+      long expected = time;
+      while (!schedule.isOpen(expected)) {
+        expected = (expected / 60000L + 1) * 60000L;
+      }
+      assertEquals(expected, schedule.nextOpen(time, Long.MAX_VALUE));
+    }
+    assertAll("Test next open",
+      () -> assertEquals(at(2023, 3, 26, 10, 30), schedule.nextOpen(at(2023, 3, 25, 18, 0), Long.MAX_VALUE)),
+      () -> assertEquals(at(2023, 3, 28, 8, 0), schedule.nextOpen(at(2023, 3, 26, 11, 1), Long.MAX_VALUE)),
+      () -> assertEquals(-1, schedule.nextOpen(at(2023, 3, 25, 18, 0), at(2023, 3, 26, 10, 30)))
+    );
+  }
+}
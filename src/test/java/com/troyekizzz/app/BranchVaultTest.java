@@ -0,0 +1,50 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.troyekizzz.app.utils.Currency;
+
+public class BranchVaultTest {
+  @ParameterizedTest
+  @EnumSource(Currency.class)
+  @DisplayName("Test every currency has its own balance")
+  public void testBalances(Currency currency) {
+    BranchVault vault = new BranchVault(Currency.EUR, 1000);
+    vault.deposit(currency, 250.25f);
+    vault.withdraw(currency, 50.05f);
+    assertAll("Test balances",
+      () -> assertEquals(currency == Currency.EUR ? 1200.2f : 200.2f, vault.getBalance(currency), 0.001),
+      () -> assertThrows(IllegalArgumentException.class, () -> vault.withdraw(currency, 5000)),
+      () -> assertThrows(IllegalArgumentException.class, () -> vault.deposit(currency, 0))
+    );
+  }
+
+  @Test
+  @DisplayName("Test undone operations are left out of the reconciliation")
+  public void testUndo() {
+    BranchVault vault = new BranchVault(Currency.EUR, 1000);
+    vault.withdraw(Currency.EUR, 100);
+    vault.undoWithdrawal(Currency.EUR, 100);
+    vault.deposit(Currency.GBP, 100);
+    vault.undoDeposit(Currency.GBP, 100);
+    VaultReport report = vault.reconcile(Collections.singletonMap(Currency.EUR, 1000f));
+    assertAll("Test undo",
+      () -> assertEquals(1000, vault.getBalance(Currency.EUR)),
+      () -> assertEquals(0, vault.getBalance(Currency.GBP)),
+      () -> assertEquals(0, report.getLine(Currency.EUR).getWithdrawalCount()),
+      () -> assertNull(report.getLine(Currency.GBP)),
+      () -> assertNull(report.getLine(Currency.USD)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new BranchVault(Currency.EUR, -1))
+    );
+  }
+}
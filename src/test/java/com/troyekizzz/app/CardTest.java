@@ -3,12 +3,20 @@ package com.troyekizzz.app;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -16,6 +24,8 @@ import org.junit.jupiter.params.provider.MethodSource;
 import com.troyekizzz.app.utils.BenefitLevel;
 import com.troyekizzz.app.utils.CardType;
 import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.HoldStatus;
+import com.troyekizzz.app.utils.LimitPeriod;
 
 public class CardTest {
   static private Customer getShop() {
@@ -187,4 +197,258 @@ public class CardTest {
       );
     }
   }
+
+  @Test
+  @DisplayName("Test authorization reserves funds until it is captured")
+  public void testAuthorizeCapture() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Customer shop = getShop();
+    Hold hold = card.authorize(300, Currency.EUR, "1212", shop);
+    assertAll("Test authorize",
+      () -> assertEquals(HoldStatus.OPEN, hold.getStatus()),
+      () -> assertEquals(800, card.getAccount().getBalance()),
+      () -> assertEquals(500, card.getAccount().getAvailableBalance()),
+      () -> assertThrows(IllegalArgumentException.class, () -> card.authorize(600, Currency.EUR, "1212", shop))
+    );
+    Transaction transaction = card.capture(hold);
+    assertAll("Test capture",
+      () -> assertEquals(HoldStatus.CAPTURED, hold.getStatus()),
+      () -> assertEquals(500, card.getAccount().getBalance()),
+      () -> assertEquals(500, card.getAccount().getAvailableBalance()),
+      () -> assertEquals(300, shop.getBankAccounts().get(0).getBalance()),
+      () -> assertEquals("Purchase of goods from Grocery Shop H-Market in amount of 300.0 EUR", transaction.getDescription()),
+      () -> assertEquals(1, card.getHistory().size()),
+      () -> assertThrows(IllegalStateException.class, () -> card.capture(hold))
+    );
+  }
+
+  @Test
+  @DisplayName("Test voided authorization releases funds")
+  public void testVoidAuthorization() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Hold hold = card.authorize(300, Currency.EUR, "1212", getShop());
+    card.voidAuthorization(hold);
+    assertAll("Test void",
+      () -> assertEquals(HoldStatus.VOIDED, hold.getStatus()),
+      () -> assertEquals(800, card.getAccount().getAvailableBalance()),
+      () -> assertThrows(IllegalStateException.class, () -> card.capture(hold)),
+      () -> assertThrows(IllegalStateException.class, () -> card.voidAuthorization(hold))
+    );
+  }
+
+  @Test
+  @DisplayName("Test authorization expires automatically")
+  public void testAuthorizationExpiry() throws InterruptedException {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Hold hold = card.authorize(300, Currency.EUR, "1212", getShop(), 20);
+    assertEquals(500, card.getAccount().getAvailableBalance());
+    Thread.sleep(50);
+    assertAll("Test expiry",
+      () -> assertEquals(800, card.getAccount().getAvailableBalance()),
+      () -> assertEquals(HoldStatus.EXPIRED, hold.getStatus()),
+      () -> assertFalse(hold.isOpen()),
+      () -> assertThrows(IllegalStateException.class, () -> card.capture(hold))
+    );
+  }
+
+  @Test
+  @DisplayName("Test failed capture keeps the authorization open")
+  public void testFailedCapture() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Customer shop = getShop();
+    Hold hold = card.authorize(300, Currency.EUR, "1212", shop);
+    shop.getBankAccounts().get(0).close();
+    assertAll("Test failed capture",
+      () -> assertThrows(IllegalStateException.class, () -> card.capture(hold)),
+      () -> assertEquals(HoldStatus.OPEN, hold.getStatus()),
+      () -> assertEquals(800, card.getAccount().getBalance()),
+      () -> assertEquals(500, card.getAccount().getAvailableBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test authorization cannot be used with another card")
+  public void testAuthorizationOtherCard() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Card other = new Card(CardType.DEBIT, getAccounts().get(3), "1212");
+    Hold hold = card.authorize(300, Currency.EUR, "1212", getShop());
+    assertAll("Test other card",
+      () -> assertThrows(IllegalArgumentException.class, () -> other.capture(hold)),
+      () -> assertThrows(IllegalArgumentException.class, () -> other.voidAuthorization(hold))
+    );
+  }
+
+  @Test
+  @DisplayName("Test purchase is settled to the merchant account in the purchase currency")
+  public void testPurchaseSettlementRouting() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Customer shop = getShop();
+    Account usd = new Account(shop, Currency.USD);
+    card.processPurchase(100, Currency.USD, "1212", shop);
+    assertAll("Test settlement routing",
+      () -> assertEquals(100, usd.getBalance()),
+      () -> assertEquals(0, shop.getBankAccounts().get(0).getBalance()),
+      () -> assertEquals(800 - Exchange.getInstance().convert(Currency.USD, Currency.EUR, 100), card.getAccount().getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test daily spend limit holds under concurrent purchases")
+  public void testConcurrentSpendLimit() throws InterruptedException {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    card.setSpendLimit(LimitPeriod.DAILY, 300, "1212");
+    Customer shop = getShop();
+    AtomicInteger accepted = new AtomicInteger();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (int i = 0; i < 64; i++) {
+      executor.execute(() -> {
+        try {
+          start.await();
+          card.authorize(10, Currency.EUR, "1212", shop);
+          accepted.incrementAndGet();
+        } catch (IllegalArgumentException | InterruptedException e) {
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    executor.awaitTermination(10, TimeUnit.SECONDS);
+    assertAll("Test concurrent spend limit",
+      () -> assertEquals(30, accepted.get()),
+      () -> assertEquals(300, card.getSpent(LimitPeriod.DAILY)),
+      () -> assertEquals(500, card.getAccount().getAvailableBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test voided authorization is not counted in the spend limits")
+  public void testVoidReleasesSpendLimit() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    card.setSpendLimit(LimitPeriod.WEEKLY, 300, "1212");
+    Hold hold = card.authorize(300, Currency.EUR, "1212", getShop());
+    assertThrows(IllegalArgumentException.class, () -> card.authorize(1, Currency.EUR, "1212", getShop()));
+    card.voidAuthorization(hold);
+    assertAll("Test void releases spend limit",
+      () -> assertEquals(0, card.getSpent(LimitPeriod.WEEKLY)),
+      () -> assertDoesNotThrow(() -> card.processPurchase(300, Currency.EUR, "1212", getShop())),
+      () -> assertThrows(IllegalArgumentException.class, () -> card.setSpendLimit(LimitPeriod.DAILY, 0, "1212")),
+      () -> assertThrows(IllegalArgumentException.class, () -> card.unsetSpendLimit(LimitPeriod.DAILY, "0000"))
+    );
+  }
+
+  @Test
+  @DisplayName("Test expired authorization is not counted in the spend limits")
+  public void testExpiryReleasesSpendLimit() throws InterruptedException {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    card.setSpendLimit(LimitPeriod.DAILY, 300, "1212");
+    Hold hold = card.authorize(300, Currency.EUR, "1212", getShop(), 10);
+    assertEquals(300, card.getSpent(LimitPeriod.DAILY));
+    Thread.sleep(30);
+    assertAll("Test expiry releases spend limit",
+      () -> assertEquals(800, card.getAccount().getAvailableBalance()),
+      () -> assertEquals(HoldStatus.EXPIRED, hold.getStatus()),
+      () -> assertEquals(0, card.getSpent(LimitPeriod.DAILY)),
+      () -> assertDoesNotThrow(() -> card.processPurchase(300, Currency.EUR, "1212", getShop())),
+      () -> assertEquals(300, card.getSpent(LimitPeriod.DAILY))
+    );
+  }
+
+  @Test
+  @DisplayName("Test captured and voided authorizations do not pile up in the expiry queue")
+  public void testClosedHoldsRemoved() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    Account account = card.getAccount();
+    Hold open = card.authorize(1, Currency.EUR, "1212", getShop());
+    for (int i = 0; i < 500; i++) {
+      card.processPurchase(0.5f, Currency.EUR, "1212", getShop());
+      card.voidAuthorization(card.authorize(1, Currency.EUR, "1212", getShop()));
+    }
+    assertAll("Test closed holds removed",
+      () -> assertTrue(account.getQueuedHolds() <= 2),
+      () -> assertEquals(1, account.getOpenHolds()),
+      () -> assertTrue(open.isOpen()),
+      () -> assertEquals(549, account.getAvailableBalance(), 0.01f)
+    );
+  }
+
+  @Test
+  @DisplayName("Test card is locked after too many failed pin attempts")
+  public void testPinLockout() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    for (int i = 0; i < Card.MAX_PIN_ATTEMPTS; i++) {
+      assertFalse(card.validatePin("0000"));
+    }
+    assertAll("Test lockout",
+      () -> assertTrue(card.isLocked()),
+      () -> assertFalse(card.validatePin("1212")),
+      () -> assertThrows(IllegalArgumentException.class, () -> card.processPurchase(10, Currency.EUR, "1212", getShop()))
+    );
+    card.unlock();
+    assertAll("Test unlock",
+      () -> assertFalse(card.isLocked()),
+      () -> assertTrue(card.validatePin(new String("1212")))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a session token stands in for the pin until it ends")
+  public void testSession() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    assertThrows(IllegalArgumentException.class, () -> card.startSession("0000"));
+    String token = card.startSession("1212");
+    assertAll("Test session",
+      () -> assertTrue(card.validateSession(token)),
+      () -> assertTrue(card.authenticate(token)),
+      () -> assertTrue(card.authenticate("1212")),
+      () -> assertFalse(card.validateSession(token.substring(1) + "0")),
+      () -> assertFalse(card.validateSession("1212")),
+      () -> assertFalse(card.validateSession(null))
+    );
+    card.endSession();
+    assertFalse(card.validateSession(token));
+  }
+  @Test
+  @DisplayName("Test parallel wrong pins cannot get past the attempt limit")
+  public void testParallelPinGuesses() throws InterruptedException {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    CountDownLatch start = new CountDownLatch(1);
+    AtomicInteger accepted = new AtomicInteger();
+    for (int i = 0; i < 32; i++) {
+      String guess = String.format("%04d", i == 20 ? 1212 : i);
+      executor.execute(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (card.validatePin(guess)) {
+          accepted.incrementAndGet();
+        }
+      });
+    }
+    start.countDown();
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    assertAll("Test parallel guesses",
+      () -> assertTrue(card.isLocked()),
+      () -> assertTrue(accepted.get() <= 1)
+    );
+  }
+
+  @Test
+  @DisplayName("Test a stale session token does not count as a failed pin")
+  public void testStaleTokenNotCounted() {
+    Card card = new Card(CardType.DEBIT, getAccounts().get(0), "1212");
+    String token = card.startSession("1212");
+    card.endSession();
+    for (int i = 0; i < Card.MAX_PIN_ATTEMPTS + 2; i++) {
+      assertFalse(card.authenticate(token));
+    }
+    assertAll("Test stale token",
+      () -> assertFalse(card.isLocked()),
+      () -> assertTrue(card.authenticate("1212"))
+    );
+  }
 }
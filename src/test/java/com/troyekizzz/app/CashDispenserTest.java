@@ -0,0 +1,144 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class CashDispenserTest {
+  private static int value(CashDispenser dispenser, int[] plan) {
+    int[] denominations = dispenser.getDenominations();
+    int value = 0;
+    for (int i = 0; i < plan.length; i++) {
+      value += plan[i] * denominations[i];
+    }
+    return value;
+  }
+
+  private static int fewestNotes(int[] denominations, int[] counts, int i, int amount) {
+    if (amount == 0) {
+      return 0;
+    }
+    if (i == denominations.length) {
+      return Integer.MAX_VALUE;
+    }
+    int fewest = Integer.MAX_VALUE;
+    for (int k = 0; k <= counts[i] && k * denominations[i] <= amount; k++) {
+      int rest = fewestNotes(denominations, counts, i + 1, amount - k * denominations[i]);
+      if (rest != Integer.MAX_VALUE) {
+        fewest = Math.min(fewest, rest + k);
+      }
+    }
+    return fewest;
+  }
+
+  private static void assertMatchesBruteForce(int[] denominations, int[] counts, int maxAmount) {
+    CashDispenser dispenser = new CashDispenser(denominations, counts);
+    for (int amount = 10; amount <= maxAmount; amount += 10) {
+      int fewest = fewestNotes(denominations, counts, 0, amount);
+      String message = "Amount " + amount + " with counts " + Arrays.toString(counts);
+      if (fewest == Integer.MAX_VALUE) {
+        final int refused = amount;
+        assertThrows(IllegalStateException.class, () -> dispenser.plan(refused), message);
+      } else {
+        int[] plan = dispenser.plan(amount);
+        int[] sorted = dispenser.getDenominations();
+        for (int i = 0; i < plan.length; i++) {
+          assertTrue(plan[i] <= dispenser.getCount(sorted[i]), message);
+        }
+        assertEquals(amount, value(dispenser, plan), message);
+      }
+    }
+  }
+
+  @ParameterizedTest(name = "Test plan for {0}")
+  @ValueSource(ints = { 10, 20, 30, 60, 80, 130, 180, 990, 2000 })
+  public void testPlan(int amount) {
+    CashDispenser dispenser = new CashDispenser(new int[] { 10, 20, 50, 100 }, new int[] { 100, 100, 100, 100 });
+    int[] plan = dispenser.plan(amount);
+    assertEquals(amount, value(dispenser, plan));
+  }
+
+  @Test
+  @DisplayName("Test amounts that cannot be paid in notes are refused")
+  public void testUndispensable() {
+    CashDispenser dispenser = new CashDispenser(new int[] { 20, 50 }, new int[] { 10, 10 });
+    assertAll("Test undispensable",
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.plan(15)),
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.plan(30)),
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.plan(40.5f)),
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.plan(0)),
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.plan(800)),
+      () -> assertEquals(60, value(dispenser, dispenser.plan(60))),
+      () -> assertEquals(700, dispenser.getTotal())
+    );
+  }
+
+  @Test
+  @DisplayName("Test withdrawals deplete the cassettes evenly")
+  public void testBalancedDepletion() {
+    CashDispenser dispenser = new CashDispenser(new int[] { 100, 50, 20 }, new int[] { 10, 20, 50 });
+    for (int i = 0; i < 10; i++) {
+      dispenser.take(dispenser.plan(100));
+    }
+    assertAll("Test balanced depletion",
+      () -> assertEquals(2000, dispenser.getTotal()),
+      () -> assertTrue(dispenser.getCount(100) >= 3),
+      () -> assertTrue(dispenser.getCount(50) < 20)
+    );
+  }
+
+  @Test
+  @DisplayName("Test notes are found when no planned combination fits")
+  public void testSearch() {
+    CashDispenser dispenser = new CashDispenser(new int[] { 50, 20 }, new int[] { 0, 30 });
+    int[] plan = dispenser.plan(400);
+    CashDispenser large = new CashDispenser(new int[] { 100 }, new int[] { 50 });
+    assertAll("Test search",
+      () -> assertArrayEquals(new int[] { 0, 20 }, plan),
+      () -> assertEquals(3000, value(large, large.plan(3000)))
+    );
+  }
+
+  @Test
+  @DisplayName("Test every amount the cassettes can pay is planned")
+  public void testBruteForce() {
+    int[] denominations = { 200, 100, 50, 20, 10 };
+    CashDispenser dispenser = new CashDispenser(denominations, new int[] { 0, 0, 4, 4, 3 });
+    assertEquals(270, value(dispenser, dispenser.plan(270)));
+    assertMatchesBruteForce(denominations, new int[] { 0, 0, 4, 4, 3 }, 500);
+    Random random = new Random(42);
+    for (int run = 0; run < 200; run++) {
+      int[] counts = new int[denominations.length];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] = random.nextInt(5);
+      }
+      assertMatchesBruteForce(denominations, counts, 1000);
+    }
+  }
+
+  @Test
+  @DisplayName("Test loading, taking and emptying the cassettes")
+  public void testCassettes() {
+    CashDispenser dispenser = new CashDispenser(new int[] { 20, 50 }, new int[] { 1, 1 });
+    dispenser.load(20, 4);
+    assertAll("Test cassettes",
+      () -> assertEquals(5, dispenser.getCount(20)),
+      () -> assertArrayEquals(new int[] { 50, 20 }, dispenser.getDenominations()),
+      () -> assertThrows(IllegalStateException.class, () -> dispenser.take(new int[] { 2, 0 })),
+      () -> assertThrows(IllegalArgumentException.class, () -> dispenser.load(10, 1)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new CashDispenser(new int[] { 20, 20 }, new int[] { 1, 1 })),
+      () -> assertEquals(150, dispenser.empty()),
+      () -> assertEquals(0, dispenser.getTotal())
+    );
+  }
+}
@@ -2,11 +2,14 @@ package com.troyekizzz.app;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.DisplayName;
@@ -152,4 +155,61 @@ public class CustomerTest {
     Throwable exception = assertThrows(IllegalStateException.class, () -> customer.notify("Test message", NotificationType.EMAIL));
     assertEquals("Email is not set for the customer.", exception.getMessage());
   }
+
+  @Test
+  @DisplayName("Test settlement account is chosen by currency")
+  public void testGetSettlementAccount() {
+    Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    assertThrows(IllegalStateException.class, () -> customer.getSettlementAccount(Currency.EUR));
+    Account eur = new Account(customer, Currency.EUR);
+    Account usd = new Account(customer, Currency.USD);
+    assertAll("Test settlement account",
+      () -> assertEquals(eur, customer.getSettlementAccount(Currency.EUR)),
+      () -> assertEquals(usd, customer.getSettlementAccount(Currency.USD)),
+      () -> assertEquals(eur, customer.getSettlementAccount(Currency.GBP))
+    );
+    Account gbp = new Account(customer, Currency.GBP);
+    assertEquals(gbp, customer.getSettlementAccount(Currency.GBP));
+    usd.close();
+    assertEquals(eur, customer.getSettlementAccount(Currency.USD));
+  }
+
+  @Test
+  @DisplayName("Test customers are equal only by their id")
+  public void testEquality() {
+    Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Customer twin = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Set<Customer> customers = new HashSet<>();
+    customers.add(customer);
+    int hashCode = customer.hashCode();
+    new Account(customer, Currency.EUR).deposit(100, Currency.EUR);
+    customer.setEmail("john@doe.fi");
+    assertAll("Test equality",
+      () -> assertNotEquals(customer, twin),
+      () -> assertNotEquals(customer.getId(), twin.getId()),
+      () -> assertEquals(hashCode, customer.hashCode()),
+      () -> assertTrue(customers.contains(customer))
+    );
+  }
+
+  @Test
+  @DisplayName("Test lookups never keep a closed settlement account")
+  public void testSettlementAccountRace() throws InterruptedException {
+    Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Account eur = new Account(customer, Currency.EUR);
+    Thread reader = new Thread(() -> {
+      for (int i = 0; i < 20000; i++) {
+        customer.getSettlementAccount(Currency.USD);
+      }
+    });
+    reader.start();
+    for (int i = 0; i < 2000; i++) {
+      new Account(customer, Currency.USD).close();
+    }
+    reader.join();
+    assertAll("Test settlement account race",
+      () -> assertEquals(eur, customer.getSettlementAccount(Currency.USD)),
+      () -> assertEquals(1, customer.getBankAccounts().size())
+    );
+  }
 }
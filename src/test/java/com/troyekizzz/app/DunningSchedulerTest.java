@@ -0,0 +1,134 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.DunningLevel;
+
+public class DunningSchedulerTest {
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+  private static final long DUE = 1700000000000L;
+
+  private DunningScheduler scheduler;
+  private Customer payer;
+  private Customer payee;
+  private Account account;
+  private Account payeeAccount;
+  private List<Invoice> notices;
+
+  private Invoice invoice(long dueTime) {
+    Invoice invoice = new Invoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, new Date(dueTime));
+    scheduler.track(invoice);
+    return invoice;
+  }
+
+  @Test
+  @DisplayName("Test an overdue invoice escalates one level at a time")
+  public void testEscalation() {
+    Invoice invoice = invoice(DUE);
+    assertAll("Test escalation",
+      () -> assertTrue(scheduler.process(DUE).isEmpty()),
+      () -> assertEquals(1, scheduler.process(DUE + DAY).size()),
+      () -> assertEquals(DunningLevel.REMINDER, invoice.getDunningLevel()),
+      () -> assertEquals(1, payer.getMessages().size()),
+      () -> assertTrue(scheduler.process(DUE + 13 * DAY).isEmpty()),
+      () -> assertEquals(1, scheduler.process(DUE + 100 * DAY).size()),
+      () -> assertEquals(DunningLevel.NOTICE, invoice.getDunningLevel()),
+      () -> assertEquals(1, scheduler.process(DUE + 100 * DAY).size()),
+      () -> assertEquals(1, scheduler.process(DUE + 100 * DAY).size()),
+      () -> assertEquals(DunningLevel.COLLECTION, invoice.getDunningLevel()),
+      () -> assertTrue(scheduler.process(DUE + 1000 * DAY).isEmpty()),
+      () -> assertEquals(0, scheduler.size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test paid, rejected and rescheduled invoices are not escalated")
+  public void testOutdated() {
+    Invoice paid = invoice(DUE);
+    Invoice rejected = invoice(DUE);
+    Invoice moved = invoice(DUE);
+    Invoice overdue = invoice(DUE);
+    account.deposit(1000, Currency.EUR);
+    paid.accept(account);
+    paid.pay();
+    rejected.reject();
+    moved.setDueDate(new Date(DUE + 10 * DAY));
+    scheduler.setNotice(notices::add);
+    assertAll("Test outdated",
+      () -> assertEquals(Collections.singletonList(overdue), scheduler.process(DUE + 2 * DAY)),
+      () -> assertEquals(Collections.singletonList(overdue), notices),
+      () -> assertEquals(Collections.singletonList(moved), scheduler.process(DUE + 11 * DAY)),
+      () -> assertEquals(DunningLevel.REMINDER, moved.getDunningLevel())
+    );
+  }
+
+  @Test
+  @DisplayName("Test paying an installment moves the due date and restarts the dunning")
+  public void testInstallments() {
+    Invoice invoice = invoice(DUE);
+    account.deposit(1000, Currency.EUR);
+    invoice.accept(account);
+    invoice.planInstallments(2, new Date(DUE), 30);
+    scheduler.process(DUE + DAY);
+    assertEquals(DunningLevel.REMINDER, invoice.getDunningLevel());
+    invoice.pay(50);
+    assertAll("Test installments",
+      () -> assertEquals(DunningLevel.NONE, invoice.getDunningLevel()),
+      () -> assertTrue(scheduler.process(DUE + 20 * DAY).isEmpty()),
+      () -> assertEquals(Collections.singletonList(invoice), scheduler.process(DUE + 31 * DAY)),
+      () -> assertEquals(DunningLevel.REMINDER, invoice.getDunningLevel())
+    );
+  }
+
+  @Test
+  @DisplayName("Test the processing only takes the due invoices")
+  public void testManyInvoices() {
+    for (int i = 0; i < 10000; i++) {
+      invoice(DUE + i * DAY);
+    }
+    assertAll("Test many invoices",
+      () -> assertEquals(5, scheduler.process(DUE + 5 * DAY).size()),
+      () -> assertEquals(10000, scheduler.size()),
+      () -> assertEquals("There must be one offset for each dunning level.",
+        assertThrows(IllegalArgumentException.class, () -> scheduler.setOffsets(DAY)).getMessage()),
+      () -> assertThrows(IllegalArgumentException.class, () -> scheduler.setOffsets(DAY, 0, 3 * DAY, 4 * DAY))
+    );
+  }
+
+  @Test
+  @DisplayName("Test the bank tracks the invoices it creates")
+  public void testBank() {
+    Bank bank = new Bank("Nordea", 100000);
+    Customer from = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Customer to = bank.addCustomer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321");
+    Invoice invoice = bank.addInvoice(from, to, bank.openAccount(to, Currency.EUR), 100, Currency.EUR, 0, new Date(DUE));
+    bank.addInvoice(from, to, bank.openAccount(to, Currency.EUR), 100, Currency.EUR, 0, null);
+    assertAll("Test bank",
+      () -> assertEquals(Collections.singletonList(invoice), bank.processDunning(new Date(DUE + DAY))),
+      () -> assertEquals(1, from.getMessages().size())
+    );
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    scheduler = new DunningScheduler();
+    payer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    payee = new Customer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321");
+    account = new Account(payer, Currency.EUR);
+    payeeAccount = new Account(payee, Currency.EUR);
+    notices = new ArrayList<>();
+  }
+}
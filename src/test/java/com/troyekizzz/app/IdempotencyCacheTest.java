@@ -0,0 +1,205 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.CardType;
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.InvoiceStatus;
+
+public class IdempotencyCacheTest {
+  private Customer customer;
+  private Customer shop;
+  private Account account1;
+  private Account account2;
+
+  @BeforeEach
+  public void beforeEach() {
+    customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    shop = new Customer("Grocery Shop", "H-Market", "info@h-market.fi", "+358 123 456 789");
+    account1 = new Account(customer, Currency.EUR);
+    account2 = new Account(shop, Currency.EUR);
+    account1.deposit(1000, Currency.EUR);
+  }
+
+  @Test
+  @DisplayName("Test a retried transfer returns the original transaction")
+  public void testTransferRetry() {
+    String key = UUID.randomUUID().toString();
+    Transaction first = Account.transfer(account1, account2, 100, key);
+    Transaction retry = Account.transfer(account1, account2, 100, key);
+    assertAll("Test transfer retry",
+      () -> assertSame(first, retry),
+      () -> assertEquals(900, account1.getBalance()),
+      () -> assertEquals(100, account2.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a retried purchase returns the original transaction")
+  public void testPurchaseRetry() {
+    Card card = new Card(CardType.DEBIT, account1, "1111");
+    String key = UUID.randomUUID().toString();
+    Transaction first = card.processPurchase(100, Currency.EUR, "1111", shop, key);
+    Transaction retry = card.processPurchase(100, Currency.EUR, "1111", shop, key);
+    assertAll("Test purchase retry",
+      () -> assertSame(first, retry),
+      () -> assertEquals(900, account1.getBalance()),
+      () -> assertEquals(1, card.getHistory().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a retried invoice payment returns the original transaction")
+  public void testInvoiceRetry() {
+    Invoice invoice = new Invoice(shop, customer, account2, 100, Currency.EUR, 0);
+    invoice.accept(account1);
+    String key = UUID.randomUUID().toString();
+    Transaction first = invoice.pay(key);
+    Transaction retry = invoice.pay(key);
+    assertAll("Test invoice retry",
+      () -> assertSame(first, retry),
+      () -> assertEquals(InvoiceStatus.PAID, invoice.getStatus()),
+      () -> assertEquals(900, account1.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a failed operation can be retried with the same key")
+  public void testFailureNotRemembered() {
+    String key = UUID.randomUUID().toString();
+    assertThrows(IllegalArgumentException.class, () -> Account.transfer(account1, account2, 2000, key));
+    account1.deposit(1000, Currency.EUR);
+    Transaction transaction = Account.transfer(account1, account2, 2000, key);
+    assertEquals(2000, transaction.getAmount());
+  }
+
+  @Test
+  @DisplayName("Test the cache evicts the oldest keys when it is full")
+  public void testCapacity() {
+    IdempotencyCache cache = new IdempotencyCache(3, 60000);
+    AtomicInteger runs = new AtomicInteger();
+    for (int i = 0; i < 5; i++) {
+      cache.execute("key" + i, () -> {
+        runs.incrementAndGet();
+        return Account.transfer(account1, account2, 1);
+      });
+    }
+    cache.execute("key4", () -> {
+      runs.incrementAndGet();
+      return Account.transfer(account1, account2, 1);
+    });
+    cache.execute("key0", () -> {
+      runs.incrementAndGet();
+      return Account.transfer(account1, account2, 1);
+    });
+    assertAll("Test capacity",
+      () -> assertEquals(3, cache.size()),
+      () -> assertEquals(6, runs.get())
+    );
+  }
+
+  @Test
+  @DisplayName("Test keys expire after their time to live")
+  public void testExpiry() throws InterruptedException {
+    IdempotencyCache cache = new IdempotencyCache(10, 20);
+    Transaction first = cache.execute("key", () -> Account.transfer(account1, account2, 1));
+    Thread.sleep(50);
+    Transaction second = cache.execute("key", () -> Account.transfer(account1, account2, 1));
+    assertAll("Test expiry",
+      () -> assertNotSame(first, second),
+      () -> assertEquals(998, account1.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test concurrent retries run the operation once")
+  public void testConcurrentRetries() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(10, 60000);
+    AtomicInteger runs = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<Transaction>> results = new ArrayList<>();
+    for (int i = 0; i < 32; i++) {
+      results.add(executor.submit(() -> cache.execute("key", () -> {
+        runs.incrementAndGet();
+        return Account.transfer(account1, account2, 10);
+      })));
+    }
+    Transaction first = results.get(0).get();
+    for (Future<Transaction> result : results) {
+      assertSame(first, result.get());
+    }
+    executor.shutdown();
+    assertAll("Test concurrent retries",
+      () -> assertEquals(1, runs.get()),
+      () -> assertEquals(990, account1.getBalance())
+    );
+  }
+  @Test
+  @DisplayName("Test a key is scoped to its account and bound to its request")
+  public void testKeyScope() {
+    String key = UUID.randomUUID().toString();
+    Account account3 = new Account(customer, Currency.EUR);
+    account3.deposit(1000, Currency.EUR);
+    Transaction first = Account.transfer(account1, account2, 100, key);
+    Transaction other = Account.transfer(account3, account2, 100, key);
+    assertAll("Test key scope",
+      () -> assertNotSame(first, other),
+      () -> assertEquals(900, account3.getBalance()),
+      () -> assertEquals("The idempotency key was used for a different request.",
+        assertThrows(IllegalArgumentException.class, () -> Account.transfer(account1, account2, 200, key)).getMessage()),
+      () -> assertThrows(IllegalArgumentException.class, () -> Account.transfer(account1, account3, 100, key)),
+      () -> assertEquals(900, account1.getBalance())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a running operation is not evicted when the cache is full")
+  public void testRunningNotEvicted() throws Exception {
+    IdempotencyCache cache = new IdempotencyCache(1, 60000);
+    AtomicInteger runs = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    Future<Transaction> slow = executor.submit(() -> cache.execute("slow", () -> {
+      runs.incrementAndGet();
+      started.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Account.transfer(account1, account2, 1);
+    }));
+    started.await();
+    cache.execute("fast1", () -> Account.transfer(account1, account2, 1));
+    cache.execute("fast2", () -> Account.transfer(account1, account2, 1));
+    int size = cache.size();
+    Throwable mismatch = assertThrows(IllegalArgumentException.class,
+      () -> cache.execute("slow", "other", () -> Account.transfer(account1, account2, 1)));
+    release.countDown();
+    slow.get();
+    executor.shutdown();
+    assertAll("Test running not evicted",
+      () -> assertEquals(3, size),
+      () -> assertEquals("The idempotency key was used for a different request.", mismatch.getMessage()),
+      () -> assertEquals(1, runs.get())
+    );
+  }
+}
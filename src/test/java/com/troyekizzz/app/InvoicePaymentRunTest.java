@@ -0,0 +1,112 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.InvoiceStatus;
+import com.troyekizzz.app.utils.PaymentOutcome;
+
+public class InvoicePaymentRunTest {
+  private Bank bank;
+  private Customer payee;
+  private Account payeeAccount;
+
+  private Invoice invoice(Account payer, float amount) {
+    Invoice invoice = bank.addInvoice(payer.getOwner(), payee, payeeAccount, amount, Currency.EUR, 0, null);
+    invoice.accept(payer);
+    return invoice;
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 4})
+  @DisplayName("Test a run pays the invoices of many accounts")
+  public void testRun(int parallelism) {
+    List<Invoice> invoices = new ArrayList<>();
+    List<Account> payers = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      Customer customer = bank.addCustomer("John", "Doe" + i, "john.doe@gmail.com", "+1234567890");
+      Account account = bank.openAccount(customer, Currency.EUR);
+      account.deposit(100, Currency.EUR);
+      payers.add(account);
+      for (int j = 0; j < 10; j++) {
+        invoices.add(invoice(account, 10));
+      }
+    }
+    PaymentRunReport report = new InvoicePaymentRun(parallelism).run(invoices);
+    assertAll("Test run",
+      () -> assertEquals(500, report.getCount(PaymentOutcome.PAID)),
+      () -> assertEquals(5000, payeeAccount.getBalance(), 0.01),
+      () -> assertEquals(0, payers.get(7).getBalance(), 0.01),
+      () -> assertEquals(500, bank.getInvoices().countByStatus(InvoiceStatus.PAID)),
+      () -> assertTrue(report.getThroughput() > 0)
+    );
+  }
+
+  @Test
+  @DisplayName("Test insufficient funds are retried after the other invoices and the rest are reported")
+  public void testRetry() {
+    Customer first = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Customer second = bank.addCustomer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321");
+    Account poor = bank.openAccount(first, Currency.EUR);
+    Account rich = bank.openAccount(second, Currency.EUR);
+    rich.deposit(500, Currency.EUR);
+    poor.deposit(100, Currency.EUR);
+    Invoice toPoor = bank.addInvoice(second, first, poor, 300, Currency.EUR, 0, null);
+    Invoice fromPoor = bank.addInvoice(first, payee, payeeAccount, 100, Currency.EUR, 0, null);
+    fromPoor.accept(poor);
+    poor.withdraw(100, Currency.EUR);
+    toPoor.accept(rich);
+    rich.deposit(1000, Currency.EUR);
+    Invoice tooMuch = invoice(rich, 1000);
+    rich.withdraw(1000, Currency.EUR);
+    Invoice unaccepted = bank.addInvoice(second, payee, payeeAccount, 1, Currency.EUR, 0, null);
+    List<Invoice> invoices = Arrays.asList(fromPoor, toPoor, tooMuch, unaccepted);
+    PaymentRunReport report = new InvoicePaymentRun(2).run(invoices);
+    assertAll("Test retry",
+      () -> assertEquals(PaymentOutcome.PAID, report.getOutcome(fromPoor)),
+      () -> assertEquals(PaymentOutcome.PAID, report.getOutcome(toPoor)),
+      () -> assertEquals(PaymentOutcome.INSUFFICIENT_FUNDS, report.getOutcome(tooMuch)),
+      () -> assertEquals(PaymentOutcome.SKIPPED, report.getOutcome(unaccepted)),
+      () -> assertTrue(report.getRetryRounds() >= 1),
+      () -> assertEquals(200, poor.getBalance(), 0.01),
+      () -> assertThrows(IllegalArgumentException.class, () -> new InvoicePaymentRun(0))
+    );
+  }
+
+  @Test
+  @DisplayName("Test the bank pays all invoices falling due")
+  public void testPayFallingDueInvoices() {
+    Customer customer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    Account account = bank.openAccount(customer, Currency.EUR);
+    account.deposit(100, Currency.EUR);
+    invoice(account, 30);
+    invoice(account, 30);
+    bank.addInvoice(customer, payee, payeeAccount, 30, Currency.EUR, 0, null);
+    PaymentRunReport report = bank.payFallingDueInvoices();
+    assertAll("Test pay falling due",
+      () -> assertEquals(2, report.getInvoices().size()),
+      () -> assertEquals(2, report.getCount(PaymentOutcome.PAID)),
+      () -> assertEquals(40, account.getBalance(), 0.01)
+    );
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    bank = new Bank("Nordea", 100000);
+    payee = bank.addCustomer("Jane", "Smith", "jane.smith@gmail.com", "+0987654321");
+    payeeAccount = bank.openAccount(payee, Currency.EUR);
+  }
+}
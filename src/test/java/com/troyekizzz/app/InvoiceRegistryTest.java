@@ -0,0 +1,137 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.InvoiceStatus;
+
+public class InvoiceRegistryTest {
+  private static final long DAY = 24 * 60 * 60 * 1000L;
+  private static final long TODAY = 1678269600000L;
+
+  private Bank bank;
+  private Customer payer;
+  private Customer payee;
+  private Account payerAccount;
+  private Account payeeAccount;
+
+  @Test
+  @DisplayName("Test invoices are found by number, payer, payee and status")
+  public void testFind() {
+    Invoice first = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, new Date(TODAY));
+    Invoice second = bank.addInvoice(payer, payee, payeeAccount, 200, Currency.EUR, 0, null);
+    Invoice back = bank.addInvoice(payee, payer, payerAccount, 50, Currency.EUR, 0, null);
+    InvoiceRegistry registry = bank.getInvoices();
+    first.accept(payerAccount);
+    assertAll("Test find",
+      () -> assertEquals(3, registry.size()),
+      () -> assertSame(second, registry.findByNumber(second.getNumber())),
+      () -> assertNull(registry.findByNumber("missing")),
+      () -> assertEquals(Arrays.asList(first, second), registry.findByPayer(payer)),
+      () -> assertEquals(Collections.singletonList(back), registry.findByPayee(payer)),
+      () -> assertEquals(Collections.singletonList(first), registry.findByPayer(payer, InvoiceStatus.FALLING_DUE)),
+      () -> assertEquals(Arrays.asList(second, back), registry.findByStatus(InvoiceStatus.UNACCEPTED)),
+      () -> assertEquals(Collections.emptyList(), registry.findByPayee(payee, InvoiceStatus.PAID))
+    );
+  }
+
+  @Test
+  @DisplayName("Test accept, reject and pay move invoices between the status indexes")
+  public void testStatusTransitions() {
+    Invoice paid = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, null);
+    Invoice rejected = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, null);
+    InvoiceRegistry registry = bank.getInvoices();
+    paid.accept(payerAccount);
+    assertEquals(1, registry.countByStatus(InvoiceStatus.FALLING_DUE));
+    paid.pay();
+    rejected.reject();
+    assertAll("Test status transitions",
+      () -> assertEquals(0, registry.countByStatus(InvoiceStatus.UNACCEPTED)),
+      () -> assertEquals(0, registry.countByStatus(InvoiceStatus.FALLING_DUE)),
+      () -> assertEquals(Collections.singletonList(paid), registry.findByStatus(InvoiceStatus.PAID)),
+      () -> assertEquals(Collections.singletonList(rejected), registry.findByStatus(InvoiceStatus.REJECTED))
+    );
+  }
+
+  @Test
+  @DisplayName("Test invoices are found by due date")
+  public void testDueDate() {
+    Invoice today = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, new Date(TODAY));
+    Invoice tomorrow = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, new Date(TODAY + DAY));
+    Invoice later = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, new Date(TODAY + 10 * DAY));
+    InvoiceRegistry registry = bank.getInvoices();
+    tomorrow.accept(payerAccount);
+    assertAll("Test due date",
+      () -> assertEquals(Collections.singletonList(today), registry.findByDueDate(new Date(TODAY), new Date(TODAY + DAY))),
+      () -> assertEquals(Arrays.asList(today, tomorrow), registry.findByDueDate(new Date(TODAY), new Date(TODAY + 2 * DAY))),
+      () -> assertEquals(Collections.singletonList(tomorrow), registry.findByDueDate(new Date(0), new Date(Long.MAX_VALUE), InvoiceStatus.FALLING_DUE))
+    );
+    later.setDueDate(new Date(TODAY + DAY / 2));
+    today.setDueDate(null);
+    assertEquals(Arrays.asList(later, tomorrow), registry.findByDueDate(new Date(TODAY), new Date(TODAY + 2 * DAY)));
+  }
+
+  @Test
+  @DisplayName("Test changing a due date outside the invoice does not move it in the registry")
+  public void testDueDateCopied() {
+    Date due = new Date(TODAY);
+    Invoice invoice = bank.addInvoice(payer, payee, payeeAccount, 100, Currency.EUR, 0, due);
+    InvoiceRegistry registry = bank.getInvoices();
+    due.setTime(TODAY + 10 * DAY);
+    invoice.getDueDate().setTime(TODAY + 20 * DAY);
+    assertAll("Test due date copied",
+      () -> assertEquals(new Date(TODAY), invoice.getDueDate()),
+      () -> assertEquals(Collections.singletonList(invoice), registry.findByDueDate(new Date(TODAY), new Date(TODAY + DAY)))
+    );
+    invoice.setDueDate(new Date(TODAY + DAY));
+    assertAll("Test due date moved",
+      () -> assertEquals(Collections.emptyList(), registry.findByDueDate(new Date(TODAY), new Date(TODAY + DAY))),
+      () -> assertEquals(Collections.singletonList(invoice), registry.findByDueDate(new Date(TODAY + DAY), new Date(TODAY + 2 * DAY)))
+    );
+  }
+
+  @Test
+  @DisplayName("Test an invoice is registered once and can be removed")
+  public void testRegisterRemove() {
+    Invoice invoice = new Invoice(payer, payee, payeeAccount, 100, Currency.EUR, 0);
+    InvoiceRegistry registry = new InvoiceRegistry();
+    registry.register(invoice);
+    assertAll("Test register",
+      () -> assertThrows(IllegalArgumentException.class, () -> registry.register(invoice)),
+      () -> assertThrows(IllegalArgumentException.class, () -> bank.getInvoices().register(invoice)),
+      () -> assertThrows(IllegalArgumentException.class,
+        () -> bank.addInvoice(payer, new Customer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321"), payeeAccount, 1, Currency.EUR, 0, null))
+    );
+    assertTrue(registry.remove(invoice));
+    invoice.reject();
+    assertAll("Test remove",
+      () -> assertFalse(registry.remove(invoice)),
+      () -> assertEquals(0, registry.size()),
+      () -> assertEquals(0, registry.countByStatus(InvoiceStatus.REJECTED))
+    );
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    bank = new Bank("Nordea", 100000);
+    payer = bank.addCustomer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    payee = bank.addCustomer("Jane", "Smith", "jane.smith@gmail.com", "+0987654321");
+    payerAccount = bank.openAccount(payer, Currency.EUR);
+    payeeAccount = bank.openAccount(payee, Currency.EUR);
+    payerAccount.deposit(1000, Currency.EUR);
+  }
+}
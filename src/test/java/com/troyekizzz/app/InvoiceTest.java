@@ -1,8 +1,13 @@
 package com.troyekizzz.app;
 
+import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
@@ -144,4 +149,70 @@ public class InvoiceTest {
     });
     assertEquals("The amount is greater than the balance.", exception.getMessage());
   }
+
+  @Test
+  public void testPayPartial() {
+    Invoice invoice = new Invoice(customer1, customer2, account, 100.0f, Currency.EUR, 0.1f);
+    Account accountFrom = new Account(customer2, Currency.EUR);
+    accountFrom.deposit(1000, Currency.EUR);
+    invoice.accept(accountFrom);
+    invoice.pay(30);
+    assertAll("Test partial payment",
+      () -> assertEquals(InvoiceStatus.FALLING_DUE, invoice.getStatus()),
+      () -> assertEquals(70, invoice.getOutstandingAmount(), 0.001),
+      () -> assertEquals(30, account.getBalance(), 0.001),
+      () -> assertEquals("The amount is greater than the outstanding amount.",
+        assertThrows(IllegalArgumentException.class, () -> invoice.pay(80)).getMessage()),
+      () -> assertThrows(IllegalArgumentException.class, () -> invoice.pay(0))
+    );
+    invoice.pay();
+    assertAll("Test paying the rest",
+      () -> assertEquals(InvoiceStatus.PAID, invoice.getStatus()),
+      () -> assertEquals(0, invoice.getOutstandingAmount()),
+      () -> assertEquals(100, account.getBalance(), 0.001)
+    );
+  }
+
+  @Test
+  public void testInstallments() {
+    Invoice invoice = new Invoice(customer1, customer2, account, 100.0f, Currency.EUR, 0.1f);
+    Account accountFrom = new Account(customer2, Currency.EUR);
+    accountFrom.deposit(1000, Currency.EUR);
+    invoice.accept(accountFrom);
+    Date first = new Date(1700000000000L);
+    List<Invoice.Installment> plan = invoice.planInstallments(3, first, 30);
+    assertAll("Test installment plan",
+      () -> assertEquals(3, plan.size()),
+      () -> assertEquals(33.33f, plan.get(0).getAmount(), 0.001),
+      () -> assertEquals(33.34f, plan.get(2).getAmount(), 0.001),
+      () -> assertEquals(first, invoice.getDueDate())
+    );
+    invoice.pay(20);
+    assertEquals(first, invoice.getDueDate());
+    invoice.pay(20);
+    assertEquals(plan.get(1).getDueDate(), invoice.getDueDate());
+    invoice.pay(plan.get(1).getAmount() - 6.67f);
+    assertEquals(plan.get(2).getDueDate(), invoice.getDueDate());
+    invoice.pay();
+    assertAll("Test installments paid",
+      () -> assertEquals(InvoiceStatus.PAID, invoice.getStatus()),
+      () -> assertNull(invoice.getNextInstallment())
+    );
+  }
+
+  @Test
+  public void testInstallmentsInvalid() {
+    Invoice invoice = new Invoice(customer1, customer2, account, 100.0f, Currency.EUR, 0.1f);
+    Date early = new Date(1700000000000L);
+    Date late = new Date(1800000000000L);
+    assertAll("Test invalid installments",
+      () -> assertEquals("The installments must add up to the amount.",
+        assertThrows(IllegalArgumentException.class, () -> invoice.setInstallments(Arrays.asList(
+          new Invoice.Installment(50, early), new Invoice.Installment(40, late)))).getMessage()),
+      () -> assertEquals("The installments must be due in order.",
+        assertThrows(IllegalArgumentException.class, () -> invoice.setInstallments(Arrays.asList(
+          new Invoice.Installment(50, late), new Invoice.Installment(50, early)))).getMessage()),
+      () -> assertThrows(IllegalArgumentException.class, () -> invoice.planInstallments(0, early, 30))
+    );
+  }
 }
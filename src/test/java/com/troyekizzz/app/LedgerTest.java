@@ -0,0 +1,164 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.troyekizzz.app.utils.Currency;
+import com.troyekizzz.app.utils.PostingType;
+
+public class LedgerTest {
+  private Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+
+  @ParameterizedTest(name = "Test append and read {0} postings")
+  @ValueSource(ints = { 0, 1, Ledger.CHUNK_SIZE - 1, Ledger.CHUNK_SIZE, Ledger.CHUNK_SIZE * 5 + 3 })
+  public void testAppend(int count) {
+    Ledger ledger = new Ledger();
+    for (int i = 0; i < count; i++) {
+      ledger.append(i, i, i + 1, PostingType.DEPOSIT);
+    }
+    assertEquals(count, ledger.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(i, ledger.getTimestamp(i));
+      assertEquals(i, ledger.getAmount(i));
+      assertEquals(i + 1, ledger.getCounterparty(i));
+      assertEquals(PostingType.DEPOSIT, ledger.getType(i));
+    }
+  }
+
+  @Test
+  @DisplayName("Test reverse iteration over several chunks")
+  public void testForEachReverse() {
+    Ledger ledger = new Ledger();
+    int count = Ledger.CHUNK_SIZE * 2 + 10;
+    for (int i = 0; i < count; i++) {
+      ledger.append(i, -i, 0, PostingType.WITHDRAWAL);
+    }
+    List<Long> visited = new ArrayList<>();
+    ledger.forEachReverse((timestamp, amount, counterparty, type) -> visited.add(timestamp));
+    assertEquals(count, visited.size());
+    for (int i = 0; i < count; i++) {
+      assertEquals(count - 1 - i, visited.get(i));
+    }
+  }
+
+  @Test
+  @DisplayName("Test reverse iteration stops when the visitor returns false")
+  public void testForEachReverseStop() {
+    Ledger ledger = new Ledger();
+    for (int i = 0; i < 10; i++) {
+      ledger.append(i, i, 0, PostingType.DEPOSIT);
+    }
+    List<Float> visited = new ArrayList<>();
+    ledger.forEachReverse((timestamp, amount, counterparty, type) -> visited.add(amount) && visited.size() < 3);
+    assertAll("Test reverse iteration stop",
+      () -> assertEquals(3, visited.size()),
+      () -> assertEquals(9.0f, visited.get(0)),
+      () -> assertEquals(7.0f, visited.get(2))
+    );
+  }
+
+  @Test
+  @DisplayName("Test timestamps never go backwards")
+  public void testTimestampOrder() {
+    Ledger ledger = new Ledger();
+    ledger.append(100, 1, 0, PostingType.DEPOSIT);
+    ledger.append(50, 1, 0, PostingType.DEPOSIT);
+    assertEquals(100, ledger.getTimestamp(1));
+  }
+
+  @Test
+  @DisplayName("Test reading a posting that does not exist")
+  public void testInvalidIndex() {
+    Ledger ledger = new Ledger();
+    ledger.append(1, 1, 0, PostingType.DEPOSIT);
+    assertAll("Test invalid index",
+      () -> assertThrows(IndexOutOfBoundsException.class, () -> ledger.getAmount(1)),
+      () -> assertThrows(IndexOutOfBoundsException.class, () -> ledger.getTimestamp(-1))
+    );
+  }
+
+  @Test
+  @DisplayName("Test account operations are recorded in the ledger")
+  public void testAccountPostings() {
+    Account account1 = new Account(customer, Currency.EUR);
+    Account account2 = new Account(customer, Currency.USD);
+    account1.deposit(100, Currency.GBP);
+    account1.withdraw(25, Currency.EUR);
+    Account.transfer(account1, account2, 50);
+    Ledger ledger1 = account1.getLedger();
+    Ledger ledger2 = account2.getLedger();
+    assertAll("Test account postings",
+      () -> assertEquals(3, ledger1.size()),
+      () -> assertEquals(PostingType.DEPOSIT, ledger1.getType(0)),
+      () -> assertEquals(125.0f, ledger1.getAmount(0)),
+      () -> assertEquals(PostingType.WITHDRAWAL, ledger1.getType(1)),
+      () -> assertEquals(-25.0f, ledger1.getAmount(1)),
+      () -> assertEquals(PostingType.TRANSFER_OUT, ledger1.getType(2)),
+      () -> assertEquals(-50.0f, ledger1.getAmount(2)),
+      () -> assertEquals(account2.getId(), ledger1.getCounterparty(2)),
+      () -> assertEquals(1, ledger2.size()),
+      () -> assertEquals(PostingType.TRANSFER_IN, ledger2.getType(0)),
+      () -> assertEquals(55.0f, ledger2.getAmount(0)),
+      () -> assertEquals(account1.getId(), ledger2.getCounterparty(0))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a failed transfer leaves no postings")
+  public void testFailedTransfer() {
+    Account account1 = new Account(customer, Currency.EUR);
+    Account account2 = new Account(customer, Currency.EUR);
+    account1.deposit(100, Currency.EUR);
+    account2.close();
+    assertAll("Test failed transfer",
+      () -> assertThrows(IllegalStateException.class, () -> Account.transfer(account1, account2, 50)),
+      () -> assertEquals(1, account1.getLedger().size()),
+      () -> assertEquals(100.0f, account1.getBalance()),
+      () -> assertEquals(0, account2.getLedger().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test balance as of any moment matches a full replay")
+  public void testBalanceAsOf() {
+    Ledger ledger = new Ledger();
+    int count = Ledger.CHECKPOINT_INTERVAL * 10 + 7;
+    float[] expected = new float[count];
+    float balance = 0;
+    for (int i = 0; i < count; i++) {
+      float amount = i % 3 == 0 ? -i : i * 2;
+      balance += amount;
+      expected[i] = balance;
+      ledger.append(1000 + i * 10, amount, 0, PostingType.DEPOSIT);
+    }
+    assertEquals(0, ledger.balanceAsOf(999));
+    for (int i = 0; i < count; i++) {
+      assertEquals(expected[i], ledger.balanceAsOf(1000 + i * 10));
+      assertEquals(expected[i], ledger.balanceAsOf(1000 + i * 10 + 9));
+    }
+    assertEquals(ledger.getBalance(), ledger.balanceAsOf(Long.MAX_VALUE));
+  }
+
+  @Test
+  @DisplayName("Test balance as of a moment shared by several postings")
+  public void testBalanceAsOfSameTimestamp() {
+    Ledger ledger = new Ledger();
+    for (int i = 0; i < Ledger.CHECKPOINT_INTERVAL * 3; i++) {
+      ledger.append(i < Ledger.CHECKPOINT_INTERVAL * 2 ? 5 : 10, 1, 0, PostingType.DEPOSIT);
+    }
+    assertAll("Test balance as of same timestamp",
+      () -> assertEquals(0, ledger.balanceAsOf(4)),
+      () -> assertEquals(Ledger.CHECKPOINT_INTERVAL * 2, ledger.balanceAsOf(5)),
+      () -> assertEquals(Ledger.CHECKPOINT_INTERVAL * 3, ledger.balanceAsOf(10))
+    );
+  }
+}
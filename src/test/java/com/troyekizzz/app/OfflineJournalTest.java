@@ -0,0 +1,128 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.troyekizzz.app.utils.Currency;
+
+public class OfflineJournalTest {
+  private static final byte[] KEY = "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  @DisplayName("Test operations are read back in the order they were appended")
+  public void testAppendAndRead() {
+    Path file = directory.resolve("journal.log");
+    OfflineJournal journal = new OfflineJournal(file, KEY);
+    journal.append(true, "4000000000000002", 100, Currency.EUR, 1000);
+    journal.append(false, "4000000000000010", 25.5f, Currency.USD, 2000);
+    journal.close();
+    OfflineJournal reopened = new OfflineJournal(file, KEY);
+    List<OfflineJournal.Entry> entries = reopened.readAll();
+    assertAll("Test append and read",
+      () -> assertEquals(2, entries.size()),
+      () -> assertTrue(entries.get(0).isWithdrawal()),
+      () -> assertEquals(reopened.tokenize("4000000000000002"), entries.get(0).getCardToken()),
+      () -> assertEquals(100, entries.get(0).getAmount()),
+      () -> assertEquals(Currency.EUR, entries.get(0).getCurrency()),
+      () -> assertEquals(1000, entries.get(0).getTimestamp()),
+      () -> assertFalse(entries.get(1).isWithdrawal()),
+      () -> assertEquals(25.5f, entries.get(1).getAmount()),
+      () -> assertEquals(Currency.USD, entries.get(1).getCurrency()),
+      () -> assertEquals(3, reopened.append(true, "4000000000000002", 1, Currency.EUR, 3000).getId())
+    );
+  }
+
+  @Test
+  @DisplayName("Test card numbers are not written to the file")
+  public void testNoCardNumbers() throws IOException {
+    Path file = directory.resolve("journal.log");
+    OfflineJournal journal = new OfflineJournal(file, KEY);
+    journal.append(true, "4000000000000002", 100, Currency.EUR, 1000);
+    journal.close();
+    String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    OfflineJournal other = new OfflineJournal(directory.resolve("other.log"), new byte[32]);
+    assertAll("Test no card numbers",
+      () -> assertFalse(content.contains("4000000000000002")),
+      () -> assertNotEquals(journal.tokenize("4000000000000002"), other.tokenize("4000000000000002"))
+    );
+    other.close();
+  }
+
+  @Test
+  @DisplayName("Test operations marked as applied are not read again")
+  public void testMarkApplied() {
+    Path file = directory.resolve("journal.log");
+    OfflineJournal journal = new OfflineJournal(file, KEY);
+    OfflineJournal.Entry first = journal.append(true, "4000000000000002", 100, Currency.EUR, 1000);
+    journal.append(true, "4000000000000002", 50, Currency.EUR, 2000);
+    journal.markApplied(first);
+    journal.close();
+    List<OfflineJournal.Entry> entries = new OfflineJournal(file, KEY).readAll();
+    assertAll("Test mark applied",
+      () -> assertEquals(1, entries.size()),
+      () -> assertEquals(50, entries.get(0).getAmount())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a line cut short by a crash is skipped")
+  public void testTruncatedLine() throws IOException {
+    Path file = directory.resolve("journal.log");
+    OfflineJournal journal = new OfflineJournal(file, KEY);
+    journal.append(true, "4000000000000002", 100, Currency.EUR, 1000);
+    journal.close();
+    Files.write(file, "W;2;abc;5".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    OfflineJournal reopened = new OfflineJournal(file, KEY);
+    reopened.append(true, "4000000000000002", 20, Currency.EUR, 3000);
+    assertEquals(2, reopened.readAll().size());
+    reopened.clear();
+    assertEquals(0, reopened.readAll().size());
+    reopened.close();
+  }
+
+  @Test
+  @DisplayName("Test a cut line that still parses is not trusted")
+  public void testTornLine() throws IOException {
+    Path file = directory.resolve("journal.log");
+    OfflineJournal journal = new OfflineJournal(file, KEY);
+    OfflineJournal.Entry last = null;
+    for (int i = 1; i <= 12; i++) {
+      last = journal.append(true, "4000000000000002", i, Currency.EUR, 1700000000000L);
+    }
+    journal.markApplied(last);
+    journal.append(true, "4000000000000002", 13, Currency.EUR, 1700000000000L);
+    journal.close();
+    byte[] content = Files.readAllBytes(file);
+    String text = new String(content, StandardCharsets.UTF_8);
+    int mark = text.indexOf("A;12;");
+    Files.write(directory.resolve("mark.log"), text.substring(0, mark + 3).getBytes(StandardCharsets.UTF_8));
+    Files.write(directory.resolve("timestamp.log"), text.substring(0, text.lastIndexOf("1700000000000") + 4).getBytes(StandardCharsets.UTF_8));
+    List<OfflineJournal.Entry> cutMark = new OfflineJournal(directory.resolve("mark.log"), KEY).readAll();
+    List<OfflineJournal.Entry> cutTimestamp = new OfflineJournal(directory.resolve("timestamp.log"), KEY).readAll();
+    assertAll("Test torn line",
+      () -> assertEquals(12, cutMark.size()),
+      () -> assertEquals(1, cutMark.get(0).getId()),
+      () -> assertEquals(12, cutMark.get(11).getId()),
+      () -> assertEquals(11, cutTimestamp.size()),
+      () -> assertEquals(11, cutTimestamp.get(10).getId()),
+      () -> assertEquals(1700000000000L, cutTimestamp.get(10).getTimestamp())
+    );
+  }
+}
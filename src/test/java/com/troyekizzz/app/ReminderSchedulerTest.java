@@ -0,0 +1,86 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ReminderSchedulerTest {
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long START = 1678269600000L;
+
+  private Customer customer;
+  private BankBranch bankBranch;
+
+  private Appointment appointment(long start) {
+    return new Appointment(customer, new Date(start), new Date(start + HOUR), bankBranch);
+  }
+
+  @Test
+  @DisplayName("Test reminders are sent at their offsets before the appointment")
+  public void testDeliverDue() {
+    ReminderScheduler scheduler = new ReminderScheduler(START);
+    Appointment appointment = appointment(START + 48 * HOUR);
+    scheduler.schedule(appointment, START);
+    assertAll("Test deliver due",
+      () -> assertEquals(2, scheduler.size()),
+      () -> assertEquals(0, scheduler.deliverDue(START + 24 * HOUR - 1)),
+      () -> assertEquals(1, scheduler.deliverDue(START + 24 * HOUR)),
+      () -> assertEquals(1, customer.getMessages().size()),
+      () -> assertEquals(0, scheduler.deliverDue(START + 47 * HOUR - 1)),
+      () -> assertEquals(1, scheduler.deliverDue(START + 47 * HOUR)),
+      () -> assertEquals(2, customer.getMessages().size()),
+      () -> assertEquals(0, scheduler.size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test cancelling an appointment cancels its reminders")
+  public void testCancel() {
+    ReminderScheduler scheduler = new ReminderScheduler(START);
+    scheduler.setOffsets(HOUR, 2 * HOUR, 3 * HOUR);
+    Appointment cancelled = appointment(START + 10 * HOUR);
+    Appointment kept = appointment(START + 10 * HOUR);
+    scheduler.schedule(cancelled, START);
+    scheduler.schedule(kept, START);
+    scheduler.schedule(appointment(START - HOUR), START);
+    cancelled.cancel();
+    assertAll("Test cancel",
+      () -> assertEquals(3, scheduler.size()),
+      () -> assertEquals(3, scheduler.deliverDue(START + 10 * HOUR)),
+      () -> assertThrows(IllegalArgumentException.class, () -> scheduler.setOffsets(-1))
+    );
+  }
+
+  @Test
+  @DisplayName("Test due reminders are delivered in batches")
+  public void testBatches() {
+    ReminderScheduler scheduler = new ReminderScheduler(START);
+    List<Integer> batches = new ArrayList<>();
+    scheduler.setOffsets(HOUR);
+    scheduler.setBatchSize(4);
+    scheduler.setDelivery(batch -> batches.add(batch.size()));
+    for (int i = 0; i < 10; i++) {
+      scheduler.schedule(appointment(START + 2 * HOUR + i * 1000), START);
+    }
+    assertAll("Test batches",
+      () -> assertEquals(10, scheduler.deliverDue(START + 2 * HOUR)),
+      () -> assertEquals(Arrays.asList(4, 4, 2), batches),
+      () -> assertThrows(IllegalArgumentException.class, () -> scheduler.setBatchSize(0))
+    );
+  }
+
+  @BeforeEach
+  public void beforeEach() {
+    customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+    bankBranch = new BankBranch(new Bank("Nordea", 100000), "Kaupankatu 9", 10000);
+  }
+}
@@ -0,0 +1,123 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.troyekizzz.app.utils.CardType;
+import com.troyekizzz.app.utils.Currency;
+
+public class SequenceIdGeneratorTest {
+  @Test
+  @DisplayName("Test account numbers are Finnish IBANs with valid check digits")
+  public void testAccountNumber() {
+    SequenceIdGenerator generator = new SequenceIdGenerator();
+    for (int i = 0; i < 1000; i++) {
+      String number = generator.nextAccountNumber();
+      String rearranged = number.substring(4) + "1518" + number.substring(2, 4);
+      assertAll("Test account number " + number,
+        () -> assertEquals(18, number.length()),
+        () -> assertTrue(number.startsWith("FI")),
+        () -> assertEquals(1, SequenceIdGenerator.mod97(rearranged))
+      );
+    }
+  }
+
+  @ParameterizedTest(name = "Test card numbers are Luhn-valid in BIN {0}")
+  @ValueSource(strings = { "400000", "5555555", "37123456" })
+  public void testCardNumber(String bin) {
+    SequenceIdGenerator generator = new SequenceIdGenerator(SequenceIdGenerator.DEFAULT_BANK_CODE, bin);
+    for (int i = 0; i < 1000; i++) {
+      String number = generator.nextCardNumber();
+      assertAll("Test card number " + number,
+        () -> assertEquals(16, number.length()),
+        () -> assertTrue(number.startsWith(bin)),
+        () -> assertEquals(number.charAt(15) - '0', SequenceIdGenerator.luhnDigit(number.substring(0, 15)))
+      );
+    }
+  }
+
+  @Test
+  @DisplayName("Test known check digits")
+  public void testCheckDigits() {
+    assertAll("Test check digits",
+      () -> assertEquals(3, SequenceIdGenerator.luhnDigit("7992739871")),
+      () -> assertEquals(1, SequenceIdGenerator.mod97("12345600000785" + "1518" + "21"))
+    );
+  }
+
+  @Test
+  @DisplayName("Test identifiers are unique across threads")
+  public void testUniqueness() throws Exception {
+    SequenceIdGenerator generator = new SequenceIdGenerator();
+    Set<String> invoices = ConcurrentHashMap.newKeySet();
+    Set<String> cards = ConcurrentHashMap.newKeySet();
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    List<Future<?>> results = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      results.add(executor.submit(() -> {
+        for (int i = 0; i < 100000; i++) {
+          invoices.add(generator.nextInvoiceNumber());
+          if (i % 4 == 0) {
+            cards.add(generator.nextCardNumber());
+          }
+        }
+      }));
+    }
+    for (Future<?> result : results) {
+      result.get();
+    }
+    executor.shutdown();
+    assertAll("Test uniqueness",
+      () -> assertEquals(800000, invoices.size()),
+      () -> assertEquals(200000, cards.size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test an exhausted sequence and invalid settings are rejected")
+  public void testExhaustion() {
+    SequenceIdGenerator generator = new SequenceIdGenerator("1234567890123", SequenceIdGenerator.DEFAULT_BIN);
+    for (int i = 0; i < 10; i++) {
+      generator.nextAccountNumber();
+    }
+    assertAll("Test exhaustion",
+      () -> assertThrows(IllegalStateException.class, () -> generator.nextAccountNumber()),
+      () -> assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator("12a", SequenceIdGenerator.DEFAULT_BIN)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new SequenceIdGenerator("123", "12345"))
+    );
+  }
+
+  @Test
+  @DisplayName("Test the bank uses the configured generator")
+  public void testIdService() {
+    IdGenerator original = IdService.getInstance().getGenerator();
+    try {
+      IdService.getInstance().setGenerator(new SequenceIdGenerator("999999", "12345678"));
+      Customer customer = new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890");
+      Account account = new Account(customer, Currency.EUR);
+      Card card = new Card(CardType.DEBIT, account, "1234");
+      assertAll("Test id service",
+        () -> assertTrue(account.getNumber().startsWith("999999", 4)),
+        () -> assertTrue(card.getNumber().startsWith("12345678")),
+        () -> assertThrows(IllegalArgumentException.class, () -> IdService.getInstance().setGenerator(null))
+      );
+    } finally {
+      IdService.getInstance().setGenerator(original);
+    }
+  }
+}
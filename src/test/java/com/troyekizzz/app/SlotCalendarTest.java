@@ -0,0 +1,120 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class SlotCalendarTest {
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long DAY = 24 * HOUR;
+  private static final long START = 19000 * DAY + 10 * HOUR;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 2, 5})
+  @DisplayName("Test a time holds as many appointments as the capacity")
+  public void testCapacity(int capacity) {
+    SlotCalendar calendar = new SlotCalendar(capacity);
+    for (int i = 0; i < capacity; i++) {
+      calendar.reserve(START, START + HOUR);
+    }
+    assertAll("Test capacity",
+      () -> assertEquals(capacity, calendar.getCount(START)),
+      () -> assertFalse(calendar.isFree(START + HOUR / 2, START + 2 * HOUR)),
+      () -> assertTrue(calendar.isFree(START + HOUR, START + 2 * HOUR)),
+      () -> assertTrue(calendar.isFree(START - HOUR, START)),
+      () -> assertThrows(IllegalArgumentException.class, () -> calendar.reserve(START + 45 * 60 * 1000L, START + 2 * HOUR))
+    );
+    calendar.release(START, START + HOUR);
+    assertTrue(calendar.isFree(START, START + HOUR));
+  }
+
+  @Test
+  @DisplayName("Test a time over midnight and times booked all at once")
+  public void testReserveAll() {
+    SlotCalendar calendar = new SlotCalendar(1);
+    long midnight = 19001 * DAY;
+    calendar.reserve(midnight - HOUR / 2, midnight + HOUR / 2);
+    assertAll("Test midnight",
+      () -> assertEquals(1, calendar.getCount(midnight - 1)),
+      () -> assertEquals(1, calendar.getCount(midnight)),
+      () -> assertEquals(0, calendar.getCount(midnight + HOUR / 2))
+    );
+    long[] starts = {START, START + HOUR, START + HOUR / 2};
+    long[] ends = {START + HOUR, START + 2 * HOUR, START + HOUR};
+    assertThrows(IllegalArgumentException.class, () -> calendar.reserveAll(starts, ends));
+    assertAll("Test nothing booked",
+      () -> assertEquals(0, calendar.getCount(START)),
+      () -> assertEquals(0, calendar.getCount(START + HOUR))
+    );
+    calendar.reserveAll(new long[] {START, START + HOUR}, new long[] {START + HOUR, START + 2 * HOUR});
+    assertEquals(1, calendar.getCount(START + HOUR));
+  }
+
+  @Test
+  @DisplayName("Test invalid arguments are rejected")
+  public void testInvalid() {
+    SlotCalendar calendar = new SlotCalendar(1);
+    assertAll("Test invalid",
+      () -> assertThrows(IllegalArgumentException.class, () -> new SlotCalendar(0)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new SlotCalendar(SlotCalendar.MAX_CAPACITY + 1)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new SlotCalendar(1, 7 * 60 * 1000L)),
+      () -> assertThrows(IllegalArgumentException.class, () -> calendar.reserve(START, START))
+    );
+  }
+
+  @Test
+  @DisplayName("Test nextFree skips the full slots")
+  public void testNextFree() {
+    SlotCalendar calendar = new SlotCalendar(1);
+    long quarter = 15 * 60 * 1000L;
+    calendar.reserve(START, START + HOUR);
+    calendar.reserve(START + HOUR + quarter, START + 2 * HOUR);
+    assertAll("Test next free",
+      () -> assertEquals(START - HOUR, calendar.nextFree(START - HOUR, HOUR)),
+      () -> assertEquals(START + 2 * HOUR, calendar.nextFree(START - HOUR / 2, HOUR)),
+      () -> assertEquals(START + HOUR, calendar.nextFree(START + 1, quarter)),
+      () -> assertEquals(START + 2 * HOUR, calendar.nextFree(START + 1, 2 * quarter))
+    );
+    calendar.setCapacity(2);
+    assertEquals(START, calendar.nextFree(START, HOUR));
+  }
+
+  @Test
+  @DisplayName("Test the days before today are dropped when booking")
+  public void testPrune() {
+    SlotCalendar calendar = new SlotCalendar(1);
+    calendar.reserve(START, START + HOUR, START);
+    calendar.reserve(START + 2 * HOUR, START + 3 * HOUR, START + HOUR);
+    assertEquals(1, calendar.getCount(START));
+    calendar.reserve(START + DAY, START + DAY + HOUR, START + DAY);
+    calendar.release(START, START + HOUR);
+    assertAll("Test prune",
+      () -> assertEquals(0, calendar.getCount(START)),
+      () -> assertEquals(0, calendar.getCount(START + 2 * HOUR)),
+      () -> assertEquals(1, calendar.getCount(START + DAY)),
+      () -> assertFalse(calendar.isFree(START + DAY, START + DAY + HOUR))
+    );
+  }
+
+  @Test
+  @DisplayName("Test times off the slot boundaries conflict when they share a slot")
+  public void testUnalignedTimes() {
+    SlotCalendar calendar = new SlotCalendar(1);
+    long ten = 10 * 60 * 1000L;
+    calendar.reserve(START + 2 * HOUR + ten, START + 3 * HOUR + ten, START);
+    assertAll("Test unaligned times",
+      () -> assertFalse(calendar.isFree(START + 3 * HOUR + ten, START + 4 * HOUR + ten)),
+      () -> assertThrows(IllegalArgumentException.class, () -> calendar.reserve(START + 3 * HOUR + ten, START + 4 * HOUR + ten, START)),
+      () -> assertEquals(START + 3 * HOUR + 15 * 60 * 1000L, calendar.nextFree(START + 3 * HOUR + ten, HOUR))
+    );
+    calendar.reserve(START + 3 * HOUR + 15 * 60 * 1000L, START + 4 * HOUR + 15 * 60 * 1000L, START);
+    assertEquals(1, calendar.getCount(START + 4 * HOUR));
+  }
+}
@@ -0,0 +1,113 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class SpatialIndexTest {
+  static class Place implements Located {
+    private final int number;
+    private final double latitude;
+    private final double longitude;
+
+    Place(int number, double latitude, double longitude) {
+      this.number = number;
+      this.latitude = latitude;
+      this.longitude = longitude;
+    }
+
+    @Override
+    public double getLatitude() {
+      return latitude;
+    }
+
+    @Override
+    public double getLongitude() {
+      return longitude;
+    }
+  }
+
+  @ParameterizedTest
+  @ValueSource(doubles = {0.01, 0.1, 1, 10})
+  @DisplayName("Test the nearest places are the same as found by a full scan")
+  public void testFindNearest(double cellSize) {
+    Random random = new Random(42);
+    SpatialIndex<Place> index = new SpatialIndex<>(cellSize);
+    List<Place> places = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      Place place = new Place(i, 59 + random.nextDouble() * 12, 19 + random.nextDouble() * 13);
+      places.add(place);
+      index.add(place);
+    }
+    for (int query = 0; query < 20; query++) {
+      double latitude = 58 + random.nextDouble() * 14;
+      double longitude = 18 + random.nextDouble() * 15;
+      List<Place> expected = places.stream()
+        .filter(place -> place.number % 3 == 0)
+        .sorted(Comparator.comparingDouble(place -> SpatialIndex.distance(latitude, longitude, place.getLatitude(), place.getLongitude())))
+        .limit(5)
+        .collect(Collectors.toList());
+      assertEquals(expected, index.findNearest(latitude, longitude, 5, place -> place.number % 3 == 0));
+    }
+  }
+
+  @Test
+  @DisplayName("Test places can be removed and places without coordinates are not added")
+  public void testAddRemove() {
+    SpatialIndex<Place> index = new SpatialIndex<>();
+    Place helsinki = new Place(0, 60.1699, 24.9384);
+    Place espoo = new Place(1, 60.2055, 24.6559);
+    Place nowhere = new Place(2, Double.NaN, Double.NaN);
+    index.add(helsinki);
+    index.add(espoo);
+    index.add(nowhere);
+    assertEquals(2, index.size());
+    assertTrue(index.remove(helsinki));
+    assertAll("Test add and remove",
+      () -> assertFalse(index.remove(helsinki)),
+      () -> assertFalse(index.remove(nowhere)),
+      () -> assertEquals(1, index.size()),
+      () -> assertEquals(Collections.singletonList(espoo), index.findNearest(60.17, 24.94, 3, place -> true)),
+      () -> assertEquals(Collections.emptyList(), index.findNearest(60.17, 24.94, 3, place -> false))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a search wraps around the date line")
+  public void testDateLine() {
+    SpatialIndex<Place> index = new SpatialIndex<>();
+    Place east = new Place(0, 0, 179.95);
+    Place far = new Place(1, 0, 175);
+    index.add(far);
+    index.add(east);
+    assertEquals(Arrays.asList(east, far), index.findNearest(0, -179.95, 2, place -> true));
+    assertEquals(11.1, SpatialIndex.distance(0, 179.95, 0, -179.95), 0.1);
+  }
+
+  @Test
+  @DisplayName("Test invalid arguments are rejected")
+  public void testInvalid() {
+    SpatialIndex<Place> index = new SpatialIndex<>();
+    assertAll("Test invalid",
+      () -> assertThrows(IllegalArgumentException.class, () -> new SpatialIndex<Place>(0)),
+      () -> assertThrows(IllegalArgumentException.class, () -> index.findNearest(0, 0, 0, place -> true)),
+      () -> assertThrows(IllegalArgumentException.class, () -> index.findNearest(91, 0, 1, place -> true)),
+      () -> assertThrows(IllegalArgumentException.class, () -> index.findNearest(Double.NaN, 0, 1, place -> true))
+    );
+  }
+}
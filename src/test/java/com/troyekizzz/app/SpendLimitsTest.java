@@ -0,0 +1,83 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.troyekizzz.app.utils.LimitPeriod;
+
+public class SpendLimitsTest {
+  private static final long HOUR = 60 * 60 * 1000L;
+  private static final long DAY = 24 * HOUR;
+  private static final long START = 1000 * DAY;
+
+  @ParameterizedTest
+  @EnumSource(LimitPeriod.class)
+  @DisplayName("Test a limit rejects spending over it")
+  public void testLimit(LimitPeriod period) {
+    SpendLimits limits = new SpendLimits();
+    limits.setLimit(period, 500);
+    limits.acquire(300, START);
+    Throwable exception = assertThrows(IllegalArgumentException.class, () -> limits.acquire(201, START + HOUR));
+    assertAll("Test limit",
+      () -> assertEquals("Purchase amount exceeds " + period.toString().toLowerCase() + " limit", exception.getMessage()),
+      () -> assertEquals(300, limits.getSpent(period, START + HOUR)),
+      () -> assertDoesNotThrow(() -> limits.acquire(200, START + HOUR)),
+      () -> assertEquals(500, limits.getSpent(period, START + HOUR))
+    );
+  }
+
+  @Test
+  @DisplayName("Test spending leaves the daily window after a day")
+  public void testRollingWindow() {
+    SpendLimits limits = new SpendLimits();
+    limits.setLimit(LimitPeriod.DAILY, 500);
+    limits.setLimit(LimitPeriod.WEEKLY, 1200);
+    limits.acquire(400, START);
+    limits.acquire(100, START + 12 * HOUR);
+    assertThrows(IllegalArgumentException.class, () -> limits.acquire(100, START + 23 * HOUR));
+    limits.acquire(400, START + DAY);
+    assertAll("Test rolling window",
+      () -> assertEquals(500, limits.getSpent(LimitPeriod.DAILY, START + DAY)),
+      () -> assertEquals(900, limits.getSpent(LimitPeriod.WEEKLY, START + DAY)),
+      () -> assertEquals(400, limits.getSpent(LimitPeriod.DAILY, START + DAY + 13 * HOUR)),
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.DAILY, START + 10 * DAY)),
+      () -> assertEquals(900, limits.getSpent(LimitPeriod.MONTHLY, START + 10 * DAY))
+    );
+  }
+
+  @Test
+  @DisplayName("Test a rejected purchase is not counted in any period")
+  public void testAllOrNothing() {
+    SpendLimits limits = new SpendLimits();
+    limits.setLimit(LimitPeriod.MONTHLY, 100);
+    assertThrows(IllegalArgumentException.class, () -> limits.acquire(150, START));
+    assertAll("Test all or nothing",
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.DAILY, START)),
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.WEEKLY, START)),
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.MONTHLY, START))
+    );
+  }
+
+  @Test
+  @DisplayName("Test released spending is removed from the periods it is still in")
+  public void testRelease() {
+    SpendLimits limits = new SpendLimits();
+    limits.acquire(100, START);
+    limits.acquire(50, START + 2 * DAY);
+    limits.release(100, START);
+    limits.release(50, START + 2 * DAY);
+    assertAll("Test release",
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.DAILY, START + 2 * DAY)),
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.WEEKLY, START + 2 * DAY)),
+      () -> assertEquals(0, limits.getSpent(LimitPeriod.MONTHLY, START + 2 * DAY)),
+      () -> assertThrows(IllegalArgumentException.class, () -> limits.setLimit(LimitPeriod.DAILY, -1))
+    );
+  }
+}
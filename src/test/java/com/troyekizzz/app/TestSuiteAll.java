@@ -7,13 +7,32 @@ import org.junit.platform.suite.api.Suite;
 @SelectClasses({
   AccountTest.class,
   Appointment.class,
+  ATMSessionTest.class,
+  AtmTelemetryTest.class,
   ATMTest.class,
   BankBranchTest.class,
   BankTest.class,
+  BranchScheduleTest.class,
+  BranchVaultTest.class,
   CardTest.class,
+  CashDispenserTest.class,
   CustomerTest.class,
+  DunningSchedulerTest.class,
   ExchangeTest.class,
+  IdempotencyCacheTest.class,
+  InvoicePaymentRunTest.class,
+  InvoiceRegistryTest.class,
   InvoiceTest.class,
+  LedgerTest.class,
+  OfflineJournalTest.class,
+  ReminderSchedulerTest.class,
+  SequenceIdGeneratorTest.class,
+  SlotCalendarTest.class,
+  SpatialIndexTest.class,
+  SpendLimitsTest.class,
+  TimingWheelTest.class,
+  TransactionHistoryTest.class,
+  TransactionIndexTest.class,
   TransactionTest.class,
 })
 public class TestSuiteAll {
@@ -0,0 +1,77 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TimingWheelTest {
+  private static final long START = 1678269600000L;
+
+  @Test
+  @DisplayName("Test every timer is due exactly at its deadline tick")
+  public void testAdvance() {
+    Random random = new Random(11);
+    TimingWheel<Integer> wheel = new TimingWheel<>(1000, START);
+    long[] deadlines = new long[5000];
+    List<TimingWheel.Timer<Integer>> timers = new ArrayList<>();
+    for (int i = 0; i < deadlines.length; i++) {
+      long delay = random.nextInt(4) == 0 ? random.nextInt(120000) : (long) (random.nextDouble() * 90L * 24 * 60 * 60 * 1000);
+      deadlines[i] = START + delay;
+      timers.add(wheel.schedule(i, deadlines[i]));
+    }
+    Set<Integer> cancelled = new HashSet<>();
+    for (int i = 0; i < deadlines.length; i += 7) {
+      assertTrue(timers.get(i).cancel());
+      cancelled.add(i);
+    }
+    assertEquals(deadlines.length - cancelled.size(), wheel.size());
+    Set<Integer> fired = new HashSet<>();
+    long now = START;
+    while (now < START + 91L * 24 * 60 * 60 * 1000) {
+      now += 1 + (long) (random.nextDouble() * 6 * 60 * 60 * 1000);
+      for (int value : wheel.advance(now)) {
+        assertTrue(deadlines[value] / 1000 <= now / 1000);
+        assertTrue(fired.add(value));
+      }
+      for (int i = 0; i < deadlines.length; i++) {
+        if (deadlines[i] / 1000 <= now / 1000 && !cancelled.contains(i)) {
+          assertTrue(fired.contains(i));
+        }
+      }
+    }
+    assertAll("Test all fired",
+      () -> assertEquals(deadlines.length - cancelled.size(), fired.size()),
+      () -> assertEquals(0, wheel.size()),
+      () -> assertFalse(timers.get(0).cancel()),
+      () -> assertFalse(timers.get(1).cancel())
+    );
+  }
+
+  @Test
+  @DisplayName("Test timers in the past are due at the next advance in deadline order")
+  public void testOverdue() {
+    TimingWheel<String> wheel = new TimingWheel<>(1000, START);
+    wheel.schedule("past", START - 5000);
+    wheel.schedule("now", START);
+    wheel.schedule("soon", START + 1500);
+    assertAll("Test overdue",
+      () -> assertEquals(Arrays.asList("past", "now"), wheel.advance(START)),
+      () -> assertEquals(Collections.emptyList(), wheel.advance(START + 999)),
+      () -> assertEquals(Collections.singletonList("soon"), wheel.advance(START + 1000)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, START))
+    );
+  }
+}
@@ -0,0 +1,120 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.Currency;
+
+public class TransactionHistoryTest {
+  private Account from;
+  private Account to;
+
+  @BeforeEach
+  public void beforeEach() {
+    from = new Account(new Customer("John", "Doe", "john.doe@gmail.com", "+1234567890"), Currency.EUR);
+    to = new Account(new Customer("Jane", "Doe", "jane.doe@gmail.com", "+0987654321"), Currency.EUR);
+  }
+
+  @Test
+  @DisplayName("Test recent transactions stay in memory")
+  public void testRecent() {
+    TransactionHistory history = new TransactionHistory(4);
+    Transaction transaction = new Transaction(from, to, 10, Currency.EUR, "First");
+    history.add(transaction);
+    assertAll("Test recent",
+      () -> assertEquals(1, history.size()),
+      () -> assertSame(transaction, history.get(0)),
+      () -> assertEquals(1, history.getRecentSize())
+    );
+  }
+
+  @Test
+  @DisplayName("Test old transactions are spilled and read back detached")
+  public void testSpill() {
+    TransactionHistory history = new TransactionHistory(8);
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 1; i <= 300; i++) {
+      Transaction transaction = new Transaction(from, to, i, Currency.values()[i % 3], "Transfer " + i);
+      added.add(transaction);
+      history.add(transaction);
+    }
+    Transaction old = history.get(150);
+    assertAll("Test spill",
+      () -> assertEquals(300, history.size()),
+      () -> assertEquals(8, history.getRecentSize()),
+      () -> assertEquals(added.get(150), old),
+      () -> assertEquals(151, old.getAmount()),
+      () -> assertEquals(Currency.values()[151 % 3], old.getCurrency()),
+      () -> assertEquals("Transfer 151", old.getDescription()),
+      () -> assertEquals(added.get(150).getDate(), old.getDate()),
+      () -> assertNull(old.getFrom()),
+      () -> assertSame(added.get(299), history.get(299)),
+      () -> assertEquals(added, new ArrayList<>(history)),
+      () -> assertEquals(-1, history.indexOf(new Transaction(from, to, 1, Currency.EUR, "Other")))
+    );
+  }
+
+  @Test
+  @DisplayName("Test the history can only be appended to")
+  public void testAppendOnly() {
+    TransactionHistory history = new TransactionHistory(2);
+    Transaction transaction = new Transaction(from, to, 10, Currency.EUR, "First");
+    history.addAll(Arrays.asList(transaction, transaction));
+    assertAll("Test append only",
+      () -> assertEquals(2, history.size()),
+      () -> assertThrows(UnsupportedOperationException.class, () -> history.add(0, transaction)),
+      () -> assertThrows(UnsupportedOperationException.class, () -> history.remove(0)),
+      () -> assertThrows(IndexOutOfBoundsException.class, () -> history.get(2)),
+      () -> assertThrows(IllegalArgumentException.class, () -> new TransactionHistory(0))
+    );
+  }
+  @Test
+  @DisplayName("Test a closed history keeps its recent transactions only")
+  public void testClose() {
+    TransactionHistory history = new TransactionHistory(2);
+    for (int i = 1; i <= 5; i++) {
+      history.add(new Transaction(from, to, i, Currency.EUR, "Transfer " + i));
+    }
+    history.close();
+    history.close();
+    assertAll("Test close",
+      () -> assertEquals(5, history.get(4).getAmount()),
+      () -> assertThrows(IllegalStateException.class, () -> history.get(0)),
+      () -> assertThrows(IllegalStateException.class, () -> history.add(new Transaction(from, to, 1, Currency.EUR, "Late")))
+    );
+  }
+
+  @Test
+  @DisplayName("Test spilled transactions keep long descriptions and read back in order")
+  public void testLongDescriptions() {
+    TransactionHistory history = new TransactionHistory(2);
+    char[] letters = new char[70000];
+    Arrays.fill(letters, '\u00e4');
+    String description = new String(letters);
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      Transaction transaction = new Transaction(from, to, i + 1, Currency.EUR, i % 50 == 0 ? description : "Transfer " + i);
+      added.add(transaction);
+      history.add(transaction);
+    }
+    List<Transaction> read = new ArrayList<>(history);
+    assertAll("Test long descriptions",
+      () -> assertEquals(added, read),
+      () -> assertEquals(description, history.get(0).getDescription()),
+      () -> assertEquals(description, history.get(150).getDescription()),
+      () -> assertEquals("Transfer 131", history.get(131).getDescription()),
+      () -> assertEquals("Transfer 63", history.get(63).getDescription())
+    );
+  }
+}
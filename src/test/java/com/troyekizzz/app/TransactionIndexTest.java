@@ -0,0 +1,228 @@
+package com.troyekizzz.app;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import com.troyekizzz.app.utils.CardType;
+import com.troyekizzz.app.utils.Currency;
+
+public class TransactionIndexTest {
+  private static final Date BEGINNING = new Date(0);
+  private static final Date END = new Date(Long.MAX_VALUE);
+
+  private TransactionIndex index = TransactionIndex.getInstance();
+  private Bank bank;
+  private Customer customer;
+  private Customer shop;
+  private Account account;
+  private Card card;
+  private ATM atm;
+
+  @BeforeEach
+  public void beforeEach() {
+    bank = new Bank("Nordea", 100000);
+    customer = bank.addCustomer("John", "Smith", "john.smith@gmail.com", "+6789054321");
+    shop = bank.addCustomer("Grocery Shop", "H-Market", "info@h-market.fi", "+358 123 456 789");
+    account = bank.openAccount(customer, Currency.EUR);
+    bank.openAccount(shop, Currency.EUR);
+    account.deposit(100000, Currency.EUR);
+    card = bank.addCard(account, CardType.DEBIT, "1111");
+    atm = bank.addAtm("Tampere", 10000);
+  }
+
+  @Test
+  @DisplayName("Test transfers are indexed by both accounts")
+  public void testFindByAccount() {
+    Account other = bank.openAccount(customer, Currency.EUR);
+    Transaction transaction = Account.transfer(account, other, 100);
+    assertAll("Test find by account",
+      () -> assertEquals(1, index.findByAccount(account, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().size()),
+      () -> assertEquals(transaction, index.findByAccount(other, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().get(0))
+    );
+  }
+
+  @Test
+  @DisplayName("Test purchases are indexed by card and filtered by amount")
+  public void testFindByCardAmount() {
+    card.processPurchase(100, Currency.EUR, "1111", shop);
+    card.processPurchase(600, Currency.EUR, "1111", shop);
+    card.processPurchase(550, Currency.EUR, "1111", shop);
+    card.processPurchase(20, Currency.EUR, "1111", shop);
+    TransactionPage page = index.findByCard(card, BEGINNING, END, 500, Float.MAX_VALUE, null, 10);
+    assertAll("Test find by card",
+      () -> assertEquals(2, page.getTransactions().size()),
+      () -> assertEquals(600, page.getTransactions().get(0).getAmount()),
+      () -> assertEquals(550, page.getTransactions().get(1).getAmount()),
+      () -> assertFalse(page.hasNext())
+    );
+  }
+
+  @Test
+  @DisplayName("Test ATM operations are indexed by ATM, card and account")
+  public void testFindByAtm() {
+    atm.withdrawCash(card, 100, Currency.EUR, "1111");
+    atm.depositCash(card, 50, Currency.EUR, "1111");
+    assertAll("Test find by ATM",
+      () -> assertEquals(2, index.findByAtm(atm, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().size()),
+      () -> assertEquals(2, index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().size()),
+      () -> assertEquals(2, index.findByAccount(account, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test cursor pagination returns every result once")
+  public void testPagination() {
+    for (int i = 1; i <= 25; i++) {
+      card.processPurchase(i, Currency.EUR, "1111", shop);
+    }
+    List<Transaction> all = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      TransactionPage page = index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, cursor, 10);
+      all.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+      pages++;
+    } while (cursor != null);
+    assertEquals(3, pages);
+    assertEquals(25, all.size());
+    for (int i = 0; i < 25; i++) {
+      assertEquals(i + 1, all.get(i).getAmount());
+    }
+  }
+
+  @Test
+  @DisplayName("Test time range filtering")
+  public void testTimeRange() {
+    Transaction transaction = card.processPurchase(100, Currency.EUR, "1111", shop);
+    long time = transaction.getDate().getTime();
+    assertAll("Test time range",
+      () -> assertTrue(index.findByCard(card, new Date(time + 1), END, 0, Float.MAX_VALUE, null, 10).getTransactions().isEmpty()),
+      () -> assertTrue(index.findByCard(card, BEGINNING, new Date(time - 1), 0, Float.MAX_VALUE, null, 10).getTransactions().isEmpty()),
+      () -> assertEquals(1, index.findByCard(card, new Date(time), new Date(time), 0, Float.MAX_VALUE, null, 10).getTransactions().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test unknown keys and invalid arguments")
+  public void testEmptyAndInvalid() {
+    Card unused = bank.addCard(account, CardType.CREDIT, "2222");
+    assertAll("Test empty and invalid",
+      () -> assertTrue(index.findByCard(unused, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().isEmpty()),
+      () -> assertThrows(IllegalArgumentException.class, () -> index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 0)),
+      () -> assertThrows(IllegalArgumentException.class, () -> index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, "x", 10))
+    );
+  }
+  @Test
+  @DisplayName("Test the index returns detached copies and forgets removed cards")
+  public void testDetachedAndRemoved() {
+    Transaction transaction = card.processPurchase(100, Currency.EUR, "1111", shop);
+    Transaction found = index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().get(0);
+    bank.removeCard(card);
+    assertAll("Test detached and removed",
+      () -> assertEquals(transaction, found),
+      () -> assertEquals(transaction.getDate(), found.getDate()),
+      () -> assertEquals(transaction.getDescription(), found.getDescription()),
+      () -> assertNull(found.getFrom()),
+      () -> assertTrue(index.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 10).getTransactions().isEmpty()),
+      () -> assertThrows(IllegalStateException.class, () -> card.getHistory().add(transaction))
+    );
+  }
+  @Test
+  @DisplayName("Test a key keeps at most its capacity, dropping the oldest")
+  public void testCapacity() {
+    TransactionIndex small = new TransactionIndex(8);
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 1; i <= 20; i++) {
+      Transaction transaction = new Transaction(card, i, Currency.EUR, "Purchase " + i);
+      added.add(transaction);
+      small.add(card, transaction);
+    }
+    TransactionPage first = small.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 3);
+    List<Transaction> kept = new ArrayList<>(first.getTransactions());
+    String cursor = first.getNextCursor();
+    while (cursor != null) {
+      TransactionPage page = small.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, cursor, 3);
+      kept.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+    }
+    assertAll("Test capacity",
+      () -> assertTrue(first.isIncomplete()),
+      () -> assertTrue(kept.size() <= 8),
+      () -> assertEquals(added.get(19), kept.get(kept.size() - 1)),
+      () -> assertFalse(kept.contains(added.get(0))),
+      () -> assertEquals(added.subList(20 - kept.size(), 20), kept),
+      () -> assertThrows(IllegalArgumentException.class, () -> new TransactionIndex(0))
+    );
+  }
+
+  @Test
+  @DisplayName("Test transactions of different accounts are indexed in parallel")
+  public void testConcurrentAdd() throws InterruptedException {
+    TransactionIndex concurrent = new TransactionIndex(TransactionIndex.DEFAULT_CAPACITY);
+    List<Account> accounts = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      accounts.add(bank.openAccount(customer, Currency.EUR));
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (Account owner : accounts) {
+      executor.execute(() -> {
+        for (int i = 0; i < 1000; i++) {
+          concurrent.add(new Transaction(owner, account, 1, Currency.EUR, "Transfer"));
+        }
+      });
+    }
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    assertAll("Test concurrent add",
+      () -> assertEquals(1000, concurrent.findByAccount(accounts.get(3), BEGINNING, END, 0, Float.MAX_VALUE, null, 5000).getTransactions().size()),
+      () -> assertEquals(8000, concurrent.findByAccount(account, BEGINNING, END, 0, Float.MAX_VALUE, null, 10000).getTransactions().size())
+    );
+  }
+
+  @Test
+  @DisplayName("Test a cursor resumes correctly after an older transaction is moved in")
+  public void testInsertThenResume() {
+    TransactionIndex resumed = new TransactionIndex(TransactionIndex.DEFAULT_CAPACITY);
+    List<Transaction> added = new ArrayList<>();
+    for (int i = 1; i <= 10; i++) {
+      Transaction transaction = new Transaction(i, i, Currency.EUR, new Date(1000L * i), "Purchase " + i);
+      added.add(transaction);
+      resumed.add(card, transaction);
+    }
+    TransactionPage first = resumed.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, null, 4);
+    Transaction replayed = new Transaction(11, 11, Currency.EUR, new Date(1500), "Replayed");
+    Transaction same = new Transaction(12, 12, Currency.EUR, new Date(4000), "Same time");
+    resumed.add(card, replayed);
+    resumed.add(card, same);
+    List<Transaction> rest = new ArrayList<>();
+    String cursor = first.getNextCursor();
+    while (cursor != null) {
+      TransactionPage page = resumed.findByCard(card, BEGINNING, END, 0, Float.MAX_VALUE, cursor, 4);
+      rest.addAll(page.getTransactions());
+      cursor = page.getNextCursor();
+    }
+    List<Transaction> expected = new ArrayList<>(added.subList(4, 10));
+    expected.add(0, same);
+    assertAll("Test insert then resume",
+      () -> assertEquals(added.subList(0, 4), first.getTransactions()),
+      () -> assertFalse(first.isIncomplete()),
+      () -> assertEquals(expected, rest)
+    );
+  }
+}